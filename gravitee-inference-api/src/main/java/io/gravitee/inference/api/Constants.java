@@ -46,6 +46,21 @@ public final class Constants {
   public static final String ATTENTION_MASK = "attention_mask";
   public static final String TOKEN_TYPE_IDS = "token_type_ids";
 
+  /*
+    ONNX Session Constants
+  */
+
+  public static final String GRAPH_OPTIMIZATION_LEVEL =
+    "graphOptimizationLevel";
+  public static final String EXECUTION_MODE = "executionMode";
+  public static final String INTER_OP_NUM_THREADS = "interOpNumThreads";
+  public static final String MEMORY_PATTERN = "memoryPattern";
+  public static final String CPU_ARENA = "cpuArena";
+  public static final String FLUSH_DENORMALS = "flushDenormals";
+  public static final String OPTIMIZED_MODEL_CACHE = "optimizedModelCache";
+  public static final String SESSION_POOL_SIZE = "sessionPoolSize";
+  public static final String ADAPTIVE_PARALLELISM = "adaptiveParallelism";
+
   /*
     Classifier Constants
   */
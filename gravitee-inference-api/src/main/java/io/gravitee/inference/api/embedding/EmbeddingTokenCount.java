@@ -19,4 +19,11 @@ package io.gravitee.inference.api.embedding;
  * @author Rémi SULTAN (remi.sultan at graviteesource.com)
  * @author GraviteeSource Team
  */
-public record EmbeddingTokenCount(float[] embedding, int tokenCount) {}
+public record EmbeddingTokenCount(float[] embedding, int tokenCount) {
+  /**
+   * @return this embedding with half-precision values, half the size
+   */
+  public Float16EmbeddingTokenCount toFloat16() {
+    return Float16EmbeddingTokenCount.of(this);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.api.embedding;
+
+/**
+ * The compact form of an {@link EmbeddingTokenCount}: the embedding is
+ * stored as IEEE 754 half-precision floats, see
+ * {@link Float#floatToFloat16(float)}, which halves the memory of cached
+ * embeddings. Normalized embeddings keep about 3 significant digits per
+ * dimension.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public record Float16EmbeddingTokenCount(short[] embedding, int tokenCount) {
+  public static Float16EmbeddingTokenCount of(
+    EmbeddingTokenCount embeddingTokenCount
+  ) {
+    final float[] embedding = embeddingTokenCount.embedding();
+    short[] halves = new short[embedding.length];
+    for (int i = 0; i < embedding.length; i++) {
+      halves[i] = Float.floatToFloat16(embedding[i]);
+    }
+    return new Float16EmbeddingTokenCount(
+      halves,
+      embeddingTokenCount.tokenCount()
+    );
+  }
+
+  public int dimension() {
+    return embedding.length;
+  }
+
+  public EmbeddingTokenCount toEmbeddingTokenCount() {
+    float[] floats = new float[embedding.length];
+    for (int i = 0; i < embedding.length; i++) {
+      floats[i] = Float.float16ToFloat(embedding[i]);
+    }
+    return new EmbeddingTokenCount(floats, tokenCount);
+  }
+}
@@ -15,6 +15,15 @@
  */
 package io.gravitee.inference.math.api;
 
+import io.gravitee.inference.math.api.distance.NormalizedVector;
+import io.gravitee.inference.math.api.half.HalfFormat;
+import io.gravitee.inference.math.api.half.HalfVector;
+import io.gravitee.inference.math.api.matrix.FloatMatrix;
+import io.gravitee.inference.math.api.quantization.BinaryVector;
+import io.gravitee.inference.math.api.quantization.Int8Vector;
+import io.gravitee.inference.math.api.selection.BoundedHeap;
+import io.gravitee.inference.math.api.selection.TopK;
+
 /**
  * @author Rémi SULTAN (remi.sultan at graviteesource.com)
  * @author GraviteeSource Team
@@ -28,10 +37,65 @@ public interface GioMaths {
 
   float euclideanDistance(float[] v1, float[] v2);
 
+  /**
+   * L1 distance: the sum of the absolute differences.
+   */
+  float manhattanDistance(float[] v1, float[] v2);
+
+  float dotProduct(float[] v1, float[] v2);
+
+  /*
+    Unit vectors: the cosine similarity is a single dot product, the
+    magnitudes being known to be 1.
+  */
+
+  default float cosineSimilarity(NormalizedVector v1, NormalizedVector v2) {
+    return dotProduct(v1.values(), v2.values());
+  }
+
+  default float[] cosineSimilarity(
+    NormalizedVector query,
+    NormalizedVector[] vectors
+  ) {
+    float[] scores = new float[vectors.length];
+    for (int i = 0; i < vectors.length; i++) {
+      scores[i] = cosineSimilarity(query, vectors[i]);
+    }
+    return scores;
+  }
+
+  /*
+    Batched similarities: a query against every row of a matrix, or every
+    query against every row (N x M). Magnitudes are computed once per vector
+    and large inputs are split across the common ForkJoinPool.
+  */
+
+  float[] cosineSimilarity(float[] query, float[][] vectors);
+
+  float[][] cosineSimilarity(float[][] queries, float[][] vectors);
+
+  float[] euclideanDistance(float[] query, float[][] vectors);
+
+  float[][] euclideanDistance(float[][] queries, float[][] vectors);
+
+  float[] dotProduct(float[] query, float[][] vectors);
+
+  float[][] dotProduct(float[][] queries, float[][] vectors);
+
   float[] softmax(float[] vector);
 
   float[] sigmoid(float[] vector);
 
+  float[] exp(float[] vector);
+
+  float[] tanh(float[] vector);
+
+  /**
+   * GELU activation, in its exact {@code x * (1 + erf(x / sqrt(2))) / 2}
+   * form rather than the tanh approximation.
+   */
+  float[] gelu(float[] vector);
+
   float[] mean(float[][] vectors);
 
   float[] weightedMean(float[][] vector, float[] weights);
@@ -41,4 +105,326 @@ public interface GioMaths {
   float[] normalize(float[] vector);
 
   float normL2(float[] vector);
+
+  /*
+    Selection: positions of the largest values, without sorting the input.
+    Ties resolve to the lowest index.
+  */
+
+  int argmax(float[] vector);
+
+  default int[] argmax(float[][] matrix) {
+    int[] argmax = new int[matrix.length];
+    for (int row = 0; row < matrix.length; row++) {
+      argmax[row] = argmax(matrix[row]);
+    }
+    return argmax;
+  }
+
+  default int[] argmax(FloatMatrix matrix) {
+    int[] argmax = new int[matrix.rows()];
+    float[] vector = new float[matrix.cols()];
+    for (int row = 0; row < matrix.rows(); row++) {
+      argmax[row] = argmax(matrix.row(row, vector));
+    }
+    return argmax;
+  }
+
+  /**
+   * @return the {@code min(k, vector.length)} largest values and their
+   * indices, best first, selected with a bounded heap of size {@code k}
+   */
+  TopK topK(float[] vector, int k);
+
+  /*
+    Destination-buffer variants: the result is written into dst, which is
+    returned, so callers can reuse scratch buffers instead of allocating one
+    array per call. Element-wise ops accept dst == vector to work in place;
+    pooling ops overwrite dst, which must not be one of the rows.
+  */
+
+  float[] softmax(float[] vector, float[] dst);
+
+  float[] sigmoid(float[] vector, float[] dst);
+
+  float[] exp(float[] vector, float[] dst);
+
+  float[] tanh(float[] vector, float[] dst);
+
+  float[] gelu(float[] vector, float[] dst);
+
+  float[] normalize(float[] vector, float[] dst);
+
+  float[] mean(float[][] vectors, float[] dst);
+
+  float[] weightedMean(float[][] vectors, float[] weights, float[] dst);
+
+  /**
+   * Fused {@code normalize(mean(vectors))}, written into {@code dst}.
+   */
+  float[] normalizedMean(float[][] vectors, float[] dst);
+
+  /**
+   * Fused {@code normalize(weightedMean(vectors, weights))}, written into
+   * {@code dst}. The division by the total weight is folded into the L2
+   * normalization, saving a pass over the result.
+   */
+  float[] normalizedWeightedMean(
+    float[][] vectors,
+    float[] weights,
+    float[] dst
+  );
+
+  default float[] softmaxInPlace(float[] vector) {
+    return softmax(vector, vector);
+  }
+
+  default float[] sigmoidInPlace(float[] vector) {
+    return sigmoid(vector, vector);
+  }
+
+  default float[] normalizeInPlace(float[] vector) {
+    return normalize(vector, vector);
+  }
+
+  /*
+    Batched pooling of a [batch, seq, hidden] hidden state into [batch,
+    hidden], following its [batch, seq] attention mask: padding tokens (mask
+    0) are skipped, and a sequence with no token left pools to zeros.
+    Sequences are split across the common ForkJoinPool for large batches.
+  */
+
+  float[][] meanPooling(float[][][] hiddenStates, long[][] attentionMask);
+
+  float[][] maxPooling(float[][][] hiddenStates, long[][] attentionMask);
+
+  /**
+   * Mean of each sequence weighted by {@code weights[batch][token]}; a
+   * zero weight masks the token out.
+   */
+  float[][] weightedMeanPooling(float[][][] hiddenStates, float[][] weights);
+
+  /**
+   * @return a copy of the first ({@code [CLS]}) token of each sequence
+   */
+  default float[][] clsPooling(float[][][] hiddenStates) {
+    float[][] pooled = new float[hiddenStates.length][];
+    for (int b = 0; b < hiddenStates.length; b++) {
+      if (hiddenStates[b].length == 0) {
+        throw new IllegalArgumentException("Sequences must not be empty");
+      }
+      pooled[b] = hiddenStates[b][0].clone();
+    }
+    return pooled;
+  }
+
+  /*
+    Int8 quantized vectors. The raw kernels multiply the codes exactly, in
+    integer arithmetic for byte x byte; the scales and offsets of
+    Int8Vector are applied afterwards.
+  */
+
+  int dotProduct(byte[] v1, byte[] v2);
+
+  float dotProduct(float[] v1, byte[] v2);
+
+  default float dotProduct(Int8Vector v1, Int8Vector v2) {
+    // sum((o1 + s1 * c1) * (o2 + s2 * c2)), expanded
+    final float codes = dotProduct(v1.codes(), v2.codes());
+    return (
+      v1.dimension() * v1.offset() * v2.offset() +
+      v1.offset() * v2.scale() * v2.codeSum() +
+      v2.offset() * v1.scale() * v1.codeSum() +
+      v1.scale() * v2.scale() * codes
+    );
+  }
+
+  default float cosineSimilarity(Int8Vector v1, Int8Vector v2) {
+    final float norms = v1.norm() * v2.norm();
+    return norms == 0 ? 0f : dotProduct(v1, v2) / norms;
+  }
+
+  default float dotProduct(float[] query, Int8Vector vector) {
+    return dotProduct(query, vector, sum(query));
+  }
+
+  default float cosineSimilarity(float[] query, Int8Vector vector) {
+    final float norms = normL2(query) * vector.norm();
+    return norms == 0 ? 0f : dotProduct(query, vector) / norms;
+  }
+
+  default float[] cosineSimilarity(float[] query, Int8Vector[] vectors) {
+    final float querySum = sum(query);
+    final float queryNorm = normL2(query);
+    float[] scores = new float[vectors.length];
+    for (int i = 0; i < vectors.length; i++) {
+      final float norms = queryNorm * vectors[i].norm();
+      scores[i] = norms == 0
+        ? 0f
+        : dotProduct(query, vectors[i], querySum) / norms;
+    }
+    return scores;
+  }
+
+  private float dotProduct(float[] query, Int8Vector vector, float querySum) {
+    return (
+      vector.offset() * querySum +
+      vector.scale() * dotProduct(query, vector.codes())
+    );
+  }
+
+  private static float sum(float[] vector) {
+    float sum = 0f;
+    for (float value : vector) {
+      sum += value;
+    }
+    return sum;
+  }
+
+  /*
+    Binary quantized vectors: one sign bit per dimension, packed in longs.
+    The Hamming distance is a cheap first pass over a large corpus, whose
+    shortlist is then rescored with the exact float similarity.
+  */
+
+  int hammingDistance(long[] v1, long[] v2);
+
+  default int hammingDistance(BinaryVector v1, BinaryVector v2) {
+    if (v1.dimension() != v2.dimension()) {
+      throw new IllegalArgumentException(
+        "Both vectors must have the same dimension."
+      );
+    }
+    return hammingDistance(v1.bits(), v2.bits());
+  }
+
+  /**
+   * @return the indices of the {@code min(count, vectors.length)} vectors
+   * closest to {@code query} in Hamming distance, closest first. Ties
+   * resolve to the lowest index.
+   */
+  default int[] hammingNearest(
+    BinaryVector query,
+    BinaryVector[] vectors,
+    int count
+  ) {
+    BoundedHeap heap = BoundedHeap.capped(count, vectors.length);
+    for (int i = 0; i < vectors.length; i++) {
+      heap.offer(i, -hammingDistance(query, vectors[i]));
+    }
+    return heap.toTopK().indices();
+  }
+
+  /**
+   * Re-ranks {@code candidates}, indices of {@code vectors} such as those
+   * returned by {@link #hammingNearest}, by their exact cosine similarity
+   * with {@code query}.
+   *
+   * @return the {@code k} best candidates, indexed in {@code vectors}
+   */
+  default TopK rescore(
+    float[] query,
+    float[][] vectors,
+    int[] candidates,
+    int k
+  ) {
+    float[][] shortlist = new float[candidates.length][];
+    for (int i = 0; i < candidates.length; i++) {
+      shortlist[i] = vectors[candidates[i]];
+    }
+    final float[] scores = cosineSimilarity(query, shortlist);
+    BoundedHeap heap = BoundedHeap.capped(k, candidates.length);
+    for (int i = 0; i < candidates.length; i++) {
+      heap.offer(candidates[i], scores[i]);
+    }
+    return heap.toTopK();
+  }
+
+  /*
+    Half-precision vectors, FP16 or BF16 stored in shorts. The similarity
+    kernels decode the halves on the fly and accumulate in float.
+  */
+
+  short[] toHalf(float[] vector, HalfFormat format, short[] dst);
+
+  float[] fromHalf(short[] vector, HalfFormat format, float[] dst);
+
+  default HalfVector toHalf(float[] vector, HalfFormat format) {
+    return new HalfVector(
+      toHalf(vector, format, new short[vector.length]),
+      format
+    );
+  }
+
+  default float[] fromHalf(HalfVector vector) {
+    return fromHalf(
+      vector.values(),
+      vector.format(),
+      new float[vector.dimension()]
+    );
+  }
+
+  float dotProduct(float[] v1, short[] v2, HalfFormat format);
+
+  float cosineSimilarity(float[] v1, short[] v2, HalfFormat format);
+
+  default float dotProduct(float[] query, HalfVector vector) {
+    return dotProduct(query, vector.values(), vector.format());
+  }
+
+  default float cosineSimilarity(float[] query, HalfVector vector) {
+    return cosineSimilarity(query, vector.values(), vector.format());
+  }
+
+  default float cosineSimilarity(HalfVector v1, HalfVector v2) {
+    return cosineSimilarity(fromHalf(v1), v2);
+  }
+
+  default float[] cosineSimilarity(float[] query, HalfVector[] vectors) {
+    float[] scores = new float[vectors.length];
+    for (int i = 0; i < vectors.length; i++) {
+      scores[i] = cosineSimilarity(query, vectors[i]);
+    }
+    return scores;
+  }
+
+  /*
+    Contiguous row-major matrices, on-heap or off-heap.
+  */
+
+  float[] mean(FloatMatrix matrix);
+
+  float[] weightedMean(FloatMatrix matrix, float[] weights);
+
+  float[] mean(FloatMatrix matrix, float[] dst);
+
+  float[] weightedMean(FloatMatrix matrix, float[] weights, float[] dst);
+
+  float[] cosineSimilarity(float[] query, FloatMatrix vectors);
+
+  float[] euclideanDistance(float[] query, FloatMatrix vectors);
+
+  float[] dotProduct(float[] query, FloatMatrix vectors);
+
+  /*
+    Linear projections, such as Dense heads or dimension reductions. The
+    weights are an [out, in] row-major matrix, the layout of nn.Linear, so
+    each output is the dot product of a weight row with the input.
+  */
+
+  /**
+   * GEMV: {@code weights x vector}, written into {@code dst} of
+   * {@code weights.rows()} floats.
+   */
+  float[] multiply(FloatMatrix weights, float[] vector, float[] dst);
+
+  default float[] multiply(FloatMatrix weights, float[] vector) {
+    return multiply(weights, vector, new float[weights.rows()]);
+  }
+
+  /**
+   * GEMM: every vector multiplied by {@code weights}, from
+   * {@code [n, weights.cols()]} to {@code [n, weights.rows()]}.
+   */
+  float[][] multiply(FloatMatrix weights, float[][] vectors);
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.api.distance;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.quantization.BinaryVector;
+
+/**
+ * The standard {@link DistanceFunction}s.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public enum Distance implements DistanceFunction {
+  COSINE(true) {
+    @Override
+    public float compute(GioMaths gioMaths, float[] v1, float[] v2) {
+      return gioMaths.cosineSimilarity(v1, v2);
+    }
+
+    @Override
+    public float compute(
+      GioMaths gioMaths,
+      NormalizedVector v1,
+      NormalizedVector v2
+    ) {
+      return gioMaths.cosineSimilarity(v1, v2);
+    }
+
+    @Override
+    public float[] compute(
+      GioMaths gioMaths,
+      float[] query,
+      float[][] vectors
+    ) {
+      return gioMaths.cosineSimilarity(query, vectors);
+    }
+  },
+  DOT_PRODUCT(true) {
+    @Override
+    public float compute(GioMaths gioMaths, float[] v1, float[] v2) {
+      return gioMaths.dotProduct(v1, v2);
+    }
+
+    @Override
+    public float[] compute(
+      GioMaths gioMaths,
+      float[] query,
+      float[][] vectors
+    ) {
+      return gioMaths.dotProduct(query, vectors);
+    }
+  },
+  EUCLIDEAN(false) {
+    @Override
+    public float compute(GioMaths gioMaths, float[] v1, float[] v2) {
+      return gioMaths.euclideanDistance(v1, v2);
+    }
+
+    @Override
+    public float[] compute(
+      GioMaths gioMaths,
+      float[] query,
+      float[][] vectors
+    ) {
+      return gioMaths.euclideanDistance(query, vectors);
+    }
+  },
+  MANHATTAN(false) {
+    @Override
+    public float compute(GioMaths gioMaths, float[] v1, float[] v2) {
+      return gioMaths.manhattanDistance(v1, v2);
+    }
+  },
+  /** The number of dimensions whose signs differ, see {@link BinaryVector}. */
+  HAMMING(false) {
+    @Override
+    public float compute(GioMaths gioMaths, float[] v1, float[] v2) {
+      return gioMaths.hammingDistance(
+        BinaryVector.quantize(v1),
+        BinaryVector.quantize(v2)
+      );
+    }
+
+    @Override
+    public float[] compute(
+      GioMaths gioMaths,
+      float[] query,
+      float[][] vectors
+    ) {
+      final BinaryVector binaryQuery = BinaryVector.quantize(query);
+      float[] distances = new float[vectors.length];
+      for (int i = 0; i < vectors.length; i++) {
+        distances[i] = gioMaths.hammingDistance(
+          binaryQuery,
+          BinaryVector.quantize(vectors[i])
+        );
+      }
+      return distances;
+    }
+  };
+
+  private final boolean similarity;
+
+  Distance(boolean similarity) {
+    this.similarity = similarity;
+  }
+
+  @Override
+  public boolean isSimilarity() {
+    return similarity;
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.api.distance;
+
+import io.gravitee.inference.math.api.GioMaths;
+import java.util.ServiceLoader;
+
+/**
+ * Compares two vectors, with the kernels of a {@link GioMaths}. The
+ * standard functions are the {@link Distance} constants; others can be
+ * plugged in as {@code META-INF/services} providers of this interface and
+ * looked up by name with {@link #of}.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public interface DistanceFunction {
+  /**
+   * @return the name this function is looked up by, case-insensitively
+   */
+  String name();
+
+  /**
+   * @return whether a higher value means closer vectors, as for a cosine
+   * similarity, rather than farther ones, as for a euclidean distance
+   */
+  boolean isSimilarity();
+
+  float compute(GioMaths gioMaths, float[] v1, float[] v2);
+
+  /**
+   * Same as {@link #compute(GioMaths, float[], float[])}, on unit vectors:
+   * functions that depend on the norms can skip computing them.
+   */
+  default float compute(
+    GioMaths gioMaths,
+    NormalizedVector v1,
+    NormalizedVector v2
+  ) {
+    return compute(gioMaths, v1.values(), v2.values());
+  }
+
+  default float[] compute(GioMaths gioMaths, float[] query, float[][] vectors) {
+    float[] values = new float[vectors.length];
+    for (int i = 0; i < vectors.length; i++) {
+      values[i] = compute(gioMaths, query, vectors[i]);
+    }
+    return values;
+  }
+
+  /**
+   * @return a score where higher means closer: the value itself for a
+   * similarity, its opposite for a distance. Used to rank vectors, e.g. in
+   * a {@link io.gravitee.inference.math.api.selection.BoundedHeap}.
+   */
+  default float score(float value) {
+    return isSimilarity() ? value : -value;
+  }
+
+  /**
+   * @return the {@link Distance} or, failing that, the service provider
+   * named {@code name}
+   */
+  static DistanceFunction of(String name) {
+    for (Distance distance : Distance.values()) {
+      if (distance.name().equalsIgnoreCase(name)) {
+        return distance;
+      }
+    }
+    for (DistanceFunction function : ServiceLoader.load(
+      DistanceFunction.class
+    )) {
+      if (function.name().equalsIgnoreCase(name)) {
+        return function;
+      }
+    }
+    throw new IllegalArgumentException("Unknown distance function: " + name);
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.api.distance;
+
+import io.gravitee.inference.math.api.GioMaths;
+
+/**
+ * A vector of unit L2 norm, such as the embeddings returned by the BERT
+ * embedding model. The cosine similarity of two normalized vectors is their
+ * dot product, which saves the two magnitudes
+ * {@link GioMaths#cosineSimilarity(float[], float[])} computes on every
+ * call.
+ * <p>
+ * The constructor wraps values the caller knows to be normalized, without
+ * checking nor copying them; {@link #of} normalizes a copy.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public record NormalizedVector(float[] values) {
+  public static NormalizedVector of(GioMaths gioMaths, float[] vector) {
+    return new NormalizedVector(gioMaths.normalize(vector));
+  }
+
+  public int dimension() {
+    return values.length;
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.api.half;
+
+/**
+ * 16-bit floating point formats, stored in a {@code short}. Both round to
+ * nearest, ties to even.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public enum HalfFormat {
+  /**
+   * IEEE 754 binary16: 5 exponent bits and 10 mantissa bits. About 3
+   * significant digits up to 65504, which suits normalized embeddings.
+   */
+  FLOAT16 {
+    @Override
+    public short encode(float value) {
+      return Float.floatToFloat16(value);
+    }
+
+    @Override
+    public float decode(short half) {
+      return Float.float16ToFloat(half);
+    }
+  },
+
+  /**
+   * bfloat16, the upper half of a float: 8 exponent bits and 7 mantissa
+   * bits. The range of a float with about 2 significant digits.
+   */
+  BFLOAT16 {
+    @Override
+    public short encode(float value) {
+      final int bits = Float.floatToRawIntBits(value);
+      if (Float.isNaN(value)) {
+        return (short) ((bits >>> 16) | 0x40);
+      }
+      return (short) ((bits + 0x7FFF + ((bits >>> 16) & 1)) >>> 16);
+    }
+
+    @Override
+    public float decode(short half) {
+      return Float.intBitsToFloat(half << 16);
+    }
+  };
+
+  public abstract short encode(float value);
+
+  public abstract float decode(short half);
+}
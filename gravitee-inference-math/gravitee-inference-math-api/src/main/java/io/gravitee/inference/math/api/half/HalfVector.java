@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.api.half;
+
+/**
+ * A vector stored with 16 bits per dimension, half the size of a
+ * {@code float[]}. The similarity kernels of
+ * {@link io.gravitee.inference.math.api.GioMaths} read the halves directly
+ * and accumulate in float.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public record HalfVector(short[] values, HalfFormat format) {
+  /**
+   * Scalar conversion, see
+   * {@link io.gravitee.inference.math.api.GioMaths#toHalf(float[], HalfFormat)}
+   * for the vectorized one.
+   */
+  public static HalfVector encode(float[] vector, HalfFormat format) {
+    short[] values = new short[vector.length];
+    for (int i = 0; i < vector.length; i++) {
+      values[i] = format.encode(vector[i]);
+    }
+    return new HalfVector(values, format);
+  }
+
+  public int dimension() {
+    return values.length;
+  }
+
+  public float[] decode() {
+    float[] vector = new float[values.length];
+    for (int i = 0; i < values.length; i++) {
+      vector[i] = format.decode(values[i]);
+    }
+    return vector;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.api.matrix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A dense, row-major matrix of floats stored in a single contiguous block,
+ * either on-heap ({@link HeapFloatMatrix}) or off-heap, with the
+ * {@code SegmentFloatMatrix} of {@code gravitee-inference-math-segment}. A
+ * vector is a matrix with a single row.
+ * <p>
+ * Compared to {@code float[][]}, all the rows share one allocation, which
+ * keeps them adjacent in memory and lets kernels run over native buffers
+ * (ONNX outputs, memory-mapped files) without copying them to the heap.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public interface FloatMatrix {
+  int rows();
+
+  int cols();
+
+  float get(int row, int col);
+
+  void set(int row, int col, float value);
+
+  /**
+   * Copies the given row into {@code dst} and returns it.
+   */
+  float[] row(int row, float[] dst);
+
+  default float[] row(int row) {
+    return row(row, new float[cols()]);
+  }
+
+  /**
+   * @return whether threads other than the caller may read this matrix,
+   * i.e. whether kernels may split the work across a thread pool
+   */
+  default boolean isShared() {
+    return true;
+  }
+
+  /**
+   * @return a view over the rows {@code [from, to)} sharing this storage
+   */
+  FloatMatrix rows(int from, int to);
+
+  default float[][] toArray() {
+    float[][] matrix = new float[rows()][];
+    for (int row = 0; row < rows(); row++) {
+      matrix[row] = row(row);
+    }
+    return matrix;
+  }
+
+  static HeapFloatMatrix allocate(int rows, int cols) {
+    return new HeapFloatMatrix(
+      new float[Math.multiplyExact(rows, cols)],
+      0,
+      rows,
+      cols
+    );
+  }
+
+  static HeapFloatMatrix of(float[] data, int rows, int cols) {
+    return new HeapFloatMatrix(data, 0, rows, cols);
+  }
+
+  static HeapFloatMatrix of(float[][] matrix) {
+    final int rows = matrix.length;
+    final int cols = rows == 0 ? 0 : matrix[0].length;
+    float[] data = new float[Math.multiplyExact(rows, cols)];
+    for (int row = 0; row < rows; row++) {
+      if (matrix[row].length != cols) {
+        throw new IllegalArgumentException(
+          "All rows must have the same length"
+        );
+      }
+      System.arraycopy(matrix[row], 0, data, row * cols, cols);
+    }
+    return new HeapFloatMatrix(data, 0, rows, cols);
+  }
+
+  /**
+   * Reads a matrix stored as raw native-order floats, row after row, as
+   * written by numpy's {@code tofile()}. See
+   * {@code SegmentFloatMatrix.map} to map the file instead.
+   */
+  static HeapFloatMatrix read(Path path, int rows, int cols)
+    throws IOException {
+    final byte[] bytes = Files.readAllBytes(path);
+    if (bytes.length != (long) rows * cols * Float.BYTES) {
+      throw new IllegalArgumentException(
+        path + " does not hold a " + rows + "x" + cols + " matrix"
+      );
+    }
+    float[] data = new float[rows * cols];
+    ByteBuffer
+      .wrap(bytes)
+      .order(ByteOrder.nativeOrder())
+      .asFloatBuffer()
+      .get(data);
+    return of(data, rows, cols);
+  }
+
+  static HeapFloatMatrix vector(float[] vector) {
+    return new HeapFloatMatrix(vector, 0, 1, vector.length);
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.api.matrix;
+
+import static java.util.Objects.checkFromIndexSize;
+import static java.util.Objects.checkIndex;
+
+/**
+ * A {@link FloatMatrix} backed by a {@code float[]}, starting at
+ * {@code offset}.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public record HeapFloatMatrix(float[] data, int offset, int rows, int cols)
+  implements FloatMatrix {
+  public HeapFloatMatrix {
+    if (rows < 0 || cols < 0) {
+      throw new IllegalArgumentException("Dimensions must be positive");
+    }
+    checkFromIndexSize(offset, Math.multiplyExact(rows, cols), data.length);
+  }
+
+  public int index(int row, int col) {
+    return offset + checkIndex(row, rows) * cols + checkIndex(col, cols);
+  }
+
+  @Override
+  public float get(int row, int col) {
+    return data[index(row, col)];
+  }
+
+  @Override
+  public void set(int row, int col, float value) {
+    data[index(row, col)] = value;
+  }
+
+  @Override
+  public float[] row(int row, float[] dst) {
+    // Not index(row, 0): a matrix without columns still has rows
+    System.arraycopy(data, offset + checkIndex(row, rows) * cols, dst, 0, cols);
+    return dst;
+  }
+
+  @Override
+  public HeapFloatMatrix rows(int from, int to) {
+    checkFromIndexSize(from, to - from, rows);
+    return new HeapFloatMatrix(data, offset + from * cols, to - from, cols);
+  }
+}
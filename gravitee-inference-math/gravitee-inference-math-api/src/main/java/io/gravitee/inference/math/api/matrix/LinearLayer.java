@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.api.matrix;
+
+import io.gravitee.inference.math.api.GioMaths;
+import java.util.Objects;
+
+/**
+ * A linear projection {@code y = W x + b}, such as the Dense layer a
+ * sentence-transformer applies after pooling, a classifier head or a
+ * learned dimension reduction. The weights are an {@code [out, in]}
+ * row-major matrix, the layout of {@code nn.Linear}; the bias is optional.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public record LinearLayer(FloatMatrix weights, float[] bias) {
+  public LinearLayer {
+    Objects.requireNonNull(weights, "weights");
+    if (bias != null && bias.length != weights.rows()) {
+      throw new IllegalArgumentException(
+        "Bias must have a length of " + weights.rows()
+      );
+    }
+  }
+
+  public LinearLayer(FloatMatrix weights) {
+    this(weights, null);
+  }
+
+  public int inputs() {
+    return weights.cols();
+  }
+
+  public int outputs() {
+    return weights.rows();
+  }
+
+  public float[] apply(GioMaths gioMaths, float[] vector) {
+    return apply(gioMaths, vector, new float[outputs()]);
+  }
+
+  public float[] apply(GioMaths gioMaths, float[] vector, float[] dst) {
+    return addBias(gioMaths.multiply(weights, vector, dst));
+  }
+
+  public float[][] apply(GioMaths gioMaths, float[][] vectors) {
+    float[][] outputs = gioMaths.multiply(weights, vectors);
+    for (float[] output : outputs) {
+      addBias(output);
+    }
+    return outputs;
+  }
+
+  private float[] addBias(float[] output) {
+    if (bias != null) {
+      for (int i = 0; i < output.length; i++) {
+        output[i] += bias[i];
+      }
+    }
+    return output;
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.api.parallel;
+
+import io.gravitee.inference.math.api.matrix.FloatMatrix;
+import java.util.Arrays;
+
+/**
+ * Reductions split across the {@link ParallelRows} pool once the input is
+ * large enough, e.g. pooling the {@code [510, hidden]} partitions of a long
+ * document. The input is cut in blocks of a fixed size, reduced in parallel
+ * and combined in block order: the result does not depend on the number of
+ * threads, so it is the same from one run to the next.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class ParallelReduction {
+
+  /** Rows summed by one task. */
+  public static final int BLOCK_ROWS = 64;
+
+  /** Floats reduced by one task. */
+  public static final int BLOCK_LENGTH = 1 << 14;
+
+  private ParallelReduction() {}
+
+  /**
+   * Adds the rows {@code [from, to)} to {@code accumulator}.
+   */
+  @FunctionalInterface
+  public interface RowsReducer {
+    /**
+     * @return a scalar summed along, such as the total weight of the rows
+     */
+    float reduce(int from, int to, float[] accumulator);
+  }
+
+  /**
+   * Adds {@code partial} to {@code accumulator}.
+   */
+  @FunctionalInterface
+  public interface Combiner {
+    void combine(float[] partial, float[] accumulator);
+  }
+
+  @FunctionalInterface
+  public interface RangeReducer {
+    float reduce(int from, int to);
+  }
+
+  /**
+   * Sums {@code rows} rows into {@code accumulator}, which is cleared first.
+   *
+   * @return the sum of the scalars returned by {@code reducer}
+   */
+  public static float sumRows(
+    int rows,
+    float[] accumulator,
+    RowsReducer reducer,
+    Combiner combiner
+  ) {
+    return sumRows(rows, true, accumulator, reducer, combiner);
+  }
+
+  /**
+   * Same as {@link #sumRows(int, float[], RowsReducer, Combiner)}, split only
+   * if other threads may read the matrix.
+   */
+  public static float sumRows(
+    FloatMatrix matrix,
+    float[] accumulator,
+    RowsReducer reducer,
+    Combiner combiner
+  ) {
+    return sumRows(
+      matrix.rows(),
+      matrix.isShared(),
+      accumulator,
+      reducer,
+      combiner
+    );
+  }
+
+  /**
+   * @return the maximum of the values returned by {@code reducer} over
+   * blocks of {@code [0, length)}
+   */
+  public static float max(int length, RangeReducer reducer) {
+    final int blocks = blocks(length, BLOCK_LENGTH);
+    if (!ParallelRows.isParallel(blocks, BLOCK_LENGTH)) {
+      return reducer.reduce(0, length);
+    }
+    float[] maxima = new float[blocks];
+    ParallelRows.forEach(blocks, BLOCK_LENGTH, (from, to) -> {
+      for (int block = from; block < to; block++) {
+        maxima[block] = reducer.reduce(
+          block * BLOCK_LENGTH,
+          Math.min(length, (block + 1) * BLOCK_LENGTH)
+        );
+      }
+    });
+    float max = Float.NEGATIVE_INFINITY;
+    for (float blockMax : maxima) {
+      max = Math.max(max, blockMax);
+    }
+    return max;
+  }
+
+  private static float sumRows(
+    int rows,
+    boolean shared,
+    float[] accumulator,
+    RowsReducer reducer,
+    Combiner combiner
+  ) {
+    Arrays.fill(accumulator, 0f);
+    final int blocks = blocks(rows, BLOCK_ROWS);
+    final long blockFloats = (long) BLOCK_ROWS * accumulator.length;
+    if (!shared || !ParallelRows.isParallel(blocks, blockFloats)) {
+      return reducer.reduce(0, rows, accumulator);
+    }
+    float[][] partials = new float[blocks][accumulator.length];
+    float[] scalars = new float[blocks];
+    ParallelRows.forEach(blocks, blockFloats, (from, to) -> {
+      for (int block = from; block < to; block++) {
+        scalars[block] = reducer.reduce(
+          block * BLOCK_ROWS,
+          Math.min(rows, (block + 1) * BLOCK_ROWS),
+          partials[block]
+        );
+      }
+    });
+    float scalar = 0f;
+    for (int block = 0; block < blocks; block++) {
+      combiner.combine(partials[block], accumulator);
+      scalar += scalars[block];
+    }
+    return scalar;
+  }
+
+  private static int blocks(int length, int blockLength) {
+    return (length + blockLength - 1) / blockLength;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.api.parallel;
+
+import io.gravitee.inference.math.api.matrix.FloatMatrix;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits row-oriented work across the common {@link ForkJoinPool} once the
+ * amount of data to process is large enough to amortize the fork cost.
+ * Smaller inputs run on the caller thread. Both the pool and the threshold
+ * can be replaced, e.g. to keep inference off the common pool.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class ParallelRows {
+
+  /**
+   * Number of processed floats (rows x cols) under which the work is not
+   * split: about 1 MiB of data, i.e. ~340 vectors of 768 dimensions.
+   */
+  public static final long PARALLEL_THRESHOLD = 1L << 18;
+
+  private static final int TASKS_PER_THREAD = 4;
+
+  private static volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+  private static volatile long threshold = PARALLEL_THRESHOLD;
+
+  private ParallelRows() {}
+
+  public static ForkJoinPool pool() {
+    return pool;
+  }
+
+  /**
+   * Runs the parallel kernels on {@code pool} instead of the common pool.
+   */
+  public static void setPool(ForkJoinPool pool) {
+    ParallelRows.pool = Objects.requireNonNull(pool, "pool");
+  }
+
+  public static long threshold() {
+    return threshold;
+  }
+
+  /**
+   * Overrides {@link #PARALLEL_THRESHOLD}: {@code 0} splits every input of
+   * more than one row, {@link Long#MAX_VALUE} never splits.
+   */
+  public static void setThreshold(long threshold) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("Threshold must be positive");
+    }
+    ParallelRows.threshold = threshold;
+  }
+
+  /**
+   * @return whether {@link #forEach(int, long, RangeConsumer)} splits the
+   * given work across the pool
+   */
+  public static boolean isParallel(int rows, long cols) {
+    return (
+      rows >= 2 && pool.getParallelism() >= 2 && rows * cols >= threshold
+    );
+  }
+
+  @FunctionalInterface
+  public interface RangeConsumer {
+    void accept(int from, int to);
+  }
+
+  public static void forEach(FloatMatrix matrix, RangeConsumer consumer) {
+    if (!matrix.isShared()) {
+      consumer.accept(0, matrix.rows());
+      return;
+    }
+    forEach(matrix.rows(), matrix.cols(), consumer);
+  }
+
+  /**
+   * Same as {@link #forEach(FloatMatrix, RangeConsumer)}, for work that goes
+   * over each row of the matrix once per input vector.
+   */
+  public static void forEach(
+    FloatMatrix matrix,
+    int inputs,
+    RangeConsumer consumer
+  ) {
+    if (!matrix.isShared()) {
+      consumer.accept(0, matrix.rows());
+      return;
+    }
+    forEach(matrix.rows(), (long) matrix.cols() * inputs, consumer);
+  }
+
+  public static void forEach(int rows, long cols, RangeConsumer consumer) {
+    if (!isParallel(rows, cols)) {
+      consumer.accept(0, rows);
+      return;
+    }
+    final ForkJoinPool pool = ParallelRows.pool;
+    final int parallelism = pool.getParallelism();
+    final int grain = Math.max(
+      1,
+      (rows + parallelism * TASKS_PER_THREAD - 1) /
+      (parallelism * TASKS_PER_THREAD)
+    );
+    pool.invoke(new RangeTask(0, rows, grain, consumer));
+  }
+
+  // Never serialized, like the JDK's own fork/join tasks
+  @SuppressWarnings("serial")
+  private static final class RangeTask extends RecursiveAction {
+
+    private final int from;
+    private final int to;
+    private final int grain;
+    private final RangeConsumer consumer;
+
+    private RangeTask(int from, int to, int grain, RangeConsumer consumer) {
+      this.from = from;
+      this.to = to;
+      this.grain = grain;
+      this.consumer = consumer;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= grain) {
+        consumer.accept(from, to);
+        return;
+      }
+      final int middle = (from + to) >>> 1;
+      invokeAll(
+        new RangeTask(from, middle, grain, consumer),
+        new RangeTask(middle, to, grain, consumer)
+      );
+    }
+  }
+}
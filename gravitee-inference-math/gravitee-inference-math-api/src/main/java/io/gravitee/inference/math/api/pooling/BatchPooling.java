@@ -0,0 +1,191 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.api.pooling;
+
+import io.gravitee.inference.math.api.parallel.ParallelRows;
+import java.util.Arrays;
+
+/**
+ * Drives the batched pooling of a {@code [batch, seq, hidden]} hidden state:
+ * each sequence is pooled into its own row of the result, over the tokens
+ * its attention mask keeps, and sequences are split across the common
+ * ForkJoinPool for large batches. The row kernels are supplied by each
+ * {@link io.gravitee.inference.math.api.GioMaths} implementation.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class BatchPooling {
+
+  private BatchPooling() {}
+
+  @FunctionalInterface
+  public interface Accumulate {
+    void apply(float[] row, float weight, float[] accumulator);
+  }
+
+  @FunctionalInterface
+  public interface Maximum {
+    void apply(float[] row, float[] accumulator);
+  }
+
+  @FunctionalInterface
+  public interface Divide {
+    void apply(float[] vector, float divisor);
+  }
+
+  public static float[][] meanPooling(
+    float[][][] hiddenStates,
+    long[][] attentionMask,
+    Accumulate accumulate,
+    Divide divide
+  ) {
+    final int hidden = checkBatch(hiddenStates, attentionMask);
+    float[][] pooled = new float[hiddenStates.length][hidden];
+    forEachSequence(hiddenStates, hidden, (from, to) -> {
+      for (int b = from; b < to; b++) {
+        int count = 0;
+        for (int t = 0; t < hiddenStates[b].length; t++) {
+          if (attentionMask[b][t] != 0) {
+            accumulate.apply(hiddenStates[b][t], 1f, pooled[b]);
+            count++;
+          }
+        }
+        if (count > 0) {
+          divide.apply(pooled[b], count);
+        }
+      }
+    });
+    return pooled;
+  }
+
+  public static float[][] weightedMeanPooling(
+    float[][][] hiddenStates,
+    float[][] weights,
+    Accumulate accumulate,
+    Divide divide
+  ) {
+    final int hidden = checkBatch(hiddenStates, weights);
+    float[][] pooled = new float[hiddenStates.length][hidden];
+    forEachSequence(hiddenStates, hidden, (from, to) -> {
+      for (int b = from; b < to; b++) {
+        float totalWeight = 0f;
+        for (int t = 0; t < hiddenStates[b].length; t++) {
+          final float weight = weights[b][t];
+          if (weight != 0) {
+            accumulate.apply(hiddenStates[b][t], weight, pooled[b]);
+            totalWeight += weight;
+          }
+        }
+        if (totalWeight != 0) {
+          divide.apply(pooled[b], totalWeight);
+        }
+      }
+    });
+    return pooled;
+  }
+
+  public static float[][] maxPooling(
+    float[][][] hiddenStates,
+    long[][] attentionMask,
+    Maximum maximum
+  ) {
+    final int hidden = checkBatch(hiddenStates, attentionMask);
+    float[][] pooled = new float[hiddenStates.length][hidden];
+    forEachSequence(hiddenStates, hidden, (from, to) -> {
+      for (int b = from; b < to; b++) {
+        Arrays.fill(pooled[b], Float.NEGATIVE_INFINITY);
+        boolean empty = true;
+        for (int t = 0; t < hiddenStates[b].length; t++) {
+          if (attentionMask[b][t] != 0) {
+            maximum.apply(hiddenStates[b][t], pooled[b]);
+            empty = false;
+          }
+        }
+        if (empty) {
+          Arrays.fill(pooled[b], 0f);
+        }
+      }
+    });
+    return pooled;
+  }
+
+  private static void forEachSequence(
+    float[][][] hiddenStates,
+    int hidden,
+    ParallelRows.RangeConsumer consumer
+  ) {
+    final long sequenceFloats = hiddenStates.length == 0
+      ? 0
+      : (long) hiddenStates[0].length * hidden;
+    ParallelRows.forEach(hiddenStates.length, sequenceFloats, consumer);
+  }
+
+  /**
+   * @return the hidden dimension, after checking that the mask has the
+   * {@code [batch, seq]} shape of the hidden states
+   */
+  private static int checkBatch(
+    float[][][] hiddenStates,
+    long[][] attentionMask
+  ) {
+    checkMaskRows(hiddenStates.length, attentionMask.length);
+    for (int b = 0; b < hiddenStates.length; b++) {
+      checkMaskColumns(hiddenStates[b].length, attentionMask[b].length);
+    }
+    return hiddenDimension(hiddenStates);
+  }
+
+  private static int checkBatch(float[][][] hiddenStates, float[][] weights) {
+    checkMaskRows(hiddenStates.length, weights.length);
+    for (int b = 0; b < hiddenStates.length; b++) {
+      checkMaskColumns(hiddenStates[b].length, weights[b].length);
+    }
+    return hiddenDimension(hiddenStates);
+  }
+
+  private static void checkMaskRows(int batch, int maskRows) {
+    if (batch != maskRows) {
+      throw new IllegalArgumentException(
+        "Mask must have one row per sequence, expected " + batch
+      );
+    }
+  }
+
+  private static void checkMaskColumns(int seq, int maskColumns) {
+    if (seq != maskColumns) {
+      throw new IllegalArgumentException(
+        "Mask must have one column per token, expected " + seq
+      );
+    }
+  }
+
+  private static int hiddenDimension(float[][][] hiddenStates) {
+    int hidden = -1;
+    for (float[][] sequence : hiddenStates) {
+      for (float[] token : sequence) {
+        if (hidden < 0) {
+          hidden = token.length;
+        } else if (token.length != hidden) {
+          throw new IllegalArgumentException(
+            "All rows must have the same length"
+          );
+        }
+      }
+    }
+    return Math.max(hidden, 0);
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.api.quantization;
+
+/**
+ * A vector quantized to one bit per dimension, its sign: bit {@code i} is
+ * set when {@code value[i] > 0}. Bits are packed 64 per {@code long}, low
+ * bit first, so a 384 dimension embedding takes 6 longs instead of 384
+ * floats.
+ * <p>
+ * The Hamming distance between two binary vectors, the number of differing
+ * bits, approximates the angle between the original vectors. It is only
+ * accurate enough to shortlist candidates, which are then rescored on the
+ * float vectors, see
+ * {@link io.gravitee.inference.math.api.GioMaths#rescore}.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public record BinaryVector(long[] bits, int dimension) {
+  public BinaryVector {
+    if (bits.length != words(dimension)) {
+      throw new IllegalArgumentException(
+        "A dimension of " + dimension + " needs " + words(dimension) + " words"
+      );
+    }
+  }
+
+  public static BinaryVector quantize(float[] vector) {
+    long[] bits = new long[words(vector.length)];
+    for (int i = 0; i < vector.length; i++) {
+      if (vector[i] > 0) {
+        bits[i >>> 6] |= 1L << i;
+      }
+    }
+    return new BinaryVector(bits, vector.length);
+  }
+
+  /**
+   * @return the number of longs holding {@code dimension} bits
+   */
+  public static int words(int dimension) {
+    return (dimension + Long.SIZE - 1) / Long.SIZE;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.api.quantization;
+
+import io.gravitee.inference.math.api.GioMaths;
+import java.util.Arrays;
+
+/**
+ * Quantizes vectors to one signed byte per dimension, with a scale and an
+ * offset per dimension fitted on a sample of the corpus:
+ * {@code value[d] ~ offsets[d] + scales[d] * codes[d]}. Unlike
+ * {@link Int8Vector}, the codes carry no per-vector metadata, which suits
+ * large corpora whose dimensions have different ranges. Values outside the
+ * fitted range are clamped.
+ * <p>
+ * A float query is scored against codes by folding the per-dimension
+ * scales and offsets into the query once, see {@link #query(float[])}.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class Int8Quantizer {
+
+  private final float[] offsets;
+  private final float[] scales;
+
+  private Int8Quantizer(float[] offsets, float[] scales) {
+    this.offsets = offsets;
+    this.scales = scales;
+  }
+
+  public static Int8Quantizer fit(float[][] samples) {
+    if (samples.length == 0) {
+      throw new IllegalArgumentException("At least one sample is required");
+    }
+    final int dimension = samples[0].length;
+    float[] min = new float[dimension];
+    float[] max = new float[dimension];
+    Arrays.fill(min, Float.POSITIVE_INFINITY);
+    Arrays.fill(max, Float.NEGATIVE_INFINITY);
+    for (float[] sample : samples) {
+      if (sample.length != dimension) {
+        throw new IllegalArgumentException(
+          "All samples must have the same dimension"
+        );
+      }
+      for (int d = 0; d < dimension; d++) {
+        min[d] = Math.min(min[d], sample[d]);
+        max[d] = Math.max(max[d], sample[d]);
+      }
+    }
+
+    float[] offsets = new float[dimension];
+    float[] scales = new float[dimension];
+    for (int d = 0; d < dimension; d++) {
+      offsets[d] = (min[d] + max[d]) / 2;
+      scales[d] = (max[d] - min[d]) / (2 * Int8Vector.MAX_CODE);
+    }
+    return new Int8Quantizer(offsets, scales);
+  }
+
+  public int dimension() {
+    return offsets.length;
+  }
+
+  public byte[] quantize(float[] vector) {
+    checkDimension(vector.length);
+    byte[] codes = new byte[vector.length];
+    for (int d = 0; d < vector.length; d++) {
+      codes[d] = Int8Vector.code(vector[d], offsets[d], scales[d]);
+    }
+    return codes;
+  }
+
+  public float[] dequantize(byte[] codes) {
+    checkDimension(codes.length);
+    float[] vector = new float[codes.length];
+    for (int d = 0; d < codes.length; d++) {
+      vector[d] = offsets[d] + scales[d] * codes[d];
+    }
+    return vector;
+  }
+
+  /**
+   * Prepares {@code query} for scoring against codes of this quantizer:
+   * {@code dot(query, dequantize(codes)) = bias + dot(weights, codes)} with
+   * {@code weights[d] = query[d] * scales[d]} and
+   * {@code bias = dot(query, offsets)}.
+   */
+  public Query query(float[] query) {
+    checkDimension(query.length);
+    float[] weights = new float[query.length];
+    float bias = 0f;
+    for (int d = 0; d < query.length; d++) {
+      weights[d] = query[d] * scales[d];
+      bias += query[d] * offsets[d];
+    }
+    return new Query(weights, bias);
+  }
+
+  private void checkDimension(int dimension) {
+    if (dimension != offsets.length) {
+      throw new IllegalArgumentException(
+        "Vector must have a dimension of " + offsets.length
+      );
+    }
+  }
+
+  /**
+   * A float query with the scales and offsets of an {@link Int8Quantizer}
+   * folded in. For L2-normalized embeddings, the dot product is the cosine
+   * similarity.
+   */
+  public record Query(float[] weights, float bias) {
+    public float dotProduct(GioMaths gioMaths, byte[] codes) {
+      return bias + gioMaths.dotProduct(weights, codes);
+    }
+
+    public float[] dotProduct(GioMaths gioMaths, byte[][] corpus) {
+      float[] scores = new float[corpus.length];
+      for (int i = 0; i < corpus.length; i++) {
+        scores[i] = dotProduct(gioMaths, corpus[i]);
+      }
+      return scores;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.api.quantization;
+
+/**
+ * A vector quantized to one signed byte per dimension, with its own scale
+ * and offset: {@code value[i] ~ offset + scale * codes[i]}. The codes span
+ * {@code [-127, 127]} over the range of the vector, so the rounding error is
+ * at most {@code scale / 2} per dimension.
+ * <p>
+ * The sum of the codes and the norm of the dequantized vector are computed
+ * once at quantization, so dot products and cosine similarities only need
+ * the integer dot product of the codes, see
+ * {@link io.gravitee.inference.math.api.GioMaths#dotProduct(byte[], byte[])}.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public record Int8Vector(
+  byte[] codes,
+  float scale,
+  float offset,
+  int codeSum,
+  float norm
+) {
+  static final int MAX_CODE = 127;
+
+  public static Int8Vector quantize(float[] vector) {
+    float min = Float.POSITIVE_INFINITY;
+    float max = Float.NEGATIVE_INFINITY;
+    for (float value : vector) {
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+    }
+    if (vector.length == 0) {
+      min = max = 0f;
+    }
+
+    final float offset = (min + max) / 2;
+    final float scale = (max - min) / (2 * MAX_CODE);
+    byte[] codes = new byte[vector.length];
+    int codeSum = 0;
+    double sumSquare = 0;
+    for (int i = 0; i < vector.length; i++) {
+      codes[i] = code(vector[i], offset, scale);
+      codeSum += codes[i];
+      final float value = offset + scale * codes[i];
+      sumSquare += value * value;
+    }
+    return new Int8Vector(
+      codes,
+      scale,
+      offset,
+      codeSum,
+      (float) Math.sqrt(sumSquare)
+    );
+  }
+
+  public int dimension() {
+    return codes.length;
+  }
+
+  public float[] dequantize() {
+    float[] vector = new float[codes.length];
+    for (int i = 0; i < codes.length; i++) {
+      vector[i] = offset + scale * codes[i];
+    }
+    return vector;
+  }
+
+  static byte code(float value, float offset, float scale) {
+    if (scale == 0f) {
+      return 0;
+    }
+    final int code = Math.round((value - offset) / scale);
+    return (byte) Math.max(-MAX_CODE, Math.min(MAX_CODE, code));
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.api.selection;
+
+/**
+ * Keeps the {@code k} largest {@code (index, value)} pairs offered to it,
+ * in a binary min-heap over two primitive arrays: the root is the smallest
+ * value kept, i.e. the {@link #threshold()} a new value has to beat once the
+ * heap is full. Memory is {@code O(k)} whatever the number of offers.
+ * <p>
+ * On equal values the lowest index wins, so the selection does not depend
+ * on the order in which pairs are offered. Not thread-safe.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class BoundedHeap {
+
+  private final int[] indices;
+  private final float[] values;
+  private int size;
+
+  public BoundedHeap(int k) {
+    if (k < 1) {
+      throw new IllegalArgumentException("k must be strictly positive");
+    }
+    this.indices = new int[k];
+    this.values = new float[k];
+  }
+
+  /**
+   * A heap keeping {@code k} pairs out of {@code candidates}, never larger
+   * than needed.
+   */
+  public static BoundedHeap capped(int k, int candidates) {
+    if (k < 1) {
+      throw new IllegalArgumentException("k must be strictly positive");
+    }
+    return new BoundedHeap(Math.max(Math.min(k, candidates), 1));
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isFull() {
+    return size == values.length;
+  }
+
+  /**
+   * @return the value to beat for an offer to be kept, negative infinity
+   * while the heap is not full
+   */
+  public float threshold() {
+    return isFull() ? values[0] : Float.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * @return whether the pair was kept
+   */
+  public boolean offer(int index, float value) {
+    if (size < values.length) {
+      indices[size] = index;
+      values[size] = value;
+      siftUp(size++);
+      return true;
+    }
+    if (!isBefore(index, value, indices[0], values[0])) {
+      return false;
+    }
+    indices[0] = index;
+    values[0] = value;
+    siftDown(0);
+    return true;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Drains the heap into a {@link TopK}, best value first. The heap is
+   * empty afterwards.
+   */
+  public TopK toTopK() {
+    final int count = size;
+    int[] topIndices = new int[count];
+    float[] topValues = new float[count];
+    for (int rank = count - 1; rank >= 0; rank--) {
+      topIndices[rank] = indices[0];
+      topValues[rank] = values[0];
+      size--;
+      if (size > 0) {
+        indices[0] = indices[size];
+        values[0] = values[size];
+        siftDown(0);
+      }
+    }
+    return new TopK(topIndices, topValues);
+  }
+
+  /**
+   * Whether {@code (index, value)} ranks before {@code (otherIndex,
+   * otherValue)}: a greater value, or an equal value with a lower index.
+   */
+  private static boolean isBefore(
+    int index,
+    float value,
+    int otherIndex,
+    float otherValue
+  ) {
+    return value > otherValue || (value == otherValue && index < otherIndex);
+  }
+
+  private boolean isBefore(int slot, int otherSlot) {
+    return isBefore(
+      indices[slot],
+      values[slot],
+      indices[otherSlot],
+      values[otherSlot]
+    );
+  }
+
+  private void siftUp(int child) {
+    while (child > 0) {
+      int parent = (child - 1) >>> 1;
+      if (!isBefore(parent, child)) {
+        return;
+      }
+      swap(parent, child);
+      child = parent;
+    }
+  }
+
+  private void siftDown(int parent) {
+    while (true) {
+      int worst = parent;
+      int left = 2 * parent + 1;
+      int right = left + 1;
+      if (left < size && isBefore(worst, left)) {
+        worst = left;
+      }
+      if (right < size && isBefore(worst, right)) {
+        worst = right;
+      }
+      if (worst == parent) {
+        return;
+      }
+      swap(parent, worst);
+      parent = worst;
+    }
+  }
+
+  private void swap(int i, int j) {
+    int index = indices[i];
+    indices[i] = indices[j];
+    indices[j] = index;
+    float value = values[i];
+    values[i] = values[j];
+    values[j] = value;
+  }
+}
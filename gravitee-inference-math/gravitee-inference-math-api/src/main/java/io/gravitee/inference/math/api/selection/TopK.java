@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.api.selection;
+
+/**
+ * The {@code k} largest values of a vector and their indices, sorted by
+ * descending value. Equal values are ordered by ascending index.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public record TopK(int[] indices, float[] values) {
+  public TopK {
+    if (indices.length != values.length) {
+      throw new IllegalArgumentException(
+        "Indices and values must have the same length"
+      );
+    }
+  }
+
+  public int size() {
+    return indices.length;
+  }
+
+  public int index(int rank) {
+    return indices[rank];
+  }
+
+  public float value(int rank) {
+    return values[rank];
+  }
+}
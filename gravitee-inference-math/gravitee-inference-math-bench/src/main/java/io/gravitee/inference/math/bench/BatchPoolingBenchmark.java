@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.bench;
+
+import io.gravitee.inference.math.api.GioMaths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pooling of a padded {@code [batch, seq, hidden]} hidden state, as output by
+ * a BERT model run on a batch of inputs, into one embedding per input. The
+ * masked kernels are compared with pooling each sequence on its own, after
+ * slicing off its padding.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(
+  value = 1,
+  jvmArgsAppend = {
+    "--add-modules",
+    "jdk.incubator.vector",
+    "--enable-preview",
+  }
+)
+public class BatchPoolingBenchmark {
+
+  @Param({ "NATIVE", "LOOP_BOUND", "MASK_AWARE", "FACTORY" })
+  public Implementation implementation;
+
+  @Param({ "1", "32" })
+  public int batch;
+
+  @Param({ "128" })
+  public int seq;
+
+  @Param({ "384", "768" })
+  public int hidden;
+
+  private GioMaths gioMaths;
+  private float[][][] hiddenStates;
+  private long[][] attentionMask;
+  private int[] lengths;
+
+  @Setup
+  public void setup() {
+    gioMaths = implementation.gioMaths();
+    hiddenStates = BenchmarkData.hiddenStates(batch, seq, hidden);
+    attentionMask = BenchmarkData.attentionMask(batch, seq);
+    lengths = new int[batch];
+    for (int b = 0; b < batch; b++) {
+      lengths[b] = (int) Arrays.stream(attentionMask[b]).sum();
+    }
+  }
+
+  @Benchmark
+  public float[][] meanPooling() {
+    return gioMaths.meanPooling(hiddenStates, attentionMask);
+  }
+
+  @Benchmark
+  public float[][] maxPooling() {
+    return gioMaths.maxPooling(hiddenStates, attentionMask);
+  }
+
+  @Benchmark
+  public float[][] meanPoolingPerSequence() {
+    float[][] pooled = new float[batch][];
+    for (int b = 0; b < batch; b++) {
+      pooled[b] = gioMaths.mean(Arrays.copyOf(hiddenStates[b], lengths[b]));
+    }
+    return pooled;
+  }
+}
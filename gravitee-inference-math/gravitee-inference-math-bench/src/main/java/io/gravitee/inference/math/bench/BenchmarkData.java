@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.bench;
+
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic input generation so that every run, and every
+ * implementation, is measured against the same values.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class BenchmarkData {
+
+  private static final long SEED = 42L;
+  private static final int TOPICS = 64;
+  private static final float SPREAD = 0.75f;
+
+  private BenchmarkData() {}
+
+  public static float[] vector(int length) {
+    return vector(new SplittableRandom(SEED), length);
+  }
+
+  public static float[] vector(int length, long seed) {
+    return vector(new SplittableRandom(seed), length);
+  }
+
+  public static float[][] matrix(int rows, int cols) {
+    var random = new SplittableRandom(SEED);
+    float[][] matrix = new float[rows][];
+    for (int i = 0; i < rows; i++) {
+      matrix[i] = vector(random, cols);
+    }
+    return matrix;
+  }
+
+  public static float[] weights(int length) {
+    var random = new SplittableRandom(SEED);
+    float[] weights = new float[length];
+    for (int i = 0; i < length; i++) {
+      weights[i] = (float) random.nextDouble(0.1, 1.0);
+    }
+    return weights;
+  }
+
+  public static float[][][] hiddenStates(int batch, int seq, int hidden) {
+    var random = new SplittableRandom(SEED);
+    float[][][] hiddenStates = new float[batch][seq][];
+    for (int b = 0; b < batch; b++) {
+      for (int t = 0; t < seq; t++) {
+        hiddenStates[b][t] = vector(random, hidden);
+      }
+    }
+    return hiddenStates;
+  }
+
+  /**
+   * @return a {@code [batch, seq]} attention mask whose sequences keep
+   * between a quarter of and all their tokens, the rest being padding
+   */
+  public static long[][] attentionMask(int batch, int seq) {
+    var random = new SplittableRandom(SEED);
+    long[][] attentionMask = new long[batch][seq];
+    for (int b = 0; b < batch; b++) {
+      final int length = random.nextInt(Math.max(1, seq / 4), seq + 1);
+      for (int t = 0; t < length; t++) {
+        attentionMask[b][t] = 1;
+      }
+    }
+    return attentionMask;
+  }
+
+  /**
+   * @return {@code rows} vectors spread around {@value #TOPICS} random
+   * centers, the same for every seed, as embeddings cluster by topic.
+   * Uniform vectors are nearly equidistant in high dimension, which is not
+   * representative of approximate nearest neighbour searches.
+   */
+  public static float[][] embeddings(int rows, int cols, long seed) {
+    final float[][] centers = matrix(TOPICS, cols);
+    var random = new SplittableRandom(seed);
+    float[][] embeddings = new float[rows][];
+    for (int i = 0; i < rows; i++) {
+      final float[] center = centers[random.nextInt(TOPICS)];
+      embeddings[i] = vector(random, cols);
+      for (int j = 0; j < cols; j++) {
+        embeddings[i][j] = center[j] + SPREAD * embeddings[i][j];
+      }
+    }
+    return embeddings;
+  }
+
+  private static float[] vector(SplittableRandom random, int length) {
+    float[] vector = new float[length];
+    for (int i = 0; i < length; i++) {
+      vector[i] = (float) random.nextDouble(-1.0, 1.0);
+    }
+    return vector;
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.bench;
+
+import io.gravitee.inference.math.api.GioMaths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Vector operations over the embedding dimensions produced by the usual
+ * sentence-transformers and OpenAI models.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class EmbeddingBenchmark {
+
+  @Param({ "NATIVE", "LOOP_BOUND", "MASK_AWARE", "FACTORY" })
+  public Implementation implementation;
+
+  @Param({ "384", "768", "1024", "1536", "3072" })
+  public int dimension;
+
+  private GioMaths gioMaths;
+  private float[] v1;
+  private float[] v2;
+
+  @Setup
+  public void setup() {
+    gioMaths = implementation.gioMaths();
+    v1 = BenchmarkData.vector(dimension, 1L);
+    v2 = BenchmarkData.vector(dimension, 2L);
+  }
+
+  @Benchmark
+  public float cosineSimilarity() {
+    return gioMaths.cosineSimilarity(v1, v2);
+  }
+
+  @Benchmark
+  public float euclideanDistance() {
+    return gioMaths.euclideanDistance(v1, v2);
+  }
+
+  @Benchmark
+  public float[] normalize() {
+    return gioMaths.normalize(v1);
+  }
+
+  @Benchmark
+  public float normL2() {
+    return gioMaths.normL2(v1);
+  }
+
+  @Benchmark
+  public float max() {
+    return gioMaths.max(v1);
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.bench;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.Distance;
+import io.gravitee.inference.math.api.selection.TopK;
+import io.gravitee.inference.math.index.FlatIndex;
+import io.gravitee.inference.math.index.HnswIndex;
+import io.gravitee.inference.math.index.IdBitmap;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Top-10 search latency restricted to a random {@link IdBitmap} holding a
+ * {@code selectivity} fraction of the corpus, such as the entries of one
+ * tenant: pre-filtered by the {@link FlatIndex} and the {@link HnswIndex},
+ * against an unfiltered exact search over-fetching {@code k / selectivity}
+ * results, then post-filtered.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(
+  value = 1,
+  jvmArgsAppend = {
+    "--add-modules",
+    "jdk.incubator.vector",
+    "--enable-preview",
+  }
+)
+public class FilteredSearchBenchmark {
+
+  private static final int K = 10;
+
+  @Param({ "FACTORY" })
+  public Implementation implementation;
+
+  @Param({ "384" })
+  public int dimension;
+
+  @Param({ "100000" })
+  public int corpus;
+
+  @Param({ "0.01", "0.1", "0.5" })
+  public double selectivity;
+
+  private float[] query;
+  private IdBitmap filter;
+  private FlatIndex flat;
+  private HnswIndex hnsw;
+
+  @Setup
+  public void setup() {
+    final GioMaths gioMaths = implementation.gioMaths();
+    query = BenchmarkData.embeddings(1, dimension, 2L)[0];
+    filter = filter(corpus, selectivity, 3L);
+    flat = new FlatIndex(gioMaths, Distance.COSINE, dimension, corpus);
+    hnsw = new HnswIndex(gioMaths, Distance.COSINE, dimension, corpus);
+    for (float[] vector : BenchmarkData.embeddings(corpus, dimension, 1L)) {
+      flat.add(vector);
+      hnsw.add(vector);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    flat.close();
+    hnsw.close();
+  }
+
+  @Benchmark
+  public TopK exactPreFiltered() {
+    return flat.search(query, K, filter);
+  }
+
+  @Benchmark
+  public TopK exactPostFiltered() {
+    final TopK found = flat.search(query, (int) Math.ceil(K / selectivity));
+    final int[] indices = new int[K];
+    final float[] values = new float[K];
+    int size = 0;
+    for (int rank = 0; rank < found.size() && size < K; rank++) {
+      if (filter.contains(found.index(rank))) {
+        indices[size] = found.index(rank);
+        values[size++] = found.value(rank);
+      }
+    }
+    return new TopK(
+      Arrays.copyOf(indices, size),
+      Arrays.copyOf(values, size)
+    );
+  }
+
+  @Benchmark
+  public TopK hnswPreFiltered() {
+    return hnsw.search(query, K, filter);
+  }
+
+  /**
+   * @return about {@code selectivity x size} ids picked at random
+   */
+  static IdBitmap filter(int size, double selectivity, long seed) {
+    final SplittableRandom random = new SplittableRandom(seed);
+    final IdBitmap filter = new IdBitmap();
+    for (int id = 0; id < size; id++) {
+      if (random.nextDouble() < selectivity) {
+        filter.add(id);
+      }
+    }
+    return filter;
+  }
+}
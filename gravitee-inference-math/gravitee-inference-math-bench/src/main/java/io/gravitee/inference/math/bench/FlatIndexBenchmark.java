@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.bench;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.Distance;
+import io.gravitee.inference.math.api.selection.TopK;
+import io.gravitee.inference.math.index.FlatIndex;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Exact top-10 search of a {@link FlatIndex}, against scoring a jagged
+ * {@code float[][]} corpus then selecting its top-k.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(
+  value = 1,
+  jvmArgsAppend = {
+    "--add-modules",
+    "jdk.incubator.vector",
+    "--enable-preview",
+  }
+)
+public class FlatIndexBenchmark {
+
+  private static final int K = 10;
+
+  @Param({ "NATIVE", "FACTORY" })
+  public Implementation implementation;
+
+  @Param({ "384", "768" })
+  public int dimension;
+
+  @Param({ "10000", "100000" })
+  public int corpus;
+
+  private GioMaths gioMaths;
+  private float[] query;
+  private float[][] vectors;
+  private FlatIndex index;
+
+  @Setup
+  public void setup() {
+    gioMaths = implementation.gioMaths();
+    query = BenchmarkData.vector(dimension, 1L);
+    vectors = BenchmarkData.matrix(corpus, dimension);
+    index = new FlatIndex(gioMaths, Distance.COSINE, dimension, corpus);
+    for (float[] vector : vectors) {
+      index.add(vector);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    index.close();
+  }
+
+  @Benchmark
+  public TopK search() {
+    return index.search(query, K);
+  }
+
+  @Benchmark
+  public TopK scoreThenSelect() {
+    return gioMaths.topK(gioMaths.cosineSimilarity(query, vectors), K);
+  }
+}
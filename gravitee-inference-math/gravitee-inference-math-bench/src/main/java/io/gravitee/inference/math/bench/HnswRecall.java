@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.bench;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.Distance;
+import io.gravitee.inference.math.api.selection.TopK;
+import io.gravitee.inference.math.index.FlatIndex;
+import io.gravitee.inference.math.index.HnswIndex;
+import io.gravitee.inference.math.index.HnswParameters;
+
+/**
+ * Measures the recall@k and the mean latency of {@link HnswIndex} searches
+ * for increasing {@code efSearch}, against the exact search of a
+ * {@link FlatIndex} over the same vectors:
+ * <pre>
+ * java --add-modules jdk.incubator.vector --enable-preview -cp benchmarks.jar \
+ *   io.gravitee.inference.math.bench.HnswRecall \
+ *   [corpusSize] [k] [m] [efConstruction]
+ * </pre>
+ * Vectors are clustered, see {@link BenchmarkData#embeddings}.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public class HnswRecall {
+
+  private static final int DIMENSION = 384;
+  private static final int QUERIES = 200;
+  private static final int[] EF_SEARCH = { 16, 32, 64, 128, 256, 512 };
+
+  public static void main(String[] args) {
+    final int corpusSize = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    final int k = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    final HnswParameters parameters = new HnswParameters(
+      args.length > 2 ? Integer.parseInt(args[2]) : 16,
+      args.length > 3 ? Integer.parseInt(args[3]) : 200,
+      HnswParameters.DEFAULT.efSearch()
+    );
+    final GioMaths gioMaths = Implementation.FACTORY.gioMaths();
+
+    final float[][] corpus = BenchmarkData.embeddings(
+      corpusSize,
+      DIMENSION,
+      1L
+    );
+    final float[][] queries = BenchmarkData.embeddings(QUERIES, DIMENSION, 2L);
+
+    try (
+      var flat = new FlatIndex(gioMaths, Distance.COSINE, DIMENSION);
+      var hnsw = new HnswIndex(
+        gioMaths,
+        Distance.COSINE,
+        DIMENSION,
+        corpusSize,
+        parameters
+      )
+    ) {
+      long start = System.nanoTime();
+      for (float[] vector : corpus) {
+        hnsw.add(vector);
+      }
+      System.out.printf(
+        "corpus=%d dimension=%d %s built in %d ms%n",
+        corpusSize,
+        DIMENSION,
+        parameters,
+        (System.nanoTime() - start) / 1_000_000
+      );
+      for (float[] vector : corpus) {
+        flat.add(vector);
+      }
+
+      final TopK[] expected = new TopK[QUERIES];
+      // Warm-up, then timing, of the exact search
+      for (int q = 0; q < QUERIES; q++) {
+        expected[q] = flat.search(queries[q], k);
+      }
+      start = System.nanoTime();
+      for (int q = 0; q < QUERIES; q++) {
+        expected[q] = flat.search(queries[q], k);
+      }
+      System.out.printf(
+        "exact recall@%d=1.0000 latency=%.1f us%n",
+        k,
+        (System.nanoTime() - start) / 1000.0 / QUERIES
+      );
+
+      for (int efSearch : EF_SEARCH) {
+        for (int q = 0; q < QUERIES; q++) {
+          hnsw.search(queries[q], k, efSearch);
+        }
+        int hits = 0;
+        start = System.nanoTime();
+        for (int q = 0; q < QUERIES; q++) {
+          hits += hits(expected[q], hnsw.search(queries[q], k, efSearch));
+        }
+        System.out.printf(
+          "efSearch=%d recall@%d=%.4f latency=%.1f us%n",
+          efSearch,
+          k,
+          hits / (double) (QUERIES * k),
+          (System.nanoTime() - start) / 1000.0 / QUERIES
+        );
+      }
+    }
+  }
+
+  private static int hits(TopK expected, TopK actual) {
+    int hits = 0;
+    for (int index : actual.indices()) {
+      for (int expectedIndex : expected.indices()) {
+        hits += index == expectedIndex ? 1 : 0;
+      }
+    }
+    return hits;
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.bench;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.simd.LoopBoundSIMDMath;
+import io.gravitee.inference.math.simd.MaskAwareSIMDMath;
+import io.gravitee.inference.math.simd.factory.SIMDMathFactory;
+import io.gravitee.inference.math.vanilla.NativeMath;
+import java.util.function.Supplier;
+
+/**
+ * The {@link GioMaths} implementations a benchmark can be parameterized with.
+ * {@link #FACTORY} resolves to whatever {@link SIMDMathFactory} picks on the
+ * current hardware, so its score can be compared with the explicit ones.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public enum Implementation {
+  NATIVE(() -> NativeMath.INSTANCE),
+  LOOP_BOUND(() -> LoopBoundSIMDMath.INSTANCE),
+  MASK_AWARE(() -> MaskAwareSIMDMath.INSTANCE),
+  LOOP_BOUND_FAST(() -> LoopBoundSIMDMath.FAST_INSTANCE),
+  MASK_AWARE_FAST(() -> MaskAwareSIMDMath.FAST_INSTANCE),
+  FACTORY(SIMDMathFactory::gioMaths);
+
+  private final Supplier<GioMaths> supplier;
+
+  Implementation(Supplier<GioMaths> supplier) {
+    this.supplier = supplier;
+  }
+
+  public GioMaths gioMaths() {
+    return supplier.get();
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.bench;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.Distance;
+import io.gravitee.inference.math.api.selection.TopK;
+import io.gravitee.inference.math.index.FlatIndex;
+import io.gravitee.inference.math.index.IvfPqIndex;
+import io.gravitee.inference.math.index.IvfPqParameters;
+import java.util.Arrays;
+
+/**
+ * Measures the recall@k and the mean latency of {@link IvfPqIndex}
+ * searches for increasing {@code probes}, with and without exact
+ * rescoring, against the exact search of a {@link FlatIndex}:
+ * <pre>
+ * java --add-modules jdk.incubator.vector --enable-preview -cp benchmarks.jar \
+ *   io.gravitee.inference.math.bench.IvfPqRecall \
+ *   [corpusSize] [k] [lists] [subspaces]
+ * </pre>
+ * Vectors are clustered, see {@link BenchmarkData#embeddings}.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public class IvfPqRecall {
+
+  private static final int DIMENSION = 384;
+  private static final int QUERIES = 200;
+  private static final int SAMPLE = 20000;
+  private static final int RESCORE = 10;
+  private static final int[] PROBES = { 1, 4, 16, 64 };
+
+  public static void main(String[] args) {
+    final int corpusSize = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+    final int k = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    final int lists = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+    final int subspaces = args.length > 3 ? Integer.parseInt(args[3]) : 48;
+    final GioMaths gioMaths = Implementation.FACTORY.gioMaths();
+
+    final float[][] corpus = BenchmarkData.embeddings(
+      corpusSize,
+      DIMENSION,
+      1L
+    );
+    final float[][] queries = BenchmarkData.embeddings(QUERIES, DIMENSION, 2L);
+    final float[][] sample = Arrays.copyOf(
+      corpus,
+      Math.min(SAMPLE, corpusSize)
+    );
+
+    try (var flat = new FlatIndex(gioMaths, Distance.COSINE, DIMENSION)) {
+      for (float[] vector : corpus) {
+        flat.add(vector);
+      }
+      final TopK[] expected = new TopK[QUERIES];
+      for (int q = 0; q < QUERIES; q++) {
+        expected[q] = flat.search(queries[q], k);
+      }
+
+      for (int rescore : new int[] { 0, RESCORE }) {
+        long start = System.nanoTime();
+        try (
+          var index = IvfPqIndex.train(
+            gioMaths,
+            Distance.COSINE,
+            sample,
+            new IvfPqParameters(lists, subspaces, 1, rescore)
+          )
+        ) {
+          for (float[] vector : corpus) {
+            index.add(vector);
+          }
+          System.out.printf(
+            "corpus=%d dimension=%d %s %d bytes per vector, " +
+            "trained and filled in %d ms%n",
+            corpusSize,
+            DIMENSION,
+            index.parameters(),
+            subspaces + Integer.BYTES,
+            (System.nanoTime() - start) / 1_000_000
+          );
+          for (int probes : PROBES) {
+            for (int q = 0; q < QUERIES; q++) {
+              index.search(queries[q], k, probes);
+            }
+            int hits = 0;
+            start = System.nanoTime();
+            for (int q = 0; q < QUERIES; q++) {
+              hits += hits(expected[q], index.search(queries[q], k, probes));
+            }
+            System.out.printf(
+              "probes=%d recall@%d=%.4f latency=%.1f us%n",
+              probes,
+              k,
+              hits / (double) (QUERIES * k),
+              (System.nanoTime() - start) / 1000.0 / QUERIES
+            );
+          }
+        }
+      }
+    }
+  }
+
+  private static int hits(TopK expected, TopK actual) {
+    int hits = 0;
+    for (int index : actual.indices()) {
+      for (int expectedIndex : expected.indices()) {
+        hits += index == expectedIndex ? 1 : 0;
+      }
+    }
+    return hits;
+  }
+}
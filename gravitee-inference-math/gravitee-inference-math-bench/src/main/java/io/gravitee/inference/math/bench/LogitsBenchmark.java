@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.bench;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.selection.TopK;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Activations over model logits: a handful of classifier labels and a
+ * BERT-sized (30522 entries) fill-mask vocabulary.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class LogitsBenchmark {
+
+  @Param(
+    {
+      "NATIVE",
+      "LOOP_BOUND",
+      "MASK_AWARE",
+      "LOOP_BOUND_FAST",
+      "MASK_AWARE_FAST",
+      "FACTORY",
+    }
+  )
+  public Implementation implementation;
+
+  @Param({ "9", "30522" })
+  public int size;
+
+  private GioMaths gioMaths;
+  private float[] logits;
+  private float[] scratch;
+
+  @Setup
+  public void setup() {
+    gioMaths = implementation.gioMaths();
+    logits = BenchmarkData.vector(size);
+    scratch = new float[size];
+  }
+
+  @Benchmark
+  public float[] softmax() {
+    return gioMaths.softmax(logits);
+  }
+
+  @Benchmark
+  public float[] softmaxIntoScratch() {
+    return gioMaths.softmax(logits, scratch);
+  }
+
+  @Benchmark
+  public float[] sigmoid() {
+    return gioMaths.sigmoid(logits);
+  }
+
+  @Benchmark
+  public float[] sigmoidIntoScratch() {
+    return gioMaths.sigmoid(logits, scratch);
+  }
+
+  @Benchmark
+  public float max() {
+    return gioMaths.max(logits);
+  }
+
+  @Benchmark
+  public int argmax() {
+    return gioMaths.argmax(logits);
+  }
+
+  @Benchmark
+  public TopK top5() {
+    return gioMaths.topK(logits, 5);
+  }
+}
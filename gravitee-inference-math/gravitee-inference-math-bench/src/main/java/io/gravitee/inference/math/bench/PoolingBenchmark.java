@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.bench;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.matrix.FloatMatrix;
+import io.gravitee.inference.math.segment.SegmentFloatMatrix;
+import java.lang.foreign.Arena;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reductions over a {@code [tokens, hidden]} matrix, as done when pooling
+ * the last hidden state of a BERT model. The matrix is either jagged
+ * ({@code float[][]}) or contiguous, on-heap or off-heap.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(
+  value = 1,
+  jvmArgsAppend = {
+    "--add-modules",
+    "jdk.incubator.vector",
+    "--enable-preview",
+  }
+)
+public class PoolingBenchmark {
+
+  @Param({ "NATIVE", "LOOP_BOUND", "MASK_AWARE", "FACTORY" })
+  public Implementation implementation;
+
+  @Param({ "512" })
+  public int tokens;
+
+  @Param({ "384", "768" })
+  public int hidden;
+
+  private GioMaths gioMaths;
+  private float[][] matrix;
+  private FloatMatrix heapMatrix;
+  private Arena arena;
+  private FloatMatrix segmentMatrix;
+  private float[] weights;
+  private float[] scratch;
+
+  @Setup
+  public void setup() {
+    gioMaths = implementation.gioMaths();
+    matrix = BenchmarkData.matrix(tokens, hidden);
+    heapMatrix = FloatMatrix.of(matrix);
+    arena = Arena.ofShared();
+    segmentMatrix = SegmentFloatMatrix.copyOf(arena, matrix);
+    weights = BenchmarkData.weights(tokens);
+    scratch = new float[hidden];
+  }
+
+  @TearDown
+  public void tearDown() {
+    arena.close();
+  }
+
+  @Benchmark
+  public float[] mean() {
+    return gioMaths.mean(matrix);
+  }
+
+  @Benchmark
+  public float[] weightedMean() {
+    return gioMaths.weightedMean(matrix, weights);
+  }
+
+  @Benchmark
+  public float[] weightedMeanThenNormalize() {
+    return gioMaths.normalize(gioMaths.weightedMean(matrix, weights));
+  }
+
+  @Benchmark
+  public float[] normalizedWeightedMeanIntoScratch() {
+    return gioMaths.normalizedWeightedMean(matrix, weights, scratch);
+  }
+
+  @Benchmark
+  public float[] meanHeapMatrix() {
+    return gioMaths.mean(heapMatrix);
+  }
+
+  @Benchmark
+  public float[] meanSegmentMatrix() {
+    return gioMaths.mean(segmentMatrix);
+  }
+
+  @Benchmark
+  public float[] weightedMeanHeapMatrix() {
+    return gioMaths.weightedMean(heapMatrix, weights);
+  }
+
+  @Benchmark
+  public float[] weightedMeanSegmentMatrix() {
+    return gioMaths.weightedMean(segmentMatrix, weights);
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.bench;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.matrix.FloatMatrix;
+import io.gravitee.inference.math.segment.SegmentFloatMatrix;
+import java.lang.foreign.Arena;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Linear projections of embeddings by an {@code [out, in]} weight matrix, as
+ * done by a Dense head after pooling: one embedding (GEMV) or a batch of
+ * them (GEMM), against the naive triple loop.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(
+  value = 1,
+  jvmArgsAppend = {
+    "--add-modules",
+    "jdk.incubator.vector",
+    "--enable-preview",
+  }
+)
+public class ProjectionBenchmark {
+
+  @Param({ "NATIVE", "LOOP_BOUND", "MASK_AWARE", "FACTORY" })
+  public Implementation implementation;
+
+  @Param({ "384", "768" })
+  public int in;
+
+  @Param({ "256", "768" })
+  public int out;
+
+  @Param({ "32" })
+  public int batch;
+
+  private GioMaths gioMaths;
+  private float[][] weightRows;
+  private FloatMatrix weights;
+  private Arena arena;
+  private FloatMatrix segmentWeights;
+  private float[] vector;
+  private float[][] vectors;
+  private float[] scratch;
+
+  @Setup
+  public void setup() {
+    gioMaths = implementation.gioMaths();
+    weightRows = BenchmarkData.matrix(out, in);
+    weights = FloatMatrix.of(weightRows);
+    arena = Arena.ofShared();
+    segmentWeights = SegmentFloatMatrix.copyOf(arena, weightRows);
+    vector = BenchmarkData.vector(in, 7L);
+    vectors = new float[batch][];
+    for (int i = 0; i < batch; i++) {
+      vectors[i] = BenchmarkData.vector(in, i);
+    }
+    scratch = new float[out];
+  }
+
+  @TearDown
+  public void tearDown() {
+    arena.close();
+  }
+
+  @Benchmark
+  public float[] gemv() {
+    return gioMaths.multiply(weights, vector, scratch);
+  }
+
+  @Benchmark
+  public float[] gemvSegment() {
+    return gioMaths.multiply(segmentWeights, vector, scratch);
+  }
+
+  @Benchmark
+  public float[] gemvNaive() {
+    for (int i = 0; i < weightRows.length; i++) {
+      float sum = 0f;
+      for (int j = 0; j < vector.length; j++) {
+        sum += weightRows[i][j] * vector[j];
+      }
+      scratch[i] = sum;
+    }
+    return scratch;
+  }
+
+  @Benchmark
+  public float[][] gemm() {
+    return gioMaths.multiply(weights, vectors);
+  }
+
+  @Benchmark
+  public float[][] gemmSegment() {
+    return gioMaths.multiply(segmentWeights, vectors);
+  }
+
+  @Benchmark
+  public float[][] gemmNaive() {
+    float[][] products = new float[vectors.length][weightRows.length];
+    for (int v = 0; v < vectors.length; v++) {
+      for (int i = 0; i < weightRows.length; i++) {
+        float sum = 0f;
+        for (int j = 0; j < in; j++) {
+          sum += weightRows[i][j] * vectors[v][j];
+        }
+        products[v][i] = sum;
+      }
+    }
+    return products;
+  }
+}
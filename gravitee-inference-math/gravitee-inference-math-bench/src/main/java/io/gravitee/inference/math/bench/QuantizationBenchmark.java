@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.bench;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.half.HalfFormat;
+import io.gravitee.inference.math.api.half.HalfVector;
+import io.gravitee.inference.math.api.quantization.BinaryVector;
+import io.gravitee.inference.math.api.quantization.Int8Quantizer;
+import io.gravitee.inference.math.api.quantization.Int8Vector;
+import io.gravitee.inference.math.api.selection.TopK;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scans a corpus of embeddings stored as floats, as {@link HalfVector}, as
+ * {@link Int8Vector}, as per-dimension {@link Int8Quantizer} codes and as
+ * {@link BinaryVector}. See
+ * {@link QuantizationRecall} for the accuracy side of the trade-off.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class QuantizationBenchmark {
+
+  @Param({ "NATIVE", "LOOP_BOUND", "MASK_AWARE" })
+  public Implementation implementation;
+
+  @Param({ "384", "768" })
+  public int dimension;
+
+  @Param({ "10000" })
+  public int corpusSize;
+
+  private GioMaths gioMaths;
+  private float[] query;
+  private float[][] corpus;
+  private Int8Vector[] int8Corpus;
+  private Int8Vector int8Query;
+  private Int8Quantizer quantizer;
+  private byte[][] codes;
+  private BinaryVector binaryQuery;
+  private BinaryVector[] binaryCorpus;
+  private HalfVector[] float16Corpus;
+  private HalfVector[] bfloat16Corpus;
+  private short[] halfScratch;
+
+  @Setup
+  public void setup() {
+    gioMaths = implementation.gioMaths();
+    query = BenchmarkData.vector(dimension, 7L);
+    corpus = BenchmarkData.matrix(corpusSize, dimension);
+    int8Query = Int8Vector.quantize(query);
+    int8Corpus = new Int8Vector[corpusSize];
+    quantizer = Int8Quantizer.fit(corpus);
+    codes = new byte[corpusSize][];
+    binaryQuery = BinaryVector.quantize(query);
+    binaryCorpus = new BinaryVector[corpusSize];
+    float16Corpus = new HalfVector[corpusSize];
+    bfloat16Corpus = new HalfVector[corpusSize];
+    halfScratch = new short[dimension];
+    for (int i = 0; i < corpusSize; i++) {
+      int8Corpus[i] = Int8Vector.quantize(corpus[i]);
+      codes[i] = quantizer.quantize(corpus[i]);
+      binaryCorpus[i] = BinaryVector.quantize(corpus[i]);
+      float16Corpus[i] = HalfVector.encode(corpus[i], HalfFormat.FLOAT16);
+      bfloat16Corpus[i] = HalfVector.encode(corpus[i], HalfFormat.BFLOAT16);
+    }
+  }
+
+  @Benchmark
+  public float[] floatCosine() {
+    return gioMaths.cosineSimilarity(query, corpus);
+  }
+
+  @Benchmark
+  public float[] float16Cosine() {
+    return gioMaths.cosineSimilarity(query, float16Corpus);
+  }
+
+  @Benchmark
+  public float[] bfloat16Cosine() {
+    return gioMaths.cosineSimilarity(query, bfloat16Corpus);
+  }
+
+  @Benchmark
+  public short[] encodeFloat16() {
+    return gioMaths.toHalf(query, HalfFormat.FLOAT16, halfScratch);
+  }
+
+  @Benchmark
+  public float[] floatQueryInt8Cosine() {
+    return gioMaths.cosineSimilarity(query, int8Corpus);
+  }
+
+  @Benchmark
+  public float[] int8Cosine() {
+    float[] scores = new float[corpusSize];
+    for (int i = 0; i < corpusSize; i++) {
+      scores[i] = gioMaths.cosineSimilarity(int8Query, int8Corpus[i]);
+    }
+    return scores;
+  }
+
+  @Benchmark
+  public float[] perDimensionDotProduct() {
+    return quantizer.query(query).dotProduct(gioMaths, codes);
+  }
+
+  @Benchmark
+  public int[] hammingDistance() {
+    int[] distances = new int[corpusSize];
+    for (int i = 0; i < corpusSize; i++) {
+      distances[i] = gioMaths.hammingDistance(binaryQuery, binaryCorpus[i]);
+    }
+    return distances;
+  }
+
+  @Benchmark
+  public TopK floatTop10() {
+    return gioMaths.topK(gioMaths.cosineSimilarity(query, corpus), 10);
+  }
+
+  @Benchmark
+  public TopK binaryShortlistThenRescoreTop10() {
+    return gioMaths.rescore(
+      query,
+      corpus,
+      gioMaths.hammingNearest(binaryQuery, binaryCorpus, 200),
+      10
+    );
+  }
+}
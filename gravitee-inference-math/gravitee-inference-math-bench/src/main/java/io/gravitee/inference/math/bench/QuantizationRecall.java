@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.bench;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.half.HalfFormat;
+import io.gravitee.inference.math.api.half.HalfVector;
+import io.gravitee.inference.math.api.quantization.BinaryVector;
+import io.gravitee.inference.math.api.quantization.Int8Quantizer;
+import io.gravitee.inference.math.api.quantization.Int8Vector;
+import io.gravitee.inference.math.api.selection.TopK;
+
+/**
+ * Measures the recall@k of FP16 and int8 searches, and of binary searches
+ * rescored on a shortlist of {@code 20 * k} candidates, against the exact
+ * float search, on normalized random embeddings:
+ * <pre>
+ * java --add-modules jdk.incubator.vector -cp benchmarks.jar \
+ *   io.gravitee.inference.math.bench.QuantizationRecall [corpusSize] [k]
+ * </pre>
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public class QuantizationRecall {
+
+  private static final int QUERIES = 100;
+  private static final int OVERSAMPLING = 20;
+
+  public static void main(String[] args) {
+    final int corpusSize = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    final int k = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    final GioMaths gioMaths = Implementation.LOOP_BOUND.gioMaths();
+
+    for (int dimension : new int[] { 384, 768 }) {
+      float[][] corpus = BenchmarkData.matrix(corpusSize, dimension);
+      for (int i = 0; i < corpusSize; i++) {
+        corpus[i] = gioMaths.normalize(corpus[i]);
+      }
+      Int8Vector[] int8Corpus = new Int8Vector[corpusSize];
+      Int8Quantizer quantizer = Int8Quantizer.fit(corpus);
+      byte[][] codes = new byte[corpusSize][];
+      BinaryVector[] binaryCorpus = new BinaryVector[corpusSize];
+      HalfVector[] float16Corpus = new HalfVector[corpusSize];
+      for (int i = 0; i < corpusSize; i++) {
+        int8Corpus[i] = Int8Vector.quantize(corpus[i]);
+        codes[i] = quantizer.quantize(corpus[i]);
+        binaryCorpus[i] = BinaryVector.quantize(corpus[i]);
+        float16Corpus[i] = gioMaths.toHalf(corpus[i], HalfFormat.FLOAT16);
+      }
+
+      int float16Hits = 0;
+      int perVectorHits = 0;
+      int perDimensionHits = 0;
+      int binaryHits = 0;
+      for (int q = 0; q < QUERIES; q++) {
+        float[] query = gioMaths.normalize(
+          BenchmarkData.vector(dimension, 1000L + q)
+        );
+        TopK expected = gioMaths.topK(
+          gioMaths.cosineSimilarity(query, corpus),
+          k
+        );
+        float16Hits += hits(
+          expected,
+          gioMaths.topK(gioMaths.cosineSimilarity(query, float16Corpus), k)
+        );
+        perVectorHits += hits(
+          expected,
+          gioMaths.topK(gioMaths.cosineSimilarity(query, int8Corpus), k)
+        );
+        perDimensionHits += hits(
+          expected,
+          gioMaths.topK(quantizer.query(query).dotProduct(gioMaths, codes), k)
+        );
+        binaryHits += hits(
+          expected,
+          gioMaths.rescore(
+            query,
+            corpus,
+            gioMaths.hammingNearest(
+              BinaryVector.quantize(query),
+              binaryCorpus,
+              OVERSAMPLING * k
+            ),
+            k
+          )
+        );
+      }
+
+      System.out.printf(
+        "dimension=%d corpus=%d recall@%d fp16=%.4f int8 per-vector=%.4f " +
+        "int8 per-dimension=%.4f binary rescored=%.4f%n",
+        dimension,
+        corpusSize,
+        k,
+        float16Hits / (double) (QUERIES * k),
+        perVectorHits / (double) (QUERIES * k),
+        perDimensionHits / (double) (QUERIES * k),
+        binaryHits / (double) (QUERIES * k)
+      );
+    }
+  }
+
+  private static int hits(TopK expected, TopK actual) {
+    int hits = 0;
+    for (int index : actual.indices()) {
+      for (int expectedIndex : expected.indices()) {
+        hits += index == expectedIndex ? 1 : 0;
+      }
+    }
+    return hits;
+  }
+}
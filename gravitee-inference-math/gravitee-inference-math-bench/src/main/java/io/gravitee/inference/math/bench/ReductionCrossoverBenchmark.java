@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.bench;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.parallel.ParallelRows;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reductions over {@code [tokens, hidden]} matrices, always split across the
+ * pool ({@code parallel=true}) or never: the token count at which the
+ * parallel score overtakes the sequential one is the crossover that
+ * {@link ParallelRows#PARALLEL_THRESHOLD} should sit at on this hardware.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(
+  value = 1,
+  jvmArgsAppend = {
+    "--add-modules",
+    "jdk.incubator.vector",
+    "--enable-preview",
+  }
+)
+public class ReductionCrossoverBenchmark {
+
+  @Param({ "NATIVE", "LOOP_BOUND", "MASK_AWARE" })
+  public Implementation implementation;
+
+  @Param({ "64", "128", "256", "512", "1024", "2048" })
+  public int tokens;
+
+  @Param({ "384", "768" })
+  public int hidden;
+
+  @Param({ "false", "true" })
+  public boolean parallel;
+
+  private GioMaths gioMaths;
+  private float[][] matrix;
+  private float[] weights;
+  private float[] flat;
+  private float[] scratch;
+
+  @Setup
+  public void setup() {
+    ParallelRows.setThreshold(parallel ? 0 : Long.MAX_VALUE);
+    gioMaths = implementation.gioMaths();
+    matrix = BenchmarkData.matrix(tokens, hidden);
+    weights = BenchmarkData.weights(tokens);
+    flat = BenchmarkData.vector(tokens * hidden);
+    scratch = new float[hidden];
+  }
+
+  @TearDown
+  public void tearDown() {
+    ParallelRows.setThreshold(ParallelRows.PARALLEL_THRESHOLD);
+  }
+
+  @Benchmark
+  public float[] mean() {
+    return gioMaths.mean(matrix, scratch);
+  }
+
+  @Benchmark
+  public float[] weightedMean() {
+    return gioMaths.weightedMean(matrix, weights, scratch);
+  }
+
+  @Benchmark
+  public float max() {
+    return gioMaths.max(flat);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.bench;
+
+import io.gravitee.inference.math.api.GioMaths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scores a query (or a batch of queries) against a corpus of stored
+ * embeddings, comparing the per-pair loop with the batched kernels.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class SimilarityBenchmark {
+
+  private static final int QUERIES = 16;
+
+  @Param({ "NATIVE", "LOOP_BOUND", "MASK_AWARE" })
+  public Implementation implementation;
+
+  @Param({ "384", "768" })
+  public int dimension;
+
+  @Param({ "1000", "10000" })
+  public int corpus;
+
+  private GioMaths gioMaths;
+  private float[] query;
+  private float[][] queries;
+  private float[][] vectors;
+
+  @Setup
+  public void setup() {
+    gioMaths = implementation.gioMaths();
+    query = BenchmarkData.vector(dimension, 1L);
+    queries = BenchmarkData.matrix(QUERIES, dimension);
+    vectors = BenchmarkData.matrix(corpus, dimension);
+  }
+
+  @Benchmark
+  public float[] cosineSimilarityLoop() {
+    float[] scores = new float[vectors.length];
+    for (int i = 0; i < vectors.length; i++) {
+      scores[i] = gioMaths.cosineSimilarity(query, vectors[i]);
+    }
+    return scores;
+  }
+
+  @Benchmark
+  public float[] cosineSimilarityBatched() {
+    return gioMaths.cosineSimilarity(query, vectors);
+  }
+
+  @Benchmark
+  public float[] dotProductBatched() {
+    return gioMaths.dotProduct(query, vectors);
+  }
+
+  @Benchmark
+  public float[] euclideanDistanceBatched() {
+    return gioMaths.euclideanDistance(query, vectors);
+  }
+
+  @Benchmark
+  public float[][] cosineSimilarityPairwise() {
+    return gioMaths.cosineSimilarity(queries, vectors);
+  }
+}
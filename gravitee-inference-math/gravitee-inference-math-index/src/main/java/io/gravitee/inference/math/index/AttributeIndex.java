@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Attribute values of the vectors of an index, such as their tenant, API or
+ * model, kept as one {@link IdBitmap} of vector ids per attribute value.
+ * The bitmaps it returns are copies, combined with
+ * {@link IdBitmap#and}/{@link IdBitmap#or} and passed to
+ * {@link VectorIndex#search(float[], int, IdBitmap)} so that only the
+ * matching vectors are visited.
+ * <p>
+ * Thread-safe: updates wait for running lookups.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class AttributeIndex {
+
+  private final Map<String, Map<String, IdBitmap>> bitmaps = new HashMap<>();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Tags the vector {@code id} with {@code value} for {@code attribute}.
+   */
+  public void add(int id, String attribute, String value) {
+    lock.writeLock().lock();
+    try {
+      bitmaps
+        .computeIfAbsent(attribute, key -> new HashMap<>())
+        .computeIfAbsent(value, key -> new IdBitmap())
+        .add(id);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @return whether the vector {@code id} was tagged with {@code value} for
+   * {@code attribute}
+   */
+  public boolean remove(int id, String attribute, String value) {
+    lock.writeLock().lock();
+    try {
+      final Map<String, IdBitmap> values = bitmaps.get(attribute);
+      final IdBitmap bitmap = values == null ? null : values.get(value);
+      if (bitmap == null || !bitmap.remove(id)) {
+        return false;
+      }
+      if (bitmap.isEmpty()) {
+        values.remove(value);
+      }
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @return the ids of the vectors tagged with {@code value} for
+   * {@code attribute}
+   */
+  public IdBitmap matching(String attribute, String value) {
+    lock.readLock().lock();
+    try {
+      final Map<String, IdBitmap> values = bitmaps.get(attribute);
+      final IdBitmap bitmap = values == null ? null : values.get(value);
+      return bitmap == null ? new IdBitmap() : bitmap.copy();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return the ids of the vectors tagged with any of {@code values} for
+   * {@code attribute}
+   */
+  public IdBitmap matchingAny(String attribute, Collection<String> values) {
+    lock.readLock().lock();
+    try {
+      final Map<String, IdBitmap> bitmapsByValue = bitmaps.getOrDefault(
+        attribute,
+        Map.of()
+      );
+      IdBitmap result = new IdBitmap();
+      for (String value : values) {
+        final IdBitmap bitmap = bitmapsByValue.get(value);
+        if (bitmap != null) {
+          result = IdBitmap.or(result, bitmap);
+        }
+      }
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+}
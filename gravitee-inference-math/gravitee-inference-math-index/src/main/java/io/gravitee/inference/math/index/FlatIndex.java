@@ -0,0 +1,226 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import static java.lang.foreign.ValueLayout.JAVA_FLOAT_UNALIGNED;
+import static java.util.Objects.checkIndex;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.DistanceFunction;
+import io.gravitee.inference.math.api.parallel.ParallelRows;
+import io.gravitee.inference.math.api.selection.BoundedHeap;
+import io.gravitee.inference.math.api.selection.TopK;
+import io.gravitee.inference.math.segment.SegmentFloatMatrix;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Exact k-NN index: every search scans all the vectors, stored row after
+ * row in a single off-heap {@link SegmentFloatMatrix} that doubles in
+ * capacity when full.
+ * <p>
+ * The scan goes through the batched kernels of the given {@link GioMaths}
+ * (pass {@code SIMDMathFactory.gioMaths()} for the SIMD ones), in blocks of
+ * {@value Scorer#BLOCK_ROWS} rows whose scores feed a {@link BoundedHeap} of
+ * {@code k} entries. Large collections are split across
+ * {@link ParallelRows#pool()}, each range keeping its own heap, merged at
+ * the end. A search filtered by an {@link IdBitmap} only reads the rows in
+ * the filter.
+ * <p>
+ * Searches run concurrently with each other; adds wait for running searches
+ * and block new ones.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class FlatIndex implements VectorIndex {
+
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  private final Scorer scorer;
+  private final int dimension;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private Arena arena;
+  private SegmentFloatMatrix vectors;
+  private int size;
+
+  public FlatIndex(
+    GioMaths gioMaths,
+    DistanceFunction distance,
+    int dimension
+  ) {
+    this(gioMaths, distance, dimension, DEFAULT_CAPACITY);
+  }
+
+  public FlatIndex(
+    GioMaths gioMaths,
+    DistanceFunction distance,
+    int dimension,
+    int capacity
+  ) {
+    if (dimension < 1) {
+      throw new IllegalArgumentException("Dimension must be strictly positive");
+    }
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be strictly positive");
+    }
+    this.scorer = new Scorer(gioMaths, distance);
+    this.dimension = dimension;
+    this.arena = Arena.ofShared();
+    this.vectors = SegmentFloatMatrix.allocate(arena, capacity, dimension);
+  }
+
+  @Override
+  public int dimension() {
+    return dimension;
+  }
+
+  @Override
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public DistanceFunction distance() {
+    return scorer.distance();
+  }
+
+  @Override
+  public int add(float[] vector) {
+    checkDimension(vector);
+    final float[] values = scorer.prepare(vector);
+    lock.writeLock().lock();
+    try {
+      ensureOpen();
+      if (size == vectors.rows()) {
+        grow();
+      }
+      MemorySegment.copy(
+        values,
+        0,
+        vectors.segment(),
+        JAVA_FLOAT_UNALIGNED,
+        vectors.byteOffset(size),
+        dimension
+      );
+      return size++;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @return a copy of the vector stored under {@code id}, normalized if the
+   * index ranks by cosine similarity
+   */
+  public float[] vector(int id) {
+    lock.readLock().lock();
+    try {
+      ensureOpen();
+      return vectors.row(checkIndex(id, size), new float[dimension]);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public TopK search(float[] query, int k) {
+    checkDimension(query);
+    final float[] prepared = scorer.prepare(query);
+    lock.readLock().lock();
+    try {
+      ensureOpen();
+      return scorer.topK(prepared, vectors.rows(0, size), k);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public TopK search(float[] query, int k, IdBitmap filter) {
+    checkDimension(query);
+    final float[] prepared = scorer.prepare(query);
+    lock.readLock().lock();
+    try {
+      ensureOpen();
+      return scorer.topK(prepared, vectors.rows(0, size), k, filter);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    lock.writeLock().lock();
+    try {
+      if (arena != null) {
+        arena.close();
+        arena = null;
+        vectors = null;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void grow() {
+    final int capacity = vectors.rows();
+    if (capacity == Integer.MAX_VALUE) {
+      throw new IllegalStateException("Index is full");
+    }
+    final Arena grown = Arena.ofShared();
+    final SegmentFloatMatrix copy = SegmentFloatMatrix.allocate(
+      grown,
+      (int) Math.min(2L * capacity, Integer.MAX_VALUE),
+      dimension
+    );
+    MemorySegment.copy(
+      vectors.segment(),
+      0,
+      copy.segment(),
+      0,
+      (long) size * dimension * Float.BYTES
+    );
+    arena.close();
+    arena = grown;
+    vectors = copy;
+  }
+
+  private void checkDimension(float[] vector) {
+    if (vector.length != dimension) {
+      throw new IllegalArgumentException(
+        "Expected a vector of dimension " +
+        dimension +
+        " but got " +
+        vector.length
+      );
+    }
+  }
+
+  private void ensureOpen() {
+    if (arena == null) {
+      throw new IllegalStateException("Index is closed");
+    }
+  }
+}
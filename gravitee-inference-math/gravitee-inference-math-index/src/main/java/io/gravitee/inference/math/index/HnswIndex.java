@@ -0,0 +1,503 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import static java.util.Objects.checkIndex;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.DistanceFunction;
+import io.gravitee.inference.math.api.selection.BoundedHeap;
+import io.gravitee.inference.math.api.selection.TopK;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Approximate k-NN index over a Hierarchical Navigable Small World graph
+ * (Malkov &amp; Yashunin): each vector is linked to its closest neighbours
+ * on layer {@code 0} and, with an exponentially decreasing probability, on
+ * upper layers too. A search descends greedily from the single node of the
+ * top layer, then explores the bottom layer keeping the {@code efSearch}
+ * best candidates, see {@link HnswParameters}.
+ * <p>
+ * Vectors are compared with the single-pair kernels of the given
+ * {@link GioMaths}, higher {@linkplain DistanceFunction#score(float) score}
+ * being closer; cosine indexes store normalized vectors and compare them
+ * with the dot product.
+ * <p>
+ * Adds and searches run concurrently. Neighbour lists are guarded by a
+ * fixed set of {@value #STRIPES} locks, picked by node id, and a thread
+ * holds at most one of them at a time. The capacity is fixed when the index
+ * is created.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class HnswIndex implements VectorIndex {
+
+  private static final int STRIPES = 1024;
+  private static final long LEVEL_SEED = 0x2545F4914F6CDD1DL;
+  private static final int VISIT_COST = 4;
+
+  private final Scorer scorer;
+  private final int dimension;
+  private final HnswParameters parameters;
+  private final double levelMultiplier;
+  private final AtomicReferenceArray<Node> nodes;
+  private final AtomicInteger count = new AtomicInteger();
+  private final Object[] locks = new Object[STRIPES];
+  private final Object entryLock = new Object();
+
+  private volatile Node entry;
+  private volatile boolean closed;
+
+  public HnswIndex(
+    GioMaths gioMaths,
+    DistanceFunction distance,
+    int dimension,
+    int capacity
+  ) {
+    this(gioMaths, distance, dimension, capacity, HnswParameters.DEFAULT);
+  }
+
+  public HnswIndex(
+    GioMaths gioMaths,
+    DistanceFunction distance,
+    int dimension,
+    int capacity,
+    HnswParameters parameters
+  ) {
+    if (dimension < 1) {
+      throw new IllegalArgumentException("Dimension must be strictly positive");
+    }
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be strictly positive");
+    }
+    this.scorer = new Scorer(gioMaths, distance);
+    this.dimension = dimension;
+    this.parameters = parameters;
+    this.levelMultiplier = 1 / Math.log(parameters.m());
+    this.nodes = new AtomicReferenceArray<>(capacity);
+    for (int i = 0; i < STRIPES; i++) {
+      locks[i] = new Object();
+    }
+  }
+
+  @Override
+  public int dimension() {
+    return dimension;
+  }
+
+  /**
+   * @return the number of added vectors, including those being linked
+   */
+  @Override
+  public int size() {
+    return count.get();
+  }
+
+  @Override
+  public DistanceFunction distance() {
+    return scorer.distance();
+  }
+
+  public HnswParameters parameters() {
+    return parameters;
+  }
+
+  @Override
+  public int add(float[] vector) {
+    checkDimension(vector);
+    ensureOpen();
+    float[] values = scorer.prepare(vector);
+    if (values == vector) {
+      values = vector.clone();
+    }
+
+    final int id = nextId();
+    final Node node = new Node(id, values, level(id), parameters.m());
+    nodes.set(id, node);
+
+    Node enter = entry;
+    if (enter == null) {
+      synchronized (entryLock) {
+        if (entry == null) {
+          entry = node;
+          return id;
+        }
+        enter = entry;
+      }
+    }
+
+    int[] points = { enter.id };
+    for (int layer = enter.level; layer > node.level; layer--) {
+      points = searchLayer(values, points, 1, layer).indices();
+    }
+    for (int layer = Math.min(node.level, enter.level); layer >= 0; layer--) {
+      final TopK found = searchLayer(
+        values,
+        points,
+        parameters.efConstruction(),
+        layer
+      );
+      final int[] neighbours = selectNeighbours(found, parameters.m());
+      setLinks(node, layer, neighbours, neighbours.length);
+      for (int neighbour : neighbours) {
+        connect(nodes.get(neighbour), node, layer);
+      }
+      points = found.indices();
+    }
+
+    if (node.level > enter.level) {
+      synchronized (entryLock) {
+        if (node.level > entry.level) {
+          entry = node;
+        }
+      }
+    }
+    return id;
+  }
+
+  /**
+   * @return a copy of the vector stored under {@code id}, normalized if the
+   * index ranks by cosine similarity
+   */
+  public float[] vector(int id) {
+    ensureOpen();
+    final Node node = nodes.get(checkIndex(id, count.get()));
+    if (node == null) {
+      throw new IllegalStateException("Vector " + id + " is being added");
+    }
+    return node.vector.clone();
+  }
+
+  @Override
+  public TopK search(float[] query, int k) {
+    return search(query, k, parameters.efSearch());
+  }
+
+  /**
+   * Same as {@link #search(float[], int)}, keeping {@code efSearch}
+   * candidates instead of the default of the {@link HnswParameters}.
+   */
+  public TopK search(float[] query, int k, int efSearch) {
+    return search(query, k, efSearch, null);
+  }
+
+  @Override
+  public TopK search(float[] query, int k, IdBitmap filter) {
+    return search(query, k, parameters.efSearch(), filter);
+  }
+
+  /**
+   * Same as {@link #search(float[], int, IdBitmap)}, keeping
+   * {@code efSearch} candidates instead of the default of the
+   * {@link HnswParameters}.
+   * <p>
+   * The graph is still traversed through the nodes outside of
+   * {@code filter}, which keeps it connected, but only the nodes in
+   * {@code filter} are kept as results. When {@code filter} is small
+   * enough that reading all its nodes is expected to be cheaper, or once the
+   * traversal has visited more nodes than it holds, the search scores every
+   * node in {@code filter} instead, exactly.
+   */
+  public TopK search(float[] query, int k, int efSearch, IdBitmap filter) {
+    checkDimension(query);
+    if (k < 1) {
+      throw new IllegalArgumentException("k must be strictly positive");
+    }
+    ensureOpen();
+    final Node enter = entry;
+    if (enter == null) {
+      return new TopK(new int[0], new float[0]);
+    }
+    final float[] prepared = scorer.prepare(query);
+    final int ef = Math.max(efSearch, k);
+    if (filter != null && isExactCheaper(filter.cardinality(), ef)) {
+      return exact(prepared, k, filter);
+    }
+    int[] points = { enter.id };
+    for (int layer = enter.level; layer > 0; layer--) {
+      points = searchLayer(prepared, points, 1, layer).indices();
+    }
+    final TopK found = searchLayer(
+      prepared,
+      points,
+      ef,
+      0,
+      filter,
+      filter == null ? Integer.MAX_VALUE : filter.cardinality()
+    );
+    if (found == null) {
+      return exact(prepared, k, filter);
+    }
+    final int size = Math.min(k, found.size());
+    return new TopK(
+      Arrays.copyOf(found.indices(), size),
+      Arrays.copyOf(found.values(), size)
+    );
+  }
+
+  /**
+   * Marks the index closed; the graph is left to the garbage collector.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    entry = null;
+  }
+
+  /**
+   * Best-first exploration of {@code layer} from {@code points}, stopping
+   * once the best unexplored candidate is worse than the {@code ef}
+   * results found so far.
+   *
+   * @return the {@code ef} closest nodes found, closest first
+   */
+  private TopK searchLayer(float[] query, int[] points, int ef, int layer) {
+    return searchLayer(query, points, ef, layer, null, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Same as {@link #searchLayer(float[], int[], int, int)}, keeping only
+   * the nodes in {@code filter} as results, unless {@code null}.
+   *
+   * @return {@code null} once more than {@code maxVisits} nodes are visited
+   */
+  private TopK searchLayer(
+    float[] query,
+    int[] points,
+    int ef,
+    int layer,
+    IdBitmap filter,
+    int maxVisits
+  ) {
+    final BitSet visited = new BitSet();
+    final ScoredQueue candidates = new ScoredQueue(ef);
+    final BoundedHeap results = new BoundedHeap(ef);
+    for (int point : points) {
+      visited.set(point);
+      final float score = scorer.score(query, nodes.get(point).vector);
+      candidates.add(point, score);
+      if (filter == null || filter.contains(point)) {
+        results.offer(point, score);
+      }
+    }
+    int visits = points.length;
+
+    final int[] links = new int[maxLinks(layer)];
+    while (!candidates.isEmpty()) {
+      if (candidates.bestScore() < results.threshold()) {
+        break;
+      }
+      final int linkCount = copyLinks(
+        nodes.get(candidates.pollId()),
+        layer,
+        links
+      );
+      for (int i = 0; i < linkCount; i++) {
+        final int neighbour = links[i];
+        if (visited.get(neighbour)) {
+          continue;
+        }
+        visited.set(neighbour);
+        if (++visits > maxVisits) {
+          return null;
+        }
+        final float score = scorer.score(query, nodes.get(neighbour).vector);
+        final boolean kept = filter == null || filter.contains(neighbour)
+          ? results.offer(neighbour, score)
+          : score > results.threshold();
+        if (kept) {
+          candidates.add(neighbour, score);
+        }
+      }
+    }
+    return results.toTopK();
+  }
+
+  /**
+   * A traversal keeping a fraction {@code f} of the nodes visits about
+   * {@code ef / f} of them before its results fill up, each costing
+   * {@value #VISIT_COST} times the reading of a node by an exact search.
+   */
+  private boolean isExactCheaper(int cardinality, int ef) {
+    final double fraction = cardinality / (double) Math.max(count.get(), 1);
+    return cardinality <= ef || VISIT_COST * ef / fraction >= cardinality;
+  }
+
+  /**
+   * Scores every node in {@code filter}.
+   */
+  private TopK exact(float[] query, int k, IdBitmap filter) {
+    final int size = count.get();
+    final BoundedHeap heap = BoundedHeap.capped(k, filter.cardinality());
+    for (
+      int id = filter.next(0);
+      id >= 0 && id < size;
+      id = filter.next(id + 1)
+    ) {
+      final Node node = nodes.get(id);
+      if (node != null) {
+        heap.offer(id, scorer.score(query, node.vector));
+      }
+    }
+    return heap.toTopK();
+  }
+
+  /**
+   * Keeps, closest first, the candidates closer to the base node than to
+   * any neighbour already kept, so that links spread in every direction
+   * instead of clustering on one side.
+   *
+   * @param candidates sorted closest first, as returned by
+   * {@link #searchLayer}
+   */
+  private int[] selectNeighbours(TopK candidates, int max) {
+    final int[] selected = new int[Math.min(max, candidates.size())];
+    final float[][] selectedVectors = new float[selected.length][];
+    int size = 0;
+    for (int rank = 0; rank < candidates.size() && size < max; rank++) {
+      final float[] vector = nodes.get(candidates.index(rank)).vector;
+      boolean diverse = true;
+      for (int i = 0; i < size && diverse; i++) {
+        diverse =
+          scorer.score(vector, selectedVectors[i]) <= candidates.value(rank);
+      }
+      if (diverse) {
+        selected[size] = candidates.index(rank);
+        selectedVectors[size++] = vector;
+      }
+    }
+    return Arrays.copyOf(selected, size);
+  }
+
+  /**
+   * Adds a link from {@code neighbour} to {@code node}, pruning the links
+   * of {@code neighbour} with {@link #selectNeighbours} when full.
+   */
+  private void connect(Node neighbour, Node node, int layer) {
+    final int max = maxLinks(layer);
+    synchronized (lock(neighbour.id)) {
+      final int[] links = neighbour.links[layer];
+      final int linkCount = neighbour.linkCounts[layer];
+      if (linkCount < max) {
+        links[linkCount] = node.id;
+        neighbour.linkCounts[layer] = linkCount + 1;
+        return;
+      }
+      final BoundedHeap heap = new BoundedHeap(linkCount + 1);
+      for (int i = 0; i < linkCount; i++) {
+        heap.offer(
+          links[i],
+          scorer.score(neighbour.vector, nodes.get(links[i]).vector)
+        );
+      }
+      heap.offer(node.id, scorer.score(neighbour.vector, node.vector));
+      final int[] kept = selectNeighbours(heap.toTopK(), max);
+      System.arraycopy(kept, 0, links, 0, kept.length);
+      neighbour.linkCounts[layer] = kept.length;
+    }
+  }
+
+  private void setLinks(Node node, int layer, int[] links, int linkCount) {
+    synchronized (lock(node.id)) {
+      System.arraycopy(links, 0, node.links[layer], 0, linkCount);
+      node.linkCounts[layer] = linkCount;
+    }
+  }
+
+  private int copyLinks(Node node, int layer, int[] dst) {
+    synchronized (lock(node.id)) {
+      final int linkCount = node.linkCounts[layer];
+      System.arraycopy(node.links[layer], 0, dst, 0, linkCount);
+      return linkCount;
+    }
+  }
+
+  private Object lock(int id) {
+    return locks[id & (STRIPES - 1)];
+  }
+
+  private int maxLinks(int layer) {
+    return layer == 0 ? 2 * parameters.m() : parameters.m();
+  }
+
+  private int nextId() {
+    while (true) {
+      final int id = count.get();
+      if (id == nodes.length()) {
+        throw new IllegalStateException("Index is full");
+      }
+      if (count.compareAndSet(id, id + 1)) {
+        return id;
+      }
+    }
+  }
+
+  /**
+   * Draws the top layer of a node from an exponential distribution of
+   * parameter {@code ln(m)}, seeded by its id so that a graph built from
+   * the same vectors in the same order is always the same.
+   */
+  private int level(int id) {
+    long z = LEVEL_SEED + id * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    z = z ^ (z >>> 31);
+    final double uniform = ((z >>> 11) + 1) * 0x1.0p-53;
+    return (int) (-Math.log(uniform) * levelMultiplier);
+  }
+
+  private void checkDimension(float[] vector) {
+    if (vector.length != dimension) {
+      throw new IllegalArgumentException(
+        "Expected a vector of dimension " +
+        dimension +
+        " but got " +
+        vector.length
+      );
+    }
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("Index is closed");
+    }
+  }
+
+  private static final class Node {
+
+    private final int id;
+    private final float[] vector;
+    private final int level;
+    private final int[][] links;
+    private final int[] linkCounts;
+
+    private Node(int id, float[] vector, int level, int m) {
+      this.id = id;
+      this.vector = vector;
+      this.level = level;
+      this.links = new int[level + 1][];
+      this.linkCounts = new int[level + 1];
+      links[0] = new int[2 * m];
+      for (int layer = 1; layer <= level; layer++) {
+        links[layer] = new int[m];
+      }
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+/**
+ * Tuning of a {@link HnswIndex}.
+ *
+ * @param m the number of links per node on upper layers, twice as many on
+ * the bottom layer: more links raise recall and memory use
+ * @param efConstruction the number of candidates considered when linking a
+ * new node: higher builds a better graph, more slowly
+ * @param efSearch the default number of candidates kept while searching,
+ * at least {@code k}: higher raises recall and latency
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public record HnswParameters(int m, int efConstruction, int efSearch) {
+  public static final HnswParameters DEFAULT = new HnswParameters(16, 200, 64);
+
+  public HnswParameters {
+    if (m < 2) {
+      throw new IllegalArgumentException("m must be at least 2");
+    }
+    if (efConstruction < 1 || efSearch < 1) {
+      throw new IllegalArgumentException("ef must be strictly positive");
+    }
+  }
+
+  public HnswParameters withEfSearch(int efSearch) {
+    return new HnswParameters(m, efConstruction, efSearch);
+  }
+}
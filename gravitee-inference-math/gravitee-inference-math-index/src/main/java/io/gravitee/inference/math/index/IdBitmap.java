@@ -0,0 +1,379 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of vector ids, such as the ids tagged with one attribute
+ * value, used to restrict a search to them.
+ * <p>
+ * Ids are split by their upper 16 bits into chunks of {@code 65536}, as in
+ * Roaring bitmaps: a chunk holding up to {@value #ARRAY_MAX} ids stores
+ * them as a sorted {@code char[]}, two bytes per id, and switches to a
+ * plain bitmap of {@code 8 KiB} beyond. Sparse and dense sets both stay
+ * small, and membership is a binary search or a bit test.
+ * <p>
+ * Not thread-safe: a bitmap must not be modified while searched.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class IdBitmap {
+
+  static final int ARRAY_MAX = 4096;
+  private static final int CHUNK_BITS = 16;
+  private static final int CHUNK_WORDS = (1 << CHUNK_BITS) / Long.SIZE;
+
+  private Chunk[] chunks = new Chunk[0];
+  private int cardinality;
+
+  public IdBitmap() {}
+
+  public static IdBitmap of(int... ids) {
+    final IdBitmap bitmap = new IdBitmap();
+    for (int id : ids) {
+      bitmap.add(id);
+    }
+    return bitmap;
+  }
+
+  /**
+   * @return the ids in both {@code left} and {@code right}
+   */
+  public static IdBitmap and(IdBitmap left, IdBitmap right) {
+    final IdBitmap result = new IdBitmap();
+    final int count = Math.min(left.chunks.length, right.chunks.length);
+    result.chunks = new Chunk[count];
+    for (int key = 0; key < count; key++) {
+      final Chunk a = left.chunks[key];
+      final Chunk b = right.chunks[key];
+      if (a != null && b != null) {
+        final Chunk chunk = Chunk.and(a, b);
+        if (chunk.cardinality > 0) {
+          result.chunks[key] = chunk;
+          result.cardinality += chunk.cardinality;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the ids in {@code left} or {@code right}
+   */
+  public static IdBitmap or(IdBitmap left, IdBitmap right) {
+    final IdBitmap result = left.copy();
+    if (right.chunks.length > result.chunks.length) {
+      result.chunks = Arrays.copyOf(result.chunks, right.chunks.length);
+    }
+    for (int key = 0; key < right.chunks.length; key++) {
+      final Chunk b = right.chunks[key];
+      if (b == null) {
+        continue;
+      }
+      final Chunk a = result.chunks[key];
+      final Chunk chunk = a == null ? b.copy() : Chunk.or(a, b);
+      result.cardinality += chunk.cardinality - (a == null ? 0 : a.cardinality);
+      result.chunks[key] = chunk;
+    }
+    return result;
+  }
+
+  public IdBitmap copy() {
+    final IdBitmap copy = new IdBitmap();
+    copy.chunks = new Chunk[chunks.length];
+    for (int key = 0; key < chunks.length; key++) {
+      if (chunks[key] != null) {
+        copy.chunks[key] = chunks[key].copy();
+      }
+    }
+    copy.cardinality = cardinality;
+    return copy;
+  }
+
+  /**
+   * @return whether {@code id} was added
+   */
+  public boolean add(int id) {
+    checkId(id);
+    final int key = id >>> CHUNK_BITS;
+    if (key >= chunks.length) {
+      chunks = Arrays.copyOf(chunks, key + 1);
+    }
+    if (chunks[key] == null) {
+      chunks[key] = new Chunk();
+    }
+    final boolean added = chunks[key].add((char) id);
+    if (added) {
+      cardinality++;
+    }
+    return added;
+  }
+
+  /**
+   * @return whether {@code id} was removed
+   */
+  public boolean remove(int id) {
+    final int key = id >>> CHUNK_BITS;
+    if (id < 0 || key >= chunks.length || chunks[key] == null) {
+      return false;
+    }
+    final boolean removed = chunks[key].remove((char) id);
+    if (removed) {
+      cardinality--;
+      if (chunks[key].cardinality == 0) {
+        chunks[key] = null;
+      }
+    }
+    return removed;
+  }
+
+  public boolean contains(int id) {
+    final int key = id >>> CHUNK_BITS;
+    return (
+      id >= 0 &&
+      key < chunks.length &&
+      chunks[key] != null &&
+      chunks[key].contains((char) id)
+    );
+  }
+
+  public int cardinality() {
+    return cardinality;
+  }
+
+  public boolean isEmpty() {
+    return cardinality == 0;
+  }
+
+  /**
+   * @return the lowest id greater than or equal to {@code from}, or
+   * {@code -1} if there is none
+   */
+  public int next(int from) {
+    if (from < 0) {
+      from = 0;
+    }
+    for (int key = from >>> CHUNK_BITS; key < chunks.length; key++) {
+      if (chunks[key] != null) {
+        final int low = key == from >>> CHUNK_BITS ? from & 0xFFFF : 0;
+        final int next = chunks[key].next(low);
+        if (next >= 0) {
+          return (key << CHUNK_BITS) | next;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the ids, in increasing order
+   */
+  public int[] toArray() {
+    final int[] ids = new int[cardinality];
+    int size = 0;
+    for (int id = next(0); id >= 0; id = next(id + 1)) {
+      ids[size++] = id;
+    }
+    return ids;
+  }
+
+  private static void checkId(int id) {
+    if (id < 0) {
+      throw new IllegalArgumentException("Ids must be positive");
+    }
+  }
+
+  /**
+   * The ids sharing the same upper 16 bits: a sorted array of their lower
+   * bits while there are at most {@value #ARRAY_MAX}, a bitmap otherwise.
+   */
+  private static final class Chunk {
+
+    private char[] values;
+    private long[] words;
+    private int cardinality;
+
+    private Chunk() {
+      this.values = new char[4];
+    }
+
+    private Chunk(char[] values, long[] words, int cardinality) {
+      this.values = values;
+      this.words = words;
+      this.cardinality = cardinality;
+    }
+
+    private Chunk copy() {
+      return new Chunk(
+        values == null ? null : values.clone(),
+        words == null ? null : words.clone(),
+        cardinality
+      );
+    }
+
+    private boolean contains(char value) {
+      return words != null
+        ? (words[value >>> 6] & (1L << value)) != 0
+        : Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+    }
+
+    private boolean add(char value) {
+      if (words != null) {
+        final long before = words[value >>> 6];
+        words[value >>> 6] = before | (1L << value);
+        if (before == words[value >>> 6]) {
+          return false;
+        }
+        cardinality++;
+        return true;
+      }
+      final int index = Arrays.binarySearch(values, 0, cardinality, value);
+      if (index >= 0) {
+        return false;
+      }
+      if (cardinality == ARRAY_MAX) {
+        toWords();
+        return add(value);
+      }
+      final int insertion = -index - 1;
+      if (cardinality == values.length) {
+        values = Arrays.copyOf(
+          values,
+          Math.min(Math.max(2 * cardinality, 4), ARRAY_MAX)
+        );
+      }
+      System.arraycopy(
+        values,
+        insertion,
+        values,
+        insertion + 1,
+        cardinality - insertion
+      );
+      values[insertion] = value;
+      cardinality++;
+      return true;
+    }
+
+    private boolean remove(char value) {
+      if (words != null) {
+        final long before = words[value >>> 6];
+        words[value >>> 6] = before & ~(1L << value);
+        if (before == words[value >>> 6]) {
+          return false;
+        }
+        if (--cardinality == ARRAY_MAX) {
+          toValues();
+        }
+        return true;
+      }
+      final int index = Arrays.binarySearch(values, 0, cardinality, value);
+      if (index < 0) {
+        return false;
+      }
+      System.arraycopy(values, index + 1, values, index, --cardinality - index);
+      return true;
+    }
+
+    /**
+     * @return the lowest value greater than or equal to {@code from}, or
+     * {@code -1} if there is none
+     */
+    private int next(int from) {
+      if (words == null) {
+        int index = Arrays.binarySearch(values, 0, cardinality, (char) from);
+        if (index < 0) {
+          index = -index - 1;
+        }
+        return index < cardinality ? values[index] : -1;
+      }
+      int word = from >>> 6;
+      long bits = words[word] & (-1L << from);
+      while (bits == 0) {
+        if (++word == CHUNK_WORDS) {
+          return -1;
+        }
+        bits = words[word];
+      }
+      return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    private static Chunk and(Chunk a, Chunk b) {
+      if (a.words != null && b.words != null) {
+        final long[] words = new long[CHUNK_WORDS];
+        int cardinality = 0;
+        for (int i = 0; i < CHUNK_WORDS; i++) {
+          words[i] = a.words[i] & b.words[i];
+          cardinality += Long.bitCount(words[i]);
+        }
+        final Chunk chunk = new Chunk(null, words, cardinality);
+        if (cardinality <= ARRAY_MAX) {
+          chunk.toValues();
+        }
+        return chunk;
+      }
+      final Chunk array = a.words == null ? a : b;
+      final Chunk other = array == a ? b : a;
+      final char[] values = new char[array.cardinality];
+      int cardinality = 0;
+      for (int i = 0; i < array.cardinality; i++) {
+        if (other.contains(array.values[i])) {
+          values[cardinality++] = array.values[i];
+        }
+      }
+      return new Chunk(values, null, cardinality);
+    }
+
+    private static Chunk or(Chunk a, Chunk b) {
+      if (a.words != null && b.words != null) {
+        final long[] words = new long[CHUNK_WORDS];
+        int cardinality = 0;
+        for (int i = 0; i < CHUNK_WORDS; i++) {
+          words[i] = a.words[i] | b.words[i];
+          cardinality += Long.bitCount(words[i]);
+        }
+        return new Chunk(null, words, cardinality);
+      }
+      final Chunk array = a.words == null ? a : b;
+      final Chunk result = (array == a ? b : a).copy();
+      for (int i = 0; i < array.cardinality; i++) {
+        result.add(array.values[i]);
+      }
+      return result;
+    }
+
+    private void toWords() {
+      words = new long[CHUNK_WORDS];
+      for (int i = 0; i < cardinality; i++) {
+        words[values[i] >>> 6] |= 1L << values[i];
+      }
+      values = null;
+    }
+
+    private void toValues() {
+      values = new char[Math.max(cardinality, 4)];
+      int size = 0;
+      for (int word = 0; word < CHUNK_WORDS; word++) {
+        for (long bits = words[word]; bits != 0; bits &= bits - 1) {
+          final int bit = Long.numberOfTrailingZeros(bits);
+          values[size++] = (char) ((word << 6) + bit);
+        }
+      }
+      words = null;
+    }
+  }
+}
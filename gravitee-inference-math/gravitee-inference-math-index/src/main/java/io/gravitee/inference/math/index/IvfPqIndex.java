@@ -0,0 +1,416 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.Distance;
+import io.gravitee.inference.math.api.distance.DistanceFunction;
+import io.gravitee.inference.math.api.matrix.HeapFloatMatrix;
+import io.gravitee.inference.math.api.parallel.ParallelRows;
+import io.gravitee.inference.math.api.selection.BoundedHeap;
+import io.gravitee.inference.math.api.selection.TopK;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Approximate k-NN index for collections too large to keep as floats: an
+ * inverted file of {@code lists} k-means centroids, each vector being
+ * stored in the list of its closest centroid as the {@link ProductQuantizer}
+ * code of its residual, i.e. its difference to that centroid. A vector
+ * takes {@code subspaces} bytes plus its 4-byte id.
+ * <p>
+ * A search scans the {@code probes} lists closest to the query, scoring
+ * codes by asymmetric distance: one table of squared distances per list,
+ * then one lookup per subspace and per vector. Codes are stored by blocks
+ * of {@value #BLOCK} vectors, transposed so that the lookups of one
+ * subspace are contiguous. When {@code rescore} is set, the
+ * {@code k * rescore} best candidates are then rescored exactly against
+ * the vectors kept in a {@link FlatIndex}.
+ * <p>
+ * Distances are euclidean, so only {@link Distance#EUCLIDEAN} and
+ * {@link Distance#COSINE}, on normalized vectors, are supported. Searches
+ * run concurrently with each other; adds wait for running searches and
+ * block new ones.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class IvfPqIndex implements VectorIndex {
+
+  static final int BLOCK = 32;
+
+  private static final long TRAINING_SEED = 42L;
+
+  private final Scorer scorer;
+  private final IvfPqParameters parameters;
+  private final HeapFloatMatrix centroids;
+  private final ProductQuantizer quantizer;
+  private final InvertedList[] lists;
+  private final FlatIndex vectors;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private int size;
+  private boolean closed;
+
+  private IvfPqIndex(
+    Scorer scorer,
+    IvfPqParameters parameters,
+    HeapFloatMatrix centroids,
+    ProductQuantizer quantizer
+  ) {
+    this.scorer = scorer;
+    this.parameters = parameters;
+    this.centroids = centroids;
+    this.quantizer = quantizer;
+    this.lists = new InvertedList[centroids.rows()];
+    for (int i = 0; i < lists.length; i++) {
+      lists[i] = new InvertedList(quantizer.subspaces());
+    }
+    this.vectors = parameters.rescore() > 0
+      ? new FlatIndex(
+        scorer.gioMaths(),
+        scorer.distance(),
+        centroids.cols()
+      )
+      : null;
+  }
+
+  /**
+   * Learns the centroids and the product quantizer from {@code sample},
+   * which should follow the distribution of the vectors to index and hold
+   * at least {@code lists} of them, and returns an empty index.
+   */
+  public static IvfPqIndex train(
+    GioMaths gioMaths,
+    DistanceFunction distance,
+    float[][] sample,
+    IvfPqParameters parameters
+  ) {
+    if (distance != Distance.EUCLIDEAN && distance != Distance.COSINE) {
+      throw new IllegalArgumentException(
+        "IVF-PQ only supports EUCLIDEAN and COSINE, got " + distance.name()
+      );
+    }
+    if (sample.length == 0) {
+      throw new IllegalArgumentException("Sample must not be empty");
+    }
+    final int dimension = sample[0].length;
+    if (dimension % parameters.subspaces() != 0) {
+      throw new IllegalArgumentException(
+        "Dimension " +
+        dimension +
+        " is not a multiple of " +
+        parameters.subspaces() +
+        " subspaces"
+      );
+    }
+
+    final Scorer scorer = new Scorer(gioMaths, distance);
+    final float[][] prepared = new float[sample.length][];
+    for (int i = 0; i < sample.length; i++) {
+      if (sample[i].length != dimension) {
+        throw new IllegalArgumentException(
+          "All sample vectors must have the same dimension"
+        );
+      }
+      prepared[i] = scorer.prepare(sample[i]);
+    }
+
+    final SplittableRandom random = new SplittableRandom(TRAINING_SEED);
+    final HeapFloatMatrix centroids = KMeans.fit(
+      gioMaths,
+      prepared,
+      parameters.lists(),
+      random
+    );
+    final float[][] residuals = new float[prepared.length][];
+    for (int i = 0; i < prepared.length; i++) {
+      residuals[i] = residual(
+        prepared[i],
+        centroids,
+        KMeans.nearest(gioMaths, prepared[i], centroids)
+      );
+    }
+    return new IvfPqIndex(
+      scorer,
+      parameters,
+      centroids,
+      ProductQuantizer.fit(gioMaths, residuals, parameters.subspaces(), random)
+    );
+  }
+
+  @Override
+  public int dimension() {
+    return centroids.cols();
+  }
+
+  @Override
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public DistanceFunction distance() {
+    return scorer.distance();
+  }
+
+  public IvfPqParameters parameters() {
+    return parameters;
+  }
+
+  @Override
+  public int add(float[] vector) {
+    checkDimension(vector);
+    final float[] prepared = scorer.prepare(vector);
+    final int list = KMeans.nearest(scorer.gioMaths(), prepared, centroids);
+    final byte[] code = quantizer.encode(residual(prepared, centroids, list));
+    lock.writeLock().lock();
+    try {
+      ensureOpen();
+      if (vectors != null) {
+        vectors.add(prepared);
+      }
+      lists[list].add(size, code);
+      return size++;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public TopK search(float[] query, int k) {
+    return search(query, k, parameters.probes());
+  }
+
+  /**
+   * Same as {@link #search(float[], int)}, scanning {@code probes} lists
+   * instead of the default of the {@link IvfPqParameters}.
+   */
+  public TopK search(float[] query, int k, int probes) {
+    return search(query, k, probes, null);
+  }
+
+  @Override
+  public TopK search(float[] query, int k, IdBitmap filter) {
+    return search(query, k, parameters.probes(), filter);
+  }
+
+  /**
+   * Same as {@link #search(float[], int, IdBitmap)}, scanning
+   * {@code probes} lists instead of the default of the
+   * {@link IvfPqParameters}. Only the codes of vectors in {@code filter} are
+   * decoded; with a selective filter, the probed lists may hold fewer than
+   * {@code k} of them, and more {@code probes} are needed.
+   */
+  public TopK search(float[] query, int k, int probes, IdBitmap filter) {
+    checkDimension(query);
+    if (k < 1 || probes < 1) {
+      throw new IllegalArgumentException(
+        "k and probes must be strictly positive"
+      );
+    }
+    final float[] prepared = scorer.prepare(query);
+    final int[] probed = closestLists(prepared, probes);
+    lock.readLock().lock();
+    try {
+      ensureOpen();
+      final int candidates = vectors == null
+        ? k
+        : (int) Math.min((long) k * parameters.rescore(), Integer.MAX_VALUE);
+      final BoundedHeap result = BoundedHeap.capped(candidates, size);
+      ParallelRows.forEach(
+        probed.length,
+        (long) quantizer.subspaces() * size / lists.length,
+        (from, to) -> {
+          final BoundedHeap heap = BoundedHeap.capped(candidates, size);
+          final float[] distances = new float[BLOCK];
+          for (int i = from; i < to; i++) {
+            final float[] table = quantizer.table(
+              residual(prepared, centroids, probed[i])
+            );
+            lists[probed[i]].scan(table, heap, distances, filter);
+          }
+          Scorer.merge(heap.toTopK(), result);
+        }
+      );
+      return vectors == null
+        ? toScores(result.toTopK())
+        : rescore(prepared, result.toTopK(), k);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    lock.writeLock().lock();
+    try {
+      closed = true;
+      if (vectors != null) {
+        vectors.close();
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private int[] closestLists(float[] query, int probes) {
+    final float[] distances = scorer
+      .gioMaths()
+      .euclideanDistance(query, centroids);
+    final BoundedHeap heap = BoundedHeap.capped(probes, distances.length);
+    for (int list = 0; list < distances.length; list++) {
+      heap.offer(list, -distances[list]);
+    }
+    return heap.toTopK().indices();
+  }
+
+  private TopK rescore(float[] query, TopK candidates, int k) {
+    final BoundedHeap heap = BoundedHeap.capped(k, candidates.size());
+    for (int rank = 0; rank < candidates.size(); rank++) {
+      final int id = candidates.index(rank);
+      heap.offer(id, scorer.score(query, vectors.vector(id)));
+    }
+    return heap.toTopK();
+  }
+
+  /**
+   * Turns the opposite of approximate squared distances into the scores of
+   * the index distance: the opposite of the distance, or the cosine
+   * similarity of unit vectors, {@code 1 - d² / 2}.
+   */
+  private TopK toScores(TopK approximate) {
+    final float[] scores = approximate.values().clone();
+    for (int i = 0; i < scores.length; i++) {
+      scores[i] = scorer.distance() == Distance.COSINE
+        ? 1 + scores[i] / 2
+        : (float) -Math.sqrt(-scores[i]);
+    }
+    return new TopK(approximate.indices(), scores);
+  }
+
+  private static float[] residual(
+    float[] vector,
+    HeapFloatMatrix centroids,
+    int list
+  ) {
+    final float[] residual = centroids.row(list);
+    for (int j = 0; j < residual.length; j++) {
+      residual[j] = vector[j] - residual[j];
+    }
+    return residual;
+  }
+
+  private void checkDimension(float[] vector) {
+    if (vector.length != dimension()) {
+      throw new IllegalArgumentException(
+        "Expected a vector of dimension " +
+        dimension() +
+        " but got " +
+        vector.length
+      );
+    }
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("Index is closed");
+    }
+  }
+
+  /**
+   * The ids and codes of the vectors of one list. Codes are stored by
+   * blocks of {@value #BLOCK} vectors, subspace by subspace: byte
+   * {@code s * BLOCK + v} of a block is the code of subspace {@code s} of
+   * its vector {@code v}.
+   */
+  private static final class InvertedList {
+
+    private final int subspaces;
+    private int[] ids = new int[BLOCK];
+    private byte[][] blocks = new byte[1][];
+    private int size;
+
+    private InvertedList(int subspaces) {
+      this.subspaces = subspaces;
+    }
+
+    private void add(int id, byte[] code) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+        blocks = Arrays.copyOf(blocks, ids.length / BLOCK);
+      }
+      final int slot = size % BLOCK;
+      if (slot == 0) {
+        blocks[size / BLOCK] = new byte[subspaces * BLOCK];
+      }
+      final byte[] block = blocks[size / BLOCK];
+      for (int s = 0; s < subspaces; s++) {
+        block[s * BLOCK + slot] = code[s];
+      }
+      ids[size++] = id;
+    }
+
+    /**
+     * Offers every vector of the list in {@code filter}, unless
+     * {@code null}, to {@code heap}, with the opposite of its squared
+     * distance read from {@code table}.
+     */
+    private void scan(
+      float[] table,
+      BoundedHeap heap,
+      float[] distances,
+      IdBitmap filter
+    ) {
+      for (int first = 0; first < size; first += BLOCK) {
+        final byte[] block = blocks[first / BLOCK];
+        final int count = Math.min(BLOCK, size - first);
+        if (filter != null && !anyIn(filter, first, count)) {
+          continue;
+        }
+        Arrays.fill(distances, 0f);
+        for (int s = 0; s < subspaces; s++) {
+          final int row = s * ProductQuantizer.CENTROIDS;
+          final int column = s * BLOCK;
+          for (int v = 0; v < count; v++) {
+            distances[v] += table[row + (block[column + v] & 0xFF)];
+          }
+        }
+        for (int v = 0; v < count; v++) {
+          if (filter == null || filter.contains(ids[first + v])) {
+            heap.offer(ids[first + v], -distances[v]);
+          }
+        }
+      }
+    }
+
+    private boolean anyIn(IdBitmap filter, int first, int count) {
+      for (int v = 0; v < count; v++) {
+        if (filter.contains(ids[first + v])) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+/**
+ * Tuning of an {@link IvfPqIndex}.
+ *
+ * @param lists the number of k-means centroids partitioning the vectors,
+ * typically around the square root of the collection size
+ * @param subspaces the number of bytes each vector is encoded in; the
+ * dimension must be a multiple of it
+ * @param probes the number of lists, closest to the query, scanned by a
+ * search: more raise recall and latency
+ * @param rescore how many candidates per requested neighbour are rescored
+ * with the exact vectors, which are then kept off-heap; {@code 0} keeps
+ * the codes only and ranks by approximate distance
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public record IvfPqParameters(
+  int lists,
+  int subspaces,
+  int probes,
+  int rescore
+) {
+  public IvfPqParameters {
+    if (lists < 1 || subspaces < 1 || probes < 1) {
+      throw new IllegalArgumentException(
+        "lists, subspaces and probes must be strictly positive"
+      );
+    }
+    if (rescore < 0) {
+      throw new IllegalArgumentException("rescore must be positive");
+    }
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.matrix.FloatMatrix;
+import io.gravitee.inference.math.api.matrix.HeapFloatMatrix;
+import io.gravitee.inference.math.api.parallel.ParallelRows;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lloyd's k-means in euclidean distance: centroids start on distinct random
+ * points, then each iteration assigns every point to its closest centroid
+ * and moves the centroids to the mean of their points. A centroid left
+ * without points restarts on a random point.
+ * <p>
+ * Assignments expand {@code |p - c|² = |p|² - 2 p.c + |c|²}, so that the
+ * dot products of a chunk of points with all the centroids are one
+ * {@link GioMaths#multiply(FloatMatrix, float[][])}, split across
+ * {@link ParallelRows#pool()}. At most {@value #MAX_POINTS_PER_CENTROID}
+ * random points per centroid are used, more barely moving the centroids.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+final class KMeans {
+
+  static final int ITERATIONS = 20;
+  static final int MAX_POINTS_PER_CENTROID = 256;
+
+  /**
+   * Number of points whose distances to all the centroids are computed by a
+   * single matrix product.
+   */
+  private static final int CHUNK = 256;
+
+  private KMeans() {}
+
+  /**
+   * @return {@code k} centroids of {@code candidates}, as many rows of a
+   * matrix
+   */
+  static HeapFloatMatrix fit(
+    GioMaths gioMaths,
+    float[][] candidates,
+    int k,
+    SplittableRandom random
+  ) {
+    if (candidates.length < k) {
+      throw new IllegalArgumentException(
+        "At least " + k + " points are needed, got " + candidates.length
+      );
+    }
+    final boolean sampled =
+      (long) k * MAX_POINTS_PER_CENTROID < candidates.length;
+    final float[][] points = sampled
+      ? sample(candidates, k * MAX_POINTS_PER_CENTROID, random)
+      : candidates;
+    final int dimension = points[0].length;
+    final HeapFloatMatrix centroids = FloatMatrix.allocate(k, dimension);
+    final int[] initial = random
+      .ints(0, points.length)
+      .distinct()
+      .limit(k)
+      .toArray();
+    for (int c = 0; c < k; c++) {
+      setRow(centroids, c, points[initial[c]]);
+    }
+
+    final int[] assignments = new int[points.length];
+    for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+      final AtomicBoolean moved = new AtomicBoolean(iteration == 0);
+      final float[] norms = squaredNorms(gioMaths, centroids);
+      ParallelRows.forEach(points.length, (long) k * dimension, (from, to) -> {
+        for (int first = from; first < to; first += CHUNK) {
+          final float[][] products = gioMaths.multiply(
+            centroids,
+            Arrays.copyOfRange(points, first, Math.min(first + CHUNK, to))
+          );
+          for (int i = 0; i < products.length; i++) {
+            final int nearest = nearest(norms, products[i]);
+            if (nearest != assignments[first + i]) {
+              assignments[first + i] = nearest;
+              moved.set(true);
+            }
+          }
+        }
+      });
+      if (!moved.get()) {
+        break;
+      }
+
+      final float[][] sums = new float[k][dimension];
+      final int[] counts = new int[k];
+      for (int i = 0; i < points.length; i++) {
+        final float[] sum = sums[assignments[i]];
+        for (int j = 0; j < dimension; j++) {
+          sum[j] += points[i][j];
+        }
+        counts[assignments[i]]++;
+      }
+      for (int c = 0; c < k; c++) {
+        if (counts[c] == 0) {
+          setRow(centroids, c, points[random.nextInt(points.length)]);
+          continue;
+        }
+        for (int j = 0; j < dimension; j++) {
+          sums[c][j] /= counts[c];
+        }
+        setRow(centroids, c, sums[c]);
+      }
+    }
+    return centroids;
+  }
+
+  /**
+   * @return the row of {@code centroids} closest to {@code point}
+   */
+  static int nearest(GioMaths gioMaths, float[] point, FloatMatrix centroids) {
+    final float[] distances = gioMaths.euclideanDistance(point, centroids);
+    int nearest = 0;
+    for (int c = 1; c < distances.length; c++) {
+      if (distances[c] < distances[nearest]) {
+        nearest = c;
+      }
+    }
+    return nearest;
+  }
+
+  /**
+   * @return the centroid minimizing {@code |c|² - 2 p.c}, i.e. the squared
+   * distance {@code |p - c|²} minus the constant {@code |p|²}, given the
+   * dot products {@code p.c} of a point with every centroid
+   */
+  private static int nearest(float[] squaredNorms, float[] products) {
+    int nearest = 0;
+    float min = Float.POSITIVE_INFINITY;
+    for (int c = 0; c < products.length; c++) {
+      final float distance = squaredNorms[c] - 2 * products[c];
+      if (distance < min) {
+        min = distance;
+        nearest = c;
+      }
+    }
+    return nearest;
+  }
+
+  private static float[] squaredNorms(
+    GioMaths gioMaths,
+    HeapFloatMatrix centroids
+  ) {
+    final float[] norms = new float[centroids.rows()];
+    final float[] row = new float[centroids.cols()];
+    for (int c = 0; c < norms.length; c++) {
+      centroids.row(c, row);
+      norms[c] = gioMaths.dotProduct(row, row);
+    }
+    return norms;
+  }
+
+  private static float[][] sample(
+    float[][] points,
+    int count,
+    SplittableRandom random
+  ) {
+    return random
+      .ints(0, points.length)
+      .distinct()
+      .limit(count)
+      .mapToObj(i -> points[i])
+      .toArray(float[][]::new);
+  }
+
+  private static void setRow(HeapFloatMatrix matrix, int row, float[] values) {
+    System.arraycopy(
+      values,
+      0,
+      matrix.data(),
+      matrix.index(row, 0),
+      values.length
+    );
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import io.gravitee.inference.math.api.distance.DistanceFunction;
+
+/**
+ * A vector found by a {@link VectorStore} search.
+ *
+ * @param id the id the vector was put under
+ * @param score its {@linkplain DistanceFunction#score(float) score}: the
+ * similarity, or the opposite of the distance, to the query
+ * @param metadata the metadata it was put with, empty if none
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public record Neighbour(long id, float score, byte[] metadata) {}
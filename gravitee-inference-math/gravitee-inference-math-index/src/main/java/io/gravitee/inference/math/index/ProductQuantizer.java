@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.matrix.HeapFloatMatrix;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Product quantization (Jégou et al.): a vector is cut into
+ * {@code subspaces} contiguous sub-vectors, each replaced by the byte index
+ * of its closest centroid among up to {@value #CENTROIDS}, learnt by
+ * {@link KMeans} on that subspace.
+ * <p>
+ * The distance between a query and an encoded vector is approximated
+ * asymmetrically, from the exact query: {@link #table} precomputes the
+ * squared distance between each query sub-vector and each centroid, after
+ * which a vector costs one table lookup per subspace.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+final class ProductQuantizer {
+
+  static final int CENTROIDS = 256;
+
+  private final int subspaces;
+  private final int subDimension;
+  private final int centroids;
+  private final float[] codebooks;
+
+  /**
+   * @param codebooks the {@code [subspaces, subDimension, 256]} centroids,
+   * flattened: the coordinate {@code j} of all the centroids of a subspace
+   * is contiguous, so that distances to all of them are computed by loops
+   * the JIT vectorizes
+   */
+  private ProductQuantizer(
+    int subspaces,
+    int subDimension,
+    int centroids,
+    float[] codebooks
+  ) {
+    this.subspaces = subspaces;
+    this.subDimension = subDimension;
+    this.centroids = centroids;
+    this.codebooks = codebooks;
+  }
+
+  static ProductQuantizer fit(
+    GioMaths gioMaths,
+    float[][] vectors,
+    int subspaces,
+    SplittableRandom random
+  ) {
+    final int subDimension = vectors[0].length / subspaces;
+    final int centroids = Math.min(CENTROIDS, vectors.length);
+    final float[] codebooks = new float[subspaces * subDimension * CENTROIDS];
+    final float[][] subVectors = new float[vectors.length][];
+    for (int s = 0; s < subspaces; s++) {
+      for (int i = 0; i < vectors.length; i++) {
+        subVectors[i] = slice(vectors[i], s, subDimension);
+      }
+      final HeapFloatMatrix codebook = KMeans.fit(
+        gioMaths,
+        subVectors,
+        centroids,
+        random
+      );
+      for (int j = 0; j < subDimension; j++) {
+        final int column = (s * subDimension + j) * CENTROIDS;
+        for (int c = 0; c < centroids; c++) {
+          codebooks[column + c] = codebook.get(c, j);
+        }
+      }
+    }
+    return new ProductQuantizer(subspaces, subDimension, centroids, codebooks);
+  }
+
+  int subspaces() {
+    return subspaces;
+  }
+
+  /**
+   * @return the code of {@code vector}, one byte per subspace
+   */
+  byte[] encode(float[] vector) {
+    final byte[] code = new byte[subspaces];
+    final float[] table = table(vector);
+    for (int s = 0; s < subspaces; s++) {
+      int nearest = 0;
+      for (int c = 1; c < centroids; c++) {
+        if (table[s * CENTROIDS + c] < table[s * CENTROIDS + nearest]) {
+          nearest = c;
+        }
+      }
+      code[s] = (byte) nearest;
+    }
+    return code;
+  }
+
+  /**
+   * @return the {@code [subspaces, 256]} squared distances between the
+   * sub-vectors of {@code query} and the centroids, flattened; centroids
+   * missing from a codebook trained on fewer than 256 points are at
+   * infinity
+   */
+  float[] table(float[] query) {
+    final float[] table = new float[subspaces * CENTROIDS];
+    for (int s = 0; s < subspaces; s++) {
+      final int row = s * CENTROIDS;
+      for (int j = 0; j < subDimension; j++) {
+        final float coordinate = query[s * subDimension + j];
+        final int column = (s * subDimension + j) * CENTROIDS;
+        for (int c = 0; c < CENTROIDS; c++) {
+          final float diff = coordinate - codebooks[column + c];
+          table[row + c] += diff * diff;
+        }
+      }
+      Arrays.fill(
+        table,
+        row + centroids,
+        row + CENTROIDS,
+        Float.POSITIVE_INFINITY
+      );
+    }
+    return table;
+  }
+
+  private static float[] slice(float[] vector, int subspace, int length) {
+    return Arrays.copyOfRange(
+      vector,
+      subspace * length,
+      (subspace + 1) * length
+    );
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import java.util.Arrays;
+
+/**
+ * Growable binary max-heap of {@code (id, score)} pairs over two primitive
+ * arrays: {@link #pollId()} returns the best score first, the lowest id on
+ * ties. Not thread-safe.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+final class ScoredQueue {
+
+  private int[] ids;
+  private float[] scores;
+  private int size;
+
+  ScoredQueue(int capacity) {
+    this.ids = new int[Math.max(capacity, 1)];
+    this.scores = new float[ids.length];
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  float bestScore() {
+    return scores[0];
+  }
+
+  void add(int id, float score) {
+    if (size == ids.length) {
+      ids = Arrays.copyOf(ids, size * 2);
+      scores = Arrays.copyOf(scores, size * 2);
+    }
+    ids[size] = id;
+    scores[size] = score;
+    int child = size++;
+    while (child > 0) {
+      int parent = (child - 1) >>> 1;
+      if (!isBefore(child, parent)) {
+        return;
+      }
+      swap(parent, child);
+      child = parent;
+    }
+  }
+
+  /**
+   * Removes the best pair, whose score is {@link #bestScore()}.
+   *
+   * @return its id
+   */
+  int pollId() {
+    final int best = ids[0];
+    size--;
+    ids[0] = ids[size];
+    scores[0] = scores[size];
+    int parent = 0;
+    while (true) {
+      int first = parent;
+      int left = 2 * parent + 1;
+      int right = left + 1;
+      if (left < size && isBefore(left, first)) {
+        first = left;
+      }
+      if (right < size && isBefore(right, first)) {
+        first = right;
+      }
+      if (first == parent) {
+        return best;
+      }
+      swap(parent, first);
+      parent = first;
+    }
+  }
+
+  private boolean isBefore(int slot, int otherSlot) {
+    return (
+      scores[slot] > scores[otherSlot] ||
+      (scores[slot] == scores[otherSlot] && ids[slot] < ids[otherSlot])
+    );
+  }
+
+  private void swap(int i, int j) {
+    int id = ids[i];
+    ids[i] = ids[j];
+    ids[j] = id;
+    float score = scores[i];
+    scores[i] = scores[j];
+    scores[j] = score;
+  }
+}
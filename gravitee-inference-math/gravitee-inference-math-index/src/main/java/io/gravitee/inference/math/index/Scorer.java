@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.Distance;
+import io.gravitee.inference.math.api.distance.DistanceFunction;
+import io.gravitee.inference.math.api.matrix.FloatMatrix;
+import io.gravitee.inference.math.api.parallel.ParallelRows;
+import io.gravitee.inference.math.api.selection.BoundedHeap;
+import io.gravitee.inference.math.api.selection.TopK;
+import java.util.function.IntPredicate;
+
+/**
+ * Scores stored vectors against a query with the batched kernels of a
+ * {@link GioMaths}, higher being closer (see
+ * {@link DistanceFunction#score(float)}).
+ * <p>
+ * For {@link Distance#COSINE}, vectors are stored normalized so that the
+ * similarity is a dot product; {@link #prepare} must be applied to both the
+ * stored vectors and the queries.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+final class Scorer {
+
+  static final int BLOCK_ROWS = 64;
+
+  private final GioMaths gioMaths;
+  private final DistanceFunction distance;
+
+  Scorer(GioMaths gioMaths, DistanceFunction distance) {
+    this.gioMaths = gioMaths;
+    this.distance = distance;
+  }
+
+  GioMaths gioMaths() {
+    return gioMaths;
+  }
+
+  DistanceFunction distance() {
+    return distance;
+  }
+
+  /**
+   * @return the values to store, or search, for {@code vector}
+   */
+  float[] prepare(float[] vector) {
+    return distance == Distance.COSINE ? gioMaths.normalize(vector) : vector;
+  }
+
+  float score(float[] query, float[] vector) {
+    if (distance == Distance.COSINE || distance == Distance.DOT_PRODUCT) {
+      return gioMaths.dotProduct(query, vector);
+    }
+    return distance.score(distance.compute(gioMaths, query, vector));
+  }
+
+  /**
+   * @return the score of each row of {@code vectors}
+   */
+  float[] scores(float[] query, FloatMatrix vectors) {
+    if (distance == Distance.COSINE || distance == Distance.DOT_PRODUCT) {
+      return gioMaths.dotProduct(query, vectors);
+    }
+    if (distance == Distance.EUCLIDEAN) {
+      return negate(gioMaths.euclideanDistance(query, vectors));
+    }
+    float[] scores = new float[vectors.rows()];
+    float[] row = new float[vectors.cols()];
+    for (int i = 0; i < scores.length; i++) {
+      scores[i] = score(query, vectors.row(i, row));
+    }
+    return scores;
+  }
+
+  /**
+   * Exact search: scores every row of {@code vectors}, by blocks of
+   * {@value #BLOCK_ROWS}, split across {@link ParallelRows#pool()} when
+   * large enough, each range keeping its own heap.
+   *
+   * @return the {@code k} best rows, ties resolving to the lowest
+   */
+  TopK topK(float[] query, FloatMatrix vectors, int k) {
+    return topK(query, vectors, k, (IntPredicate) null);
+  }
+
+  /**
+   * Exact search over the rows {@code accept} allows, all of them if
+   * {@code null}. Rejected rows are still scored, since blocks are scored
+   * at once, but never compete for the {@code k} places.
+   */
+  TopK topK(float[] query, FloatMatrix vectors, int k, IntPredicate accept) {
+    final BoundedHeap result = BoundedHeap.capped(k, vectors.rows());
+    ParallelRows.forEach(vectors.rows(), vectors.cols(), (from, to) -> {
+      final BoundedHeap heap = BoundedHeap.capped(k, to - from);
+      for (int block = from; block < to; block += BLOCK_ROWS) {
+        final int end = Math.min(block + BLOCK_ROWS, to);
+        final float[] scores = scores(query, vectors.rows(block, end));
+        for (int i = 0; i < scores.length; i++) {
+          if (accept == null || accept.test(block + i)) {
+            heap.offer(block + i, scores[i]);
+          }
+        }
+      }
+      merge(heap.toTopK(), result);
+    });
+    return result.toTopK();
+  }
+
+  /**
+   * Exact search over the rows in {@code filter} only, read one by one:
+   * even with half the rows in the filter, this is faster than scanning the
+   * whole matrix by blocks. Large filters are split across
+   * {@link ParallelRows#pool()} by ranges of rows.
+   */
+  TopK topK(float[] query, FloatMatrix vectors, int k, IdBitmap filter) {
+    final int rows = vectors.rows();
+    final BoundedHeap result = BoundedHeap.capped(k, filter.cardinality());
+    final long work = rows == 0
+      ? 0
+      : (long) vectors.cols() * filter.cardinality() / rows;
+    ParallelRows.forEach(rows, Math.max(work, 1), (from, to) -> {
+      final BoundedHeap heap = BoundedHeap.capped(k, to - from);
+      final float[] vector = new float[vectors.cols()];
+      for (
+        int row = filter.next(from);
+        row >= 0 && row < to;
+        row = filter.next(row + 1)
+      ) {
+        heap.offer(row, score(query, vectors.row(row, vector)));
+      }
+      merge(heap.toTopK(), result);
+    });
+    return result.toTopK();
+  }
+
+  /**
+   * Offers the pairs found by one range of a parallel search to the heap
+   * shared by all of them.
+   */
+  static void merge(TopK partial, BoundedHeap result) {
+    synchronized (result) {
+      for (int rank = 0; rank < partial.size(); rank++) {
+        result.offer(partial.index(rank), partial.value(rank));
+      }
+    }
+  }
+
+  private static float[] negate(float[] distances) {
+    for (int i = 0; i < distances.length; i++) {
+      distances[i] = -distances[i];
+    }
+    return distances;
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import io.gravitee.inference.math.api.distance.DistanceFunction;
+import io.gravitee.inference.math.api.selection.TopK;
+
+/**
+ * An embedded index of fixed-dimension vectors, searched for the nearest
+ * neighbours of a query. Vectors are identified by the id {@link #add}
+ * returns: their insertion rank, starting at {@code 0}.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public interface VectorIndex extends AutoCloseable {
+  int dimension();
+
+  int size();
+
+  DistanceFunction distance();
+
+  /**
+   * @return the id of the added vector
+   */
+  int add(float[] vector);
+
+  /**
+   * @return the ids of the {@code min(k, size())} vectors closest to
+   * {@code query}, closest first, with their
+   * {@linkplain DistanceFunction#score(float) score}: the similarity, or the
+   * opposite of the distance. Ties resolve to the lowest id.
+   */
+  TopK search(float[] query, int k);
+
+  /**
+   * Same as {@link #search(float[], int)}, among the vectors whose id is in
+   * {@code filter} only: the others are skipped while searching, so that
+   * {@code k} matches are returned whenever {@code filter} holds as many.
+   */
+  TopK search(float[] query, int k, IdBitmap filter);
+
+  /**
+   * Releases the memory of the index, which cannot be used afterwards.
+   */
+  @Override
+  void close();
+}
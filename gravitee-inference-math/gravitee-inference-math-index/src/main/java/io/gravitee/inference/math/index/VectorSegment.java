@@ -0,0 +1,296 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT_UNALIGNED;
+import static java.lang.foreign.ValueLayout.JAVA_LONG_UNALIGNED;
+import static java.util.Objects.checkIndex;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.DistanceFunction;
+import io.gravitee.inference.math.api.selection.TopK;
+import io.gravitee.inference.math.segment.SegmentFloatMatrix;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An immutable, memory-mapped file of vectors, written by a
+ * {@link VectorSegmentWriter}. Opening a segment maps the file and reads
+ * its header, nothing else: searches run the batched kernels of the given
+ * {@link GioMaths} directly on the mapped pages, so a collection embedded
+ * once is reloaded on restart without deserializing it or calling the model
+ * again.
+ * <p>
+ * The file is laid out in native byte order:
+ * <ul>
+ *   <li>a {@value #HEADER_BYTES}-byte header: magic, format version,
+ *   dimension, distance name length, vector count and distance name,</li>
+ *   <li>the vectors, row after row, as stored by the index (normalized for
+ *   cosine similarity),</li>
+ *   <li>at the next multiple of 8, the {@code long} id of each vector, then
+ *   {@code count + 1} {@code long} offsets delimiting the metadata of each
+ *   vector,</li>
+ *   <li>the metadata bytes.</li>
+ * </ul>
+ * Searches return rows, mapped back to ids with {@link #id(int)}. They may
+ * run concurrently, but not once the segment is closed.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class VectorSegment implements AutoCloseable {
+
+  static final int MAGIC = 0x47495653;
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 64;
+  static final int MAX_NAME_BYTES = HEADER_BYTES - 24;
+
+  private final Arena arena;
+  private final boolean closeable;
+  private final MemorySegment segment;
+  private final Scorer scorer;
+  private final SegmentFloatMatrix vectors;
+  private final long idsOffset;
+  private final long metadataOffset;
+
+  private VectorSegment(
+    Arena arena,
+    boolean closeable,
+    MemorySegment segment,
+    Scorer scorer,
+    int dimension,
+    int size
+  ) {
+    this.arena = arena;
+    this.closeable = closeable;
+    this.segment = segment;
+    this.scorer = scorer;
+    this.vectors = SegmentFloatMatrix.of(
+      segment.asSlice(HEADER_BYTES, (long) size * dimension * Float.BYTES),
+      size,
+      dimension
+    );
+    this.idsOffset = idsOffset(dimension, size);
+    this.metadataOffset = idsOffset + (2L * size + 1) * Long.BYTES;
+  }
+
+  /**
+   * Maps the segment stored at {@code path}, until {@link #close()}.
+   *
+   * @throws IllegalArgumentException if the file is not a complete segment
+   * written with the native byte order
+   */
+  public static VectorSegment open(Path path, GioMaths gioMaths)
+    throws IOException {
+    return open(path, gioMaths, Arena.ofShared(), true);
+  }
+
+  /**
+   * Maps the segment stored at {@code path} until it is no longer
+   * reachable, for readers that cannot tell when the last of them is done
+   * with it. {@link #close()} does nothing on such a segment.
+   */
+  static VectorSegment openUntilUnreachable(Path path, GioMaths gioMaths)
+    throws IOException {
+    return open(path, gioMaths, Arena.ofAuto(), false);
+  }
+
+  private static VectorSegment open(
+    Path path,
+    GioMaths gioMaths,
+    Arena arena,
+    boolean closeable
+  ) throws IOException {
+    try {
+      final MemorySegment segment;
+      try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        segment = channel.map(
+          FileChannel.MapMode.READ_ONLY,
+          0,
+          channel.size(),
+          arena
+        );
+      }
+      return read(path, segment, arena, closeable, gioMaths);
+    } catch (IOException | RuntimeException e) {
+      if (closeable) {
+        arena.close();
+      }
+      throw e;
+    }
+  }
+
+  private static VectorSegment read(
+    Path path,
+    MemorySegment segment,
+    Arena arena,
+    boolean closeable,
+    GioMaths gioMaths
+  ) {
+    if (segment.byteSize() < HEADER_BYTES) {
+      throw notASegment(path);
+    }
+    final int magic = segment.get(JAVA_INT_UNALIGNED, 0);
+    if (magic == Integer.reverseBytes(MAGIC)) {
+      throw new IllegalArgumentException(
+        path + " was written with a different byte order"
+      );
+    }
+    final int version = segment.get(JAVA_INT_UNALIGNED, 4);
+    final int dimension = segment.get(JAVA_INT_UNALIGNED, 8);
+    final int nameLength = segment.get(JAVA_INT_UNALIGNED, 12);
+    final long size = segment.get(JAVA_LONG_UNALIGNED, 16);
+    if (
+      magic != MAGIC ||
+      dimension < 1 ||
+      nameLength < 0 ||
+      nameLength > MAX_NAME_BYTES ||
+      size < 0 ||
+      size > Integer.MAX_VALUE
+    ) {
+      throw notASegment(path);
+    }
+    if (version != VERSION) {
+      throw new IllegalArgumentException(
+        "Unsupported version " + version + " of vector segment " + path
+      );
+    }
+    final long tables =
+      idsOffset(dimension, (int) size) + (2 * size + 1) * Long.BYTES;
+    if (segment.byteSize() < tables) {
+      throw notASegment(path);
+    }
+    final long metadataBytes = segment.get(
+      JAVA_LONG_UNALIGNED,
+      tables - Long.BYTES
+    );
+    if (segment.byteSize() != tables + metadataBytes) {
+      throw notASegment(path);
+    }
+    final String name = new String(
+      segment.asSlice(24, nameLength).toArray(JAVA_BYTE),
+      StandardCharsets.UTF_8
+    );
+    return new VectorSegment(
+      arena,
+      closeable,
+      segment,
+      new Scorer(gioMaths, DistanceFunction.of(name)),
+      dimension,
+      (int) size
+    );
+  }
+
+  public int dimension() {
+    return vectors.cols();
+  }
+
+  public int size() {
+    return vectors.rows();
+  }
+
+  public DistanceFunction distance() {
+    return scorer.distance();
+  }
+
+  /**
+   * @return the vectors, read in place from the mapped file
+   */
+  public SegmentFloatMatrix vectors() {
+    return vectors;
+  }
+
+  /**
+   * @return the id the vector stored at {@code row} was written with
+   */
+  public long id(int row) {
+    return segment.get(
+      JAVA_LONG_UNALIGNED,
+      idsOffset + (long) checkIndex(row, size()) * Long.BYTES
+    );
+  }
+
+  /**
+   * @return a copy of the metadata of the vector stored at {@code row},
+   * empty if it was written without
+   */
+  public byte[] metadata(int row) {
+    final long from = metadataOffset(checkIndex(row, size()));
+    return segment
+      .asSlice(metadataOffset + from, metadataOffset(row + 1) - from)
+      .toArray(JAVA_BYTE);
+  }
+
+  /**
+   * @return a copy of the vector stored at {@code row}, normalized if the
+   * segment ranks by cosine similarity
+   */
+  public float[] vector(int row) {
+    return vectors.row(row, new float[dimension()]);
+  }
+
+  /**
+   * Exact search over every vector of the segment, as done by
+   * {@link FlatIndex#search}.
+   *
+   * @return the rows of the {@code min(k, size())} closest vectors, closest
+   * first, with their score
+   */
+  public TopK search(float[] query, int k) {
+    if (query.length != dimension()) {
+      throw new IllegalArgumentException(
+        "Expected a vector of dimension " +
+        dimension() +
+        " but got " +
+        query.length
+      );
+    }
+    return scorer.topK(scorer.prepare(query), vectors, k);
+  }
+
+  /**
+   * Unmaps the file. The segment, and the matrix returned by
+   * {@link #vectors()}, cannot be used afterwards.
+   */
+  @Override
+  public void close() {
+    if (closeable) {
+      arena.close();
+    }
+  }
+
+  private long metadataOffset(int row) {
+    return segment.get(
+      JAVA_LONG_UNALIGNED,
+      idsOffset + ((long) size() + row) * Long.BYTES
+    );
+  }
+
+  static long idsOffset(int dimension, int size) {
+    final long end = HEADER_BYTES + (long) size * dimension * Float.BYTES;
+    return (end + Long.BYTES - 1) & -Long.BYTES;
+  }
+
+  private static IllegalArgumentException notASegment(Path path) {
+    return new IllegalArgumentException(path + " is not a vector segment");
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import static io.gravitee.inference.math.index.VectorSegment.HEADER_BYTES;
+import static io.gravitee.inference.math.index.VectorSegment.MAGIC;
+import static io.gravitee.inference.math.index.VectorSegment.VERSION;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.DistanceFunction;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a {@link VectorSegment} file. Vectors are streamed to a temporary
+ * file next to the target while ids and metadata are kept in memory;
+ * {@link #commit()} appends them, writes the header and atomically moves the
+ * file into place, so a segment is either complete or absent. Closing a
+ * writer that was not committed deletes the temporary file.
+ * <p>
+ * A writer is meant to be used by a single thread.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class VectorSegmentWriter implements AutoCloseable {
+
+  private final Scorer scorer;
+  private final int dimension;
+  private final Path path;
+  private final Path temporary;
+  private final FileChannel channel;
+  private final ByteBuffer vectorBuffer;
+  private final ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+
+  private long[] ids = new long[1024];
+  private long[] metadataOffsets = new long[1025];
+  private int size;
+  private boolean closed;
+
+  private VectorSegmentWriter(
+    Scorer scorer,
+    int dimension,
+    Path path,
+    Path temporary,
+    FileChannel channel
+  ) {
+    this.scorer = scorer;
+    this.dimension = dimension;
+    this.path = path;
+    this.temporary = temporary;
+    this.channel = channel;
+    this.vectorBuffer = ByteBuffer.allocate(dimension * Float.BYTES).order(
+      ByteOrder.nativeOrder()
+    );
+  }
+
+  /**
+   * Starts writing the segment stored at {@code path}, which is only
+   * replaced on {@link #commit()}.
+   */
+  public static VectorSegmentWriter create(
+    Path path,
+    GioMaths gioMaths,
+    DistanceFunction distance,
+    int dimension
+  ) throws IOException {
+    if (dimension < 1) {
+      throw new IllegalArgumentException("Dimension must be strictly positive");
+    }
+    if (distanceName(distance).length > VectorSegment.MAX_NAME_BYTES) {
+      throw new IllegalArgumentException(
+        "Distance name is too long: " + distance.name()
+      );
+    }
+    final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    final FileChannel channel = FileChannel.open(
+      temporary,
+      StandardOpenOption.CREATE,
+      StandardOpenOption.TRUNCATE_EXISTING,
+      StandardOpenOption.WRITE
+    );
+    channel.position(HEADER_BYTES);
+    return new VectorSegmentWriter(
+      new Scorer(gioMaths, distance),
+      dimension,
+      path,
+      temporary,
+      channel
+    );
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Appends {@code vector}, normalized if the segment ranks by cosine
+   * similarity, under the caller's {@code id}, with opaque
+   * {@code metadata} (may be {@code null}).
+   *
+   * @return the row of the vector in the segment
+   */
+  public int add(long id, float[] vector, byte[] metadata) throws IOException {
+    if (vector.length != dimension) {
+      throw new IllegalArgumentException(
+        "Expected a vector of dimension " +
+        dimension +
+        " but got " +
+        vector.length
+      );
+    }
+    return append(id, scorer.prepare(vector), metadata);
+  }
+
+  /**
+   * Appends values already {@linkplain Scorer#prepare prepared}, such as
+   * the rows of another segment.
+   */
+  int append(long id, float[] values, byte[] metadata) throws IOException {
+    ensureOpen();
+    if (size == Integer.MAX_VALUE) {
+      throw new IllegalStateException("Segment is full");
+    }
+    vectorBuffer.clear();
+    vectorBuffer.asFloatBuffer().put(values);
+    while (vectorBuffer.hasRemaining()) {
+      channel.write(vectorBuffer);
+    }
+    if (size == ids.length) {
+      ids = Arrays.copyOf(ids, ids.length * 2);
+      metadataOffsets = Arrays.copyOf(metadataOffsets, ids.length + 1);
+    }
+    if (metadata != null) {
+      this.metadata.write(metadata);
+    }
+    ids[size] = id;
+    metadataOffsets[size + 1] = this.metadata.size();
+    return size++;
+  }
+
+  /**
+   * Completes the segment and moves it to its path, replacing any previous
+   * file.
+   */
+  public void commit() throws IOException {
+    ensureOpen();
+    final long idsOffset = VectorSegment.idsOffset(dimension, size);
+    final ByteBuffer tables = ByteBuffer.allocate(
+      Math.toIntExact((2L * size + 1) * Long.BYTES)
+    ).order(ByteOrder.nativeOrder());
+    tables.asLongBuffer().put(ids, 0, size).put(metadataOffsets, 0, size + 1);
+    write(tables, idsOffset);
+    write(ByteBuffer.wrap(metadata.toByteArray()), idsOffset + tables.limit());
+    write(header(), 0);
+    channel.force(true);
+    channel.close();
+    closed = true;
+    Files.move(
+      temporary,
+      path,
+      StandardCopyOption.ATOMIC_MOVE,
+      StandardCopyOption.REPLACE_EXISTING
+    );
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      channel.close();
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private ByteBuffer header() {
+    final byte[] name = distanceName(scorer.distance());
+    return ByteBuffer.allocate(HEADER_BYTES)
+      .order(ByteOrder.nativeOrder())
+      .putInt(MAGIC)
+      .putInt(VERSION)
+      .putInt(dimension)
+      .putInt(name.length)
+      .putLong(size)
+      .put(name)
+      .clear();
+  }
+
+  private void write(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("Writer is closed");
+    }
+  }
+
+  static byte[] distanceName(DistanceFunction distance) {
+    return distance.name().getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,921 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.DistanceFunction;
+import io.gravitee.inference.math.api.matrix.FloatMatrix;
+import io.gravitee.inference.math.api.matrix.HeapFloatMatrix;
+import io.gravitee.inference.math.api.selection.BoundedHeap;
+import io.gravitee.inference.math.api.selection.TopK;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A mutable, persistent store of vectors identified by caller-given ids,
+ * organized as a log-structured merge tree:
+ * <ul>
+ *   <li>puts append to an in-memory table of
+ *   {@link VectorStoreParameters#memtableSize()} vectors; once full, it is
+ *   frozen and flushed by a background thread to an immutable
+ *   {@link VectorSegment} file, mapped in memory,</li>
+ *   <li>a put of an existing id, or a delete, marks the older vector dead
+ *   and is persisted with the table as an override or a tombstone,</li>
+ *   <li>above {@link VectorStoreParameters#maxSegments()} files, the
+ *   background thread merges the newest ones, size-tiered, dropping dead
+ *   vectors.</li>
+ * </ul>
+ * Searches take no lock: each write publishes an immutable snapshot of the
+ * layers and of the number of rows visible in the in-memory table, and
+ * every vector records the sequence number of the write that killed it, so
+ * a search scans exactly the vectors alive in the snapshot it started from
+ * while writes, flushes and merges go on. Segment files that a merge
+ * replaced stay mapped until no snapshot references them.
+ * <p>
+ * Writes are serialized. The in-memory table is not logged: vectors put
+ * since the last flush are lost if the process stops without
+ * {@link #flush()} or {@link #close()}. A {@code MANIFEST} file lists the
+ * segments of the store and is replaced atomically, so a crash never
+ * exposes a partially written segment.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class VectorStore implements AutoCloseable {
+
+  private static final String MANIFEST = "MANIFEST";
+  private static final String PREFIX = "segment-";
+  private static final long ALIVE = Long.MAX_VALUE;
+  private static final byte[] NO_METADATA = new byte[0];
+
+  private final Path directory;
+  private final Scorer scorer;
+  private final int dimension;
+  private final VectorStoreParameters parameters;
+  private final ExecutorService background;
+
+  // Guarded by writes
+  private final ReentrantLock writes = new ReentrantLock();
+  private final Map<Long, Location> locations = new HashMap<>();
+  private Memtable active;
+  private List<View> older = List.of();
+  private long sequence;
+  private int nextGeneration;
+
+  // Confined to the background thread, once opened
+  private List<Flushed> flushed = List.of();
+
+  private volatile Snapshot snapshot;
+  private volatile boolean closed;
+  private volatile Exception failure;
+
+  private VectorStore(
+    Path directory,
+    Scorer scorer,
+    int dimension,
+    VectorStoreParameters parameters
+  ) {
+    this.directory = directory;
+    this.scorer = scorer;
+    this.dimension = dimension;
+    this.parameters = parameters;
+    this.background = Executors.newSingleThreadExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "gio-vector-store");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Opens the store kept in {@code directory}, creating it if needed.
+   *
+   * @throws IllegalArgumentException if the store holds vectors of another
+   * dimension or distance
+   */
+  public static VectorStore open(
+    Path directory,
+    GioMaths gioMaths,
+    DistanceFunction distance,
+    int dimension,
+    VectorStoreParameters parameters
+  ) throws IOException {
+    if (dimension < 1) {
+      throw new IllegalArgumentException("Dimension must be strictly positive");
+    }
+    Files.createDirectories(directory);
+    final VectorStore store = new VectorStore(
+      directory,
+      new Scorer(gioMaths, distance),
+      dimension,
+      parameters
+    );
+    try {
+      store.load();
+    } catch (IOException | RuntimeException e) {
+      store.background.shutdownNow();
+      throw e;
+    }
+    return store;
+  }
+
+  public int dimension() {
+    return dimension;
+  }
+
+  public DistanceFunction distance() {
+    return scorer.distance();
+  }
+
+  /**
+   * @return the number of live vectors
+   */
+  public int size() {
+    return snapshot.size();
+  }
+
+  /**
+   * Stores {@code vector} under {@code id}, replacing the vector previously
+   * stored under it, if any, with opaque {@code metadata} (may be
+   * {@code null}).
+   */
+  public void put(long id, float[] vector, byte[] metadata) {
+    checkDimension(vector);
+    final float[] values = scorer.prepare(vector);
+    final byte[] copy = metadata == null ? NO_METADATA : metadata.clone();
+    writes.lock();
+    try {
+      ensureWritable();
+      final long next = sequence + 1;
+      final int row = active.append(id, values, copy);
+      final Location previous = locations.put(
+        id,
+        new Location(active.deaths, row)
+      );
+      if (previous != null) {
+        previous.kill(next);
+      }
+      sequence = next;
+      if (active.isFull()) {
+        freeze();
+      }
+      publish();
+    } finally {
+      writes.unlock();
+    }
+  }
+
+  /**
+   * @return whether a vector was stored under {@code id}
+   */
+  public boolean delete(long id) {
+    writes.lock();
+    try {
+      ensureWritable();
+      final Location previous = locations.remove(id);
+      if (previous == null) {
+        return false;
+      }
+      previous.kill(++sequence);
+      active.tombstone(id);
+      publish();
+      return true;
+    } finally {
+      writes.unlock();
+    }
+  }
+
+  /**
+   * Exact search over the vectors alive when the search starts, never
+   * waiting for writes.
+   *
+   * @return the {@code min(k, size())} vectors closest to {@code query},
+   * closest first
+   */
+  public List<Neighbour> search(float[] query, int k) {
+    checkDimension(query);
+    if (k < 1) {
+      throw new IllegalArgumentException("k must be strictly positive");
+    }
+    if (closed) {
+      throw new IllegalStateException("Store is closed");
+    }
+    final float[] prepared = scorer.prepare(query);
+    final Snapshot current = snapshot;
+    final List<View> views = current.views();
+    final TopK[] partials = new TopK[views.size()];
+    final BoundedHeap best = BoundedHeap.capped(
+      k,
+      (int) Math.min((long) k * views.size(), Integer.MAX_VALUE)
+    );
+    int base = 0;
+    for (int v = 0; v < partials.length; v++) {
+      final View view = views.get(v);
+      final AtomicLongArray deaths = view.layer().deaths();
+      partials[v] = scorer.topK(
+        prepared,
+        view.layer().vectors().rows(0, view.size()),
+        k,
+        row -> deaths.get(row) > current.sequence()
+      );
+      for (int rank = 0; rank < partials[v].size(); rank++) {
+        best.offer(base + rank, partials[v].value(rank));
+      }
+      base += partials[v].size();
+    }
+
+    final TopK top = best.toTopK();
+    final List<Neighbour> neighbours = new ArrayList<>(top.size());
+    for (int rank = 0; rank < top.size(); rank++) {
+      int index = top.index(rank);
+      int v = 0;
+      while (index >= partials[v].size()) {
+        index -= partials[v++].size();
+      }
+      final Layer layer = views.get(v).layer();
+      final int row = partials[v].index(index);
+      neighbours.add(
+        new Neighbour(layer.id(row), top.value(rank), layer.metadata(row))
+      );
+    }
+    return neighbours;
+  }
+
+  /**
+   * Writes the vectors and deletes held in memory to a segment file, and
+   * waits for it, and for any pending flush or merge, to complete.
+   */
+  public void flush() throws IOException {
+    final Future<?> done;
+    writes.lock();
+    try {
+      ensureWritable();
+      if (!active.isEmpty()) {
+        freeze();
+        publish();
+      }
+      done = background.submit(() -> {});
+    } finally {
+      writes.unlock();
+    }
+    try {
+      done.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while flushing");
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+    checkFailure();
+  }
+
+  /**
+   * Flushes the vectors held in memory and stops the background thread.
+   * The store cannot be used afterwards.
+   */
+  @Override
+  public void close() throws IOException {
+    writes.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      if (!active.isEmpty() && failure == null) {
+        freeze();
+        publish();
+      }
+      closed = true;
+    } finally {
+      writes.unlock();
+    }
+    background.shutdown();
+    try {
+      while (!background.awaitTermination(1, TimeUnit.MINUTES)) {
+        // a large flush or merge is still running
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while closing");
+    }
+    checkFailure();
+  }
+
+  private void load() throws IOException {
+    final Path manifest = directory.resolve(MANIFEST);
+    final List<Flushed> layers = new ArrayList<>();
+    if (Files.exists(manifest)) {
+      for (String line : Files.readAllLines(manifest)) {
+        final Flushed layer = loadSegment(Integer.parseInt(line.trim()));
+        layers.add(layer);
+        // A compaction gives the merged segment a generation above the
+        // memtable being filled, so the last one listed is not the highest
+        nextGeneration = Math.max(nextGeneration, layer.generation() + 1);
+      }
+    }
+    deleteUnlisted(layers);
+    flushed = List.copyOf(layers);
+    final List<View> views = new ArrayList<>();
+    for (Flushed layer : layers.reversed()) {
+      views.add(new View(layer, layer.segment().size()));
+    }
+    older = List.copyOf(views);
+    active = new Memtable(nextGeneration++);
+    publish();
+  }
+
+  /**
+   * Replays the puts and deletes of a segment over the ones before it.
+   */
+  private Flushed loadSegment(int generation) throws IOException {
+    final Path path = segmentPath(generation);
+    final VectorSegment segment = VectorSegment.openUntilUnreachable(
+      path,
+      scorer.gioMaths()
+    );
+    if (
+      segment.dimension() != dimension ||
+      !segment.distance().name().equals(distance().name())
+    ) {
+      throw new IllegalArgumentException(
+        path +
+        " holds " +
+        segment.distance().name() +
+        " vectors of dimension " +
+        segment.dimension()
+      );
+    }
+    final Flushed layer = new Flushed(
+      generation,
+      segment,
+      alive(segment.size())
+    );
+    final long[] tombstones = readTombstones(generation);
+    int tombstone = 0;
+    for (int row = 0; row <= segment.size(); row++) {
+      for (
+        ;
+        tombstone < tombstones.length && tombstones[tombstone + 1] == row;
+        tombstone += 2
+      ) {
+        final Location previous = locations.remove(tombstones[tombstone]);
+        if (previous != null) {
+          previous.kill(sequence);
+        }
+      }
+      if (row < segment.size()) {
+        final Location previous = locations.put(
+          segment.id(row),
+          new Location(layer.deaths(), row)
+        );
+        if (previous != null) {
+          previous.kill(sequence);
+        }
+      }
+    }
+    return layer;
+  }
+
+  /**
+   * Moves the in-memory table to the layers being flushed and starts a new
+   * one. Must hold {@link #writes}.
+   */
+  private void freeze() {
+    final Memtable frozen = active;
+    active = new Memtable(nextGeneration++);
+    older = prepend(new View(frozen, frozen.size), older);
+    background.execute(() -> flush(frozen));
+  }
+
+  private void flush(Memtable frozen) {
+    if (failure != null) {
+      return;
+    }
+    try {
+      final Path path = segmentPath(frozen.generation);
+      try (
+        var writer = VectorSegmentWriter.create(
+          path,
+          scorer.gioMaths(),
+          scorer.distance(),
+          dimension
+        )
+      ) {
+        final float[] values = new float[dimension];
+        for (int row = 0; row < frozen.size; row++) {
+          writer.append(
+            frozen.ids[row],
+            frozen.vectors.row(row, values),
+            frozen.metadata[row]
+          );
+        }
+        writer.commit();
+      }
+      writeTombstones(
+        frozen.generation,
+        frozen.tombstones,
+        frozen.tombstoneCount
+      );
+      final Flushed layer = new Flushed(
+        frozen.generation,
+        VectorSegment.openUntilUnreachable(path, scorer.gioMaths()),
+        frozen.deaths
+      );
+      final List<Flushed> next = new ArrayList<>(flushed);
+      next.add(layer);
+      writeManifest(next);
+      flushed = List.copyOf(next);
+
+      writes.lock();
+      try {
+        older = replace(older, List.of(frozen), new View(layer, frozen.size));
+        publish();
+      } finally {
+        writes.unlock();
+      }
+
+      if (flushed.size() > parameters.maxSegments()) {
+        compact();
+      }
+    } catch (IOException | RuntimeException e) {
+      failure = e;
+    }
+  }
+
+  /**
+   * Merges the newest segment files into one holding their vectors alive in
+   * the current snapshot, see {@link #mergeFrom(List)}. Vectors that die
+   * while merging are killed again in the merged segment once it replaces
+   * the others.
+   * <p>
+   * The merged segment keeps the deletes of its sources as tombstones
+   * replayed before its rows, unless it replaces every segment: they may
+   * target vectors of the older segments, which stay in place.
+   */
+  private void compact() throws IOException {
+    final int from = mergeFrom(flushed);
+    final List<Flushed> kept = flushed.subList(0, from);
+    final List<Flushed> sources = flushed.subList(from, flushed.size());
+    final Snapshot start = snapshot;
+    int rows = 0;
+    for (Flushed source : sources) {
+      rows += source.segment().size();
+    }
+    final int generation;
+    writes.lock();
+    try {
+      generation = nextGeneration++;
+    } finally {
+      writes.unlock();
+    }
+
+    final Path path = segmentPath(generation);
+    final int[] sourceLayers = new int[rows];
+    final int[] sourceRows = new int[rows];
+    int size = 0;
+    try (
+      var writer = VectorSegmentWriter.create(
+        path,
+        scorer.gioMaths(),
+        scorer.distance(),
+        dimension
+      )
+    ) {
+      final float[] values = new float[dimension];
+      for (int s = 0; s < sources.size(); s++) {
+        final Flushed source = sources.get(s);
+        for (int row = 0; row < source.segment().size(); row++) {
+          if (source.deaths().get(row) > start.sequence()) {
+            writer.append(
+              source.id(row),
+              source.segment().vectors().row(row, values),
+              source.metadata(row)
+            );
+            sourceLayers[size] = s;
+            sourceRows[size++] = row;
+          }
+        }
+      }
+      writer.commit();
+    }
+    if (!kept.isEmpty()) {
+      final long[] tombstones = deletes(sources);
+      writeTombstones(generation, tombstones, tombstones.length);
+    }
+    final Flushed merged = new Flushed(
+      generation,
+      VectorSegment.openUntilUnreachable(path, scorer.gioMaths()),
+      alive(size)
+    );
+    final List<Flushed> next = new ArrayList<>(kept);
+    next.add(merged);
+    writeManifest(next);
+    flushed = List.copyOf(next);
+
+    writes.lock();
+    try {
+      for (int row = 0; row < size; row++) {
+        final Flushed source = sources.get(sourceLayers[row]);
+        final long death = source.deaths().get(sourceRows[row]);
+        if (death != ALIVE) {
+          merged.deaths().set(row, death);
+        }
+        final long id = merged.id(row);
+        final Location location = locations.get(id);
+        if (
+          location != null &&
+          location.deaths() == source.deaths() &&
+          location.row() == sourceRows[row]
+        ) {
+          locations.put(id, new Location(merged.deaths(), row));
+        }
+      }
+      older = replace(older, sources, new View(merged, size));
+      publish();
+    } finally {
+      writes.unlock();
+    }
+
+    for (Flushed source : sources) {
+      Files.deleteIfExists(segmentPath(source.generation()));
+      Files.deleteIfExists(tombstonesPath(source.generation()));
+    }
+  }
+
+  /**
+   * Returns the index of the oldest segment to merge, size-tiered: the two
+   * newest segments, then each older one no larger than the segments
+   * already picked together. Merged segments thus grow geometrically, and a
+   * vector is rewritten a logarithmic number of times instead of on every
+   * merge.
+   */
+  private static int mergeFrom(List<Flushed> layers) {
+    int from = layers.size() - 2;
+    long rows =
+      layers.get(from).segment().size() + layers.getLast().segment().size();
+    while (from > 0 && layers.get(from - 1).segment().size() <= rows) {
+      from--;
+      rows += layers.get(from).segment().size();
+    }
+    return from;
+  }
+
+  /**
+   * @return the ids deleted in {@code sources}, each followed by 0 rows so
+   * that they are replayed before the rows of the segment merging them
+   */
+  private long[] deletes(List<Flushed> sources) throws IOException {
+    final Set<Long> ids = new HashSet<>();
+    for (Flushed source : sources) {
+      final long[] tombstones = readTombstones(source.generation());
+      for (int i = 0; i < tombstones.length; i += 2) {
+        ids.add(tombstones[i]);
+      }
+    }
+    final long[] tombstones = new long[ids.size() * 2];
+    int i = 0;
+    for (long id : ids) {
+      tombstones[i] = id;
+      i += 2;
+    }
+    return tombstones;
+  }
+
+  /**
+   * Publishes the current state to searches. Must hold {@link #writes}.
+   */
+  private void publish() {
+    snapshot = new Snapshot(
+      sequence,
+      prepend(new View(active, active.size), older),
+      locations.size()
+    );
+  }
+
+  private void writeTombstones(
+    int generation,
+    long[] tombstones,
+    int length
+  ) throws IOException {
+    if (length == 0) {
+      return;
+    }
+    final ByteBuffer buffer = ByteBuffer.allocate(length * Long.BYTES).order(
+      ByteOrder.nativeOrder()
+    );
+    buffer.asLongBuffer().put(tombstones, 0, length);
+    write(tombstonesPath(generation), buffer);
+  }
+
+  /**
+   * @return the deleted ids of a segment, each followed by the number of
+   * rows the segment had when it was deleted
+   */
+  private long[] readTombstones(int generation) throws IOException {
+    final Path path = tombstonesPath(generation);
+    if (!Files.exists(path)) {
+      return new long[0];
+    }
+    final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(
+      ByteOrder.nativeOrder()
+    );
+    final long[] tombstones = new long[buffer.remaining() / Long.BYTES];
+    buffer.asLongBuffer().get(tombstones);
+    return tombstones;
+  }
+
+  private void writeManifest(List<Flushed> layers) throws IOException {
+    final StringBuilder manifest = new StringBuilder();
+    for (Flushed layer : layers) {
+      manifest.append(layer.generation()).append('\n');
+    }
+    final Path temporary = directory.resolve(MANIFEST + ".tmp");
+    write(
+      temporary,
+      ByteBuffer.wrap(manifest.toString().getBytes(StandardCharsets.UTF_8))
+    );
+    Files.move(
+      temporary,
+      directory.resolve(MANIFEST),
+      StandardCopyOption.ATOMIC_MOVE,
+      StandardCopyOption.REPLACE_EXISTING
+    );
+  }
+
+  /**
+   * Deletes the files left by flushes and merges that did not complete.
+   */
+  private void deleteUnlisted(List<Flushed> layers) throws IOException {
+    final Set<Path> listed = new HashSet<>();
+    for (Flushed layer : layers) {
+      listed.add(segmentPath(layer.generation()));
+      listed.add(tombstonesPath(layer.generation()));
+    }
+    try (
+      DirectoryStream<Path> files = Files.newDirectoryStream(
+        directory,
+        PREFIX + "*"
+      )
+    ) {
+      for (Path file : files) {
+        if (!listed.contains(file)) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  private Path segmentPath(int generation) {
+    return directory.resolve(PREFIX + "%08d.seg".formatted(generation));
+  }
+
+  private Path tombstonesPath(int generation) {
+    return directory.resolve(PREFIX + "%08d.tomb".formatted(generation));
+  }
+
+  private static void write(Path path, ByteBuffer buffer) throws IOException {
+    try (
+      var channel = FileChannel.open(
+        path,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE
+      )
+    ) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+  }
+
+  private void checkDimension(float[] vector) {
+    if (vector.length != dimension) {
+      throw new IllegalArgumentException(
+        "Expected a vector of dimension " +
+        dimension +
+        " but got " +
+        vector.length
+      );
+    }
+  }
+
+  private void ensureWritable() {
+    if (closed) {
+      throw new IllegalStateException("Store is closed");
+    }
+    checkFailure();
+  }
+
+  private void checkFailure() {
+    final Exception cause = failure;
+    if (cause != null) {
+      throw new IllegalStateException("Could not persist the store", cause);
+    }
+  }
+
+  private static AtomicLongArray alive(int rows) {
+    final AtomicLongArray deaths = new AtomicLongArray(rows);
+    for (int row = 0; row < rows; row++) {
+      deaths.set(row, ALIVE);
+    }
+    return deaths;
+  }
+
+  private static List<View> prepend(View view, List<View> views) {
+    final List<View> prepended = new ArrayList<>(views.size() + 1);
+    prepended.add(view);
+    prepended.addAll(views);
+    return List.copyOf(prepended);
+  }
+
+  /**
+   * @return {@code views} without the ones of {@code layers}, the first of
+   * them replaced by {@code replacement} unless {@code null}
+   */
+  private static List<View> replace(
+    List<View> views,
+    List<? extends Layer> layers,
+    View replacement
+  ) {
+    final List<View> replaced = new ArrayList<>(views.size());
+    for (View view : views) {
+      if (!layers.contains(view.layer())) {
+        replaced.add(view);
+      } else if (replacement != null && !replaced.contains(replacement)) {
+        replaced.add(replacement);
+      }
+    }
+    return List.copyOf(replaced);
+  }
+
+  /**
+   * Rows of a layer: a table in memory or a segment file. Each row records
+   * the sequence number of the write that killed it, {@link #ALIVE} until
+   * then.
+   */
+  private sealed interface Layer permits Memtable, Flushed {
+    FloatMatrix vectors();
+
+    long id(int row);
+
+    byte[] metadata(int row);
+
+    AtomicLongArray deaths();
+  }
+
+  /**
+   * A layer as seen by a snapshot: only its first {@code size} rows.
+   */
+  private record View(Layer layer, int size) {}
+
+  /**
+   * @param size the number of live vectors
+   */
+  private record Snapshot(long sequence, List<View> views, int size) {}
+
+  /**
+   * Where the live vector of an id is stored.
+   */
+  private record Location(AtomicLongArray deaths, int row) {
+    void kill(long sequence) {
+      deaths.set(row, sequence);
+    }
+  }
+
+  private record Flushed(
+    int generation,
+    VectorSegment segment,
+    AtomicLongArray deaths
+  )
+    implements Layer {
+    @Override
+    public FloatMatrix vectors() {
+      return segment.vectors();
+    }
+
+    @Override
+    public long id(int row) {
+      return segment.id(row);
+    }
+
+    @Override
+    public byte[] metadata(int row) {
+      return segment.metadata(row);
+    }
+  }
+
+  /**
+   * The in-memory table. Rows are written once, before the snapshot making
+   * them visible is published, and never modified afterwards.
+   */
+  private final class Memtable implements Layer {
+
+    private final int generation;
+    private final HeapFloatMatrix vectors;
+    private final long[] ids;
+    private final byte[][] metadata;
+    private final AtomicLongArray deaths;
+    private int size;
+    private long[] tombstones = new long[16];
+    private int tombstoneCount;
+
+    Memtable(int generation) {
+      this.generation = generation;
+      this.vectors = FloatMatrix.allocate(
+        parameters.memtableSize(),
+        dimension
+      );
+      this.ids = new long[parameters.memtableSize()];
+      this.metadata = new byte[parameters.memtableSize()][];
+      this.deaths = alive(parameters.memtableSize());
+    }
+
+    int append(long id, float[] values, byte[] metadata) {
+      System.arraycopy(
+        values,
+        0,
+        vectors.data(),
+        vectors.index(size, 0),
+        dimension
+      );
+      ids[size] = id;
+      this.metadata[size] = metadata;
+      return size++;
+    }
+
+    /**
+     * Records the deletion of {@code id} from the rows before the next one
+     * and the layers before this one.
+     */
+    void tombstone(long id) {
+      if (tombstoneCount == tombstones.length) {
+        tombstones = Arrays.copyOf(tombstones, tombstones.length * 2);
+      }
+      tombstones[tombstoneCount++] = id;
+      tombstones[tombstoneCount++] = size;
+    }
+
+    boolean isFull() {
+      return size == ids.length;
+    }
+
+    boolean isEmpty() {
+      return size == 0 && tombstoneCount == 0;
+    }
+
+    @Override
+    public FloatMatrix vectors() {
+      return vectors;
+    }
+
+    @Override
+    public long id(int row) {
+      return ids[row];
+    }
+
+    @Override
+    public byte[] metadata(int row) {
+      return metadata[row].clone();
+    }
+
+    @Override
+    public AtomicLongArray deaths() {
+      return deaths;
+    }
+  }
+}
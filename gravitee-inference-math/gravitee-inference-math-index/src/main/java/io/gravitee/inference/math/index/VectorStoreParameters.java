@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+/**
+ * Tuning of a {@link VectorStore}.
+ *
+ * @param memtableSize the number of vectors kept in memory before they are
+ * flushed to a segment file: larger flushes less often, and holds
+ * {@code memtableSize x dimension} floats on-heap
+ * @param maxSegments the number of segment files above which the newest
+ * ones are merged, dropping deleted and overwritten vectors: the two
+ * newest, then each older one no larger than those picked together.
+ * Vectors are thus rewritten a logarithmic number of times instead of on
+ * every merge
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public record VectorStoreParameters(int memtableSize, int maxSegments) {
+  public static final VectorStoreParameters DEFAULT = new VectorStoreParameters(
+    16_384,
+    8
+  );
+
+  public VectorStoreParameters {
+    if (memtableSize < 1) {
+      throw new IllegalArgumentException(
+        "Memtable size must be strictly positive"
+      );
+    }
+    if (maxSegments < 1) {
+      throw new IllegalArgumentException(
+        "Maximum number of segments must be strictly positive"
+      );
+    }
+  }
+}
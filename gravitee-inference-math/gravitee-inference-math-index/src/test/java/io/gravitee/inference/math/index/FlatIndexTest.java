@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.Distance;
+import io.gravitee.inference.math.api.parallel.ParallelRows;
+import io.gravitee.inference.math.api.selection.BoundedHeap;
+import io.gravitee.inference.math.api.selection.TopK;
+import io.gravitee.inference.math.vanilla.NativeMath;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public class FlatIndexTest {
+
+  private static final GioMaths INSTANCE = NativeMath.INSTANCE;
+
+  @Test
+  void must_find_exact_nearest_neighbours() {
+    final float[][] vectors = vectors(1000, 67, 61);
+    final float[] query = vectors(1, 67, 67)[0];
+
+    for (Distance distance : Distance.values()) {
+      try (var index = new FlatIndex(INSTANCE, distance, 67, 16)) {
+        for (int i = 0; i < vectors.length; i++) {
+          assertEquals(i, index.add(vectors[i]));
+        }
+        assertEquals(vectors.length, index.size());
+
+        final TopK expected = bruteForce(distance, query, vectors, 10);
+        final TopK actual = index.search(query, 10);
+        assertArrayEquals(expected.indices(), actual.indices());
+        assertArrayEquals(expected.values(), actual.values(), 1e-4f);
+      }
+    }
+  }
+
+  @Test
+  void must_search_identically_on_any_pool() {
+    final float[][] vectors = vectors(5000, 131, 71);
+    final float[] query = vectors[42].clone();
+
+    final ForkJoinPool pool = ParallelRows.pool();
+    final ForkJoinPool four = new ForkJoinPool(4);
+    try (var index = new FlatIndex(INSTANCE, Distance.COSINE, 131)) {
+      for (float[] vector : vectors) {
+        index.add(vector);
+      }
+      final TopK sequential = index.search(query, 25);
+      assertEquals(42, sequential.index(0));
+      assertEquals(1f, sequential.value(0), 1e-5);
+
+      ParallelRows.setPool(four);
+      ParallelRows.setThreshold(0);
+      final TopK parallel = index.search(query, 25);
+      assertArrayEquals(sequential.indices(), parallel.indices());
+      assertArrayEquals(sequential.values(), parallel.values());
+    } finally {
+      ParallelRows.setPool(pool);
+      ParallelRows.setThreshold(ParallelRows.PARALLEL_THRESHOLD);
+      four.shutdown();
+    }
+  }
+
+  @Test
+  void must_search_only_filtered_vectors() {
+    final float[][] vectors = vectors(3000, 33, 113);
+    final float[] query = vectors(1, 33, 127)[0];
+    final AttributeIndex attributes = new AttributeIndex();
+    for (int i = 0; i < vectors.length; i++) {
+      attributes.add(i, "tenant", "tenant-" + i % 7);
+      attributes.add(i, "model", "model-" + i % 3);
+    }
+    final IdBitmap filter = IdBitmap.and(
+      attributes.matching("tenant", "tenant-3"),
+      attributes.matchingAny("model", List.of("model-0", "model-1"))
+    );
+    assertEquals(286, filter.cardinality());
+
+    final ForkJoinPool pool = ParallelRows.pool();
+    final ForkJoinPool four = new ForkJoinPool(4);
+    try (var index = new FlatIndex(INSTANCE, Distance.EUCLIDEAN, 33)) {
+      for (float[] vector : vectors) {
+        index.add(vector);
+      }
+      final TopK expected = bruteForce(
+        Distance.EUCLIDEAN,
+        query,
+        vectors,
+        10,
+        filter
+      );
+      final TopK actual = index.search(query, 10, filter);
+      assertArrayEquals(expected.indices(), actual.indices());
+      assertArrayEquals(expected.values(), actual.values(), 1e-4f);
+
+      ParallelRows.setPool(four);
+      ParallelRows.setThreshold(0);
+      final TopK parallel = index.search(query, 10, filter);
+      assertArrayEquals(actual.indices(), parallel.indices());
+      assertArrayEquals(actual.values(), parallel.values());
+
+      assertEquals(0, index.search(query, 10, new IdBitmap()).size());
+      assertArrayEquals(
+        new int[] { 2999 },
+        index.search(query, 10, IdBitmap.of(2999, 3000, 70_000)).indices()
+      );
+      assertEquals(
+        0,
+        index.search(query, 10, attributes.matching("tenant", "none")).size()
+      );
+    } finally {
+      ParallelRows.setPool(pool);
+      ParallelRows.setThreshold(ParallelRows.PARALLEL_THRESHOLD);
+      four.shutdown();
+    }
+  }
+
+  @Test
+  void must_return_at_most_size_neighbours() {
+    try (var index = new FlatIndex(INSTANCE, Distance.EUCLIDEAN, 3)) {
+      assertEquals(0, index.search(new float[3], 5).size());
+
+      index.add(new float[] { 1f, 0f, 0f });
+      index.add(new float[] { 0f, 3f, 0f });
+      final TopK topK = index.search(new float[3], 5);
+      assertArrayEquals(new int[] { 0, 1 }, topK.indices());
+      assertArrayEquals(new float[] { -1f, -3f }, topK.values());
+      assertArrayEquals(new float[] { 0f, 3f, 0f }, index.vector(1));
+    }
+  }
+
+  @Test
+  void must_reject_invalid_arguments() {
+    final var index = new FlatIndex(INSTANCE, Distance.DOT_PRODUCT, 3);
+    assertThrows(IllegalArgumentException.class, () -> index.add(new float[2]));
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> index.search(new float[4], 1)
+    );
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> index.search(new float[3], 0)
+    );
+    assertThrows(IndexOutOfBoundsException.class, () -> index.vector(0));
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> new FlatIndex(INSTANCE, Distance.DOT_PRODUCT, 0)
+    );
+
+    index.close();
+    assertThrows(IllegalStateException.class, () -> index.add(new float[3]));
+  }
+
+  static TopK bruteForce(
+    Distance distance,
+    float[] query,
+    float[][] vectors,
+    int k
+  ) {
+    final IdBitmap all = new IdBitmap();
+    for (int i = 0; i < vectors.length; i++) {
+      all.add(i);
+    }
+    return bruteForce(distance, query, vectors, k, all);
+  }
+
+  static TopK bruteForce(
+    Distance distance,
+    float[] query,
+    float[][] vectors,
+    int k,
+    IdBitmap filter
+  ) {
+    final BoundedHeap heap = BoundedHeap.capped(k, vectors.length);
+    for (int i = filter.next(0); i >= 0; i = filter.next(i + 1)) {
+      heap.offer(
+        i,
+        distance.score(distance.compute(INSTANCE, query, vectors[i]))
+      );
+    }
+    return heap.toTopK();
+  }
+
+  static float[][] vectors(int count, int dimension, long seed) {
+    final Random random = new Random(seed);
+    final float[][] vectors = new float[count][dimension];
+    for (float[] vector : vectors) {
+      for (int j = 0; j < dimension; j++) {
+        vector[j] = random.nextFloat() - 0.5f;
+      }
+    }
+    return vectors;
+  }
+}
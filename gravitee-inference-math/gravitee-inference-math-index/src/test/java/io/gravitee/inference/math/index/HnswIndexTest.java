@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import static io.gravitee.inference.math.index.FlatIndexTest.bruteForce;
+import static io.gravitee.inference.math.index.FlatIndexTest.vectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.Distance;
+import io.gravitee.inference.math.api.selection.TopK;
+import io.gravitee.inference.math.vanilla.NativeMath;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public class HnswIndexTest {
+
+  private static final GioMaths INSTANCE = NativeMath.INSTANCE;
+  private static final int QUERIES = 50;
+  private static final int K = 10;
+
+  @Test
+  void must_find_nearest_neighbours_with_high_recall() {
+    final float[][] vectors = vectors(3000, 32, 73);
+
+    for (Distance distance : new Distance[] {
+      Distance.COSINE,
+      Distance.EUCLIDEAN,
+    }) {
+      try (var index = new HnswIndex(INSTANCE, distance, 32, 3000)) {
+        for (int i = 0; i < vectors.length; i++) {
+          assertEquals(i, index.add(vectors[i]));
+        }
+        assertEquals(3000, index.size());
+        assertTrue(recall(index, distance, vectors, 64) >= 0.95);
+      }
+    }
+  }
+
+  @Test
+  void must_raise_recall_with_ef_search() {
+    final float[][] vectors = vectors(3000, 32, 79);
+    final var parameters = new HnswParameters(8, 16, 10);
+    try (
+      var index = new HnswIndex(INSTANCE, Distance.COSINE, 32, 3000, parameters)
+    ) {
+      for (float[] vector : vectors) {
+        index.add(vector);
+      }
+      final double low = recall(index, Distance.COSINE, vectors, 10);
+      final double high = recall(index, Distance.COSINE, vectors, 200);
+      assertTrue(high > low);
+      assertTrue(high >= 0.95);
+    }
+  }
+
+  @Test
+  void must_search_only_filtered_vectors() {
+    final float[][] vectors = vectors(3000, 32, 131);
+    final IdBitmap half = new IdBitmap();
+    final IdBitmap hundredth = new IdBitmap();
+    for (int i = 0; i < vectors.length; i += 2) {
+      half.add(i);
+      if (i % 100 == 0) {
+        hundredth.add(i);
+      }
+    }
+
+    try (var index = new HnswIndex(INSTANCE, Distance.COSINE, 32, 3000)) {
+      for (float[] vector : vectors) {
+        index.add(vector);
+      }
+      int hits = 0;
+      for (int q = 0; q < QUERIES; q++) {
+        final float[] query = vectors(1, 32, 2000L + q)[0];
+        final TopK expected = bruteForce(
+          Distance.COSINE,
+          query,
+          vectors,
+          K,
+          half
+        );
+        final TopK actual = index.search(query, K, half);
+        assertEquals(K, actual.size());
+        for (int id : actual.indices()) {
+          assertTrue(half.contains(id));
+          for (int expectedId : expected.indices()) {
+            hits += id == expectedId ? 1 : 0;
+          }
+        }
+
+        final TopK exact = bruteForce(
+          Distance.COSINE,
+          query,
+          vectors,
+          K,
+          hundredth
+        );
+        assertArrayEquals(
+          exact.indices(),
+          index.search(query, K, hundredth).indices()
+        );
+      }
+      assertTrue(hits >= 0.95 * QUERIES * K);
+    }
+  }
+
+  @Test
+  void must_support_concurrent_inserts() throws Exception {
+    final float[][] vectors = vectors(4000, 24, 83);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try (var index = new HnswIndex(INSTANCE, Distance.COSINE, 24, 4000)) {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        final int thread = t;
+        futures.add(
+          executor.submit(() -> {
+            for (int i = thread; i < vectors.length; i += 4) {
+              index.add(vectors[i]);
+              index.search(vectors[i], K);
+            }
+          })
+        );
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      assertEquals(4000, index.size());
+
+      int found = 0;
+      for (int i = 0; i < index.size(); i++) {
+        final float[] vector = index.vector(i);
+        final TopK topK = index.search(vector, 1);
+        found += topK.value(0) >= 1f - 1e-5f ? 1 : 0;
+      }
+      assertTrue(found >= 0.99 * index.size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void must_reject_invalid_arguments() {
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> new HnswParameters(1, 100, 10)
+    );
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> new HnswParameters(16, 0, 10)
+    );
+
+    final var index = new HnswIndex(INSTANCE, Distance.EUCLIDEAN, 3, 2);
+    assertEquals(0, index.search(new float[3], 1).size());
+    index.add(new float[] { 1f, 0f, 0f });
+    index.add(new float[] { 0f, 2f, 0f });
+    assertThrows(IllegalStateException.class, () -> index.add(new float[3]));
+    assertThrows(IllegalArgumentException.class, () -> index.add(new float[4]));
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> index.search(new float[3], 0)
+    );
+    assertArrayEquals(
+      new int[] { 0, 1 },
+      index.search(new float[3], 5).indices()
+    );
+
+    index.close();
+    assertThrows(
+      IllegalStateException.class,
+      () -> index.search(new float[3], 1)
+    );
+  }
+
+  private static double recall(
+    HnswIndex index,
+    Distance distance,
+    float[][] vectors,
+    int efSearch
+  ) {
+    int hits = 0;
+    for (int q = 0; q < QUERIES; q++) {
+      final float[] query = vectors(1, index.dimension(), 1000L + q)[0];
+      final TopK expected = bruteForce(distance, query, vectors, K);
+      final TopK actual = index.search(query, K, efSearch);
+      for (int id : actual.indices()) {
+        for (int expectedId : expected.indices()) {
+          hits += id == expectedId ? 1 : 0;
+        }
+      }
+    }
+    return hits / (double) (QUERIES * K);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public class IdBitmapTest {
+
+  @Test
+  void must_behave_like_a_bit_set() {
+    final Random random = new Random(149);
+    for (int density : new int[] { 1, 10, 50, 90 }) {
+      final IdBitmap bitmap = new IdBitmap();
+      final BitSet expected = new BitSet();
+      for (int i = 0; i < 300_000; i++) {
+        final int id = random.nextInt(200_000);
+        if (random.nextInt(100) < density) {
+          assertEquals(!expected.get(id), bitmap.add(id));
+          expected.set(id);
+        } else {
+          assertEquals(expected.get(id), bitmap.remove(id));
+          expected.clear(id);
+        }
+      }
+      assertEquals(expected.cardinality(), bitmap.cardinality());
+      assertArrayEquals(expected.stream().toArray(), bitmap.toArray());
+      for (int id = 0; id < 200_000; id += 7) {
+        assertEquals(expected.get(id), bitmap.contains(id));
+        assertEquals(expected.nextSetBit(id), bitmap.next(id));
+      }
+    }
+  }
+
+  @Test
+  void must_combine_sparse_and_dense_chunks() {
+    final Random random = new Random(151);
+    final IdBitmap sparse = new IdBitmap();
+    final IdBitmap dense = new IdBitmap();
+    final BitSet sparseBits = new BitSet();
+    final BitSet denseBits = new BitSet();
+    for (int i = 0; i < 150_000; i++) {
+      final int id = random.nextInt(300_000);
+      if (i % 20 == 0) {
+        sparse.add(id);
+        sparseBits.set(id);
+      }
+      dense.add(id);
+      denseBits.set(id);
+    }
+
+    final BitSet and = (BitSet) sparseBits.clone();
+    and.and(denseBits);
+    final IdBitmap intersection = IdBitmap.and(sparse, dense);
+    assertArrayEquals(and.stream().toArray(), intersection.toArray());
+    assertArrayEquals(
+      intersection.toArray(),
+      IdBitmap.and(dense, sparse).toArray()
+    );
+    assertEquals(and.cardinality(), intersection.cardinality());
+
+    final BitSet or = (BitSet) sparseBits.clone();
+    or.or(denseBits);
+    final IdBitmap union = IdBitmap.or(sparse, dense);
+    assertArrayEquals(or.stream().toArray(), union.toArray());
+    assertEquals(or.cardinality(), union.cardinality());
+
+    final IdBitmap copy = dense.copy();
+    copy.add(5_000_000);
+    assertFalse(dense.contains(5_000_000));
+    assertEquals(-1, dense.next(300_000));
+    assertThrows(IllegalArgumentException.class, () -> dense.add(-1));
+  }
+}
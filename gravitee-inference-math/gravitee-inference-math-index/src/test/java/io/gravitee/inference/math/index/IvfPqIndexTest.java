@@ -0,0 +1,229 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import static io.gravitee.inference.math.index.FlatIndexTest.bruteForce;
+import static io.gravitee.inference.math.index.FlatIndexTest.vectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.Distance;
+import io.gravitee.inference.math.api.selection.TopK;
+import io.gravitee.inference.math.vanilla.NativeMath;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public class IvfPqIndexTest {
+
+  private static final GioMaths INSTANCE = NativeMath.INSTANCE;
+  private static final int QUERIES = 50;
+  private static final int K = 10;
+
+  @Test
+  void must_find_nearest_neighbours_after_rescoring() {
+    final float[][] vectors = clustered(2000, 32, 89);
+    final float[][] queries = clustered(QUERIES, 32, 97);
+
+    for (Distance distance : new Distance[] {
+      Distance.COSINE,
+      Distance.EUCLIDEAN,
+    }) {
+      try (
+        var index = IvfPqIndex.train(
+          INSTANCE,
+          distance,
+          vectors,
+          new IvfPqParameters(16, 8, 4, 4)
+        )
+      ) {
+        for (int i = 0; i < vectors.length; i++) {
+          assertEquals(i, index.add(vectors[i]));
+        }
+        assertEquals(vectors.length, index.size());
+
+        int hits = 0;
+        for (float[] query : queries) {
+          final TopK expected = bruteForce(distance, query, vectors, K);
+          final TopK actual = index.search(query, K);
+          hits += hits(expected, actual);
+          final float[] nearest = vectors[actual.index(0)];
+          assertEquals(
+            distance.score(distance.compute(INSTANCE, query, nearest)),
+            actual.value(0),
+            1e-4
+          );
+        }
+        assertTrue(hits >= 0.9 * QUERIES * K);
+      }
+    }
+  }
+
+  @Test
+  void must_search_only_filtered_vectors() {
+    final float[][] vectors = clustered(2000, 32, 137);
+    final float[][] queries = clustered(QUERIES, 32, 139);
+    final IdBitmap filter = new IdBitmap();
+    for (int i = 0; i < vectors.length; i += 5) {
+      filter.add(i);
+    }
+
+    try (
+      var index = IvfPqIndex.train(
+        INSTANCE,
+        Distance.EUCLIDEAN,
+        vectors,
+        new IvfPqParameters(16, 8, 4, 4)
+      )
+    ) {
+      for (float[] vector : vectors) {
+        index.add(vector);
+      }
+      int hits = 0;
+      for (float[] query : queries) {
+        final TopK expected = bruteForce(
+          Distance.EUCLIDEAN,
+          query,
+          vectors,
+          K,
+          filter
+        );
+        final TopK actual = index.search(query, K, 16, filter);
+        assertEquals(K, actual.size());
+        for (int id : actual.indices()) {
+          assertTrue(filter.contains(id));
+        }
+        hits += hits(expected, actual);
+      }
+      assertTrue(hits >= 0.9 * QUERIES * K);
+    }
+  }
+
+  @Test
+  void must_rank_by_approximate_distance_without_rescoring() {
+    final float[][] vectors = clustered(2000, 32, 101);
+    final float[][] queries = clustered(QUERIES, 32, 103);
+
+    try (
+      var index = IvfPqIndex.train(
+        INSTANCE,
+        Distance.COSINE,
+        vectors,
+        new IvfPqParameters(16, 8, 4, 0)
+      )
+    ) {
+      for (float[] vector : vectors) {
+        index.add(vector);
+      }
+      int hits = 0;
+      int moreHits = 0;
+      for (float[] query : queries) {
+        final TopK expected = bruteForce(Distance.COSINE, query, vectors, K);
+        final TopK actual = index.search(query, K, 1);
+        hits += hits(expected, actual);
+        moreHits += hits(expected, index.search(query, K, 16));
+        for (int rank = 0; rank < actual.size(); rank++) {
+          final float exact = INSTANCE.cosineSimilarity(
+            query,
+            vectors[actual.index(rank)]
+          );
+          assertEquals(exact, actual.value(rank), 0.1);
+        }
+      }
+      assertTrue(moreHits >= hits);
+      assertTrue(moreHits >= 0.5 * QUERIES * K);
+    }
+  }
+
+  @Test
+  void must_reject_invalid_arguments() {
+    final float[][] sample = vectors(64, 12, 107);
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> new IvfPqParameters(0, 4, 1, 0)
+    );
+    assertThrows(
+      IllegalArgumentException.class,
+      () ->
+        IvfPqIndex.train(
+          INSTANCE,
+          Distance.DOT_PRODUCT,
+          sample,
+          new IvfPqParameters(4, 4, 1, 0)
+        )
+    );
+    assertThrows(
+      IllegalArgumentException.class,
+      () ->
+        IvfPqIndex.train(
+          INSTANCE,
+          Distance.EUCLIDEAN,
+          sample,
+          new IvfPqParameters(4, 5, 1, 0)
+        )
+    );
+    assertThrows(
+      IllegalArgumentException.class,
+      () ->
+        IvfPqIndex.train(
+          INSTANCE,
+          Distance.EUCLIDEAN,
+          sample,
+          new IvfPqParameters(100, 4, 1, 0)
+        )
+    );
+
+    final var index = IvfPqIndex.train(
+      INSTANCE,
+      Distance.EUCLIDEAN,
+      sample,
+      new IvfPqParameters(4, 4, 2, 2)
+    );
+    assertEquals(0, index.search(sample[0], 3).size());
+    assertThrows(IllegalArgumentException.class, () -> index.add(new float[3]));
+    index.close();
+    assertThrows(IllegalStateException.class, () -> index.add(sample[0]));
+  }
+
+  /**
+   * Vectors around 16 random centers, as embeddings cluster by topic.
+   */
+  private static float[][] clustered(int count, int dimension, long seed) {
+    final float[][] centers = vectors(16, dimension, 13);
+    final Random random = new Random(seed);
+    final float[][] vectors = new float[count][dimension];
+    for (float[] vector : vectors) {
+      final float[] center = centers[random.nextInt(centers.length)];
+      for (int j = 0; j < dimension; j++) {
+        vector[j] = center[j] + 0.5f * (random.nextFloat() - 0.5f);
+      }
+    }
+    return vectors;
+  }
+
+  private static int hits(TopK expected, TopK actual) {
+    int hits = 0;
+    for (int id : actual.indices()) {
+      for (int expectedId : expected.indices()) {
+        hits += id == expectedId ? 1 : 0;
+      }
+    }
+    return hits;
+  }
+}
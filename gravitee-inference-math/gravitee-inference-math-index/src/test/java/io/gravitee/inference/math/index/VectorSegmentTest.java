@@ -0,0 +1,192 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import static io.gravitee.inference.math.index.FlatIndexTest.vectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.Distance;
+import io.gravitee.inference.math.api.selection.TopK;
+import io.gravitee.inference.math.vanilla.NativeMath;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public class VectorSegmentTest {
+
+  private static final GioMaths INSTANCE = NativeMath.INSTANCE;
+
+  @Test
+  void must_search_like_a_flat_index_once_reopened(@TempDir Path directory)
+    throws IOException {
+    final float[][] vectors = vectors(1000, 67, 79);
+    final float[] query = vectors(1, 67, 83)[0];
+
+    for (Distance distance : Distance.values()) {
+      final Path path = directory.resolve(distance.name() + ".seg");
+      try (
+        var writer = VectorSegmentWriter.create(path, INSTANCE, distance, 67);
+        var index = new FlatIndex(INSTANCE, distance, 67)
+      ) {
+        for (int i = 0; i < vectors.length; i++) {
+          assertEquals(i, writer.add(1000L + i, vectors[i], null));
+          index.add(vectors[i]);
+        }
+        writer.commit();
+
+        try (var segment = VectorSegment.open(path, INSTANCE)) {
+          assertEquals(67, segment.dimension());
+          assertEquals(vectors.length, segment.size());
+          assertEquals(distance, segment.distance());
+          assertArrayEquals(index.vector(3), segment.vector(3));
+
+          final TopK expected = index.search(query, 10);
+          final TopK actual = segment.search(query, 10);
+          assertArrayEquals(expected.indices(), actual.indices());
+          assertArrayEquals(expected.values(), actual.values());
+        }
+      }
+    }
+  }
+
+  @Test
+  void must_keep_ids_and_metadata(@TempDir Path directory)
+    throws IOException {
+    final Path path = directory.resolve("metadata.seg");
+    final float[][] vectors = vectors(2500, 7, 89);
+    try (
+      var writer = VectorSegmentWriter.create(
+        path,
+        INSTANCE,
+        Distance.COSINE,
+        7
+      )
+    ) {
+      for (int i = 0; i < vectors.length; i++) {
+        writer.add(-i, vectors[i], i % 3 == 0 ? null : metadata(i));
+      }
+      writer.commit();
+    }
+
+    try (var segment = VectorSegment.open(path, INSTANCE)) {
+      for (int row = 0; row < vectors.length; row++) {
+        assertEquals(-row, segment.id(row));
+        assertArrayEquals(
+          row % 3 == 0 ? new byte[0] : metadata(row),
+          segment.metadata(row)
+        );
+      }
+      final TopK nearest = segment.search(vectors[1234], 1);
+      assertEquals(-1234, segment.id(nearest.index(0)));
+      assertThrows(IndexOutOfBoundsException.class, () -> segment.id(2500));
+    }
+  }
+
+  @Test
+  void must_open_an_empty_segment(@TempDir Path directory)
+    throws IOException {
+    final Path path = directory.resolve("empty.seg");
+    try (
+      var writer = VectorSegmentWriter.create(
+        path,
+        INSTANCE,
+        Distance.EUCLIDEAN,
+        3
+      )
+    ) {
+      writer.commit();
+    }
+    try (var segment = VectorSegment.open(path, INSTANCE)) {
+      assertEquals(0, segment.size());
+      assertEquals(0, segment.search(new float[3], 5).size());
+    }
+  }
+
+  @Test
+  void must_leave_no_file_when_not_committed(@TempDir Path directory)
+    throws IOException {
+    final Path path = directory.resolve("aborted.seg");
+    try (
+      var writer = VectorSegmentWriter.create(
+        path,
+        INSTANCE,
+        Distance.EUCLIDEAN,
+        3
+      )
+    ) {
+      writer.add(1, new float[] { 1, 2, 3 }, null);
+    }
+    try (var files = Files.list(directory)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  void must_reject_invalid_files_and_arguments(@TempDir Path directory)
+    throws IOException {
+    final Path path = directory.resolve("valid.seg");
+    try (
+      var writer = VectorSegmentWriter.create(
+        path,
+        INSTANCE,
+        Distance.EUCLIDEAN,
+        3
+      )
+    ) {
+      assertThrows(IllegalArgumentException.class, () ->
+        writer.add(1, new float[2], null)
+      );
+      writer.add(1, new float[] { 1, 2, 3 }, metadata(1));
+      writer.commit();
+      assertThrows(IllegalStateException.class, () ->
+        writer.add(2, new float[3], null)
+      );
+    }
+    try (var segment = VectorSegment.open(path, INSTANCE)) {
+      assertThrows(IllegalArgumentException.class, () ->
+        segment.search(new float[2], 1)
+      );
+    }
+
+    final byte[] bytes = Files.readAllBytes(path);
+    final Path truncated = directory.resolve("truncated.seg");
+    Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 1));
+    assertThrows(IllegalArgumentException.class, () ->
+      VectorSegment.open(truncated, INSTANCE)
+    );
+    final Path garbage = directory.resolve("garbage.seg");
+    Files.write(garbage, new byte[128]);
+    assertThrows(IllegalArgumentException.class, () ->
+      VectorSegment.open(garbage, INSTANCE)
+    );
+    assertThrows(IllegalArgumentException.class, () ->
+      VectorSegmentWriter.create(path, INSTANCE, Distance.EUCLIDEAN, 0)
+    );
+  }
+
+  private static byte[] metadata(int i) {
+    return ("document-" + i).getBytes(StandardCharsets.UTF_8);
+  }
+}
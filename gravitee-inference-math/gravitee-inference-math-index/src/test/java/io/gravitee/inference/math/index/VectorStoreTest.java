@@ -0,0 +1,352 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.index;
+
+import static io.gravitee.inference.math.index.FlatIndexTest.bruteForce;
+import static io.gravitee.inference.math.index.FlatIndexTest.vectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.Distance;
+import io.gravitee.inference.math.api.selection.TopK;
+import io.gravitee.inference.math.vanilla.NativeMath;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public class VectorStoreTest {
+
+  private static final GioMaths INSTANCE = NativeMath.INSTANCE;
+  private static final VectorStoreParameters SMALL = new VectorStoreParameters(
+    100,
+    3
+  );
+
+  @Test
+  void must_find_exact_nearest_neighbours_across_layers(
+    @TempDir Path directory
+  ) throws IOException {
+    final float[][] vectors = vectors(1050, 16, 97);
+    final float[] query = vectors(1, 16, 101)[0];
+
+    try (var store = open(directory, Distance.COSINE)) {
+      for (int i = 0; i < vectors.length; i++) {
+        store.put(i, vectors[i], metadata(i));
+      }
+      assertEquals(vectors.length, store.size());
+      assertNearest(Distance.COSINE, store, query, vectors);
+
+      store.flush();
+      assertNearest(Distance.COSINE, store, query, vectors);
+      assertTrue(segmentFiles(directory) <= SMALL.maxSegments());
+    }
+  }
+
+  @Test
+  void must_replace_and_delete_vectors(@TempDir Path directory)
+    throws IOException {
+    final float[][] vectors = vectors(500, 16, 103);
+    try (var store = open(directory, Distance.EUCLIDEAN)) {
+      for (int i = 0; i < vectors.length; i++) {
+        store.put(i, vectors[i], metadata(i));
+      }
+      store.put(7, vectors[300], metadata(-7));
+      assertTrue(store.delete(300));
+      assertFalse(store.delete(300));
+      assertFalse(store.delete(10_000));
+      assertEquals(499, store.size());
+
+      final List<Neighbour> nearest = store.search(vectors[300], 2);
+      assertEquals(7, nearest.getFirst().id());
+      assertEquals(0f, nearest.getFirst().score(), 0f);
+      assertArrayEquals(metadata(-7), nearest.getFirst().metadata());
+      assertNotEquals(300, nearest.get(1).id());
+    }
+  }
+
+  @Test
+  void must_reload_flushed_vectors_and_deletes(@TempDir Path directory)
+    throws IOException {
+    final float[][] vectors = vectors(730, 16, 107);
+    final Set<Long> deleted = new HashSet<>();
+    try (var store = open(directory, Distance.DOT_PRODUCT)) {
+      for (int i = 0; i < vectors.length; i++) {
+        store.put(i, vectors[i], metadata(i));
+        if (i % 5 == 0) {
+          assertTrue(store.delete(i / 2));
+          deleted.add((long) i / 2);
+        }
+      }
+      store.put(1, vectors[2], null);
+    }
+
+    try (var store = open(directory, Distance.DOT_PRODUCT)) {
+      assertEquals(vectors.length - deleted.size(), store.size());
+      for (int i = 0; i < 20; i++) {
+        final List<Neighbour> nearest = store.search(vectors[i], 730);
+        assertEquals(store.size(), nearest.size());
+        for (Neighbour neighbour : nearest) {
+          final long id = neighbour.id();
+          assertFalse(deleted.contains(id));
+          assertArrayEquals(
+            id == 1 ? new byte[0] : metadata((int) id),
+            neighbour.metadata()
+          );
+        }
+      }
+    }
+  }
+
+  @Test
+  void must_keep_compacted_vectors_across_reopens(@TempDir Path directory)
+    throws IOException {
+    final var parameters = new VectorStoreParameters(2, 3);
+    final float[][] vectors = vectors(12, 16, 109);
+    try (var store = open(directory, parameters)) {
+      for (int i = 0; i < 8; i++) {
+        store.put(i, vectors[i], metadata(i));
+      }
+    }
+    try (var store = open(directory, parameters)) {
+      for (int i = 8; i < 10; i++) {
+        store.put(i, vectors[i], metadata(i));
+      }
+    }
+    raceCompactionWithFlush(directory);
+
+    try (var store = open(directory, parameters)) {
+      assertEquals(10, store.size());
+      for (int i = 10; i < vectors.length; i++) {
+        store.put(i, vectors[i], metadata(i));
+      }
+    }
+
+    try (var store = open(directory, parameters)) {
+      assertEquals(vectors.length, store.size());
+      final Set<Long> ids = new HashSet<>();
+      for (Neighbour neighbour : store.search(vectors[0], vectors.length)) {
+        assertArrayEquals(
+          metadata((int) neighbour.id()),
+          neighbour.metadata()
+        );
+        ids.add(neighbour.id());
+      }
+      assertEquals(vectors.length, ids.size());
+    }
+  }
+
+  @Test
+  void must_keep_deletes_of_older_segments_across_merges(
+    @TempDir Path directory
+  ) throws IOException {
+    final var parameters = new VectorStoreParameters(4, 2);
+    final float[][] vectors = vectors(20, 16, 113);
+    try (var store = open(directory, parameters)) {
+      // Three segments of 4 vectors, merged into one
+      for (int i = 0; i < 12; i++) {
+        store.put(i, vectors[i], metadata(i));
+      }
+      store.flush();
+      // Two smaller segments deleting vectors of the merged one, merged
+      // together without it
+      for (int i = 12; i < vectors.length; i++) {
+        store.put(i, vectors[i], metadata(i));
+        if (i == 13 || i == 17) {
+          assertTrue(store.delete(i - 13));
+        }
+      }
+      store.flush();
+    }
+    assertEquals(2, segmentFiles(directory));
+
+    try (var store = open(directory, parameters)) {
+      assertEquals(vectors.length - 2, store.size());
+      for (Neighbour neighbour : store.search(vectors[0], vectors.length)) {
+        assertNotEquals(0, neighbour.id());
+        assertNotEquals(4, neighbour.id());
+        assertArrayEquals(
+          metadata((int) neighbour.id()),
+          neighbour.metadata()
+        );
+      }
+    }
+  }
+
+  /**
+   * Lays the files out as when a compaction runs while a memtable is being
+   * filled: the merged segment, listed first, gets a generation above the
+   * segment flushed after it.
+   */
+  private static void raceCompactionWithFlush(Path directory)
+    throws IOException {
+    final Path manifest = directory.resolve("MANIFEST");
+    final List<String> generations = Files.readAllLines(manifest);
+    assertEquals(2, generations.size());
+    final int merged = Integer.parseInt(generations.get(0));
+    final int last = Integer.parseInt(generations.get(1));
+    for (String extension : List.of(".seg", ".tomb")) {
+      final Path source = segmentFile(directory, merged, extension);
+      if (Files.exists(source)) {
+        Files.move(source, segmentFile(directory, last + 1, extension));
+      }
+    }
+    Files.write(
+      manifest,
+      List.of(String.valueOf(last + 1), String.valueOf(last))
+    );
+  }
+
+  private static Path segmentFile(
+    Path directory,
+    int generation,
+    String extension
+  ) {
+    return directory.resolve("segment-%08d%s".formatted(generation, extension));
+  }
+
+  @Test
+  void must_search_while_writing(@TempDir Path directory) throws Exception {
+    final float[][] vectors = vectors(2000, 16, 109);
+    final ExecutorService executor = Executors.newFixedThreadPool(3);
+    final AtomicBoolean writing = new AtomicBoolean(true);
+    try (var store = open(directory, Distance.COSINE)) {
+      for (int i = 0; i < 100; i++) {
+        store.put(i, vectors[i], null);
+      }
+      final List<Future<?>> readers = List.of(
+        executor.submit(() -> search(store, vectors, writing)),
+        executor.submit(() -> search(store, vectors, writing))
+      );
+      for (int i = 100; i < vectors.length; i++) {
+        store.put(i, vectors[i], null);
+        store.delete(i - 100);
+      }
+      writing.set(false);
+      for (Future<?> reader : readers) {
+        reader.get();
+      }
+      assertEquals(100, store.size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void must_reject_invalid_arguments(@TempDir Path directory)
+    throws IOException {
+    try (var store = open(directory, Distance.EUCLIDEAN)) {
+      assertThrows(IllegalArgumentException.class, () ->
+        store.put(1, new float[3], null)
+      );
+      assertThrows(IllegalArgumentException.class, () ->
+        store.search(new float[3], 1)
+      );
+      assertThrows(IllegalArgumentException.class, () ->
+        store.search(new float[16], 0)
+      );
+      store.put(1, new float[16], null);
+    }
+    assertThrows(IllegalArgumentException.class, () ->
+      open(directory, Distance.COSINE)
+    );
+    assertThrows(IllegalArgumentException.class, () ->
+      new VectorStoreParameters(0, 1)
+    );
+
+    final var store = open(directory, Distance.EUCLIDEAN);
+    store.close();
+    assertThrows(IllegalStateException.class, () ->
+      store.put(2, new float[16], null)
+    );
+  }
+
+  private static void search(
+    VectorStore store,
+    float[][] vectors,
+    AtomicBoolean writing
+  ) {
+    while (writing.get()) {
+      final List<Neighbour> nearest = store.search(vectors[0], 10);
+      assertEquals(10, nearest.size());
+      for (int rank = 1; rank < nearest.size(); rank++) {
+        assertTrue(
+          nearest.get(rank - 1).score() >= nearest.get(rank).score()
+        );
+      }
+    }
+  }
+
+  private static void assertNearest(
+    Distance distance,
+    VectorStore store,
+    float[] query,
+    float[][] vectors
+  ) {
+    final TopK expected = bruteForce(distance, query, vectors, 10);
+    final List<Neighbour> actual = store.search(query, 10);
+    assertEquals(expected.size(), actual.size());
+    for (int rank = 0; rank < expected.size(); rank++) {
+      assertEquals(expected.index(rank), actual.get(rank).id());
+      assertEquals(expected.value(rank), actual.get(rank).score(), 1e-4f);
+      assertArrayEquals(
+        metadata(expected.index(rank)),
+        actual.get(rank).metadata()
+      );
+    }
+  }
+
+  private static long segmentFiles(Path directory) throws IOException {
+    try (var files = Files.list(directory)) {
+      return files.filter(file -> file.toString().endsWith(".seg")).count();
+    }
+  }
+
+  private static VectorStore open(Path directory, Distance distance)
+    throws IOException {
+    return VectorStore.open(directory, INSTANCE, distance, 16, SMALL);
+  }
+
+  private static VectorStore open(
+    Path directory,
+    VectorStoreParameters parameters
+  ) throws IOException {
+    return VectorStore.open(
+      directory,
+      INSTANCE,
+      Distance.EUCLIDEAN,
+      16,
+      parameters
+    );
+  }
+
+  private static byte[] metadata(int i) {
+    return ("entry-" + i).getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -16,6 +16,14 @@
 package io.gravitee.inference.math.vanilla;
 
 import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.half.HalfFormat;
+import io.gravitee.inference.math.api.matrix.FloatMatrix;
+import io.gravitee.inference.math.api.parallel.ParallelReduction;
+import io.gravitee.inference.math.api.parallel.ParallelRows;
+import io.gravitee.inference.math.api.pooling.BatchPooling;
+import io.gravitee.inference.math.api.selection.BoundedHeap;
+import io.gravitee.inference.math.api.selection.TopK;
+import org.apache.commons.math3.special.Erf;
 import org.apache.commons.math3.util.FastMath;
 
 /**
@@ -24,6 +32,8 @@ import org.apache.commons.math3.util.FastMath;
  */
 public class NativeMath implements GioMaths {
 
+  private static final double SQRT_1_2 = FastMath.sqrt(0.5);
+
   private NativeMath() {}
 
   public static final GioMaths INSTANCE = new NativeMath();
@@ -70,21 +80,244 @@ public class NativeMath implements GioMaths {
   }
 
   @Override
-  public float[] mean(float[][] matrix) {
-    int rows = matrix.length;
-    int cols = matrix[0].length;
+  public float manhattanDistance(float[] v1, float[] v2) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException(
+        "Both points must have the same dimension."
+      );
+    }
 
-    float[] meanVector = new float[cols];
-    for (float[] vector : matrix) {
-      for (int col = 0; col < cols; col++) {
-        meanVector[col] += vector[col];
-      }
+    float sum = 0.0f;
+    for (int i = 0; i < v1.length; i++) {
+      sum += FastMath.abs(v1[i] - v2[i]);
+    }
+    return sum;
+  }
+
+  @Override
+  public float dotProduct(float[] v1, float[] v2) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException("Vectors must have the same length");
+    }
+
+    float dotProduct = 0.0f;
+    for (int i = 0; i < v1.length; i++) {
+      dotProduct += v1[i] * v2[i];
+    }
+    return dotProduct;
+  }
+
+  @Override
+  public int dotProduct(byte[] v1, byte[] v2) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException("Vectors must have the same length");
+    }
+
+    int dotProduct = 0;
+    for (int i = 0; i < v1.length; i++) {
+      dotProduct += v1[i] * v2[i];
+    }
+    return dotProduct;
+  }
+
+  @Override
+  public float dotProduct(float[] v1, byte[] v2) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException("Vectors must have the same length");
+    }
+
+    float dotProduct = 0.0f;
+    for (int i = 0; i < v1.length; i++) {
+      dotProduct += v1[i] * v2[i];
+    }
+    return dotProduct;
+  }
+
+  @Override
+  public int hammingDistance(long[] v1, long[] v2) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException("Vectors must have the same length");
+    }
+
+    int distance = 0;
+    for (int i = 0; i < v1.length; i++) {
+      distance += Long.bitCount(v1[i] ^ v2[i]);
+    }
+    return distance;
+  }
+
+  @Override
+  public short[] toHalf(float[] vector, HalfFormat format, short[] dst) {
+    checkDestination(vector.length, dst);
+    for (int i = 0; i < vector.length; i++) {
+      dst[i] = format.encode(vector[i]);
+    }
+    return dst;
+  }
+
+  @Override
+  public float[] fromHalf(short[] vector, HalfFormat format, float[] dst) {
+    checkDestination(vector.length, dst);
+    for (int i = 0; i < vector.length; i++) {
+      dst[i] = format.decode(vector[i]);
+    }
+    return dst;
+  }
+
+  @Override
+  public float dotProduct(float[] v1, short[] v2, HalfFormat format) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException("Vectors must have the same length");
+    }
+
+    float dotProduct = 0.0f;
+    for (int i = 0; i < v1.length; i++) {
+      dotProduct += v1[i] * format.decode(v2[i]);
     }
-    for (int col = 0; col < cols; col++) {
-      meanVector[col] /= rows;
+    return dotProduct;
+  }
+
+  @Override
+  public float cosineSimilarity(float[] v1, short[] v2, HalfFormat format) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException("Vectors must have the same length");
+    }
+
+    float dotProduct = 0.0f;
+    float magnitude1 = 0.0f;
+    float magnitude2 = 0.0f;
+    for (int i = 0; i < v1.length; i++) {
+      final float value = format.decode(v2[i]);
+      dotProduct += v1[i] * value;
+      magnitude1 += v1[i] * v1[i];
+      magnitude2 += value * value;
     }
+    if (magnitude1 == 0 || magnitude2 == 0) {
+      return 0.0f;
+    }
+    return (float) (dotProduct /
+      (FastMath.sqrt(magnitude1) * FastMath.sqrt(magnitude2)));
+  }
+
+  @Override
+  public float[] cosineSimilarity(float[] query, float[][] vectors) {
+    checkDimensions(query.length, vectors);
+
+    final float queryNorm = normL2(query);
+    float[] scores = new float[vectors.length];
+    ParallelRows.forEach(vectors.length, query.length, (from, to) -> {
+      for (int row = from; row < to; row++) {
+        scores[row] = cosine(query, queryNorm, vectors[row]);
+      }
+    });
+    return scores;
+  }
 
-    return meanVector;
+  @Override
+  public float[][] cosineSimilarity(float[][] queries, float[][] vectors) {
+    final int dimension = checkDimensions(queries, vectors);
+
+    final float[] vectorNorms = norms(vectors);
+    float[][] scores = new float[queries.length][vectors.length];
+    ParallelRows.forEach(
+      queries.length,
+      (long) vectors.length * dimension,
+      (from, to) -> {
+        for (int i = from; i < to; i++) {
+          final float queryNorm = normL2(queries[i]);
+          for (int j = 0; j < vectors.length; j++) {
+            scores[i][j] = cosine(
+              dot(queries[i], vectors[j]),
+              queryNorm,
+              vectorNorms[j]
+            );
+          }
+        }
+      }
+    );
+    return scores;
+  }
+
+  @Override
+  public float[] euclideanDistance(float[] query, float[][] vectors) {
+    checkDimensions(query.length, vectors);
+
+    float[] distances = new float[vectors.length];
+    ParallelRows.forEach(vectors.length, query.length, (from, to) -> {
+      for (int row = from; row < to; row++) {
+        distances[row] = distance(query, vectors[row]);
+      }
+    });
+    return distances;
+  }
+
+  @Override
+  public float[][] euclideanDistance(float[][] queries, float[][] vectors) {
+    final int dimension = checkDimensions(queries, vectors);
+
+    float[][] distances = new float[queries.length][];
+    ParallelRows.forEach(
+      queries.length,
+      (long) vectors.length * dimension,
+      (from, to) -> {
+        for (int i = from; i < to; i++) {
+          distances[i] = new float[vectors.length];
+          for (int j = 0; j < vectors.length; j++) {
+            distances[i][j] = distance(queries[i], vectors[j]);
+          }
+        }
+      }
+    );
+    return distances;
+  }
+
+  @Override
+  public float[] dotProduct(float[] query, float[][] vectors) {
+    checkDimensions(query.length, vectors);
+
+    float[] scores = new float[vectors.length];
+    ParallelRows.forEach(vectors.length, query.length, (from, to) -> {
+      for (int row = from; row < to; row++) {
+        scores[row] = dot(query, vectors[row]);
+      }
+    });
+    return scores;
+  }
+
+  @Override
+  public float[][] dotProduct(float[][] queries, float[][] vectors) {
+    final int dimension = checkDimensions(queries, vectors);
+
+    float[][] scores = new float[queries.length][];
+    ParallelRows.forEach(
+      queries.length,
+      (long) vectors.length * dimension,
+      (from, to) -> {
+        for (int i = from; i < to; i++) {
+          scores[i] = new float[vectors.length];
+          for (int j = 0; j < vectors.length; j++) {
+            scores[i][j] = dot(queries[i], vectors[j]);
+          }
+        }
+      }
+    );
+    return scores;
+  }
+
+  @Override
+  public float[] mean(float[][] matrix) {
+    return mean(matrix, new float[matrix[0].length]);
+  }
+
+  @Override
+  public float[] mean(float[][] matrix, float[] dst) {
+    return divide(sum(matrix, dst), matrix.length, dst);
+  }
+
+  @Override
+  public float[] normalizedMean(float[][] matrix, float[] dst) {
+    sum(matrix, dst);
+    return divide(dst, normL2(dst), dst);
   }
 
   @Override
@@ -98,68 +331,464 @@ public class NativeMath implements GioMaths {
 
   @Override
   public float[] normalize(float[] vector) {
-    final float norm = normL2(vector);
-
-    float[] normalizedVector = new float[vector.length];
-    for (int i = 0; i < vector.length; i++) {
-      normalizedVector[i] = vector[i] / norm;
-    }
+    return normalize(vector, new float[vector.length]);
+  }
 
-    return normalizedVector;
+  @Override
+  public float[] normalize(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
+    return divide(vector, normL2(vector), dst);
   }
 
   @Override
   public float[] softmax(float[] vector) {
+    return softmax(vector, new float[vector.length]);
+  }
+
+  @Override
+  public float[] softmax(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
+
     float maxLogit = max(vector);
     float sum = 0.0f;
-    float[] output = new float[vector.length];
     for (int i = 0; i < vector.length; i++) {
-      output[i] = (float) FastMath.exp(vector[i] - maxLogit);
-      sum += output[i];
+      dst[i] = (float) FastMath.exp(vector[i] - maxLogit);
+      sum += dst[i];
+    }
+
+    return divide(dst, sum, dst);
+  }
+
+  @Override
+  public float[] sigmoid(float[] vector) {
+    return sigmoid(vector, new float[vector.length]);
+  }
+
+  @Override
+  public float[] sigmoid(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
+    for (int i = 0; i < vector.length; i++) {
+      dst[i] = (float) (1.0f / (1.0f + FastMath.exp(-vector[i])));
+    }
+    return dst;
+  }
+
+  @Override
+  public int argmax(float[] vector) {
+    if (vector.length == 0) {
+      throw new IllegalArgumentException("Vector must not be empty");
+    }
+
+    int argmax = 0;
+    for (int i = 1; i < vector.length; i++) {
+      if (vector[i] > vector[argmax]) {
+        argmax = i;
+      }
+    }
+    return argmax;
+  }
+
+  @Override
+  public TopK topK(float[] vector, int k) {
+    final BoundedHeap heap = BoundedHeap.capped(k, vector.length);
+    for (int i = 0; i < vector.length; i++) {
+      if (!heap.isFull() || vector[i] > heap.threshold()) {
+        heap.offer(i, vector[i]);
+      }
+    }
+    return heap.toTopK();
+  }
+
+  @Override
+  public float[] exp(float[] vector) {
+    return exp(vector, new float[vector.length]);
+  }
+
+  @Override
+  public float[] exp(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
+    for (int i = 0; i < vector.length; i++) {
+      dst[i] = (float) FastMath.exp(vector[i]);
     }
+    return dst;
+  }
 
+  @Override
+  public float[] tanh(float[] vector) {
+    return tanh(vector, new float[vector.length]);
+  }
+
+  @Override
+  public float[] tanh(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
     for (int i = 0; i < vector.length; i++) {
-      output[i] /= sum;
+      dst[i] = (float) FastMath.tanh(vector[i]);
     }
+    return dst;
+  }
 
-    return output;
+  @Override
+  public float[] gelu(float[] vector) {
+    return gelu(vector, new float[vector.length]);
   }
 
   @Override
-  public float[] sigmoid(float[] vector) {
-    float[] result = new float[vector.length];
+  public float[] gelu(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
     for (int i = 0; i < vector.length; i++) {
-      result[i] = (float) (1.0f / (1.0f + FastMath.exp(-vector[i])));
+      dst[i] = (float) (0.5 *
+        vector[i] *
+        (1 + Erf.erf(vector[i] * SQRT_1_2)));
     }
-    return result;
+    return dst;
   }
 
   @Override
   public float max(float[] vector) {
-    float max = Float.NEGATIVE_INFINITY;
-    for (float f : vector) {
-      max = FastMath.max(max, f);
-    }
-    return max;
+    return ParallelReduction.max(vector.length, (from, to) -> {
+      float max = Float.NEGATIVE_INFINITY;
+      for (int i = from; i < to; i++) {
+        max = FastMath.max(max, vector[i]);
+      }
+      return max;
+    });
+  }
+
+  @Override
+  public float[][] meanPooling(
+    float[][][] hiddenStates,
+    long[][] attentionMask
+  ) {
+    return BatchPooling.meanPooling(
+      hiddenStates,
+      attentionMask,
+      NativeMath::accumulate,
+      (dst, count) -> divide(dst, count, dst)
+    );
+  }
+
+  @Override
+  public float[][] maxPooling(
+    float[][][] hiddenStates,
+    long[][] attentionMask
+  ) {
+    return BatchPooling.maxPooling(
+      hiddenStates,
+      attentionMask,
+      NativeMath::maximum
+    );
+  }
+
+  @Override
+  public float[][] weightedMeanPooling(
+    float[][][] hiddenStates,
+    float[][] weights
+  ) {
+    return BatchPooling.weightedMeanPooling(
+      hiddenStates,
+      weights,
+      NativeMath::accumulate,
+      (dst, totalWeight) -> divide(dst, totalWeight, dst)
+    );
   }
 
   @Override
   public float[] weightedMean(float[][] matrix, float[] weights) {
-    final int rows = matrix.length;
-    int cols = matrix[0].length;
+    return weightedMean(matrix, weights, new float[matrix[0].length]);
+  }
+
+  @Override
+  public float[] weightedMean(float[][] matrix, float[] weights, float[] dst) {
+    final float weightSum = weightedSum(matrix, weights, dst);
+    return divide(dst, weightSum, dst);
+  }
+
+  @Override
+  public float[] normalizedWeightedMean(
+    float[][] matrix,
+    float[] weights,
+    float[] dst
+  ) {
+    final float weightSum = weightedSum(matrix, weights, dst);
+    return divide(dst, FastMath.copySign(normL2(dst), weightSum), dst);
+  }
+
+  @Override
+  public float[] mean(FloatMatrix matrix) {
+    return mean(matrix, new float[matrix.cols()]);
+  }
+
+  @Override
+  public float[] mean(FloatMatrix matrix, float[] dst) {
+    checkDestination(matrix.cols(), dst);
+
+    ParallelReduction.sumRows(
+      matrix,
+      dst,
+      (from, to, accumulator) -> {
+        float[] vector = new float[matrix.cols()];
+        for (int row = from; row < to; row++) {
+          accumulate(matrix.row(row, vector), 1f, accumulator);
+        }
+        return 0f;
+      },
+      NativeMath::combine
+    );
+    return divide(dst, matrix.rows(), dst);
+  }
+
+  @Override
+  public float[] weightedMean(FloatMatrix matrix, float[] weights) {
+    return weightedMean(matrix, weights, new float[matrix.cols()]);
+  }
+
+  @Override
+  public float[] weightedMean(
+    FloatMatrix matrix,
+    float[] weights,
+    float[] dst
+  ) {
+    checkDestination(matrix.cols(), dst);
+
+    final float weightSum = ParallelReduction.sumRows(
+      matrix,
+      dst,
+      (from, to, accumulator) -> {
+        float[] vector = new float[matrix.cols()];
+        float blockWeight = 0;
+        for (int row = from; row < to; row++) {
+          blockWeight += weights[row];
+          accumulate(matrix.row(row, vector), weights[row], accumulator);
+        }
+        return blockWeight;
+      },
+      NativeMath::combine
+    );
+    return divide(dst, weightSum, dst);
+  }
+
+  @Override
+  public float[] cosineSimilarity(float[] query, FloatMatrix vectors) {
+    checkDimensions(query.length, vectors);
+
+    final float queryNorm = normL2(query);
+    float[] scores = new float[vectors.rows()];
+    ParallelRows.forEach(vectors, (from, to) -> {
+      float[] vector = new float[query.length];
+      for (int row = from; row < to; row++) {
+        scores[row] = cosine(query, queryNorm, vectors.row(row, vector));
+      }
+    });
+    return scores;
+  }
+
+  @Override
+  public float[] euclideanDistance(float[] query, FloatMatrix vectors) {
+    checkDimensions(query.length, vectors);
+
+    float[] distances = new float[vectors.rows()];
+    ParallelRows.forEach(vectors, (from, to) -> {
+      float[] vector = new float[query.length];
+      for (int row = from; row < to; row++) {
+        distances[row] = distance(query, vectors.row(row, vector));
+      }
+    });
+    return distances;
+  }
+
+  @Override
+  public float[] dotProduct(float[] query, FloatMatrix vectors) {
+    checkDimensions(query.length, vectors);
+
+    float[] scores = new float[vectors.rows()];
+    ParallelRows.forEach(vectors, (from, to) -> {
+      float[] vector = new float[query.length];
+      for (int row = from; row < to; row++) {
+        scores[row] = dot(query, vectors.row(row, vector));
+      }
+    });
+    return scores;
+  }
+
+  @Override
+  public float[] multiply(FloatMatrix weights, float[] vector, float[] dst) {
+    checkDimensions(vector.length, weights);
+    checkDestination(weights.rows(), dst);
+
+    ParallelRows.forEach(weights, (from, to) -> {
+      float[] row = new float[vector.length];
+      for (int i = from; i < to; i++) {
+        dst[i] = dot(vector, weights.row(i, row));
+      }
+    });
+    return dst;
+  }
 
-    float[] meanVector = new float[cols];
-    float weightSum = 0;
+  @Override
+  public float[][] multiply(FloatMatrix weights, float[][] vectors) {
+    checkDimensions(weights.cols(), vectors);
 
-    for (int row = 0; row < rows; row++) {
-      weightSum += weights[row];
-      for (int col = 0; col < cols; col++) {
-        meanVector[col] += matrix[row][col] * weights[row];
+    float[][] products = new float[vectors.length][weights.rows()];
+    ParallelRows.forEach(weights, vectors.length, (from, to) -> {
+      // each weight row is copied once, then dotted with every vector
+      float[] row = new float[weights.cols()];
+      for (int i = from; i < to; i++) {
+        weights.row(i, row);
+        for (int v = 0; v < vectors.length; v++) {
+          products[v][i] = dot(vectors[v], row);
+        }
       }
+    });
+    return products;
+  }
+
+  private static float[] sum(float[][] matrix, float[] dst) {
+    checkDestination(matrix[0].length, dst);
+
+    ParallelReduction.sumRows(
+      matrix.length,
+      dst,
+      (from, to, accumulator) -> {
+        for (int row = from; row < to; row++) {
+          accumulate(matrix[row], 1f, accumulator);
+        }
+        return 0f;
+      },
+      NativeMath::combine
+    );
+    return dst;
+  }
+
+  private static float weightedSum(
+    float[][] matrix,
+    float[] weights,
+    float[] dst
+  ) {
+    checkDestination(matrix[0].length, dst);
+
+    return ParallelReduction.sumRows(
+      matrix.length,
+      dst,
+      (from, to, accumulator) -> {
+        float blockWeight = 0;
+        for (int row = from; row < to; row++) {
+          blockWeight += weights[row];
+          accumulate(matrix[row], weights[row], accumulator);
+        }
+        return blockWeight;
+      },
+      NativeMath::combine
+    );
+  }
+
+  private static void accumulate(
+    float[] vector,
+    float weight,
+    float[] accumulator
+  ) {
+    for (int col = 0; col < accumulator.length; col++) {
+      accumulator[col] += vector[col] * weight;
+    }
+  }
+
+  private static void combine(float[] partial, float[] accumulator) {
+    accumulate(partial, 1f, accumulator);
+  }
+
+  private static void maximum(float[] vector, float[] accumulator) {
+    for (int col = 0; col < accumulator.length; col++) {
+      accumulator[col] = FastMath.max(accumulator[col], vector[col]);
+    }
+  }
+
+  private static float[] divide(float[] vector, float divisor, float[] dst) {
+    for (int i = 0; i < vector.length; i++) {
+      dst[i] = vector[i] / divisor;
+    }
+    return dst;
+  }
+
+  private static void checkDestination(int length, float[] dst) {
+    checkDestination(length, dst.length);
+  }
+
+  private static void checkDestination(int length, short[] dst) {
+    checkDestination(length, dst.length);
+  }
+
+  private static void checkDestination(int length, int dstLength) {
+    if (dstLength != length) {
+      throw new IllegalArgumentException(
+        "Destination must have a length of " + length
+      );
     }
-    for (int j = 0; j < cols; j++) {
-      meanVector[j] /= weightSum;
+  }
+
+  private float[] norms(float[][] vectors) {
+    float[] norms = new float[vectors.length];
+    for (int i = 0; i < vectors.length; i++) {
+      norms[i] = normL2(vectors[i]);
+    }
+    return norms;
+  }
+
+  private static float dot(float[] v1, float[] v2) {
+    float dotProduct = 0.0f;
+    for (int i = 0; i < v1.length; i++) {
+      dotProduct += v1[i] * v2[i];
+    }
+    return dotProduct;
+  }
+
+  private static float distance(float[] v1, float[] v2) {
+    float sum = 0.0f;
+    for (int i = 0; i < v1.length; i++) {
+      float diff = v1[i] - v2[i];
+      sum += diff * diff;
+    }
+    return (float) FastMath.sqrt(sum);
+  }
+
+  private static float cosine(float[] query, float queryNorm, float[] vector) {
+    float dotProduct = 0.0f;
+    float magnitude = 0.0f;
+    for (int i = 0; i < query.length; i++) {
+      dotProduct += query[i] * vector[i];
+      magnitude += vector[i] * vector[i];
+    }
+    return cosine(dotProduct, queryNorm, (float) FastMath.sqrt(magnitude));
+  }
+
+  private static float cosine(float dotProduct, float norm1, float norm2) {
+    if (norm1 == 0 || norm2 == 0) {
+      return 0.0f;
+    }
+    return dotProduct / (norm1 * norm2);
+  }
+
+  private static void checkDimensions(int dimension, float[][] vectors) {
+    for (float[] vector : vectors) {
+      if (vector.length != dimension) {
+        throw new IllegalArgumentException(
+          "Vectors must have the same length"
+        );
+      }
+    }
+  }
+
+  private static void checkDimensions(int dimension, FloatMatrix vectors) {
+    if (vectors.cols() != dimension) {
+      throw new IllegalArgumentException("Vectors must have the same length");
+    }
+  }
+
+  private static int checkDimensions(float[][] queries, float[][] vectors) {
+    if (queries.length == 0) {
+      return 0;
     }
-    return meanVector;
+    final int dimension = queries[0].length;
+    checkDimensions(dimension, queries);
+    checkDimensions(dimension, vectors);
+    return dimension;
   }
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.segment;
+
+import static java.lang.foreign.ValueLayout.JAVA_FLOAT_UNALIGNED;
+import static java.util.Objects.checkFromIndexSize;
+import static java.util.Objects.checkIndex;
+
+import io.gravitee.inference.math.api.matrix.FloatMatrix;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link FloatMatrix} backed by a {@link MemorySegment} holding
+ * native-order floats, typically off-heap memory or a memory-mapped file.
+ * <p>
+ * The Foreign Function &amp; Memory API is a preview feature in Java 21:
+ * this module is compiled with {@code --enable-preview} and only loads on
+ * Java 21 with that flag, while the math API does not need it.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class SegmentFloatMatrix implements FloatMatrix {
+
+  /**
+   * Never started, hence never the owner of a confined segment.
+   */
+  private static final Thread NOT_OWNER = new Thread(() -> {});
+
+  private final MemorySegment segment;
+  private final int rows;
+  private final int cols;
+  private final boolean shared;
+
+  private SegmentFloatMatrix(MemorySegment segment, int rows, int cols) {
+    // Java 21 cannot tell a confined segment's owner: probe with a thread
+    // that is not the owner to know if other threads may read it.
+    this(segment, rows, cols, segment.isAccessibleBy(NOT_OWNER));
+  }
+
+  private SegmentFloatMatrix(
+    MemorySegment segment,
+    int rows,
+    int cols,
+    boolean shared
+  ) {
+    if (rows < 0 || cols < 0) {
+      throw new IllegalArgumentException("Dimensions must be positive");
+    }
+    if (segment.byteSize() < (long) rows * cols * Float.BYTES) {
+      throw new IllegalArgumentException(
+        "Segment is too small for a " + rows + "x" + cols + " matrix"
+      );
+    }
+    this.segment = segment;
+    this.rows = rows;
+    this.cols = cols;
+    this.shared = shared;
+  }
+
+  public static SegmentFloatMatrix of(
+    MemorySegment segment,
+    int rows,
+    int cols
+  ) {
+    return new SegmentFloatMatrix(segment, rows, cols);
+  }
+
+  public static SegmentFloatMatrix allocate(Arena arena, int rows, int cols) {
+    return new SegmentFloatMatrix(
+      arena.allocate((long) rows * cols * Float.BYTES, Float.BYTES),
+      rows,
+      cols
+    );
+  }
+
+  /**
+   * Maps, read-only, a file of raw native-order floats stored row after
+   * row, such as projection weights written by numpy's {@code tofile()}.
+   * The mapping is released when {@code arena} is closed.
+   */
+  public static SegmentFloatMatrix map(
+    Arena arena,
+    Path path,
+    int rows,
+    int cols
+  ) throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return new SegmentFloatMatrix(
+        channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena),
+        rows,
+        cols
+      );
+    }
+  }
+
+  public static SegmentFloatMatrix copyOf(Arena arena, float[][] matrix) {
+    final int rows = matrix.length;
+    final int cols = rows == 0 ? 0 : matrix[0].length;
+    var copy = allocate(arena, rows, cols);
+    for (int row = 0; row < rows; row++) {
+      if (matrix[row].length != cols) {
+        throw new IllegalArgumentException(
+          "All rows must have the same length"
+        );
+      }
+      MemorySegment.copy(
+        matrix[row],
+        0,
+        copy.segment,
+        JAVA_FLOAT_UNALIGNED,
+        copy.byteOffset(row),
+        cols
+      );
+    }
+    return copy;
+  }
+
+  public MemorySegment segment() {
+    return segment;
+  }
+
+  @Override
+  public boolean isShared() {
+    return shared;
+  }
+
+  public long byteOffset(int row) {
+    return (long) checkIndex(row, rows) * cols * Float.BYTES;
+  }
+
+  @Override
+  public int rows() {
+    return rows;
+  }
+
+  @Override
+  public int cols() {
+    return cols;
+  }
+
+  @Override
+  public float get(int row, int col) {
+    return segment.getAtIndex(JAVA_FLOAT_UNALIGNED, index(row, col));
+  }
+
+  @Override
+  public void set(int row, int col, float value) {
+    segment.setAtIndex(JAVA_FLOAT_UNALIGNED, index(row, col), value);
+  }
+
+  @Override
+  public float[] row(int row, float[] dst) {
+    MemorySegment.copy(
+      segment,
+      JAVA_FLOAT_UNALIGNED,
+      byteOffset(row),
+      dst,
+      0,
+      cols
+    );
+    return dst;
+  }
+
+  @Override
+  public SegmentFloatMatrix rows(int from, int to) {
+    checkFromIndexSize(from, to - from, rows);
+    return new SegmentFloatMatrix(
+      segment.asSlice(
+        (long) from * cols * Float.BYTES,
+        (long) (to - from) * cols * Float.BYTES
+      ),
+      to - from,
+      cols,
+      shared
+    );
+  }
+
+  private long index(int row, int col) {
+    return (long) checkIndex(row, rows) * cols + checkIndex(col, cols);
+  }
+}
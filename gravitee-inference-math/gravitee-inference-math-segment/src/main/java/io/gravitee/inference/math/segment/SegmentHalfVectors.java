@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.segment;
+
+import static java.lang.foreign.ValueLayout.JAVA_SHORT_UNALIGNED;
+
+import io.gravitee.inference.math.api.half.HalfFormat;
+import io.gravitee.inference.math.api.half.HalfVector;
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Copies {@link HalfVector} values to and from a {@link MemorySegment}, in
+ * native byte order, for off-heap embedding caches. Kept apart from
+ * {@link HalfVector} because the Foreign Function &amp; Memory API is a
+ * preview feature in Java 21.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class SegmentHalfVectors {
+
+  private SegmentHalfVectors() {}
+
+  /**
+   * @return the number of bytes written, {@code 2 * vector.dimension()}
+   */
+  public static long write(
+    HalfVector vector,
+    MemorySegment segment,
+    long byteOffset
+  ) {
+    MemorySegment.copy(
+      vector.values(),
+      0,
+      segment,
+      JAVA_SHORT_UNALIGNED,
+      byteOffset,
+      vector.dimension()
+    );
+    return (long) vector.dimension() * Short.BYTES;
+  }
+
+  public static HalfVector read(
+    MemorySegment segment,
+    long byteOffset,
+    int dimension,
+    HalfFormat format
+  ) {
+    short[] values = new short[dimension];
+    MemorySegment.copy(
+      segment,
+      JAVA_SHORT_UNALIGNED,
+      byteOffset,
+      values,
+      0,
+      dimension
+    );
+    return new HalfVector(values, format);
+  }
+}
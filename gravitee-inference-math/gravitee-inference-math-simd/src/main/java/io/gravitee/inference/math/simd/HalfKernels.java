@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.simd;
+
+import static jdk.incubator.vector.VectorOperators.GE;
+import static jdk.incubator.vector.VectorOperators.GT;
+import static jdk.incubator.vector.VectorOperators.I2S;
+import static jdk.incubator.vector.VectorOperators.IS_NAN;
+import static jdk.incubator.vector.VectorOperators.LSHL;
+import static jdk.incubator.vector.VectorOperators.LSHR;
+import static jdk.incubator.vector.VectorOperators.LT;
+import static jdk.incubator.vector.VectorOperators.OR;
+import static jdk.incubator.vector.VectorOperators.S2I;
+
+import io.gravitee.inference.math.api.half.HalfFormat;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Lane-wise conversions between floats and {@link HalfFormat} halves,
+ * shared by both SIMD implementations. The Vector API of Java 21 has no
+ * half-precision conversion, so they work on the bits in int lanes:
+ * <ul>
+ *   <li>BF16 is the upper half of a float, rounded to nearest even.</li>
+ *   <li>FP16 is decoded by moving the exponent and mantissa bits in place
+ *   and rescaling by {@code 2^112}, which also handles subnormals; it is
+ *   encoded the other way round, subnormals being rounded by an addition
+ *   of {@code 0.5f}. NaNs encode to a quiet NaN, without their payload.</li>
+ * </ul>
+ * A half vector holds as many lanes as a {@link #SPECIES} float vector.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+final class HalfKernels {
+
+  static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+  static final VectorSpecies<Short> HALF_SPECIES = VectorSpecies.of(
+    short.class,
+    VectorShape.forBitSize(SPECIES.vectorBitSize() / 2)
+  );
+  private static final VectorSpecies<Integer> INT_SPECIES =
+    IntVector.SPECIES_PREFERRED;
+
+  private static final int SIGN = 0x80000000;
+  private static final int FLOAT16_EXPONENT = 0x7C00;
+  private static final int FLOAT16_INFINITY = 0x7C00;
+  private static final int FLOAT16_NAN = 0x7E00;
+  /** Smallest float, as bits, that is a normal FP16: {@code 2^-14}. */
+  private static final int FLOAT16_MIN_NORMAL = 113 << 23;
+  /** Smallest float, as bits, that overflows FP16: {@code 2^16}. */
+  private static final int FLOAT16_OVERFLOW = 143 << 23;
+  /** Adding 0.5f rounds a float to a multiple of {@code 2^-24}. */
+  private static final float SUBNORMAL_MAGIC = 0.5f;
+  private static final float FLOAT16_TO_FLOAT_SCALE = 0x1p112f;
+
+  private HalfKernels() {}
+
+  static FloatVector decode(HalfFormat format, ShortVector halves) {
+    var bits = (IntVector) halves.convertShape(S2I, INT_SPECIES, 0);
+    return switch (format) {
+      case BFLOAT16 -> bits.lanewise(LSHL, 16).reinterpretAsFloats();
+      case FLOAT16 -> {
+        var magnitude = bits
+          .and(0x7FFF)
+          .lanewise(LSHL, 13)
+          .reinterpretAsFloats()
+          .mul(FLOAT16_TO_FLOAT_SCALE)
+          .reinterpretAsInts();
+        // an exponent of all ones is an infinity or a NaN
+        magnitude = magnitude.lanewise(
+          OR,
+          0x7F800000,
+          bits.and(FLOAT16_EXPONENT).eq(FLOAT16_EXPONENT)
+        );
+        yield magnitude
+          .or(bits.and(0x8000).lanewise(LSHL, 16))
+          .reinterpretAsFloats();
+      }
+    };
+  }
+
+  static ShortVector encode(HalfFormat format, FloatVector v) {
+    var bits = v.reinterpretAsInts();
+    var halves = switch (format) {
+      case BFLOAT16 -> bits
+        .add(bits.lanewise(LSHR, 16).and(1))
+        .add(0x7FFF)
+        .lanewise(LSHR, 16)
+        .blend(
+          bits.lanewise(LSHR, 16).or(0x40),
+          v.test(IS_NAN).cast(INT_SPECIES)
+        );
+      case FLOAT16 -> float16(bits);
+    };
+    return (ShortVector) halves.convertShape(I2S, HALF_SPECIES, 0);
+  }
+
+  private static IntVector float16(IntVector bits) {
+    var sign = bits.and(SIGN);
+    var magnitude = bits.and(~SIGN);
+    // rebias the exponent, then round the 13 dropped bits to nearest even
+    var normal = magnitude
+      .add((15 - 127) << 23)
+      .add(0xFFF)
+      .add(magnitude.lanewise(LSHR, 13).and(1))
+      .lanewise(LSHR, 13);
+    var subnormal = magnitude
+      .reinterpretAsFloats()
+      .add(SUBNORMAL_MAGIC)
+      .reinterpretAsInts()
+      .sub(Float.floatToRawIntBits(SUBNORMAL_MAGIC));
+    return normal
+      .blend(subnormal, magnitude.compare(LT, FLOAT16_MIN_NORMAL))
+      .blend(FLOAT16_INFINITY, magnitude.compare(GE, FLOAT16_OVERFLOW))
+      .blend(FLOAT16_NAN, magnitude.compare(GT, 0x7F800000))
+      .or(sign.lanewise(LSHR, 16));
+  }
+}
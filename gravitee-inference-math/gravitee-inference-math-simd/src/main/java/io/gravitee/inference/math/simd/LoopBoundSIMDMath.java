@@ -15,12 +15,46 @@
  */
 package io.gravitee.inference.math.simd;
 
+import static io.gravitee.inference.math.simd.HalfKernels.HALF_SPECIES;
+import static io.gravitee.inference.math.simd.HalfKernels.decode;
+import static io.gravitee.inference.math.simd.HalfKernels.encode;
+import static io.gravitee.inference.math.simd.TiledKernels.checkDestination;
+import static io.gravitee.inference.math.simd.TiledKernels.checkDimensions;
+import static io.gravitee.inference.math.simd.TiledKernels.cosine;
+import static io.gravitee.inference.math.simd.TiledKernels.matrixRows;
+import static io.gravitee.inference.math.simd.TiledKernels.matrixTiles;
+import static io.gravitee.inference.math.simd.TiledKernels.rows;
+import static io.gravitee.inference.math.simd.TiledKernels.tiles;
 import static jdk.incubator.vector.VectorOperators.ADD;
+import static jdk.incubator.vector.VectorOperators.B2F;
+import static jdk.incubator.vector.VectorOperators.B2S;
+import static jdk.incubator.vector.VectorOperators.BIT_COUNT;
+import static jdk.incubator.vector.VectorOperators.GT;
+import static jdk.incubator.vector.VectorOperators.S2I;
+import static jdk.incubator.vector.VectorOperators.XOR;
 
 import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.half.HalfFormat;
+import io.gravitee.inference.math.api.matrix.FloatMatrix;
+import io.gravitee.inference.math.api.matrix.HeapFloatMatrix;
+import io.gravitee.inference.math.api.parallel.ParallelReduction;
+import io.gravitee.inference.math.api.parallel.ParallelReduction.Combiner;
+import io.gravitee.inference.math.api.parallel.ParallelRows;
+import io.gravitee.inference.math.api.pooling.BatchPooling;
+import io.gravitee.inference.math.api.selection.BoundedHeap;
+import io.gravitee.inference.math.api.selection.TopK;
+import io.gravitee.inference.math.simd.TiledKernels.BlockKernel;
+import io.gravitee.inference.math.simd.TiledKernels.MatrixBlockKernel;
+import io.gravitee.inference.math.simd.TiledKernels.MatrixRowKernel;
+import io.gravitee.inference.math.simd.TiledKernels.RowKernel;
 import io.gravitee.inference.math.vanilla.NativeMath;
+import jdk.incubator.vector.ByteVector;
 import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.ShortVector;
 import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
 import jdk.incubator.vector.VectorSpecies;
 import org.apache.commons.math3.util.FastMath;
 
@@ -33,9 +67,58 @@ public class LoopBoundSIMDMath implements GioMaths {
   private static final VectorSpecies<Float> SPECIES =
     FloatVector.SPECIES_PREFERRED;
 
-  private LoopBoundSIMDMath() {}
+  /*
+    Int8 kernels: bytes are widened to shorts, whose products cannot
+    overflow, then summed as ints; or converted to floats in as many parts
+    as the byte vector holds float vectors.
+  */
+  private static final VectorSpecies<Integer> INT_SPECIES =
+    IntVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Short> SHORT_SPECIES =
+    ShortVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Byte> BYTE_SPECIES = VectorSpecies.of(
+    byte.class,
+    VectorShape.forBitSize(SHORT_SPECIES.vectorBitSize() / 2)
+  );
+  private static final VectorSpecies<Byte> FLOAT_BYTE_SPECIES =
+    VectorSpecies.of(
+      byte.class,
+      VectorShape.forBitSize(Math.max(64, SPECIES.vectorBitSize() / 4))
+    );
+  private static final int FLOAT_PARTS =
+    FLOAT_BYTE_SPECIES.length() / SPECIES.length();
 
-  public static final GioMaths INSTANCE = new LoopBoundSIMDMath();
+  private static final VectorSpecies<Long> LONG_SPECIES =
+    LongVector.SPECIES_PREFERRED;
+
+  private static final BlockKernel DOT_BLOCK = LoopBoundSIMDMath::dot4;
+  private static final RowKernel DOT_ROW = LoopBoundSIMDMath::dot;
+  private static final Combiner COMBINER = (partial, accumulator) ->
+    accumulate(partial, 0, 1f, accumulator);
+  private static final MatrixBlockKernel MATRIX_DOT_BLOCK =
+    LoopBoundSIMDMath::dot4;
+  private static final MatrixRowKernel MATRIX_DOT_ROW = LoopBoundSIMDMath::dot;
+  private static final BlockKernel DISTANCE_BLOCK =
+    LoopBoundSIMDMath::distance4;
+  private static final RowKernel DISTANCE_ROW = LoopBoundSIMDMath::distance;
+
+  private final Precision precision;
+
+  private LoopBoundSIMDMath(Precision precision) {
+    this.precision = precision;
+  }
+
+  public static final GioMaths INSTANCE = new LoopBoundSIMDMath(
+    Precision.EXACT
+  );
+
+  /**
+   * Trades a bounded error on transcendental functions for speed, see
+   * {@link Precision#FAST}.
+   */
+  public static final GioMaths FAST_INSTANCE = new LoopBoundSIMDMath(
+    Precision.FAST
+  );
 
   @Override
   public float euclideanDistance(float[] v1, float[] v2) {
@@ -65,6 +148,32 @@ public class LoopBoundSIMDMath implements GioMaths {
     return (float) FastMath.sqrt(sum);
   }
 
+  @Override
+  public float manhattanDistance(float[] v1, float[] v2) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException(
+        "Both vectors must have the same dimension."
+      );
+    }
+
+    int length = v1.length;
+    int i = 0;
+
+    FloatVector sumVector = FloatVector.zero(SPECIES);
+    for (; i < SPECIES.loopBound(length); i += SPECIES.length()) {
+      FloatVector vec1 = FloatVector.fromArray(SPECIES, v1, i);
+      FloatVector vec2 = FloatVector.fromArray(SPECIES, v2, i);
+      sumVector = sumVector.add(vec1.sub(vec2).abs());
+    }
+
+    float sum = sumVector.reduceLanes(ADD);
+    for (; i < length; i++) {
+      sum += FastMath.abs(v1[i] - v2[i]);
+    }
+
+    return sum;
+  }
+
   @Override
   public float cosineSimilarity(float[] v1, float[] v2) {
     int length = v1.length;
@@ -101,29 +210,298 @@ public class LoopBoundSIMDMath implements GioMaths {
   }
 
   @Override
-  public float[] mean(float[][] matrix) {
-    int rows = matrix.length;
-    int cols = matrix[0].length;
-    float[] accumulator = new float[cols];
-
-    for (float[] row : matrix) {
-      int j = 0;
-      for (; j < SPECIES.loopBound(cols); j += SPECIES.length()) {
-        var v1 = FloatVector.fromArray(SPECIES, accumulator, j);
-        var v2 = FloatVector.fromArray(SPECIES, row, j);
-        v1.add(v2).intoArray(accumulator, j);
-      }
-      for (; j < cols; j++) {
-        accumulator[j] += row[j];
+  public float dotProduct(float[] v1, float[] v2) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException(
+        "Both vectors must have the same dimension."
+      );
+    }
+    return dot(v1, v2);
+  }
+
+  @Override
+  public int dotProduct(byte[] v1, byte[] v2) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException(
+        "Both vectors must have the same dimension."
+      );
+    }
+
+    var sumVector = IntVector.zero(INT_SPECIES);
+    int i = 0;
+    for (; i < BYTE_SPECIES.loopBound(v1.length); i += BYTE_SPECIES.length()) {
+      var products = widen(ByteVector.fromArray(BYTE_SPECIES, v1, i)).mul(
+        widen(ByteVector.fromArray(BYTE_SPECIES, v2, i))
+      );
+      sumVector = sumVector
+        .add(products.convertShape(S2I, INT_SPECIES, 0))
+        .add(products.convertShape(S2I, INT_SPECIES, 1));
+    }
+    int dotProduct = sumVector.reduceLanes(ADD);
+    for (; i < v1.length; i++) {
+      dotProduct += v1[i] * v2[i];
+    }
+    return dotProduct;
+  }
+
+  @Override
+  public float dotProduct(float[] v1, byte[] v2) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException(
+        "Both vectors must have the same dimension."
+      );
+    }
+
+    var sumVector = FloatVector.zero(SPECIES);
+    int i = 0;
+    for (
+      ;
+      i < FLOAT_BYTE_SPECIES.loopBound(v1.length);
+      i += FLOAT_BYTE_SPECIES.length()
+    ) {
+      var codes = ByteVector.fromArray(FLOAT_BYTE_SPECIES, v2, i);
+      for (int part = 0; part < FLOAT_PARTS; part++) {
+        var v = FloatVector.fromArray(SPECIES, v1, i + part * SPECIES.length());
+        var c = (FloatVector) codes.convertShape(B2F, SPECIES, part);
+        sumVector = sumVector.add(v.mul(c));
       }
     }
+    float dotProduct = sumVector.reduceLanes(ADD);
+    for (; i < v1.length; i++) {
+      dotProduct += v1[i] * v2[i];
+    }
+    return dotProduct;
+  }
+
+  @Override
+  public int hammingDistance(long[] v1, long[] v2) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException(
+        "Both vectors must have the same dimension."
+      );
+    }
+
+    var sumVector = LongVector.zero(LONG_SPECIES);
+    int i = 0;
+    for (; i < LONG_SPECIES.loopBound(v1.length); i += LONG_SPECIES.length()) {
+      var bits = LongVector.fromArray(LONG_SPECIES, v1, i).lanewise(
+        XOR,
+        LongVector.fromArray(LONG_SPECIES, v2, i)
+      );
+      sumVector = sumVector.add(bits.lanewise(BIT_COUNT));
+    }
+    int distance = (int) sumVector.reduceLanes(ADD);
+    for (; i < v1.length; i++) {
+      distance += Long.bitCount(v1[i] ^ v2[i]);
+    }
+    return distance;
+  }
+
+  @Override
+  public short[] toHalf(float[] vector, HalfFormat format, short[] dst) {
+    checkDestination(vector.length, dst);
+    int i = 0;
+    for (; i < SPECIES.loopBound(vector.length); i += SPECIES.length()) {
+      var v = FloatVector.fromArray(SPECIES, vector, i);
+      encode(format, v).intoArray(dst, i);
+    }
+    for (; i < vector.length; i++) {
+      dst[i] = format.encode(vector[i]);
+    }
+    return dst;
+  }
 
-    return computeMean(rows, accumulator, accumulator);
+  @Override
+  public float[] fromHalf(short[] vector, HalfFormat format, float[] dst) {
+    checkDestination(vector.length, dst);
+    int i = 0;
+    for (; i < SPECIES.loopBound(vector.length); i += SPECIES.length()) {
+      var halves = ShortVector.fromArray(HALF_SPECIES, vector, i);
+      decode(format, halves).intoArray(dst, i);
+    }
+    for (; i < vector.length; i++) {
+      dst[i] = format.decode(vector[i]);
+    }
+    return dst;
+  }
+
+  @Override
+  public float dotProduct(float[] v1, short[] v2, HalfFormat format) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException(
+        "Both vectors must have the same dimension."
+      );
+    }
+
+    var sumVector = FloatVector.zero(SPECIES);
+    int i = 0;
+    for (; i < SPECIES.loopBound(v1.length); i += SPECIES.length()) {
+      var v = FloatVector.fromArray(SPECIES, v1, i);
+      var h = decode(format, ShortVector.fromArray(HALF_SPECIES, v2, i));
+      sumVector = sumVector.add(v.mul(h));
+    }
+    float dotProduct = sumVector.reduceLanes(ADD);
+    for (; i < v1.length; i++) {
+      dotProduct += v1[i] * format.decode(v2[i]);
+    }
+    return dotProduct;
+  }
+
+  @Override
+  public float cosineSimilarity(float[] v1, short[] v2, HalfFormat format) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException(
+        "Both vectors must have the same dimension."
+      );
+    }
+
+    var dotProductVector = FloatVector.zero(SPECIES);
+    var magnitudeAVector = FloatVector.zero(SPECIES);
+    var magnitudeBVector = FloatVector.zero(SPECIES);
+    int i = 0;
+    for (; i < SPECIES.loopBound(v1.length); i += SPECIES.length()) {
+      var v = FloatVector.fromArray(SPECIES, v1, i);
+      var h = decode(format, ShortVector.fromArray(HALF_SPECIES, v2, i));
+      dotProductVector = dotProductVector.add(v.mul(h));
+      magnitudeAVector = magnitudeAVector.add(v.mul(v));
+      magnitudeBVector = magnitudeBVector.add(h.mul(h));
+    }
+    float dotProduct = dotProductVector.reduceLanes(ADD);
+    float magnitudeA = magnitudeAVector.reduceLanes(ADD);
+    float magnitudeB = magnitudeBVector.reduceLanes(ADD);
+    for (; i < v1.length; i++) {
+      final float h = format.decode(v2[i]);
+      dotProduct += v1[i] * h;
+      magnitudeA += v1[i] * v1[i];
+      magnitudeB += h * h;
+    }
+    return cosine(
+      dotProduct,
+      (float) FastMath.sqrt(magnitudeA),
+      (float) FastMath.sqrt(magnitudeB)
+    );
+  }
+
+  @Override
+  public float[] cosineSimilarity(float[] query, float[][] vectors) {
+    checkDimensions(query.length, vectors);
+
+    final float queryNorm = magnitude(query);
+    final BlockKernel blockKernel = (q, v0, v1, v2, v3, out, offset) ->
+      cosine4(q, queryNorm, v0, v1, v2, v3, out, offset);
+    final RowKernel rowKernel = (q, v) -> cosineRow(q, queryNorm, v, 0);
+
+    float[] scores = new float[vectors.length];
+    ParallelRows.forEach(vectors.length, query.length, (from, to) ->
+      rows(query, vectors, scores, from, to, blockKernel, rowKernel)
+    );
+    return scores;
+  }
+
+  @Override
+  public float[][] cosineSimilarity(float[][] queries, float[][] vectors) {
+    final int dimension = checkDimensions(queries, vectors);
+
+    final float[] vectorNorms = magnitudes(vectors);
+    float[][] scores = new float[queries.length][vectors.length];
+    ParallelRows.forEach(
+      queries.length,
+      (long) vectors.length * dimension,
+      (from, to) -> {
+        tiles(queries, vectors, scores, from, to, DOT_BLOCK, DOT_ROW);
+        for (int i = from; i < to; i++) {
+          final float queryNorm = magnitude(queries[i]);
+          for (int j = 0; j < vectors.length; j++) {
+            scores[i][j] = cosine(scores[i][j], queryNorm, vectorNorms[j]);
+          }
+        }
+      }
+    );
+    return scores;
+  }
+
+  @Override
+  public float[] euclideanDistance(float[] query, float[][] vectors) {
+    checkDimensions(query.length, vectors);
+
+    float[] distances = new float[vectors.length];
+    ParallelRows.forEach(vectors.length, query.length, (from, to) ->
+      rows(query, vectors, distances, from, to, DISTANCE_BLOCK, DISTANCE_ROW)
+    );
+    return distances;
+  }
+
+  @Override
+  public float[][] euclideanDistance(float[][] queries, float[][] vectors) {
+    final int dimension = checkDimensions(queries, vectors);
+
+    float[][] distances = new float[queries.length][vectors.length];
+    ParallelRows.forEach(
+      queries.length,
+      (long) vectors.length * dimension,
+      (from, to) ->
+        tiles(
+          queries,
+          vectors,
+          distances,
+          from,
+          to,
+          DISTANCE_BLOCK,
+          DISTANCE_ROW
+        )
+    );
+    return distances;
+  }
+
+  @Override
+  public float[] dotProduct(float[] query, float[][] vectors) {
+    checkDimensions(query.length, vectors);
+
+    float[] scores = new float[vectors.length];
+    ParallelRows.forEach(vectors.length, query.length, (from, to) ->
+      rows(query, vectors, scores, from, to, DOT_BLOCK, DOT_ROW)
+    );
+    return scores;
+  }
+
+  @Override
+  public float[][] dotProduct(float[][] queries, float[][] vectors) {
+    final int dimension = checkDimensions(queries, vectors);
+
+    float[][] scores = new float[queries.length][vectors.length];
+    ParallelRows.forEach(
+      queries.length,
+      (long) vectors.length * dimension,
+      (from, to) ->
+        tiles(queries, vectors, scores, from, to, DOT_BLOCK, DOT_ROW)
+    );
+    return scores;
+  }
+
+  @Override
+  public float[] mean(float[][] matrix) {
+    return mean(matrix, new float[matrix[0].length]);
+  }
+
+  @Override
+  public float[] mean(float[][] matrix, float[] dst) {
+    return computeMean(matrix.length, sum(matrix, dst));
+  }
+
+  @Override
+  public float[] normalizedMean(float[][] matrix, float[] dst) {
+    return computeMean(magnitude(sum(matrix, dst)), dst);
   }
 
   @Override
   public float[] normalize(float[] vector) {
-    return computeMean(normL2(vector), vector, new float[vector.length]);
+    return normalize(vector, new float[vector.length]);
+  }
+
+  @Override
+  public float[] normalize(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
+    return computeMean(normL2(vector), vector, dst);
   }
 
   @Override
@@ -133,76 +511,401 @@ public class LoopBoundSIMDMath implements GioMaths {
 
   @Override
   public float[] weightedMean(float[][] matrix, float[] weights) {
-    int rows = matrix.length;
-    int cols = matrix[0].length;
-    float[] accumulator = new float[cols];
-    float totalWeight = 0.0f;
-
-    for (int i = 0; i < rows; i++) {
-      totalWeight += weights[i];
-      int j = 0;
-      for (; j < SPECIES.loopBound(cols); j += SPECIES.length()) {
-        var v1 = FloatVector.fromArray(SPECIES, accumulator, j);
-        var v2 = FloatVector.fromArray(SPECIES, matrix[i], j);
-        v1.add(v2.mul(weights[i])).intoArray(accumulator, j);
-      }
-      for (; j < cols; j++) {
-        accumulator[j] += matrix[i][j] * weights[i];
-      }
-    }
+    return weightedMean(matrix, weights, new float[matrix[0].length]);
+  }
 
-    return computeMean(totalWeight, accumulator);
+  @Override
+  public float[] weightedMean(float[][] matrix, float[] weights, float[] dst) {
+    return computeMean(weightedSum(matrix, weights, dst), dst);
+  }
+
+  @Override
+  public float[] normalizedWeightedMean(
+    float[][] matrix,
+    float[] weights,
+    float[] dst
+  ) {
+    final float totalWeight = weightedSum(matrix, weights, dst);
+    return computeMean(FastMath.copySign(magnitude(dst), totalWeight), dst);
   }
 
   @Override
   public float[] softmax(float[] vector) {
+    return softmax(vector, new float[vector.length]);
+  }
+
+  @Override
+  public float[] softmax(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
+
     var maxLogit = max(vector);
     FloatVector sumVector = FloatVector.zero(SPECIES);
-    float[] expVector = new float[vector.length];
 
     int i = 0;
     for (; i < SPECIES.loopBound(vector.length); i += SPECIES.length()) {
       var v = FloatVector.fromArray(SPECIES, vector, i);
       var adjustedV = v.sub(maxLogit);
-      var expV = adjustedV.lanewise(VectorOperators.EXP);
+      var expV = precision.exp(adjustedV);
 
-      expV.intoArray(expVector, i);
+      expV.intoArray(dst, i);
       sumVector = sumVector.add(expV);
     }
 
     float sum = sumVector.reduceLanes(VectorOperators.ADD);
     for (; i < vector.length; i++) {
-      expVector[i] = (float) FastMath.exp(vector[i] - maxLogit);
-      sum += expVector[i];
+      dst[i] = precision.exp(vector[i] - maxLogit);
+      sum += dst[i];
     }
 
-    return computeMean(sum, expVector);
+    return computeMean(sum, dst);
   }
 
   @Override
   public float[] sigmoid(float[] vector) {
-    //TODO: Actual SIMD implementation
-    return NativeMath.INSTANCE.sigmoid(vector);
+    return sigmoid(vector, new float[vector.length]);
   }
 
   @Override
-  public float max(float[] vector) {
-    var maxVector = FloatVector.broadcast(SPECIES, Float.NEGATIVE_INFINITY);
+  public float[] sigmoid(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
+    int i = 0;
+    for (; i < SPECIES.loopBound(vector.length); i += SPECIES.length()) {
+      var v = FloatVector.fromArray(SPECIES, vector, i);
+      precision.sigmoid(v).intoArray(dst, i);
+    }
+    for (; i < vector.length; i++) {
+      dst[i] = precision.sigmoid(vector[i]);
+    }
+    return dst;
+  }
 
+  @Override
+  public int argmax(float[] vector) {
+    checkNotEmpty(vector);
+
+    final float max = max(vector);
     int i = 0;
     for (; i < SPECIES.loopBound(vector.length); i += SPECIES.length()) {
+      var hits = FloatVector.fromArray(SPECIES, vector, i).eq(max);
+      if (hits.anyTrue()) {
+        return i + hits.firstTrue();
+      }
+    }
+    for (; i < vector.length; i++) {
+      if (vector[i] == max) {
+        return i;
+      }
+    }
+    // max is NaN, which is equal to nothing
+    return NativeMath.INSTANCE.argmax(vector);
+  }
+
+  @Override
+  public TopK topK(float[] vector, int k) {
+    final BoundedHeap heap = BoundedHeap.capped(k, vector.length);
+
+    int i = 0;
+    for (; i < vector.length && !heap.isFull(); i++) {
+      heap.offer(i, vector[i]);
+    }
+    for (; i <= vector.length - SPECIES.length(); i += SPECIES.length()) {
+      var v = FloatVector.fromArray(SPECIES, vector, i);
+      // most blocks hold nothing above the k-th best value found so far
+      var above = v.compare(GT, heap.threshold());
+      if (above.anyTrue()) {
+        offer(heap, vector, i, above.firstTrue(), SPECIES.length());
+      }
+    }
+    offer(heap, vector, i, 0, vector.length - i);
+    return heap.toTopK();
+  }
+
+  @Override
+  public float[] exp(float[] vector) {
+    return exp(vector, new float[vector.length]);
+  }
+
+  @Override
+  public float[] exp(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
+    int i = 0;
+    for (; i < SPECIES.loopBound(vector.length); i += SPECIES.length()) {
+      var v = FloatVector.fromArray(SPECIES, vector, i);
+      precision.exp(v).intoArray(dst, i);
+    }
+    for (; i < vector.length; i++) {
+      dst[i] = precision.exp(vector[i]);
+    }
+    return dst;
+  }
+
+  @Override
+  public float[] tanh(float[] vector) {
+    return tanh(vector, new float[vector.length]);
+  }
+
+  @Override
+  public float[] tanh(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
+    int i = 0;
+    for (; i < SPECIES.loopBound(vector.length); i += SPECIES.length()) {
+      var v = FloatVector.fromArray(SPECIES, vector, i);
+      precision.tanh(v).intoArray(dst, i);
+    }
+    for (; i < vector.length; i++) {
+      dst[i] = precision.tanh(vector[i]);
+    }
+    return dst;
+  }
+
+  @Override
+  public float[] gelu(float[] vector) {
+    return gelu(vector, new float[vector.length]);
+  }
+
+  @Override
+  public float[] gelu(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
+    int i = 0;
+    for (; i < SPECIES.loopBound(vector.length); i += SPECIES.length()) {
+      var v = FloatVector.fromArray(SPECIES, vector, i);
+      precision.gelu(v).intoArray(dst, i);
+    }
+    for (; i < vector.length; i++) {
+      dst[i] = precision.gelu(vector[i]);
+    }
+    return dst;
+  }
+
+  @Override
+  public float max(float[] vector) {
+    return ParallelReduction.max(vector.length, (from, to) ->
+      max(vector, from, to)
+    );
+  }
+
+  private static float max(float[] vector, int from, int to) {
+    var maxVector = FloatVector.broadcast(SPECIES, Float.NEGATIVE_INFINITY);
+
+    final int bound = from + SPECIES.loopBound(to - from);
+    int i = from;
+    for (; i < bound; i += SPECIES.length()) {
       var v = FloatVector.fromArray(SPECIES, vector, i);
       maxVector = maxVector.max(v);
     }
 
     float max = maxVector.reduceLanes(VectorOperators.MAX);
-    for (; i < vector.length; i++) {
+    for (; i < to; i++) {
       max = FastMath.max(max, vector[i]);
     }
 
     return max;
   }
 
+  @Override
+  public float[][] meanPooling(
+    float[][][] hiddenStates,
+    long[][] attentionMask
+  ) {
+    return BatchPooling.meanPooling(
+      hiddenStates,
+      attentionMask,
+      (row, weight, dst) -> accumulate(row, 0, weight, dst),
+      (dst, count) -> computeMean(count, dst)
+    );
+  }
+
+  @Override
+  public float[][] maxPooling(
+    float[][][] hiddenStates,
+    long[][] attentionMask
+  ) {
+    return BatchPooling.maxPooling(
+      hiddenStates,
+      attentionMask,
+      LoopBoundSIMDMath::maximum
+    );
+  }
+
+  @Override
+  public float[][] weightedMeanPooling(
+    float[][][] hiddenStates,
+    float[][] weights
+  ) {
+    return BatchPooling.weightedMeanPooling(
+      hiddenStates,
+      weights,
+      (row, weight, dst) -> accumulate(row, 0, weight, dst),
+      (dst, totalWeight) -> computeMean(totalWeight, dst)
+    );
+  }
+
+  @Override
+  public float[] mean(FloatMatrix matrix) {
+    return mean(matrix, new float[matrix.cols()]);
+  }
+
+  @Override
+  public float[] mean(FloatMatrix matrix, float[] dst) {
+    checkDestination(matrix.cols(), dst);
+    if (!(matrix instanceof HeapFloatMatrix heap)) {
+      return SegmentKernels.mean(matrix, dst);
+    }
+    ParallelReduction.sumRows(
+      heap,
+      dst,
+      (from, to, accumulator) -> {
+        for (int row = from; row < to; row++) {
+          accumulate(heap.data(), offset(heap, row), 1f, accumulator);
+        }
+        return 0f;
+      },
+      COMBINER
+    );
+    return computeMean(heap.rows(), dst);
+  }
+
+  @Override
+  public float[] weightedMean(FloatMatrix matrix, float[] weights) {
+    return weightedMean(matrix, weights, new float[matrix.cols()]);
+  }
+
+  @Override
+  public float[] weightedMean(
+    FloatMatrix matrix,
+    float[] weights,
+    float[] dst
+  ) {
+    checkDestination(matrix.cols(), dst);
+    if (!(matrix instanceof HeapFloatMatrix heap)) {
+      return SegmentKernels.weightedMean(matrix, weights, dst);
+    }
+    final float totalWeight = ParallelReduction.sumRows(
+      heap,
+      dst,
+      (from, to, accumulator) -> {
+        float blockWeight = 0.0f;
+        for (int row = from; row < to; row++) {
+          blockWeight += weights[row];
+          accumulate(heap.data(), offset(heap, row), weights[row], accumulator);
+        }
+        return blockWeight;
+      },
+      COMBINER
+    );
+    return computeMean(totalWeight, dst);
+  }
+
+  @Override
+  public float[] cosineSimilarity(float[] query, FloatMatrix vectors) {
+    checkDimensions(query.length, vectors);
+
+    final float queryNorm = magnitude(query);
+    if (!(vectors instanceof HeapFloatMatrix heap)) {
+      return SegmentKernels.cosineSimilarity(query, queryNorm, vectors);
+    }
+    float[] scores = new float[heap.rows()];
+    ParallelRows.forEach(heap, (from, to) -> {
+      for (int row = from; row < to; row++) {
+        scores[row] = cosineRow(
+          query,
+          queryNorm,
+          heap.data(),
+          offset(heap, row)
+        );
+      }
+    });
+    return scores;
+  }
+
+  @Override
+  public float[] euclideanDistance(float[] query, FloatMatrix vectors) {
+    checkDimensions(query.length, vectors);
+
+    if (!(vectors instanceof HeapFloatMatrix heap)) {
+      return SegmentKernels.euclideanDistance(query, vectors);
+    }
+    float[] distances = new float[heap.rows()];
+    ParallelRows.forEach(heap, (from, to) -> {
+      for (int row = from; row < to; row++) {
+        distances[row] = distance(query, heap.data(), offset(heap, row));
+      }
+    });
+    return distances;
+  }
+
+  @Override
+  public float[] dotProduct(float[] query, FloatMatrix vectors) {
+    checkDimensions(query.length, vectors);
+
+    if (!(vectors instanceof HeapFloatMatrix heap)) {
+      return SegmentKernels.dotProduct(query, vectors);
+    }
+    float[] scores = new float[heap.rows()];
+    ParallelRows.forEach(heap, (from, to) -> {
+      for (int row = from; row < to; row++) {
+        scores[row] = dot(query, heap.data(), offset(heap, row));
+      }
+    });
+    return scores;
+  }
+
+  @Override
+  public float[] multiply(FloatMatrix weights, float[] vector, float[] dst) {
+    checkDimensions(vector.length, weights);
+    checkDestination(weights.rows(), dst);
+
+    if (!(weights instanceof HeapFloatMatrix heap)) {
+      return SegmentKernels.dotProduct(vector, weights, dst);
+    }
+    ParallelRows.forEach(heap, (from, to) ->
+      matrixRows(vector, heap, dst, from, to, MATRIX_DOT_BLOCK, MATRIX_DOT_ROW)
+    );
+    return dst;
+  }
+
+  @Override
+  public float[][] multiply(FloatMatrix weights, float[][] vectors) {
+    checkDimensions(weights.cols(), vectors);
+
+    if (!(weights instanceof HeapFloatMatrix heap)) {
+      return SegmentKernels.multiply(weights, vectors);
+    }
+    float[][] products = new float[vectors.length][heap.rows()];
+    ParallelRows.forEach(heap, vectors.length, (from, to) ->
+      matrixTiles(
+        vectors,
+        heap,
+        products,
+        from,
+        to,
+        MATRIX_DOT_BLOCK,
+        MATRIX_DOT_ROW
+      )
+    );
+    return products;
+  }
+
+  private static void checkNotEmpty(float[] vector) {
+    if (vector.length == 0) {
+      throw new IllegalArgumentException("Vector must not be empty");
+    }
+  }
+
+  private static void offer(
+    BoundedHeap heap,
+    float[] vector,
+    int offset,
+    int from,
+    int to
+  ) {
+    for (int lane = from; lane < to; lane++) {
+      if (vector[offset + lane] > heap.threshold()) {
+        heap.offer(offset + lane, vector[offset + lane]);
+      }
+    }
+  }
+
   private static float[] computeMean(float sum, float[] vector) {
     return computeMean(sum, vector, vector);
   }
@@ -222,4 +925,373 @@ public class LoopBoundSIMDMath implements GioMaths {
     }
     return accumulator;
   }
+
+  private static int offset(HeapFloatMatrix matrix, int row) {
+    return matrix.offset() + row * matrix.cols();
+  }
+
+  private static float[] sum(float[][] matrix, float[] dst) {
+    checkDestination(matrix[0].length, dst);
+
+    ParallelReduction.sumRows(
+      matrix.length,
+      dst,
+      (from, to, accumulator) -> {
+        for (int row = from; row < to; row++) {
+          accumulate(matrix[row], 0, 1f, accumulator);
+        }
+        return 0f;
+      },
+      COMBINER
+    );
+    return dst;
+  }
+
+  private static float weightedSum(
+    float[][] matrix,
+    float[] weights,
+    float[] dst
+  ) {
+    checkDestination(matrix[0].length, dst);
+
+    return ParallelReduction.sumRows(
+      matrix.length,
+      dst,
+      (from, to, accumulator) -> {
+        float blockWeight = 0.0f;
+        for (int i = from; i < to; i++) {
+          blockWeight += weights[i];
+          accumulate(matrix[i], 0, weights[i], accumulator);
+        }
+        return blockWeight;
+      },
+      COMBINER
+    );
+  }
+
+  private static void accumulate(
+    float[] data,
+    int offset,
+    float weight,
+    float[] accumulator
+  ) {
+    int j = 0;
+    for (; j < SPECIES.loopBound(accumulator.length); j += SPECIES.length()) {
+      var v1 = FloatVector.fromArray(SPECIES, accumulator, j);
+      var v2 = FloatVector.fromArray(SPECIES, data, offset + j);
+      v1.add(v2.mul(weight)).intoArray(accumulator, j);
+    }
+    for (; j < accumulator.length; j++) {
+      accumulator[j] += data[offset + j] * weight;
+    }
+  }
+
+  private static void maximum(float[] row, float[] accumulator) {
+    int j = 0;
+    for (; j < SPECIES.loopBound(accumulator.length); j += SPECIES.length()) {
+      var v1 = FloatVector.fromArray(SPECIES, accumulator, j);
+      var v2 = FloatVector.fromArray(SPECIES, row, j);
+      v1.max(v2).intoArray(accumulator, j);
+    }
+    for (; j < accumulator.length; j++) {
+      accumulator[j] = FastMath.max(accumulator[j], row[j]);
+    }
+  }
+
+  private static ShortVector widen(ByteVector bytes) {
+    return (ShortVector) bytes.convertShape(B2S, SHORT_SPECIES, 0);
+  }
+
+  private static float[] magnitudes(float[][] vectors) {
+    float[] magnitudes = new float[vectors.length];
+    for (int i = 0; i < vectors.length; i++) {
+      magnitudes[i] = magnitude(vectors[i]);
+    }
+    return magnitudes;
+  }
+
+  private static float magnitude(float[] vector) {
+    var sumVector = FloatVector.zero(SPECIES);
+    int i = 0;
+    for (; i < SPECIES.loopBound(vector.length); i += SPECIES.length()) {
+      var v = FloatVector.fromArray(SPECIES, vector, i);
+      sumVector = sumVector.add(v.mul(v));
+    }
+    float sum = sumVector.reduceLanes(ADD);
+    for (; i < vector.length; i++) {
+      sum += vector[i] * vector[i];
+    }
+    return (float) FastMath.sqrt(sum);
+  }
+
+  private static float dot(float[] v1, float[] v2) {
+    return dot(v1, v2, 0);
+  }
+
+  private static float dot(float[] v1, float[] v2, int offset) {
+    var dotProductVector = FloatVector.zero(SPECIES);
+    int i = 0;
+    for (; i < SPECIES.loopBound(v1.length); i += SPECIES.length()) {
+      var vec1 = FloatVector.fromArray(SPECIES, v1, i);
+      var vec2 = FloatVector.fromArray(SPECIES, v2, offset + i);
+      dotProductVector = dotProductVector.add(vec1.mul(vec2));
+    }
+    float dotProduct = dotProductVector.reduceLanes(ADD);
+    for (; i < v1.length; i++) {
+      dotProduct += v1[i] * v2[offset + i];
+    }
+    return dotProduct;
+  }
+
+  private static float cosineRow(
+    float[] query,
+    float queryNorm,
+    float[] v,
+    int offset
+  ) {
+    var dotProductVector = FloatVector.zero(SPECIES);
+    var magnitudeVector = FloatVector.zero(SPECIES);
+    int i = 0;
+    for (; i < SPECIES.loopBound(query.length); i += SPECIES.length()) {
+      var q = FloatVector.fromArray(SPECIES, query, i);
+      var vec = FloatVector.fromArray(SPECIES, v, offset + i);
+      dotProductVector = dotProductVector.add(q.mul(vec));
+      magnitudeVector = magnitudeVector.add(vec.mul(vec));
+    }
+    float dotProduct = dotProductVector.reduceLanes(ADD);
+    float magnitude = magnitudeVector.reduceLanes(ADD);
+    for (; i < query.length; i++) {
+      dotProduct += query[i] * v[offset + i];
+      magnitude += v[offset + i] * v[offset + i];
+    }
+    return cosine(dotProduct, queryNorm, (float) FastMath.sqrt(magnitude));
+  }
+
+  private static float distance(float[] v1, float[] v2) {
+    return distance(v1, v2, 0);
+  }
+
+  private static float distance(float[] v1, float[] v2, int offset) {
+    var sumVector = FloatVector.zero(SPECIES);
+    int i = 0;
+    for (; i < SPECIES.loopBound(v1.length); i += SPECIES.length()) {
+      var diff = FloatVector.fromArray(SPECIES, v1, i).sub(
+        FloatVector.fromArray(SPECIES, v2, offset + i)
+      );
+      sumVector = sumVector.add(diff.mul(diff));
+    }
+    float sum = sumVector.reduceLanes(ADD);
+    for (; i < v1.length; i++) {
+      float diff = v1[i] - v2[offset + i];
+      sum += diff * diff;
+    }
+    return (float) FastMath.sqrt(sum);
+  }
+
+  private static void dot4(
+    float[] query,
+    float[] v0,
+    float[] v1,
+    float[] v2,
+    float[] v3,
+    float[] out,
+    int offset
+  ) {
+    var dot0 = FloatVector.zero(SPECIES);
+    var dot1 = FloatVector.zero(SPECIES);
+    var dot2 = FloatVector.zero(SPECIES);
+    var dot3 = FloatVector.zero(SPECIES);
+
+    int i = 0;
+    for (; i < SPECIES.loopBound(query.length); i += SPECIES.length()) {
+      var q = FloatVector.fromArray(SPECIES, query, i);
+      dot0 = dot0.add(q.mul(FloatVector.fromArray(SPECIES, v0, i)));
+      dot1 = dot1.add(q.mul(FloatVector.fromArray(SPECIES, v1, i)));
+      dot2 = dot2.add(q.mul(FloatVector.fromArray(SPECIES, v2, i)));
+      dot3 = dot3.add(q.mul(FloatVector.fromArray(SPECIES, v3, i)));
+    }
+
+    float sum0 = dot0.reduceLanes(ADD);
+    float sum1 = dot1.reduceLanes(ADD);
+    float sum2 = dot2.reduceLanes(ADD);
+    float sum3 = dot3.reduceLanes(ADD);
+    for (; i < query.length; i++) {
+      sum0 += query[i] * v0[i];
+      sum1 += query[i] * v1[i];
+      sum2 += query[i] * v2[i];
+      sum3 += query[i] * v3[i];
+    }
+
+    out[offset] = sum0;
+    out[offset + 1] = sum1;
+    out[offset + 2] = sum2;
+    out[offset + 3] = sum3;
+  }
+
+  private static void dot4(
+    float[] query,
+    float[] data,
+    int offset,
+    int cols,
+    float[] out,
+    int index
+  ) {
+    final int o1 = offset + cols;
+    final int o2 = o1 + cols;
+    final int o3 = o2 + cols;
+    var dot0 = FloatVector.zero(SPECIES);
+    var dot1 = FloatVector.zero(SPECIES);
+    var dot2 = FloatVector.zero(SPECIES);
+    var dot3 = FloatVector.zero(SPECIES);
+
+    int i = 0;
+    for (; i < SPECIES.loopBound(query.length); i += SPECIES.length()) {
+      var q = FloatVector.fromArray(SPECIES, query, i);
+      dot0 = dot0.add(q.mul(FloatVector.fromArray(SPECIES, data, offset + i)));
+      dot1 = dot1.add(q.mul(FloatVector.fromArray(SPECIES, data, o1 + i)));
+      dot2 = dot2.add(q.mul(FloatVector.fromArray(SPECIES, data, o2 + i)));
+      dot3 = dot3.add(q.mul(FloatVector.fromArray(SPECIES, data, o3 + i)));
+    }
+
+    float sum0 = dot0.reduceLanes(ADD);
+    float sum1 = dot1.reduceLanes(ADD);
+    float sum2 = dot2.reduceLanes(ADD);
+    float sum3 = dot3.reduceLanes(ADD);
+    for (; i < query.length; i++) {
+      sum0 += query[i] * data[offset + i];
+      sum1 += query[i] * data[o1 + i];
+      sum2 += query[i] * data[o2 + i];
+      sum3 += query[i] * data[o3 + i];
+    }
+
+    out[index] = sum0;
+    out[index + 1] = sum1;
+    out[index + 2] = sum2;
+    out[index + 3] = sum3;
+  }
+
+  private static void cosine4(
+    float[] query,
+    float queryNorm,
+    float[] v0,
+    float[] v1,
+    float[] v2,
+    float[] v3,
+    float[] out,
+    int offset
+  ) {
+    var dot0 = FloatVector.zero(SPECIES);
+    var dot1 = FloatVector.zero(SPECIES);
+    var dot2 = FloatVector.zero(SPECIES);
+    var dot3 = FloatVector.zero(SPECIES);
+    var mag0 = FloatVector.zero(SPECIES);
+    var mag1 = FloatVector.zero(SPECIES);
+    var mag2 = FloatVector.zero(SPECIES);
+    var mag3 = FloatVector.zero(SPECIES);
+
+    int i = 0;
+    for (; i < SPECIES.loopBound(query.length); i += SPECIES.length()) {
+      var q = FloatVector.fromArray(SPECIES, query, i);
+      var vec0 = FloatVector.fromArray(SPECIES, v0, i);
+      var vec1 = FloatVector.fromArray(SPECIES, v1, i);
+      var vec2 = FloatVector.fromArray(SPECIES, v2, i);
+      var vec3 = FloatVector.fromArray(SPECIES, v3, i);
+      dot0 = dot0.add(q.mul(vec0));
+      dot1 = dot1.add(q.mul(vec1));
+      dot2 = dot2.add(q.mul(vec2));
+      dot3 = dot3.add(q.mul(vec3));
+      mag0 = mag0.add(vec0.mul(vec0));
+      mag1 = mag1.add(vec1.mul(vec1));
+      mag2 = mag2.add(vec2.mul(vec2));
+      mag3 = mag3.add(vec3.mul(vec3));
+    }
+
+    float dotSum0 = dot0.reduceLanes(ADD);
+    float dotSum1 = dot1.reduceLanes(ADD);
+    float dotSum2 = dot2.reduceLanes(ADD);
+    float dotSum3 = dot3.reduceLanes(ADD);
+    float magSum0 = mag0.reduceLanes(ADD);
+    float magSum1 = mag1.reduceLanes(ADD);
+    float magSum2 = mag2.reduceLanes(ADD);
+    float magSum3 = mag3.reduceLanes(ADD);
+    for (; i < query.length; i++) {
+      dotSum0 += query[i] * v0[i];
+      dotSum1 += query[i] * v1[i];
+      dotSum2 += query[i] * v2[i];
+      dotSum3 += query[i] * v3[i];
+      magSum0 += v0[i] * v0[i];
+      magSum1 += v1[i] * v1[i];
+      magSum2 += v2[i] * v2[i];
+      magSum3 += v3[i] * v3[i];
+    }
+
+    out[offset] = cosine(
+      dotSum0,
+      queryNorm,
+      (float) FastMath.sqrt(magSum0)
+    );
+    out[offset + 1] = cosine(
+      dotSum1,
+      queryNorm,
+      (float) FastMath.sqrt(magSum1)
+    );
+    out[offset + 2] = cosine(
+      dotSum2,
+      queryNorm,
+      (float) FastMath.sqrt(magSum2)
+    );
+    out[offset + 3] = cosine(
+      dotSum3,
+      queryNorm,
+      (float) FastMath.sqrt(magSum3)
+    );
+  }
+
+  private static void distance4(
+    float[] query,
+    float[] v0,
+    float[] v1,
+    float[] v2,
+    float[] v3,
+    float[] out,
+    int offset
+  ) {
+    var sum0 = FloatVector.zero(SPECIES);
+    var sum1 = FloatVector.zero(SPECIES);
+    var sum2 = FloatVector.zero(SPECIES);
+    var sum3 = FloatVector.zero(SPECIES);
+
+    int i = 0;
+    for (; i < SPECIES.loopBound(query.length); i += SPECIES.length()) {
+      var q = FloatVector.fromArray(SPECIES, query, i);
+      var diff0 = q.sub(FloatVector.fromArray(SPECIES, v0, i));
+      var diff1 = q.sub(FloatVector.fromArray(SPECIES, v1, i));
+      var diff2 = q.sub(FloatVector.fromArray(SPECIES, v2, i));
+      var diff3 = q.sub(FloatVector.fromArray(SPECIES, v3, i));
+      sum0 = sum0.add(diff0.mul(diff0));
+      sum1 = sum1.add(diff1.mul(diff1));
+      sum2 = sum2.add(diff2.mul(diff2));
+      sum3 = sum3.add(diff3.mul(diff3));
+    }
+
+    float total0 = sum0.reduceLanes(ADD);
+    float total1 = sum1.reduceLanes(ADD);
+    float total2 = sum2.reduceLanes(ADD);
+    float total3 = sum3.reduceLanes(ADD);
+    for (; i < query.length; i++) {
+      float diff0 = query[i] - v0[i];
+      float diff1 = query[i] - v1[i];
+      float diff2 = query[i] - v2[i];
+      float diff3 = query[i] - v3[i];
+      total0 += diff0 * diff0;
+      total1 += diff1 * diff1;
+      total2 += diff2 * diff2;
+      total3 += diff3 * diff3;
+    }
+
+    out[offset] = (float) FastMath.sqrt(total0);
+    out[offset + 1] = (float) FastMath.sqrt(total1);
+    out[offset + 2] = (float) FastMath.sqrt(total2);
+    out[offset + 3] = (float) FastMath.sqrt(total3);
+  }
 }
@@ -15,13 +15,48 @@
  */
 package io.gravitee.inference.math.simd;
 
+import static io.gravitee.inference.math.simd.HalfKernels.HALF_SPECIES;
+import static io.gravitee.inference.math.simd.HalfKernels.decode;
+import static io.gravitee.inference.math.simd.HalfKernels.encode;
+import static io.gravitee.inference.math.simd.TiledKernels.checkDestination;
+import static io.gravitee.inference.math.simd.TiledKernels.checkDimensions;
+import static io.gravitee.inference.math.simd.TiledKernels.cosine;
+import static io.gravitee.inference.math.simd.TiledKernels.matrixRows;
+import static io.gravitee.inference.math.simd.TiledKernels.matrixTiles;
+import static io.gravitee.inference.math.simd.TiledKernels.rows;
+import static io.gravitee.inference.math.simd.TiledKernels.tiles;
 import static jdk.incubator.vector.VectorOperators.ADD;
+import static jdk.incubator.vector.VectorOperators.B2F;
+import static jdk.incubator.vector.VectorOperators.B2S;
+import static jdk.incubator.vector.VectorOperators.BIT_COUNT;
+import static jdk.incubator.vector.VectorOperators.EQ;
+import static jdk.incubator.vector.VectorOperators.GT;
+import static jdk.incubator.vector.VectorOperators.S2I;
+import static jdk.incubator.vector.VectorOperators.XOR;
 
 import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.half.HalfFormat;
+import io.gravitee.inference.math.api.matrix.FloatMatrix;
+import io.gravitee.inference.math.api.matrix.HeapFloatMatrix;
+import io.gravitee.inference.math.api.parallel.ParallelReduction;
+import io.gravitee.inference.math.api.parallel.ParallelReduction.Combiner;
+import io.gravitee.inference.math.api.parallel.ParallelRows;
+import io.gravitee.inference.math.api.pooling.BatchPooling;
+import io.gravitee.inference.math.api.selection.BoundedHeap;
+import io.gravitee.inference.math.api.selection.TopK;
+import io.gravitee.inference.math.simd.TiledKernels.BlockKernel;
+import io.gravitee.inference.math.simd.TiledKernels.MatrixBlockKernel;
+import io.gravitee.inference.math.simd.TiledKernels.MatrixRowKernel;
+import io.gravitee.inference.math.simd.TiledKernels.RowKernel;
 import io.gravitee.inference.math.vanilla.NativeMath;
+import jdk.incubator.vector.ByteVector;
 import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.ShortVector;
 import jdk.incubator.vector.VectorMask;
 import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
 import jdk.incubator.vector.VectorSpecies;
 import org.apache.commons.math3.util.FastMath;
 
@@ -34,9 +69,58 @@ public class MaskAwareSIMDMath implements GioMaths {
   private static final VectorSpecies<Float> SPECIES =
     FloatVector.SPECIES_PREFERRED;
 
-  private MaskAwareSIMDMath() {}
+  /*
+    Int8 kernels: bytes are widened to shorts, whose products cannot
+    overflow, then summed as ints; or converted to floats in as many parts
+    as the byte vector holds float vectors.
+  */
+  private static final VectorSpecies<Integer> INT_SPECIES =
+    IntVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Short> SHORT_SPECIES =
+    ShortVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Byte> BYTE_SPECIES = VectorSpecies.of(
+    byte.class,
+    VectorShape.forBitSize(SHORT_SPECIES.vectorBitSize() / 2)
+  );
+  private static final VectorSpecies<Byte> FLOAT_BYTE_SPECIES =
+    VectorSpecies.of(
+      byte.class,
+      VectorShape.forBitSize(Math.max(64, SPECIES.vectorBitSize() / 4))
+    );
+  private static final int FLOAT_PARTS =
+    FLOAT_BYTE_SPECIES.length() / SPECIES.length();
 
-  public static final GioMaths INSTANCE = new MaskAwareSIMDMath();
+  private static final VectorSpecies<Long> LONG_SPECIES =
+    LongVector.SPECIES_PREFERRED;
+
+  private static final BlockKernel DOT_BLOCK = MaskAwareSIMDMath::dot4;
+  private static final RowKernel DOT_ROW = MaskAwareSIMDMath::dot;
+  private static final Combiner COMBINER = (partial, accumulator) ->
+    accumulate(partial, 0, 1f, accumulator);
+  private static final MatrixBlockKernel MATRIX_DOT_BLOCK =
+    MaskAwareSIMDMath::dot4;
+  private static final MatrixRowKernel MATRIX_DOT_ROW = MaskAwareSIMDMath::dot;
+  private static final BlockKernel DISTANCE_BLOCK =
+    MaskAwareSIMDMath::distance4;
+  private static final RowKernel DISTANCE_ROW = MaskAwareSIMDMath::distance;
+
+  private final Precision precision;
+
+  private MaskAwareSIMDMath(Precision precision) {
+    this.precision = precision;
+  }
+
+  public static final GioMaths INSTANCE = new MaskAwareSIMDMath(
+    Precision.EXACT
+  );
+
+  /**
+   * Trades a bounded error on transcendental functions for speed, see
+   * {@link Precision#FAST}.
+   */
+  public static final GioMaths FAST_INSTANCE = new MaskAwareSIMDMath(
+    Precision.FAST
+  );
 
   @Override
   public float cosineSimilarity(float[] v1, float[] v2) {
@@ -97,26 +181,317 @@ public class MaskAwareSIMDMath implements GioMaths {
   }
 
   @Override
-  public float[] mean(float[][] matrix) {
-    int rows = matrix.length;
-    int cols = matrix[0].length;
-    float[] accumulator = new float[cols];
-
-    for (float[] row : matrix) {
-      for (int j = 0; j < cols; j += SPECIES.length()) {
-        var mask = SPECIES.indexInRange(j, cols);
-        var v1 = FloatVector.fromArray(SPECIES, accumulator, j, mask);
-        var v2 = FloatVector.fromArray(SPECIES, row, j, mask);
-        v1.add(v2).intoArray(accumulator, j, mask);
+  public float manhattanDistance(float[] v1, float[] v2) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException(
+        "Both vectors must have the same dimension."
+      );
+    }
+
+    FloatVector result = FloatVector.zero(SPECIES);
+    int length = v1.length;
+    for (int i = 0; i < length; i += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(i, length);
+
+      var vec1 = FloatVector.fromArray(SPECIES, v1, i, mask);
+      var vec2 = FloatVector.fromArray(SPECIES, v2, i, mask);
+      result = result.add(vec1.sub(vec2).abs());
+    }
+
+    return result.reduceLanes(ADD);
+  }
+
+  @Override
+  public float dotProduct(float[] v1, float[] v2) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException(
+        "Both vectors must have the same dimension."
+      );
+    }
+    return dot(v1, v2);
+  }
+
+  @Override
+  public int dotProduct(byte[] v1, byte[] v2) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException(
+        "Both vectors must have the same dimension."
+      );
+    }
+
+    var sumVector = IntVector.zero(INT_SPECIES);
+    for (int i = 0; i < v1.length; i += BYTE_SPECIES.length()) {
+      var mask = BYTE_SPECIES.indexInRange(i, v1.length);
+      var products = widen(
+        ByteVector.fromArray(BYTE_SPECIES, v1, i, mask)
+      ).mul(widen(ByteVector.fromArray(BYTE_SPECIES, v2, i, mask)));
+      sumVector = sumVector
+        .add(products.convertShape(S2I, INT_SPECIES, 0))
+        .add(products.convertShape(S2I, INT_SPECIES, 1));
+    }
+    return sumVector.reduceLanes(ADD);
+  }
+
+  @Override
+  public float dotProduct(float[] v1, byte[] v2) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException(
+        "Both vectors must have the same dimension."
+      );
+    }
+
+    var sumVector = FloatVector.zero(SPECIES);
+    for (int i = 0; i < v1.length; i += FLOAT_BYTE_SPECIES.length()) {
+      var byteMask = FLOAT_BYTE_SPECIES.indexInRange(i, v1.length);
+      var codes = ByteVector.fromArray(FLOAT_BYTE_SPECIES, v2, i, byteMask);
+      for (int part = 0; part < FLOAT_PARTS; part++) {
+        final int offset = i + part * SPECIES.length();
+        var mask = SPECIES.indexInRange(offset, v1.length);
+        var v = FloatVector.fromArray(SPECIES, v1, offset, mask);
+        var c = (FloatVector) codes.convertShape(B2F, SPECIES, part);
+        sumVector = sumVector.add(v.mul(c));
       }
     }
+    return sumVector.reduceLanes(ADD);
+  }
+
+  @Override
+  public int hammingDistance(long[] v1, long[] v2) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException(
+        "Both vectors must have the same dimension."
+      );
+    }
+
+    var sumVector = LongVector.zero(LONG_SPECIES);
+    for (int i = 0; i < v1.length; i += LONG_SPECIES.length()) {
+      var mask = LONG_SPECIES.indexInRange(i, v1.length);
+      var bits = LongVector.fromArray(LONG_SPECIES, v1, i, mask).lanewise(
+        XOR,
+        LongVector.fromArray(LONG_SPECIES, v2, i, mask)
+      );
+      sumVector = sumVector.add(bits.lanewise(BIT_COUNT));
+    }
+    return (int) sumVector.reduceLanes(ADD);
+  }
+
+  @Override
+  public short[] toHalf(float[] vector, HalfFormat format, short[] dst) {
+    checkDestination(vector.length, dst);
+    for (int i = 0; i < vector.length; i += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(i, vector.length);
+      var v = FloatVector.fromArray(SPECIES, vector, i, mask);
+      encode(format, v).intoArray(
+        dst,
+        i,
+        HALF_SPECIES.indexInRange(i, vector.length)
+      );
+    }
+    return dst;
+  }
+
+  @Override
+  public float[] fromHalf(short[] vector, HalfFormat format, float[] dst) {
+    checkDestination(vector.length, dst);
+    for (int i = 0; i < vector.length; i += SPECIES.length()) {
+      var halfMask = HALF_SPECIES.indexInRange(i, vector.length);
+      var halves = ShortVector.fromArray(HALF_SPECIES, vector, i, halfMask);
+      decode(format, halves).intoArray(
+        dst,
+        i,
+        SPECIES.indexInRange(i, vector.length)
+      );
+    }
+    return dst;
+  }
+
+  @Override
+  public float dotProduct(float[] v1, short[] v2, HalfFormat format) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException(
+        "Both vectors must have the same dimension."
+      );
+    }
+
+    var sumVector = FloatVector.zero(SPECIES);
+    for (int i = 0; i < v1.length; i += SPECIES.length()) {
+      var v = FloatVector.fromArray(
+        SPECIES,
+        v1,
+        i,
+        SPECIES.indexInRange(i, v1.length)
+      );
+      var h = decodeMasked(format, v2, i);
+      sumVector = sumVector.add(v.mul(h));
+    }
+    return sumVector.reduceLanes(ADD);
+  }
+
+  @Override
+  public float cosineSimilarity(float[] v1, short[] v2, HalfFormat format) {
+    if (v1.length != v2.length) {
+      throw new IllegalArgumentException(
+        "Both vectors must have the same dimension."
+      );
+    }
+
+    var dotProductVector = FloatVector.zero(SPECIES);
+    var magnitudeAVector = FloatVector.zero(SPECIES);
+    var magnitudeBVector = FloatVector.zero(SPECIES);
+    for (int i = 0; i < v1.length; i += SPECIES.length()) {
+      var v = FloatVector.fromArray(
+        SPECIES,
+        v1,
+        i,
+        SPECIES.indexInRange(i, v1.length)
+      );
+      var h = decodeMasked(format, v2, i);
+      dotProductVector = dotProductVector.add(v.mul(h));
+      magnitudeAVector = magnitudeAVector.add(v.mul(v));
+      magnitudeBVector = magnitudeBVector.add(h.mul(h));
+    }
+    return cosine(
+      dotProductVector.reduceLanes(ADD),
+      (float) FastMath.sqrt(magnitudeAVector.reduceLanes(ADD)),
+      (float) FastMath.sqrt(magnitudeBVector.reduceLanes(ADD))
+    );
+  }
+
+  /**
+   * Lanes past the end of {@code halves} decode to zero.
+   */
+  private static FloatVector decodeMasked(
+    HalfFormat format,
+    short[] halves,
+    int offset
+  ) {
+    var mask = HALF_SPECIES.indexInRange(offset, halves.length);
+    return decode(
+      format,
+      ShortVector.fromArray(HALF_SPECIES, halves, offset, mask)
+    );
+  }
+
+  @Override
+  public float[] cosineSimilarity(float[] query, float[][] vectors) {
+    checkDimensions(query.length, vectors);
+
+    final float queryNorm = magnitude(query);
+    final BlockKernel blockKernel = (q, v0, v1, v2, v3, out, offset) ->
+      cosine4(q, queryNorm, v0, v1, v2, v3, out, offset);
+    final RowKernel rowKernel = (q, v) -> cosineRow(q, queryNorm, v, 0);
+
+    float[] scores = new float[vectors.length];
+    ParallelRows.forEach(vectors.length, query.length, (from, to) ->
+      rows(query, vectors, scores, from, to, blockKernel, rowKernel)
+    );
+    return scores;
+  }
+
+  @Override
+  public float[][] cosineSimilarity(float[][] queries, float[][] vectors) {
+    final int dimension = checkDimensions(queries, vectors);
+
+    final float[] vectorNorms = magnitudes(vectors);
+    float[][] scores = new float[queries.length][vectors.length];
+    ParallelRows.forEach(
+      queries.length,
+      (long) vectors.length * dimension,
+      (from, to) -> {
+        tiles(queries, vectors, scores, from, to, DOT_BLOCK, DOT_ROW);
+        for (int i = from; i < to; i++) {
+          final float queryNorm = magnitude(queries[i]);
+          for (int j = 0; j < vectors.length; j++) {
+            scores[i][j] = cosine(scores[i][j], queryNorm, vectorNorms[j]);
+          }
+        }
+      }
+    );
+    return scores;
+  }
+
+  @Override
+  public float[] euclideanDistance(float[] query, float[][] vectors) {
+    checkDimensions(query.length, vectors);
+
+    float[] distances = new float[vectors.length];
+    ParallelRows.forEach(vectors.length, query.length, (from, to) ->
+      rows(query, vectors, distances, from, to, DISTANCE_BLOCK, DISTANCE_ROW)
+    );
+    return distances;
+  }
+
+  @Override
+  public float[][] euclideanDistance(float[][] queries, float[][] vectors) {
+    final int dimension = checkDimensions(queries, vectors);
+
+    float[][] distances = new float[queries.length][vectors.length];
+    ParallelRows.forEach(
+      queries.length,
+      (long) vectors.length * dimension,
+      (from, to) ->
+        tiles(
+          queries,
+          vectors,
+          distances,
+          from,
+          to,
+          DISTANCE_BLOCK,
+          DISTANCE_ROW
+        )
+    );
+    return distances;
+  }
+
+  @Override
+  public float[] dotProduct(float[] query, float[][] vectors) {
+    checkDimensions(query.length, vectors);
 
-    return computeMean(rows, accumulator);
+    float[] scores = new float[vectors.length];
+    ParallelRows.forEach(vectors.length, query.length, (from, to) ->
+      rows(query, vectors, scores, from, to, DOT_BLOCK, DOT_ROW)
+    );
+    return scores;
+  }
+
+  @Override
+  public float[][] dotProduct(float[][] queries, float[][] vectors) {
+    final int dimension = checkDimensions(queries, vectors);
+
+    float[][] scores = new float[queries.length][vectors.length];
+    ParallelRows.forEach(
+      queries.length,
+      (long) vectors.length * dimension,
+      (from, to) ->
+        tiles(queries, vectors, scores, from, to, DOT_BLOCK, DOT_ROW)
+    );
+    return scores;
+  }
+
+  @Override
+  public float[] mean(float[][] matrix) {
+    return mean(matrix, new float[matrix[0].length]);
+  }
+
+  @Override
+  public float[] mean(float[][] matrix, float[] dst) {
+    return computeMean(matrix.length, sum(matrix, dst));
+  }
+
+  @Override
+  public float[] normalizedMean(float[][] matrix, float[] dst) {
+    return computeMean(magnitude(sum(matrix, dst)), dst);
   }
 
   @Override
   public float[] normalize(float[] vector) {
-    return computeMean(normL2(vector), vector, new float[vector.length]);
+    return normalize(vector, new float[vector.length]);
+  }
+
+  @Override
+  public float[] normalize(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
+    return computeMean(normL2(vector), vector, dst);
   }
 
   @Override
@@ -126,60 +501,372 @@ public class MaskAwareSIMDMath implements GioMaths {
 
   @Override
   public float[] softmax(float[] vector) {
+    return softmax(vector, new float[vector.length]);
+  }
+
+  @Override
+  public float[] softmax(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
+
     var maxLogit = max(vector);
     FloatVector sumVector = FloatVector.zero(SPECIES);
-    float[] expVector = new float[vector.length];
 
     for (int i = 0; i < vector.length; i += SPECIES.length()) {
       var mask = SPECIES.indexInRange(i, vector.length);
       var v = FloatVector.fromArray(SPECIES, vector, i, mask);
       var adjustedV = v.sub(maxLogit, mask);
-      var expV = adjustedV.lanewise(VectorOperators.EXP, mask);
+      var expV = precision.exp(adjustedV);
 
-      expV.intoArray(expVector, i, mask);
+      expV.intoArray(dst, i, mask);
       sumVector = sumVector.add(expV, mask);
     }
 
-    return computeMean(sumVector.reduceLanes(VectorOperators.ADD), expVector);
+    return computeMean(sumVector.reduceLanes(VectorOperators.ADD), dst);
   }
 
   @Override
   public float[] sigmoid(float[] vector) {
-    //TODO: Actual SIMD implementation
-    return NativeMath.INSTANCE.sigmoid(vector);
+    return sigmoid(vector, new float[vector.length]);
   }
 
   @Override
-  public float max(float[] vector) {
-    var maxVector = FloatVector.broadcast(SPECIES, Float.NEGATIVE_INFINITY);
+  public float[] sigmoid(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
+    for (int i = 0; i < vector.length; i += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(i, vector.length);
+      var v = FloatVector.fromArray(SPECIES, vector, i, mask);
+      precision.sigmoid(v).intoArray(dst, i, mask);
+    }
+    return dst;
+  }
+
+  @Override
+  public int argmax(float[] vector) {
+    checkNotEmpty(vector);
 
+    final float max = max(vector);
     for (int i = 0; i < vector.length; i += SPECIES.length()) {
       var mask = SPECIES.indexInRange(i, vector.length);
       var v = FloatVector.fromArray(SPECIES, vector, i, mask);
-      maxVector = maxVector.max(v);
+      var hits = v.compare(EQ, max, mask);
+      if (hits.anyTrue()) {
+        return i + hits.firstTrue();
+      }
+    }
+    // max is NaN, which is equal to nothing
+    return NativeMath.INSTANCE.argmax(vector);
+  }
+
+  @Override
+  public TopK topK(float[] vector, int k) {
+    final BoundedHeap heap = BoundedHeap.capped(k, vector.length);
+
+    int i = 0;
+    for (; i < vector.length && !heap.isFull(); i++) {
+      heap.offer(i, vector[i]);
+    }
+    for (; i < vector.length; i += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(i, vector.length);
+      var v = FloatVector.fromArray(SPECIES, vector, i, mask);
+      // most blocks hold nothing above the k-th best value found so far
+      var above = v.compare(GT, heap.threshold(), mask);
+      if (above.anyTrue()) {
+        offer(heap, vector, i, above.firstTrue(), above.lastTrue() + 1);
+      }
+    }
+    return heap.toTopK();
+  }
+
+  @Override
+  public float[] exp(float[] vector) {
+    return exp(vector, new float[vector.length]);
+  }
+
+  @Override
+  public float[] exp(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
+    for (int i = 0; i < vector.length; i += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(i, vector.length);
+      var v = FloatVector.fromArray(SPECIES, vector, i, mask);
+      precision.exp(v).intoArray(dst, i, mask);
+    }
+    return dst;
+  }
+
+  @Override
+  public float[] tanh(float[] vector) {
+    return tanh(vector, new float[vector.length]);
+  }
+
+  @Override
+  public float[] tanh(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
+    for (int i = 0; i < vector.length; i += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(i, vector.length);
+      var v = FloatVector.fromArray(SPECIES, vector, i, mask);
+      precision.tanh(v).intoArray(dst, i, mask);
+    }
+    return dst;
+  }
+
+  @Override
+  public float[] gelu(float[] vector) {
+    return gelu(vector, new float[vector.length]);
+  }
+
+  @Override
+  public float[] gelu(float[] vector, float[] dst) {
+    checkDestination(vector.length, dst);
+    for (int i = 0; i < vector.length; i += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(i, vector.length);
+      var v = FloatVector.fromArray(SPECIES, vector, i, mask);
+      precision.gelu(v).intoArray(dst, i, mask);
+    }
+    return dst;
+  }
+
+  @Override
+  public float max(float[] vector) {
+    return ParallelReduction.max(vector.length, (from, to) ->
+      max(vector, from, to)
+    );
+  }
+
+  private static float max(float[] vector, int from, int to) {
+    var maxVector = FloatVector.broadcast(SPECIES, Float.NEGATIVE_INFINITY);
+
+    for (int i = from; i < to; i += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(i, to);
+      var v = FloatVector.fromArray(SPECIES, vector, i, mask);
+      // lanes outside the mask are zeros, they must not take part
+      maxVector = maxVector.lanewise(VectorOperators.MAX, v, mask);
     }
 
     return maxVector.reduceLanes(VectorOperators.MAX);
   }
 
+  @Override
+  public float[][] meanPooling(
+    float[][][] hiddenStates,
+    long[][] attentionMask
+  ) {
+    return BatchPooling.meanPooling(
+      hiddenStates,
+      attentionMask,
+      (row, weight, dst) -> accumulate(row, 0, weight, dst),
+      (dst, count) -> computeMean(count, dst)
+    );
+  }
+
+  @Override
+  public float[][] maxPooling(
+    float[][][] hiddenStates,
+    long[][] attentionMask
+  ) {
+    return BatchPooling.maxPooling(
+      hiddenStates,
+      attentionMask,
+      MaskAwareSIMDMath::maximum
+    );
+  }
+
+  @Override
+  public float[][] weightedMeanPooling(
+    float[][][] hiddenStates,
+    float[][] weights
+  ) {
+    return BatchPooling.weightedMeanPooling(
+      hiddenStates,
+      weights,
+      (row, weight, dst) -> accumulate(row, 0, weight, dst),
+      (dst, totalWeight) -> computeMean(totalWeight, dst)
+    );
+  }
+
   @Override
   public float[] weightedMean(float[][] matrix, float[] weights) {
-    int rows = matrix.length;
-    int cols = matrix[0].length;
-    float[] accumulator = new float[cols];
-    float totalWeight = 0.0f;
-
-    for (int i = 0; i < rows; i++) {
-      totalWeight += weights[i];
-      for (int j = 0; j < cols; j += SPECIES.length()) {
-        var mask = SPECIES.indexInRange(j, cols);
-        var v1 = FloatVector.fromArray(SPECIES, accumulator, j, mask);
-        var v2 = FloatVector.fromArray(SPECIES, matrix[i], j, mask);
-        v1.add(v2.mul(weights[i])).intoArray(accumulator, j, mask);
+    return weightedMean(matrix, weights, new float[matrix[0].length]);
+  }
+
+  @Override
+  public float[] weightedMean(float[][] matrix, float[] weights, float[] dst) {
+    return computeMean(weightedSum(matrix, weights, dst), dst);
+  }
+
+  @Override
+  public float[] normalizedWeightedMean(
+    float[][] matrix,
+    float[] weights,
+    float[] dst
+  ) {
+    final float totalWeight = weightedSum(matrix, weights, dst);
+    return computeMean(FastMath.copySign(magnitude(dst), totalWeight), dst);
+  }
+
+  @Override
+  public float[] mean(FloatMatrix matrix) {
+    return mean(matrix, new float[matrix.cols()]);
+  }
+
+  @Override
+  public float[] mean(FloatMatrix matrix, float[] dst) {
+    checkDestination(matrix.cols(), dst);
+    if (!(matrix instanceof HeapFloatMatrix heap)) {
+      return SegmentKernels.mean(matrix, dst);
+    }
+    ParallelReduction.sumRows(
+      heap,
+      dst,
+      (from, to, accumulator) -> {
+        for (int row = from; row < to; row++) {
+          accumulate(heap.data(), offset(heap, row), 1f, accumulator);
+        }
+        return 0f;
+      },
+      COMBINER
+    );
+    return computeMean(heap.rows(), dst);
+  }
+
+  @Override
+  public float[] weightedMean(FloatMatrix matrix, float[] weights) {
+    return weightedMean(matrix, weights, new float[matrix.cols()]);
+  }
+
+  @Override
+  public float[] weightedMean(
+    FloatMatrix matrix,
+    float[] weights,
+    float[] dst
+  ) {
+    checkDestination(matrix.cols(), dst);
+    if (!(matrix instanceof HeapFloatMatrix heap)) {
+      return SegmentKernels.weightedMean(matrix, weights, dst);
+    }
+    final float totalWeight = ParallelReduction.sumRows(
+      heap,
+      dst,
+      (from, to, accumulator) -> {
+        float blockWeight = 0.0f;
+        for (int row = from; row < to; row++) {
+          blockWeight += weights[row];
+          accumulate(heap.data(), offset(heap, row), weights[row], accumulator);
+        }
+        return blockWeight;
+      },
+      COMBINER
+    );
+    return computeMean(totalWeight, dst);
+  }
+
+  @Override
+  public float[] cosineSimilarity(float[] query, FloatMatrix vectors) {
+    checkDimensions(query.length, vectors);
+
+    final float queryNorm = magnitude(query);
+    if (!(vectors instanceof HeapFloatMatrix heap)) {
+      return SegmentKernels.cosineSimilarity(query, queryNorm, vectors);
+    }
+    float[] scores = new float[heap.rows()];
+    ParallelRows.forEach(heap, (from, to) -> {
+      for (int row = from; row < to; row++) {
+        scores[row] = cosineRow(
+          query,
+          queryNorm,
+          heap.data(),
+          offset(heap, row)
+        );
       }
+    });
+    return scores;
+  }
+
+  @Override
+  public float[] euclideanDistance(float[] query, FloatMatrix vectors) {
+    checkDimensions(query.length, vectors);
+
+    if (!(vectors instanceof HeapFloatMatrix heap)) {
+      return SegmentKernels.euclideanDistance(query, vectors);
     }
+    float[] distances = new float[heap.rows()];
+    ParallelRows.forEach(heap, (from, to) -> {
+      for (int row = from; row < to; row++) {
+        distances[row] = distance(query, heap.data(), offset(heap, row));
+      }
+    });
+    return distances;
+  }
 
-    return computeMean(totalWeight, accumulator);
+  @Override
+  public float[] dotProduct(float[] query, FloatMatrix vectors) {
+    checkDimensions(query.length, vectors);
+
+    if (!(vectors instanceof HeapFloatMatrix heap)) {
+      return SegmentKernels.dotProduct(query, vectors);
+    }
+    float[] scores = new float[heap.rows()];
+    ParallelRows.forEach(heap, (from, to) -> {
+      for (int row = from; row < to; row++) {
+        scores[row] = dot(query, heap.data(), offset(heap, row));
+      }
+    });
+    return scores;
+  }
+
+  @Override
+  public float[] multiply(FloatMatrix weights, float[] vector, float[] dst) {
+    checkDimensions(vector.length, weights);
+    checkDestination(weights.rows(), dst);
+
+    if (!(weights instanceof HeapFloatMatrix heap)) {
+      return SegmentKernels.dotProduct(vector, weights, dst);
+    }
+    ParallelRows.forEach(heap, (from, to) ->
+      matrixRows(vector, heap, dst, from, to, MATRIX_DOT_BLOCK, MATRIX_DOT_ROW)
+    );
+    return dst;
+  }
+
+  @Override
+  public float[][] multiply(FloatMatrix weights, float[][] vectors) {
+    checkDimensions(weights.cols(), vectors);
+
+    if (!(weights instanceof HeapFloatMatrix heap)) {
+      return SegmentKernels.multiply(weights, vectors);
+    }
+    float[][] products = new float[vectors.length][heap.rows()];
+    ParallelRows.forEach(heap, vectors.length, (from, to) ->
+      matrixTiles(
+        vectors,
+        heap,
+        products,
+        from,
+        to,
+        MATRIX_DOT_BLOCK,
+        MATRIX_DOT_ROW
+      )
+    );
+    return products;
+  }
+
+  private static void checkNotEmpty(float[] vector) {
+    if (vector.length == 0) {
+      throw new IllegalArgumentException("Vector must not be empty");
+    }
+  }
+
+  private static void offer(
+    BoundedHeap heap,
+    float[] vector,
+    int offset,
+    int from,
+    int to
+  ) {
+    for (int lane = from; lane < to; lane++) {
+      if (vector[offset + lane] > heap.threshold()) {
+        heap.offer(offset + lane, vector[offset + lane]);
+      }
+    }
   }
 
   private static float[] computeMean(float total, float[] vector) {
@@ -198,4 +885,296 @@ public class MaskAwareSIMDMath implements GioMaths {
     }
     return accumulator;
   }
+
+  private static int offset(HeapFloatMatrix matrix, int row) {
+    return matrix.offset() + row * matrix.cols();
+  }
+
+  private static float[] sum(float[][] matrix, float[] dst) {
+    checkDestination(matrix[0].length, dst);
+
+    ParallelReduction.sumRows(
+      matrix.length,
+      dst,
+      (from, to, accumulator) -> {
+        for (int row = from; row < to; row++) {
+          accumulate(matrix[row], 0, 1f, accumulator);
+        }
+        return 0f;
+      },
+      COMBINER
+    );
+    return dst;
+  }
+
+  private static float weightedSum(
+    float[][] matrix,
+    float[] weights,
+    float[] dst
+  ) {
+    checkDestination(matrix[0].length, dst);
+
+    return ParallelReduction.sumRows(
+      matrix.length,
+      dst,
+      (from, to, accumulator) -> {
+        float blockWeight = 0.0f;
+        for (int i = from; i < to; i++) {
+          blockWeight += weights[i];
+          accumulate(matrix[i], 0, weights[i], accumulator);
+        }
+        return blockWeight;
+      },
+      COMBINER
+    );
+  }
+
+  private static void accumulate(
+    float[] data,
+    int offset,
+    float weight,
+    float[] accumulator
+  ) {
+    for (int j = 0; j < accumulator.length; j += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(j, accumulator.length);
+      var v1 = FloatVector.fromArray(SPECIES, accumulator, j, mask);
+      var v2 = FloatVector.fromArray(SPECIES, data, offset + j, mask);
+      v1.add(v2.mul(weight)).intoArray(accumulator, j, mask);
+    }
+  }
+
+  private static void maximum(float[] row, float[] accumulator) {
+    for (int j = 0; j < accumulator.length; j += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(j, accumulator.length);
+      var v1 = FloatVector.fromArray(SPECIES, accumulator, j, mask);
+      var v2 = FloatVector.fromArray(SPECIES, row, j, mask);
+      v1.max(v2).intoArray(accumulator, j, mask);
+    }
+  }
+
+  private static ShortVector widen(ByteVector bytes) {
+    return (ShortVector) bytes.convertShape(B2S, SHORT_SPECIES, 0);
+  }
+
+  private static float[] magnitudes(float[][] vectors) {
+    float[] magnitudes = new float[vectors.length];
+    for (int i = 0; i < vectors.length; i++) {
+      magnitudes[i] = magnitude(vectors[i]);
+    }
+    return magnitudes;
+  }
+
+  private static float magnitude(float[] vector) {
+    var sumVector = FloatVector.zero(SPECIES);
+    for (int i = 0; i < vector.length; i += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(i, vector.length);
+      var v = FloatVector.fromArray(SPECIES, vector, i, mask);
+      sumVector = sumVector.add(v.mul(v));
+    }
+    return (float) FastMath.sqrt(sumVector.reduceLanes(ADD));
+  }
+
+  private static float dot(float[] v1, float[] v2) {
+    return dot(v1, v2, 0);
+  }
+
+  private static float dot(float[] v1, float[] v2, int offset) {
+    var dotProductVector = FloatVector.zero(SPECIES);
+    for (int i = 0; i < v1.length; i += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(i, v1.length);
+      var vec1 = FloatVector.fromArray(SPECIES, v1, i, mask);
+      var vec2 = FloatVector.fromArray(SPECIES, v2, offset + i, mask);
+      dotProductVector = dotProductVector.add(vec1.mul(vec2));
+    }
+    return dotProductVector.reduceLanes(ADD);
+  }
+
+  private static float cosineRow(
+    float[] query,
+    float queryNorm,
+    float[] v,
+    int offset
+  ) {
+    var dotProductVector = FloatVector.zero(SPECIES);
+    var magnitudeVector = FloatVector.zero(SPECIES);
+    for (int i = 0; i < query.length; i += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(i, query.length);
+      var q = FloatVector.fromArray(SPECIES, query, i, mask);
+      var vec = FloatVector.fromArray(SPECIES, v, offset + i, mask);
+      dotProductVector = dotProductVector.add(q.mul(vec));
+      magnitudeVector = magnitudeVector.add(vec.mul(vec));
+    }
+    return cosine(
+      dotProductVector.reduceLanes(ADD),
+      queryNorm,
+      (float) FastMath.sqrt(magnitudeVector.reduceLanes(ADD))
+    );
+  }
+
+  private static float distance(float[] v1, float[] v2) {
+    return distance(v1, v2, 0);
+  }
+
+  private static float distance(float[] v1, float[] v2, int offset) {
+    var sumVector = FloatVector.zero(SPECIES);
+    for (int i = 0; i < v1.length; i += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(i, v1.length);
+      var diff = FloatVector.fromArray(SPECIES, v1, i, mask).sub(
+        FloatVector.fromArray(SPECIES, v2, offset + i, mask)
+      );
+      sumVector = sumVector.add(diff.mul(diff));
+    }
+    return (float) FastMath.sqrt(sumVector.reduceLanes(ADD));
+  }
+
+  private static void dot4(
+    float[] query,
+    float[] v0,
+    float[] v1,
+    float[] v2,
+    float[] v3,
+    float[] out,
+    int offset
+  ) {
+    var dot0 = FloatVector.zero(SPECIES);
+    var dot1 = FloatVector.zero(SPECIES);
+    var dot2 = FloatVector.zero(SPECIES);
+    var dot3 = FloatVector.zero(SPECIES);
+
+    for (int i = 0; i < query.length; i += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(i, query.length);
+      var q = FloatVector.fromArray(SPECIES, query, i, mask);
+      dot0 = dot0.add(q.mul(FloatVector.fromArray(SPECIES, v0, i, mask)));
+      dot1 = dot1.add(q.mul(FloatVector.fromArray(SPECIES, v1, i, mask)));
+      dot2 = dot2.add(q.mul(FloatVector.fromArray(SPECIES, v2, i, mask)));
+      dot3 = dot3.add(q.mul(FloatVector.fromArray(SPECIES, v3, i, mask)));
+    }
+
+    out[offset] = dot0.reduceLanes(ADD);
+    out[offset + 1] = dot1.reduceLanes(ADD);
+    out[offset + 2] = dot2.reduceLanes(ADD);
+    out[offset + 3] = dot3.reduceLanes(ADD);
+  }
+
+  private static void dot4(
+    float[] query,
+    float[] data,
+    int offset,
+    int cols,
+    float[] out,
+    int index
+  ) {
+    final int o1 = offset + cols;
+    final int o2 = o1 + cols;
+    final int o3 = o2 + cols;
+    var dot0 = FloatVector.zero(SPECIES);
+    var dot1 = FloatVector.zero(SPECIES);
+    var dot2 = FloatVector.zero(SPECIES);
+    var dot3 = FloatVector.zero(SPECIES);
+
+    for (int i = 0; i < query.length; i += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(i, query.length);
+      var q = FloatVector.fromArray(SPECIES, query, i, mask);
+      var v0 = FloatVector.fromArray(SPECIES, data, offset + i, mask);
+      var v1 = FloatVector.fromArray(SPECIES, data, o1 + i, mask);
+      var v2 = FloatVector.fromArray(SPECIES, data, o2 + i, mask);
+      var v3 = FloatVector.fromArray(SPECIES, data, o3 + i, mask);
+      dot0 = dot0.add(q.mul(v0));
+      dot1 = dot1.add(q.mul(v1));
+      dot2 = dot2.add(q.mul(v2));
+      dot3 = dot3.add(q.mul(v3));
+    }
+
+    out[index] = dot0.reduceLanes(ADD);
+    out[index + 1] = dot1.reduceLanes(ADD);
+    out[index + 2] = dot2.reduceLanes(ADD);
+    out[index + 3] = dot3.reduceLanes(ADD);
+  }
+
+  private static void cosine4(
+    float[] query,
+    float queryNorm,
+    float[] v0,
+    float[] v1,
+    float[] v2,
+    float[] v3,
+    float[] out,
+    int offset
+  ) {
+    var dot0 = FloatVector.zero(SPECIES);
+    var dot1 = FloatVector.zero(SPECIES);
+    var dot2 = FloatVector.zero(SPECIES);
+    var dot3 = FloatVector.zero(SPECIES);
+    var mag0 = FloatVector.zero(SPECIES);
+    var mag1 = FloatVector.zero(SPECIES);
+    var mag2 = FloatVector.zero(SPECIES);
+    var mag3 = FloatVector.zero(SPECIES);
+
+    for (int i = 0; i < query.length; i += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(i, query.length);
+      var q = FloatVector.fromArray(SPECIES, query, i, mask);
+      var vec0 = FloatVector.fromArray(SPECIES, v0, i, mask);
+      var vec1 = FloatVector.fromArray(SPECIES, v1, i, mask);
+      var vec2 = FloatVector.fromArray(SPECIES, v2, i, mask);
+      var vec3 = FloatVector.fromArray(SPECIES, v3, i, mask);
+      dot0 = dot0.add(q.mul(vec0));
+      dot1 = dot1.add(q.mul(vec1));
+      dot2 = dot2.add(q.mul(vec2));
+      dot3 = dot3.add(q.mul(vec3));
+      mag0 = mag0.add(vec0.mul(vec0));
+      mag1 = mag1.add(vec1.mul(vec1));
+      mag2 = mag2.add(vec2.mul(vec2));
+      mag3 = mag3.add(vec3.mul(vec3));
+    }
+
+    out[offset] = reduceCosine(dot0, queryNorm, mag0);
+    out[offset + 1] = reduceCosine(dot1, queryNorm, mag1);
+    out[offset + 2] = reduceCosine(dot2, queryNorm, mag2);
+    out[offset + 3] = reduceCosine(dot3, queryNorm, mag3);
+  }
+
+  private static float reduceCosine(
+    FloatVector dotProduct,
+    float queryNorm,
+    FloatVector magnitude
+  ) {
+    return cosine(
+      dotProduct.reduceLanes(ADD),
+      queryNorm,
+      (float) FastMath.sqrt(magnitude.reduceLanes(ADD))
+    );
+  }
+
+  private static void distance4(
+    float[] query,
+    float[] v0,
+    float[] v1,
+    float[] v2,
+    float[] v3,
+    float[] out,
+    int offset
+  ) {
+    var sum0 = FloatVector.zero(SPECIES);
+    var sum1 = FloatVector.zero(SPECIES);
+    var sum2 = FloatVector.zero(SPECIES);
+    var sum3 = FloatVector.zero(SPECIES);
+
+    for (int i = 0; i < query.length; i += SPECIES.length()) {
+      var mask = SPECIES.indexInRange(i, query.length);
+      var q = FloatVector.fromArray(SPECIES, query, i, mask);
+      var diff0 = q.sub(FloatVector.fromArray(SPECIES, v0, i, mask));
+      var diff1 = q.sub(FloatVector.fromArray(SPECIES, v1, i, mask));
+      var diff2 = q.sub(FloatVector.fromArray(SPECIES, v2, i, mask));
+      var diff3 = q.sub(FloatVector.fromArray(SPECIES, v3, i, mask));
+      sum0 = sum0.add(diff0.mul(diff0));
+      sum1 = sum1.add(diff1.mul(diff1));
+      sum2 = sum2.add(diff2.mul(diff2));
+      sum3 = sum3.add(diff3.mul(diff3));
+    }
+
+    out[offset] = (float) FastMath.sqrt(sum0.reduceLanes(ADD));
+    out[offset + 1] = (float) FastMath.sqrt(sum1.reduceLanes(ADD));
+    out[offset + 2] = (float) FastMath.sqrt(sum2.reduceLanes(ADD));
+    out[offset + 3] = (float) FastMath.sqrt(sum3.reduceLanes(ADD));
+  }
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.simd;
+
+import static jdk.incubator.vector.VectorOperators.EXP;
+import static jdk.incubator.vector.VectorOperators.F2I;
+import static jdk.incubator.vector.VectorOperators.LSHL;
+import static jdk.incubator.vector.VectorOperators.TANH;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * How the SIMD implementations evaluate transcendental functions (exp,
+ * sigmoid, tanh, GELU, and softmax through exp).
+ * <ul>
+ *   <li>{@link #EXACT} relies on {@code VectorOperators.EXP} and
+ *   {@code VectorOperators.TANH}, which follow {@link Math#exp} and
+ *   {@link Math#tanh}: within 1 ulp of the exact result.</li>
+ *   <li>{@link #FAST} evaluates exp with a degree 6 polynomial after a
+ *   Cody-Waite range reduction, on plain vector multiplications and adds.
+ *   exp stays within 2 ulp over {@code [-87, 88]}; inputs are clamped to
+ *   that range, so larger ones saturate at {@code exp(88)} and smaller
+ *   ones flush to about {@code 1e-38} instead of underflowing to zero.
+ *   sigmoid and tanh are derived from it and stay within {@code 3e-7} of
+ *   the exact value (absolute error).</li>
+ * </ul>
+ * GELU is computed as {@code x * (1 + erf(x / sqrt(2))) / 2}, with erf
+ * approximated to {@code 1.5e-7} (Abramowitz and Stegun 7.1.26) in both
+ * modes.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public enum Precision {
+  EXACT {
+    @Override
+    FloatVector exp(FloatVector v) {
+      return v.lanewise(EXP);
+    }
+
+    @Override
+    FloatVector tanh(FloatVector v) {
+      return v.lanewise(TANH);
+    }
+
+    @Override
+    float exp(float x) {
+      return (float) FastMath.exp(x);
+    }
+
+    @Override
+    float tanh(float x) {
+      return (float) FastMath.tanh(x);
+    }
+  },
+  FAST {
+    @Override
+    FloatVector exp(FloatVector v) {
+      var x = v.max(EXP_LOW).min(EXP_HIGH);
+      // k = round(x / ln 2), adding and removing 1.5 * 2^23 rounds to nearest
+      var k = x.mul(LOG2_E).add(ROUND).sub(ROUND);
+      // r = x - k * ln 2, in two steps to keep the low bits of ln 2
+      var r = x.sub(k.mul(LN2_HIGH)).sub(k.mul(LN2_LOW));
+
+      var p = r.mul(P0).add(P1);
+      p = p.mul(r).add(P2);
+      p = p.mul(r).add(P3);
+      p = p.mul(r).add(P4);
+      p = p.mul(r).add(P5);
+      p = p.mul(r.mul(r)).add(r).add(1f);
+
+      // 2^k, built from the exponent bits
+      var pow2 = ((IntVector) k.convert(F2I, 0)).add(127)
+        .lanewise(LSHL, 23)
+        .reinterpretAsFloats();
+      return p.mul(pow2);
+    }
+
+    @Override
+    FloatVector tanh(FloatVector v) {
+      // tanh(|x|) = 1 - 2 / (exp(2|x|) + 1), sign restored afterwards
+      var t = exp(v.abs().mul(2f)).add(1f);
+      var y = t.broadcast(1f).sub(t.broadcast(2f).div(t));
+      return y.blend(y.neg(), v.lt(0f));
+    }
+
+    @Override
+    float exp(float v) {
+      float x = Math.min(Math.max(v, EXP_LOW), EXP_HIGH);
+      float k = (x * LOG2_E + ROUND) - ROUND;
+      float r = x - k * LN2_HIGH - k * LN2_LOW;
+
+      float p = r * P0 + P1;
+      p = p * r + P2;
+      p = p * r + P3;
+      p = p * r + P4;
+      p = p * r + P5;
+      p = p * (r * r) + r + 1f;
+
+      return p * Float.intBitsToFloat(((int) k + 127) << 23);
+    }
+
+    @Override
+    float tanh(float x) {
+      float y = 1f - 2f / (exp(2f * Math.abs(x)) + 1f);
+      return x < 0f ? -y : y;
+    }
+  };
+
+  private static final float EXP_LOW = -87f;
+  private static final float EXP_HIGH = 88f;
+  private static final float LOG2_E = 1.44269504088896341f;
+  private static final float ROUND = 12582912f;
+  private static final float LN2_HIGH = 0.693359375f;
+  private static final float LN2_LOW = -2.12194440e-4f;
+
+  // Minimax coefficients of (exp(r) - 1 - r) / r^2 on [-ln2 / 2, ln2 / 2]
+  private static final float P0 = 1.9875691500e-4f;
+  private static final float P1 = 1.3981999507e-3f;
+  private static final float P2 = 8.3334519073e-3f;
+  private static final float P3 = 4.1665795894e-2f;
+  private static final float P4 = 1.6666665459e-1f;
+  private static final float P5 = 5.0000001201e-1f;
+
+  private static final float SQRT_1_2 = 0.70710678118654752f;
+  private static final float ERF_P = 0.3275911f;
+  private static final float ERF_A1 = 0.254829592f;
+  private static final float ERF_A2 = -0.284496736f;
+  private static final float ERF_A3 = 1.421413741f;
+  private static final float ERF_A4 = -1.453152027f;
+  private static final float ERF_A5 = 1.061405429f;
+
+  abstract FloatVector exp(FloatVector v);
+
+  abstract FloatVector tanh(FloatVector v);
+
+  /*
+    Scalar counterparts, used on the tail of loop-bound loops so that every
+    element of an array gets the same precision.
+  */
+
+  abstract float exp(float x);
+
+  abstract float tanh(float x);
+
+  float sigmoid(float x) {
+    return 1f / (1f + exp(-x));
+  }
+
+  float gelu(float x) {
+    return 0.5f * x * (1f + erf(x * SQRT_1_2));
+  }
+
+  private float erf(float v) {
+    float x = Math.abs(v);
+    float t = 1f / (1f + ERF_P * x);
+    float p = (((ERF_A5 * t + ERF_A4) * t + ERF_A3) * t + ERF_A2) * t + ERF_A1;
+    float y = 1f - p * t * exp(-x * x);
+    return v < 0f ? -y : y;
+  }
+
+  FloatVector sigmoid(FloatVector v) {
+    var one = v.broadcast(1f);
+    return one.div(exp(v.neg()).add(1f));
+  }
+
+  FloatVector gelu(FloatVector v) {
+    return v.mul(0.5f).mul(erf(v.mul(SQRT_1_2)).add(1f));
+  }
+
+  private FloatVector erf(FloatVector v) {
+    var x = v.abs();
+    var t = x.broadcast(1f).div(x.mul(ERF_P).add(1f));
+
+    var p = t.mul(ERF_A5).add(ERF_A4);
+    p = p.mul(t).add(ERF_A3);
+    p = p.mul(t).add(ERF_A2);
+    p = p.mul(t).add(ERF_A1);
+    p = p.mul(t);
+
+    var y = x.broadcast(1f).sub(p.mul(exp(x.mul(x).neg())));
+    return y.blend(y.neg(), v.lt(0f));
+  }
+}
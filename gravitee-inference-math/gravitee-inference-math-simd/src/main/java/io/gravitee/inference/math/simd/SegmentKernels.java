@@ -0,0 +1,282 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.simd;
+
+import static java.lang.foreign.ValueLayout.JAVA_FLOAT_UNALIGNED;
+import static jdk.incubator.vector.VectorOperators.ADD;
+
+import io.gravitee.inference.math.api.matrix.FloatMatrix;
+import io.gravitee.inference.math.api.parallel.ParallelReduction;
+import io.gravitee.inference.math.api.parallel.ParallelRows;
+import io.gravitee.inference.math.segment.SegmentFloatMatrix;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteOrder;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Kernels over {@link SegmentFloatMatrix}, shared by both SIMD
+ * implementations. They are kept apart because the Foreign Function &amp;
+ * Memory API is a preview feature in Java 21: this class is only loaded
+ * when an off-heap matrix is actually used, so heap-only callers do not need
+ * {@code --enable-preview}.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+final class SegmentKernels {
+
+  private static final VectorSpecies<Float> SPECIES =
+    FloatVector.SPECIES_PREFERRED;
+  private static final ByteOrder ORDER = ByteOrder.nativeOrder();
+
+  private SegmentKernels() {}
+
+  static float[] mean(FloatMatrix matrix, float[] accumulator) {
+    var segmentMatrix = (SegmentFloatMatrix) matrix;
+    ParallelReduction.sumRows(
+      matrix,
+      accumulator,
+      (from, to, partial) -> {
+        for (int row = from; row < to; row++) {
+          accumulate(
+            segmentMatrix.segment(),
+            segmentMatrix.byteOffset(row),
+            1f,
+            partial
+          );
+        }
+        return 0f;
+      },
+      SegmentKernels::combine
+    );
+    return divide(accumulator, matrix.rows());
+  }
+
+  static float[] weightedMean(
+    FloatMatrix matrix,
+    float[] weights,
+    float[] accumulator
+  ) {
+    var segmentMatrix = (SegmentFloatMatrix) matrix;
+    final float totalWeight = ParallelReduction.sumRows(
+      matrix,
+      accumulator,
+      (from, to, partial) -> {
+        float blockWeight = 0.0f;
+        for (int row = from; row < to; row++) {
+          blockWeight += weights[row];
+          accumulate(
+            segmentMatrix.segment(),
+            segmentMatrix.byteOffset(row),
+            weights[row],
+            partial
+          );
+        }
+        return blockWeight;
+      },
+      SegmentKernels::combine
+    );
+    return divide(accumulator, totalWeight);
+  }
+
+  static float[] cosineSimilarity(
+    float[] query,
+    float queryNorm,
+    FloatMatrix matrix
+  ) {
+    var segmentMatrix = (SegmentFloatMatrix) matrix;
+    float[] scores = new float[matrix.rows()];
+    ParallelRows.forEach(matrix, (from, to) -> {
+      for (int row = from; row < to; row++) {
+        scores[row] = cosine(
+          query,
+          queryNorm,
+          segmentMatrix.segment(),
+          segmentMatrix.byteOffset(row)
+        );
+      }
+    });
+    return scores;
+  }
+
+  static float[] euclideanDistance(float[] query, FloatMatrix matrix) {
+    var segmentMatrix = (SegmentFloatMatrix) matrix;
+    float[] distances = new float[matrix.rows()];
+    ParallelRows.forEach(matrix, (from, to) -> {
+      for (int row = from; row < to; row++) {
+        distances[row] = distance(
+          query,
+          segmentMatrix.segment(),
+          segmentMatrix.byteOffset(row)
+        );
+      }
+    });
+    return distances;
+  }
+
+  static float[] dotProduct(float[] query, FloatMatrix matrix) {
+    return dotProduct(query, matrix, new float[matrix.rows()]);
+  }
+
+  static float[] dotProduct(float[] query, FloatMatrix matrix, float[] scores) {
+    var segmentMatrix = (SegmentFloatMatrix) matrix;
+    ParallelRows.forEach(matrix, (from, to) -> {
+      for (int row = from; row < to; row++) {
+        scores[row] = dot(
+          query,
+          segmentMatrix.segment(),
+          segmentMatrix.byteOffset(row)
+        );
+      }
+    });
+    return scores;
+  }
+
+  static float[][] multiply(FloatMatrix matrix, float[][] vectors) {
+    var segmentMatrix = (SegmentFloatMatrix) matrix;
+    float[][] products = new float[vectors.length][matrix.rows()];
+    ParallelRows.forEach(matrix, vectors.length, (from, to) -> {
+      for (int row = from; row < to; row++) {
+        final long offset = segmentMatrix.byteOffset(row);
+        for (int v = 0; v < vectors.length; v++) {
+          products[v][row] = dot(vectors[v], segmentMatrix.segment(), offset);
+        }
+      }
+    });
+    return products;
+  }
+
+  private static void accumulate(
+    MemorySegment segment,
+    long offset,
+    float weight,
+    float[] accumulator
+  ) {
+    int j = 0;
+    for (; j < SPECIES.loopBound(accumulator.length); j += SPECIES.length()) {
+      var v1 = FloatVector.fromArray(SPECIES, accumulator, j);
+      var v2 = FloatVector.fromMemorySegment(
+        SPECIES,
+        segment,
+        offset + (long) j * Float.BYTES,
+        ORDER
+      );
+      v1.add(v2.mul(weight)).intoArray(accumulator, j);
+    }
+    for (; j < accumulator.length; j++) {
+      accumulator[j] += get(segment, offset, j) * weight;
+    }
+  }
+
+  private static void combine(float[] partial, float[] accumulator) {
+    int j = 0;
+    for (; j < SPECIES.loopBound(accumulator.length); j += SPECIES.length()) {
+      var v1 = FloatVector.fromArray(SPECIES, accumulator, j);
+      var v2 = FloatVector.fromArray(SPECIES, partial, j);
+      v1.add(v2).intoArray(accumulator, j);
+    }
+    for (; j < accumulator.length; j++) {
+      accumulator[j] += partial[j];
+    }
+  }
+
+  private static float dot(float[] query, MemorySegment segment, long offset) {
+    var dotProductVector = FloatVector.zero(SPECIES);
+    int i = 0;
+    for (; i < SPECIES.loopBound(query.length); i += SPECIES.length()) {
+      var q = FloatVector.fromArray(SPECIES, query, i);
+      var v = load(segment, offset, i);
+      dotProductVector = dotProductVector.add(q.mul(v));
+    }
+    float dotProduct = dotProductVector.reduceLanes(ADD);
+    for (; i < query.length; i++) {
+      dotProduct += query[i] * get(segment, offset, i);
+    }
+    return dotProduct;
+  }
+
+  private static float cosine(
+    float[] query,
+    float queryNorm,
+    MemorySegment segment,
+    long offset
+  ) {
+    var dotProductVector = FloatVector.zero(SPECIES);
+    var magnitudeVector = FloatVector.zero(SPECIES);
+    int i = 0;
+    for (; i < SPECIES.loopBound(query.length); i += SPECIES.length()) {
+      var q = FloatVector.fromArray(SPECIES, query, i);
+      var v = load(segment, offset, i);
+      dotProductVector = dotProductVector.add(q.mul(v));
+      magnitudeVector = magnitudeVector.add(v.mul(v));
+    }
+    float dotProduct = dotProductVector.reduceLanes(ADD);
+    float magnitude = magnitudeVector.reduceLanes(ADD);
+    for (; i < query.length; i++) {
+      float v = get(segment, offset, i);
+      dotProduct += query[i] * v;
+      magnitude += v * v;
+    }
+    return TiledKernels.cosine(
+      dotProduct,
+      queryNorm,
+      (float) FastMath.sqrt(magnitude)
+    );
+  }
+
+  private static float distance(
+    float[] query,
+    MemorySegment segment,
+    long offset
+  ) {
+    var sumVector = FloatVector.zero(SPECIES);
+    int i = 0;
+    for (; i < SPECIES.loopBound(query.length); i += SPECIES.length()) {
+      var diff = FloatVector.fromArray(SPECIES, query, i).sub(
+        load(segment, offset, i)
+      );
+      sumVector = sumVector.add(diff.mul(diff));
+    }
+    float sum = sumVector.reduceLanes(ADD);
+    for (; i < query.length; i++) {
+      float diff = query[i] - get(segment, offset, i);
+      sum += diff * diff;
+    }
+    return (float) FastMath.sqrt(sum);
+  }
+
+  private static FloatVector load(MemorySegment segment, long offset, int i) {
+    return FloatVector.fromMemorySegment(
+      SPECIES,
+      segment,
+      offset + (long) i * Float.BYTES,
+      ORDER
+    );
+  }
+
+  private static float get(MemorySegment segment, long offset, int i) {
+    return segment.get(JAVA_FLOAT_UNALIGNED, offset + (long) i * Float.BYTES);
+  }
+
+  private static float[] divide(float[] vector, float total) {
+    for (int i = 0; i < vector.length; i++) {
+      vector[i] /= total;
+    }
+    return vector;
+  }
+}
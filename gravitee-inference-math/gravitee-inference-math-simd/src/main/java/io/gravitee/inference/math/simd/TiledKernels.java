@@ -0,0 +1,226 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.simd;
+
+import io.gravitee.inference.math.api.matrix.FloatMatrix;
+import io.gravitee.inference.math.api.matrix.HeapFloatMatrix;
+
+/**
+ * Drives the batched similarity kernels: rows are scored four at a time so
+ * each query lane loaded in a register is reused against four vectors, and
+ * in the N x M case the corpus is walked by tiles small enough to stay in
+ * cache while every query of the range is scored against them. The same
+ * blocking applies to the rows of a {@link HeapFloatMatrix}, such as the
+ * weights of a linear projection.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+final class TiledKernels {
+
+  /** 64 KiB worth of corpus floats per tile. */
+  private static final int TILE_FLOATS = 1 << 14;
+
+  private TiledKernels() {}
+
+  @FunctionalInterface
+  interface RowKernel {
+    float apply(float[] query, float[] vector);
+  }
+
+  @FunctionalInterface
+  interface BlockKernel {
+    void apply(
+      float[] query,
+      float[] v0,
+      float[] v1,
+      float[] v2,
+      float[] v3,
+      float[] out,
+      int offset
+    );
+  }
+
+  /** Same as {@link BlockKernel}, over four adjacent rows of a matrix. */
+  @FunctionalInterface
+  interface MatrixBlockKernel {
+    void apply(
+      float[] query,
+      float[] data,
+      int offset,
+      int cols,
+      float[] out,
+      int index
+    );
+  }
+
+  @FunctionalInterface
+  interface MatrixRowKernel {
+    float apply(float[] query, float[] data, int offset);
+  }
+
+  static void rows(
+    float[] query,
+    float[][] vectors,
+    float[] out,
+    int from,
+    int to,
+    BlockKernel blockKernel,
+    RowKernel rowKernel
+  ) {
+    int i = from;
+    for (; i + 4 <= to; i += 4) {
+      blockKernel.apply(
+        query,
+        vectors[i],
+        vectors[i + 1],
+        vectors[i + 2],
+        vectors[i + 3],
+        out,
+        i
+      );
+    }
+    for (; i < to; i++) {
+      out[i] = rowKernel.apply(query, vectors[i]);
+    }
+  }
+
+  static void tiles(
+    float[][] queries,
+    float[][] vectors,
+    float[][] out,
+    int from,
+    int to,
+    BlockKernel blockKernel,
+    RowKernel rowKernel
+  ) {
+    if (from == to) {
+      return;
+    }
+    final int dimension = Math.max(1, queries[from].length);
+    final int tileRows = Math.max(4, TILE_FLOATS / dimension);
+    for (int tile = 0; tile < vectors.length; tile += tileRows) {
+      final int end = Math.min(vectors.length, tile + tileRows);
+      for (int q = from; q < to; q++) {
+        rows(queries[q], vectors, out[q], tile, end, blockKernel, rowKernel);
+      }
+    }
+  }
+
+  static void matrixRows(
+    float[] query,
+    HeapFloatMatrix matrix,
+    float[] out,
+    int from,
+    int to,
+    MatrixBlockKernel blockKernel,
+    MatrixRowKernel rowKernel
+  ) {
+    final int cols = matrix.cols();
+    int i = from;
+    for (; i + 4 <= to; i += 4) {
+      blockKernel.apply(query, matrix.data(), offset(matrix, i), cols, out, i);
+    }
+    for (; i < to; i++) {
+      out[i] = rowKernel.apply(query, matrix.data(), offset(matrix, i));
+    }
+  }
+
+  /**
+   * Scores every query against the matrix rows {@code [from, to)}, walked by
+   * cache-sized tiles.
+   */
+  static void matrixTiles(
+    float[][] queries,
+    HeapFloatMatrix matrix,
+    float[][] out,
+    int from,
+    int to,
+    MatrixBlockKernel blockKernel,
+    MatrixRowKernel rowKernel
+  ) {
+    final int tileRows = Math.max(4, TILE_FLOATS / Math.max(1, matrix.cols()));
+    for (int tile = from; tile < to; tile += tileRows) {
+      final int end = Math.min(to, tile + tileRows);
+      for (int q = 0; q < queries.length; q++) {
+        matrixRows(
+          queries[q],
+          matrix,
+          out[q],
+          tile,
+          end,
+          blockKernel,
+          rowKernel
+        );
+      }
+    }
+  }
+
+  private static int offset(HeapFloatMatrix matrix, int row) {
+    return matrix.offset() + row * matrix.cols();
+  }
+
+  static void checkDimensions(int dimension, float[][] vectors) {
+    for (float[] vector : vectors) {
+      if (vector.length != dimension) {
+        throw new IllegalArgumentException(
+          "Both vectors must have the same dimension."
+        );
+      }
+    }
+  }
+
+  static void checkDestination(int length, float[] dst) {
+    checkDestination(length, dst.length);
+  }
+
+  static void checkDestination(int length, short[] dst) {
+    checkDestination(length, dst.length);
+  }
+
+  private static void checkDestination(int length, int dstLength) {
+    if (dstLength != length) {
+      throw new IllegalArgumentException(
+        "Destination must have a length of " + length
+      );
+    }
+  }
+
+  static void checkDimensions(int dimension, FloatMatrix vectors) {
+    if (vectors.cols() != dimension) {
+      throw new IllegalArgumentException(
+        "Both vectors must have the same dimension."
+      );
+    }
+  }
+
+  static int checkDimensions(float[][] queries, float[][] vectors) {
+    if (queries.length == 0) {
+      return 0;
+    }
+    final int dimension = queries[0].length;
+    checkDimensions(dimension, queries);
+    checkDimensions(dimension, vectors);
+    return dimension;
+  }
+
+  static float cosine(float dotProduct, float norm1, float norm2) {
+    if (norm1 == 0 || norm2 == 0) {
+      return 0.0f;
+    }
+    return dotProduct / (norm1 * norm2);
+  }
+}
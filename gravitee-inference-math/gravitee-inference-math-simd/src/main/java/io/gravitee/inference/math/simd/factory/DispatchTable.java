@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.simd.factory;
+
+/**
+ * The {@link Kernel} picked for each {@link Operation}, by band of vector
+ * dimension:
+ * <ul>
+ *   <li>{@link Band#SCALAR}, shorter than one vector: {@link Kernel#NATIVE},
+ *   as a SIMD loop would only run its tail.</li>
+ *   <li>{@link Band#ALIGNED}, a multiple of the vector length:
+ *   {@link Kernel#LOOP_BOUND}, which has no tail and needs no mask.</li>
+ *   <li>{@link Band#TAIL}, anything else: {@link Kernel#MASK_AWARE} when the
+ *   CPU has mask registers, {@link Kernel#LOOP_BOUND} otherwise.</li>
+ * </ul>
+ * The vector length depends on the operation: 16-bit lanes hold twice as
+ * many int8 products as 32-bit lanes hold floats, see
+ * {@link Operation#lanes(int)}.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class DispatchTable {
+
+  public enum Band {
+    SCALAR,
+    ALIGNED,
+    TAIL,
+  }
+
+  private final int vectorBitSize;
+  private final Kernel[][] kernels;
+
+  private DispatchTable(int vectorBitSize, Kernel[][] kernels) {
+    this.vectorBitSize = vectorBitSize;
+    this.kernels = kernels;
+  }
+
+  public static DispatchTable of(int vectorBitSize, boolean maskSupported) {
+    final Kernel tail = maskSupported ? Kernel.MASK_AWARE : Kernel.LOOP_BOUND;
+    Kernel[][] kernels = new Kernel[Operation.values().length][];
+    for (Operation operation : Operation.values()) {
+      kernels[operation.ordinal()] = new Kernel[] {
+        Kernel.NATIVE,
+        Kernel.LOOP_BOUND,
+        tail,
+      };
+    }
+    return new DispatchTable(vectorBitSize, kernels);
+  }
+
+  /**
+   * A table dispatching every operation to {@code kernel}.
+   */
+  public static DispatchTable uniform(Kernel kernel) {
+    Kernel[][] kernels = new Kernel[Operation.values().length][];
+    for (Operation operation : Operation.values()) {
+      kernels[operation.ordinal()] = new Kernel[] { kernel, kernel, kernel };
+    }
+    return new DispatchTable(0, kernels);
+  }
+
+  public Band band(Operation operation, int length) {
+    final int lanes = operation.lanes(vectorBitSize);
+    if (length < lanes) {
+      return Band.SCALAR;
+    }
+    return length % lanes == 0 ? Band.ALIGNED : Band.TAIL;
+  }
+
+  public Kernel kernel(Operation operation, Band band) {
+    return kernels[operation.ordinal()][band.ordinal()];
+  }
+
+  public Kernel kernel(Operation operation, int length) {
+    return kernel(operation, band(operation, length));
+  }
+
+  /**
+   * @return the kernel every operation is dispatched to, or {@code null}
+   * when it depends on the operation or the dimension
+   */
+  public Kernel uniformKernel() {
+    final Kernel first = kernels[0][0];
+    for (Kernel[] bands : kernels) {
+      for (Kernel kernel : bands) {
+        if (kernel != first) {
+          return null;
+        }
+      }
+    }
+    return first;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("DispatchTable[")
+      .append(vectorBitSize)
+      .append(" bits]");
+    for (Operation operation : Operation.values()) {
+      builder
+        .append("\n  ")
+        .append(operation)
+        .append(" (")
+        .append(operation.lanes(vectorBitSize))
+        .append(" lanes):");
+      for (Band band : Band.values()) {
+        builder.append(' ').append(band).append('=').append(
+          kernel(operation, band)
+        );
+      }
+    }
+    return builder.toString();
+  }
+}
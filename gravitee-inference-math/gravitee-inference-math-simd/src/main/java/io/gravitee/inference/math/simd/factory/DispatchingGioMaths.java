@@ -0,0 +1,383 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.simd.factory;
+
+import static io.gravitee.inference.math.simd.factory.Operation.COSINE_SIMILARITY;
+import static io.gravitee.inference.math.simd.factory.Operation.DOT_PRODUCT;
+import static io.gravitee.inference.math.simd.factory.Operation.EUCLIDEAN_DISTANCE;
+import static io.gravitee.inference.math.simd.factory.Operation.EXP;
+import static io.gravitee.inference.math.simd.factory.Operation.FLOAT_INT8_DOT_PRODUCT;
+import static io.gravitee.inference.math.simd.factory.Operation.GELU;
+import static io.gravitee.inference.math.simd.factory.Operation.HALF_CONVERSION;
+import static io.gravitee.inference.math.simd.factory.Operation.HALF_SIMILARITY;
+import static io.gravitee.inference.math.simd.factory.Operation.HAMMING_DISTANCE;
+import static io.gravitee.inference.math.simd.factory.Operation.INT8_DOT_PRODUCT;
+import static io.gravitee.inference.math.simd.factory.Operation.MANHATTAN_DISTANCE;
+import static io.gravitee.inference.math.simd.factory.Operation.MAX;
+import static io.gravitee.inference.math.simd.factory.Operation.NORMALIZE;
+import static io.gravitee.inference.math.simd.factory.Operation.POOLING;
+import static io.gravitee.inference.math.simd.factory.Operation.SELECTION;
+import static io.gravitee.inference.math.simd.factory.Operation.SIGMOID;
+import static io.gravitee.inference.math.simd.factory.Operation.SOFTMAX;
+import static io.gravitee.inference.math.simd.factory.Operation.TANH;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.half.HalfFormat;
+import io.gravitee.inference.math.api.matrix.FloatMatrix;
+import io.gravitee.inference.math.api.selection.TopK;
+import io.gravitee.inference.math.simd.Precision;
+
+/**
+ * Routes every operation to the kernel its {@link DispatchTable} picks for
+ * the dimension of the call. Default methods of {@link GioMaths} are
+ * inherited, so they are dispatched through the operations they build on.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+final class DispatchingGioMaths implements GioMaths {
+
+  private final DispatchTable table;
+  private final GioMaths[] kernels;
+
+  DispatchingGioMaths(DispatchTable table, Precision precision) {
+    this.table = table;
+    this.kernels = new GioMaths[Kernel.values().length];
+    for (Kernel kernel : Kernel.values()) {
+      kernels[kernel.ordinal()] = kernel.gioMaths(precision);
+    }
+  }
+
+  private GioMaths on(Operation operation, int length) {
+    return kernels[table.kernel(operation, length).ordinal()];
+  }
+
+  private static int dimension(float[][] vectors) {
+    return vectors.length == 0 ? 0 : vectors[0].length;
+  }
+
+  private static int dimension(float[][][] hiddenStates) {
+    return hiddenStates.length == 0 ? 0 : dimension(hiddenStates[0]);
+  }
+
+  @Override
+  public float cosineSimilarity(float[] v1, float[] v2) {
+    return on(COSINE_SIMILARITY, v1.length).cosineSimilarity(v1, v2);
+  }
+
+  @Override
+  public float euclideanDistance(float[] v1, float[] v2) {
+    return on(EUCLIDEAN_DISTANCE, v1.length).euclideanDistance(v1, v2);
+  }
+
+  @Override
+  public float manhattanDistance(float[] v1, float[] v2) {
+    return on(MANHATTAN_DISTANCE, v1.length).manhattanDistance(v1, v2);
+  }
+
+  @Override
+  public float dotProduct(float[] v1, float[] v2) {
+    return on(DOT_PRODUCT, v1.length).dotProduct(v1, v2);
+  }
+
+  @Override
+  public float[] cosineSimilarity(float[] query, float[][] vectors) {
+    return on(COSINE_SIMILARITY, query.length).cosineSimilarity(
+      query,
+      vectors
+    );
+  }
+
+  @Override
+  public float[][] cosineSimilarity(float[][] queries, float[][] vectors) {
+    return on(COSINE_SIMILARITY, dimension(queries)).cosineSimilarity(
+      queries,
+      vectors
+    );
+  }
+
+  @Override
+  public float[] euclideanDistance(float[] query, float[][] vectors) {
+    return on(EUCLIDEAN_DISTANCE, query.length).euclideanDistance(
+      query,
+      vectors
+    );
+  }
+
+  @Override
+  public float[][] euclideanDistance(float[][] queries, float[][] vectors) {
+    return on(EUCLIDEAN_DISTANCE, dimension(queries)).euclideanDistance(
+      queries,
+      vectors
+    );
+  }
+
+  @Override
+  public float[] dotProduct(float[] query, float[][] vectors) {
+    return on(DOT_PRODUCT, query.length).dotProduct(query, vectors);
+  }
+
+  @Override
+  public float[][] dotProduct(float[][] queries, float[][] vectors) {
+    return on(DOT_PRODUCT, dimension(queries)).dotProduct(queries, vectors);
+  }
+
+  @Override
+  public float[] softmax(float[] vector) {
+    return on(SOFTMAX, vector.length).softmax(vector);
+  }
+
+  @Override
+  public float[] sigmoid(float[] vector) {
+    return on(SIGMOID, vector.length).sigmoid(vector);
+  }
+
+  @Override
+  public float[] exp(float[] vector) {
+    return on(EXP, vector.length).exp(vector);
+  }
+
+  @Override
+  public float[] tanh(float[] vector) {
+    return on(TANH, vector.length).tanh(vector);
+  }
+
+  @Override
+  public float[] gelu(float[] vector) {
+    return on(GELU, vector.length).gelu(vector);
+  }
+
+  @Override
+  public float[] mean(float[][] vectors) {
+    return on(POOLING, dimension(vectors)).mean(vectors);
+  }
+
+  @Override
+  public float[] weightedMean(float[][] vector, float[] weights) {
+    return on(POOLING, dimension(vector)).weightedMean(vector, weights);
+  }
+
+  @Override
+  public float max(float[] vector) {
+    return on(MAX, vector.length).max(vector);
+  }
+
+  @Override
+  public float[][] meanPooling(
+    float[][][] hiddenStates,
+    long[][] attentionMask
+  ) {
+    return on(POOLING, dimension(hiddenStates)).meanPooling(
+      hiddenStates,
+      attentionMask
+    );
+  }
+
+  @Override
+  public float[][] maxPooling(
+    float[][][] hiddenStates,
+    long[][] attentionMask
+  ) {
+    return on(POOLING, dimension(hiddenStates)).maxPooling(
+      hiddenStates,
+      attentionMask
+    );
+  }
+
+  @Override
+  public float[][] weightedMeanPooling(
+    float[][][] hiddenStates,
+    float[][] weights
+  ) {
+    return on(POOLING, dimension(hiddenStates)).weightedMeanPooling(
+      hiddenStates,
+      weights
+    );
+  }
+
+  @Override
+  public float[] normalize(float[] vector) {
+    return on(NORMALIZE, vector.length).normalize(vector);
+  }
+
+  @Override
+  public float normL2(float[] vector) {
+    return on(NORMALIZE, vector.length).normL2(vector);
+  }
+
+  @Override
+  public int argmax(float[] vector) {
+    return on(SELECTION, vector.length).argmax(vector);
+  }
+
+  @Override
+  public TopK topK(float[] vector, int k) {
+    return on(SELECTION, vector.length).topK(vector, k);
+  }
+
+  @Override
+  public float[] softmax(float[] vector, float[] dst) {
+    return on(SOFTMAX, vector.length).softmax(vector, dst);
+  }
+
+  @Override
+  public float[] sigmoid(float[] vector, float[] dst) {
+    return on(SIGMOID, vector.length).sigmoid(vector, dst);
+  }
+
+  @Override
+  public float[] exp(float[] vector, float[] dst) {
+    return on(EXP, vector.length).exp(vector, dst);
+  }
+
+  @Override
+  public float[] tanh(float[] vector, float[] dst) {
+    return on(TANH, vector.length).tanh(vector, dst);
+  }
+
+  @Override
+  public float[] gelu(float[] vector, float[] dst) {
+    return on(GELU, vector.length).gelu(vector, dst);
+  }
+
+  @Override
+  public float[] normalize(float[] vector, float[] dst) {
+    return on(NORMALIZE, vector.length).normalize(vector, dst);
+  }
+
+  @Override
+  public float[] mean(float[][] vectors, float[] dst) {
+    return on(POOLING, dst.length).mean(vectors, dst);
+  }
+
+  @Override
+  public float[] weightedMean(float[][] vectors, float[] weights, float[] dst) {
+    return on(POOLING, dst.length).weightedMean(vectors, weights, dst);
+  }
+
+  @Override
+  public float[] normalizedMean(float[][] vectors, float[] dst) {
+    return on(POOLING, dst.length).normalizedMean(vectors, dst);
+  }
+
+  @Override
+  public float[] normalizedWeightedMean(
+    float[][] vectors,
+    float[] weights,
+    float[] dst
+  ) {
+    return on(POOLING, dst.length).normalizedWeightedMean(
+      vectors,
+      weights,
+      dst
+    );
+  }
+
+  @Override
+  public int dotProduct(byte[] v1, byte[] v2) {
+    return on(INT8_DOT_PRODUCT, v1.length).dotProduct(v1, v2);
+  }
+
+  @Override
+  public float dotProduct(float[] v1, byte[] v2) {
+    return on(FLOAT_INT8_DOT_PRODUCT, v1.length).dotProduct(v1, v2);
+  }
+
+  @Override
+  public int hammingDistance(long[] v1, long[] v2) {
+    return on(HAMMING_DISTANCE, v1.length).hammingDistance(v1, v2);
+  }
+
+  @Override
+  public short[] toHalf(float[] vector, HalfFormat format, short[] dst) {
+    return on(HALF_CONVERSION, vector.length).toHalf(vector, format, dst);
+  }
+
+  @Override
+  public float[] fromHalf(short[] vector, HalfFormat format, float[] dst) {
+    return on(HALF_CONVERSION, vector.length).fromHalf(vector, format, dst);
+  }
+
+  @Override
+  public float dotProduct(float[] v1, short[] v2, HalfFormat format) {
+    return on(HALF_SIMILARITY, v1.length).dotProduct(v1, v2, format);
+  }
+
+  @Override
+  public float cosineSimilarity(float[] v1, short[] v2, HalfFormat format) {
+    return on(HALF_SIMILARITY, v1.length).cosineSimilarity(v1, v2, format);
+  }
+
+  @Override
+  public float[] mean(FloatMatrix matrix) {
+    return on(POOLING, matrix.cols()).mean(matrix);
+  }
+
+  @Override
+  public float[] weightedMean(FloatMatrix matrix, float[] weights) {
+    return on(POOLING, matrix.cols()).weightedMean(matrix, weights);
+  }
+
+  @Override
+  public float[] mean(FloatMatrix matrix, float[] dst) {
+    return on(POOLING, matrix.cols()).mean(matrix, dst);
+  }
+
+  @Override
+  public float[] weightedMean(
+    FloatMatrix matrix,
+    float[] weights,
+    float[] dst
+  ) {
+    return on(POOLING, matrix.cols()).weightedMean(matrix, weights, dst);
+  }
+
+  @Override
+  public float[] cosineSimilarity(float[] query, FloatMatrix vectors) {
+    return on(COSINE_SIMILARITY, query.length).cosineSimilarity(
+      query,
+      vectors
+    );
+  }
+
+  @Override
+  public float[] euclideanDistance(float[] query, FloatMatrix vectors) {
+    return on(EUCLIDEAN_DISTANCE, query.length).euclideanDistance(
+      query,
+      vectors
+    );
+  }
+
+  @Override
+  public float[] dotProduct(float[] query, FloatMatrix vectors) {
+    return on(DOT_PRODUCT, query.length).dotProduct(query, vectors);
+  }
+
+  @Override
+  public float[] multiply(FloatMatrix weights, float[] vector, float[] dst) {
+    return on(DOT_PRODUCT, weights.cols()).multiply(weights, vector, dst);
+  }
+
+  @Override
+  public float[][] multiply(FloatMatrix weights, float[][] vectors) {
+    return on(DOT_PRODUCT, weights.cols()).multiply(weights, vectors);
+  }
+
+  @Override
+  public String toString() {
+    return "DispatchingGioMaths{" + table + "}";
+  }
+}
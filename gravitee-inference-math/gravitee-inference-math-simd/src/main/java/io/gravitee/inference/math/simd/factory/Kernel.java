@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.simd.factory;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.simd.LoopBoundSIMDMath;
+import io.gravitee.inference.math.simd.MaskAwareSIMDMath;
+import io.gravitee.inference.math.simd.Precision;
+import io.gravitee.inference.math.vanilla.NativeMath;
+
+/**
+ * The {@link GioMaths} implementations an operation can be dispatched to.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public enum Kernel {
+  /** Scalar loops, always exact. */
+  NATIVE("native"),
+  /** SIMD loops up to the last full vector, then a scalar tail. */
+  LOOP_BOUND("loop-bound"),
+  /** SIMD loops whose last iteration is masked. */
+  MASK_AWARE("mask-aware");
+
+  private final String propertyValue;
+
+  Kernel(String propertyValue) {
+    this.propertyValue = propertyValue;
+  }
+
+  /**
+   * @return the value selecting this kernel for every operation in the
+   * {@value SIMDMathFactory#SIMD_PROPERTY} system property
+   */
+  public String propertyValue() {
+    return propertyValue;
+  }
+
+  public GioMaths gioMaths(Precision precision) {
+    final boolean fast = precision == Precision.FAST;
+    return switch (this) {
+      case NATIVE -> NativeMath.INSTANCE;
+      case LOOP_BOUND -> fast
+        ? LoopBoundSIMDMath.FAST_INSTANCE
+        : LoopBoundSIMDMath.INSTANCE;
+      case MASK_AWARE -> fast
+        ? MaskAwareSIMDMath.FAST_INSTANCE
+        : MaskAwareSIMDMath.INSTANCE;
+    };
+  }
+}
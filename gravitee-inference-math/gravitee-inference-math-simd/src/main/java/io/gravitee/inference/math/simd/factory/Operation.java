@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.simd.factory;
+
+/**
+ * The families of {@link io.gravitee.inference.math.api.GioMaths}
+ * operations a {@link DispatchTable} picks a kernel for. Overloads of an
+ * operation (single vector, batched, matrix, destination buffer) share its
+ * entry, keyed by the vector dimension.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public enum Operation {
+  COSINE_SIMILARITY(Float.SIZE),
+  EUCLIDEAN_DISTANCE(Float.SIZE),
+  MANHATTAN_DISTANCE(Float.SIZE),
+  DOT_PRODUCT(Float.SIZE),
+  SOFTMAX(Float.SIZE),
+  SIGMOID(Float.SIZE),
+  EXP(Float.SIZE),
+  TANH(Float.SIZE),
+  GELU(Float.SIZE),
+  /** mean, weightedMean and their normalized variants */
+  POOLING(Float.SIZE),
+  MAX(Float.SIZE),
+  /** normalize and normL2 */
+  NORMALIZE(Float.SIZE),
+  /** argmax and topK */
+  SELECTION(Float.SIZE),
+  /** int8 codes are multiplied in 16-bit lanes */
+  INT8_DOT_PRODUCT(Short.SIZE),
+  FLOAT_INT8_DOT_PRODUCT(Float.SIZE),
+  HAMMING_DISTANCE(Long.SIZE),
+  /** toHalf and fromHalf, converted in 32-bit lanes */
+  HALF_CONVERSION(Float.SIZE),
+  HALF_SIMILARITY(Float.SIZE);
+
+  private final int laneBits;
+
+  Operation(int laneBits) {
+    this.laneBits = laneBits;
+  }
+
+  /**
+   * @return the number of elements processed per vector of
+   * {@code vectorBitSize} bits
+   */
+  public int lanes(int vectorBitSize) {
+    return Math.max(1, vectorBitSize / laneBits);
+  }
+}
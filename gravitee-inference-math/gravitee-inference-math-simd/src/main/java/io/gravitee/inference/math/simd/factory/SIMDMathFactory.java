@@ -15,39 +15,88 @@
  */
 package io.gravitee.inference.math.simd.factory;
 
-import static io.gravitee.inference.math.vanilla.NativeMath.INSTANCE;
-
 import io.gravitee.inference.math.api.GioMaths;
-import io.gravitee.inference.math.simd.LoopBoundSIMDMath;
-import io.gravitee.inference.math.simd.MaskAwareSIMDMath;
+import io.gravitee.inference.math.simd.Precision;
+import java.util.Locale;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Picks the kernels of each {@link GioMaths} operation for the current JVM,
+ * see {@link DispatchTable}. The choice can be forced for every operation
+ * with the {@value #SIMD_PROPERTY} system property: {@code auto} (the
+ * default), {@code native}, {@code loop-bound} or {@code mask-aware}.
+ *
  * @author Rémi SULTAN (remi.sultan at graviteesource.com)
  * @author GraviteeSource Team
  */
 public class SIMDMathFactory {
 
+  public static final String SIMD_PROPERTY = "gravitee.inference.math.simd";
+  private static final String AUTO = "auto";
+
   private static final Logger LOGGER = LoggerFactory.getLogger(
     SIMDMathFactory.class
   );
 
   public static GioMaths gioMaths() {
-    if (SIMDUtils.isSIMDSupported()) {
-      LOGGER.debug("SIMD supported");
-      if (SIMDUtils.isSIMDMaskSupported()) {
-        LOGGER.debug(
-          "SIMD masking supported, using MaskAwareSIMDMath implementation"
-        );
-        return MaskAwareSIMDMath.INSTANCE;
+    return gioMaths(Precision.EXACT);
+  }
+
+  /**
+   * @param precision how transcendental functions are evaluated by the SIMD
+   * kernels; the scalar kernel is always exact
+   */
+  public static GioMaths gioMaths(Precision precision) {
+    final DispatchTable table = dispatchTable();
+    final Kernel kernel = table.uniformKernel();
+    if (kernel != null) {
+      LOGGER.debug("Using {} for every operation", kernel);
+      return kernel.gioMaths(precision);
+    }
+    LOGGER.debug("Using {}", table);
+    return new DispatchingGioMaths(table, precision);
+  }
+
+  /**
+   * @return the kernels {@link #gioMaths()} dispatches each operation to
+   */
+  public static DispatchTable dispatchTable() {
+    final Kernel forced = forcedKernel();
+    if (forced != null) {
+      return DispatchTable.uniform(forced);
+    }
+    if (!SIMDUtils.isSIMDSupported()) {
+      return DispatchTable.uniform(Kernel.NATIVE);
+    }
+    return DispatchTable.of(
+      SIMDUtils.vectorBitSize(),
+      SIMDUtils.isSIMDMaskSupported()
+    );
+  }
+
+  private static Kernel forcedKernel() {
+    final String value = System.getProperty(SIMD_PROPERTY, AUTO)
+      .trim()
+      .toLowerCase(Locale.ROOT);
+    if (AUTO.equals(value)) {
+      return null;
+    }
+    for (Kernel kernel : Kernel.values()) {
+      if (kernel.propertyValue().equals(value)) {
+        if (kernel != Kernel.NATIVE && !SIMDUtils.isVectorModuleLoaded()) {
+          LOGGER.warn(
+            "{}={} requires --add-modules jdk.incubator.vector, using {}",
+            SIMD_PROPERTY,
+            value,
+            Kernel.NATIVE
+          );
+          return Kernel.NATIVE;
+        }
+        return kernel;
       }
-      LOGGER.debug(
-        "SIMD masking not supported, using LoopBoundSIMDMath implementation"
-      );
-      return LoopBoundSIMDMath.INSTANCE;
     }
-    LOGGER.debug("SIMD not supported, using NativeMath implementation");
-    return INSTANCE;
+    LOGGER.warn("Unknown {} value '{}', using {}", SIMD_PROPERTY, value, AUTO);
+    return null;
   }
 }
@@ -15,66 +15,82 @@
  */
 package io.gravitee.inference.math.simd.factory;
 
-import oshi.SystemInfo;
-import oshi.hardware.CentralProcessor;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorShape;
 
 /**
+ * Detects the SIMD capabilities from what the JVM itself reports: whether
+ * the {@code jdk.incubator.vector} module is loaded, and the size of
+ * {@link FloatVector#SPECIES_PREFERRED}. This reflects the JVM flags (e.g.
+ * {@code -XX:UseAVX}) as well as the hardware and reads nothing from the
+ * operating system.
+ * <p>
+ * Masked operations are only cheap when the CPU has mask registers, that is
+ * with AVX-512 (512-bit vectors) or SVE, recognized on aarch64 by vectors
+ * wider than the 128 bits of NEON. Elsewhere they are emulated with blends.
+ *
  * @author Rémi SULTAN (remi.sultan at graviteesource.com)
  * @author GraviteeSource Team
  */
 public class SIMDUtils {
 
-  private static final CentralProcessor PROCESSOR = new SystemInfo()
-    .getHardware()
-    .getProcessor();
-  private static final String X_86 = "x86";
-  private static final String ARM = "arm";
-  private static final String AVX_512 = "avx512";
-  private static final String SVE = "sve";
-  private static final String UNKNOWN = "unknown";
+  private static final String VECTOR_MODULE = "jdk.incubator.vector";
+  private static final int MIN_SIMD_BIT_SIZE = 128;
+  private static final int MIN_MASK_BIT_SIZE = 512;
+  private static final int NEON_BIT_SIZE = 128;
+  private static final boolean AARCH64 = "aarch64".equals(
+    System.getProperty("os.arch")
+  );
 
-  public static boolean isSIMDSupported() {
-    return switch (getCPUArchitecture()) {
-      case X_86 -> checkCPUFeature("avx");
-      case ARM -> checkCPUFeature("neon");
-      default -> false;
-    };
+  private static final boolean VECTOR_MODULE_LOADED = ModuleLayer.boot()
+    .findModule(VECTOR_MODULE)
+    .isPresent();
+
+  public static boolean isVectorModuleLoaded() {
+    return VECTOR_MODULE_LOADED;
   }
 
-  public static boolean isSIMDMaskSupported() {
-    return switch (getCPUArchitecture().toLowerCase()) {
-      case X_86 -> checkCPUFeature(AVX_512);
-      case ARM -> checkCPUFeature(SVE);
-      default -> false;
-    };
+  /**
+   * @return the bit size of the preferred float vector, 0 when the vector
+   * module is not loaded
+   */
+  public static int vectorBitSize() {
+    return VECTOR_MODULE_LOADED ? PreferredShape.BIT_SIZE : 0;
   }
 
-  private static String getCPUArchitecture() {
-    final String processor = PROCESSOR.toString();
+  /**
+   * @return the number of float lanes of the preferred vector, 1 when the
+   * vector module is not loaded
+   */
+  public static int floatLanes() {
+    return Math.max(1, vectorBitSize() / Float.SIZE);
+  }
 
-    if (isX86(processor)) {
-      return X_86;
-    } else if (isArm(processor)) {
-      return ARM;
-    }
-    return UNKNOWN;
+  public static boolean isSIMDSupported() {
+    return vectorBitSize() >= MIN_SIMD_BIT_SIZE;
   }
 
-  private static boolean isArm(String architecture) {
-    return architecture.toLowerCase().contains(ARM);
+  public static boolean isSIMDMaskSupported() {
+    return (
+      isSIMDSupported() &&
+      (vectorBitSize() >= MIN_MASK_BIT_SIZE || isSVE())
+    );
   }
 
-  private static boolean isX86(String architecture) {
+  private static boolean isSVE() {
     return (
-      architecture.toLowerCase().contains("intel") ||
-      architecture.toLowerCase().contains("amd")
+      PreferredShape.SCALABLE || (AARCH64 && vectorBitSize() > NEON_BIT_SIZE)
     );
   }
 
-  private static boolean checkCPUFeature(String feature) {
-    return PROCESSOR.getFeatureFlags()
-      .stream()
-      .map(String::toLowerCase)
-      .anyMatch(f -> f.contains(feature));
+  /**
+   * Only initialized once the vector module is known to be loaded.
+   */
+  private static final class PreferredShape {
+
+    private static final int BIT_SIZE =
+      FloatVector.SPECIES_PREFERRED.vectorBitSize();
+    private static final boolean SCALABLE =
+      FloatVector.SPECIES_PREFERRED.vectorShape() == VectorShape.S_Max_BIT;
   }
 }
@@ -20,10 +20,36 @@ import static java.util.stream.IntStream.rangeClosed;
 import static org.junit.jupiter.api.Assertions.*;
 
 import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.distance.Distance;
+import io.gravitee.inference.math.api.distance.DistanceFunction;
+import io.gravitee.inference.math.api.distance.NormalizedVector;
+import io.gravitee.inference.math.api.half.HalfFormat;
+import io.gravitee.inference.math.api.half.HalfVector;
+import io.gravitee.inference.math.api.matrix.FloatMatrix;
+import io.gravitee.inference.math.api.matrix.LinearLayer;
+import io.gravitee.inference.math.api.parallel.ParallelRows;
+import io.gravitee.inference.math.api.quantization.BinaryVector;
+import io.gravitee.inference.math.api.quantization.Int8Quantizer;
+import io.gravitee.inference.math.api.quantization.Int8Vector;
+import io.gravitee.inference.math.api.selection.TopK;
+import io.gravitee.inference.math.segment.SegmentFloatMatrix;
+import io.gravitee.inference.math.vanilla.NativeMath;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import org.apache.commons.math3.util.FastMath;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 /**
  * @author Rémi SULTAN (remi.sultan at graviteesource.com)
@@ -32,12 +58,19 @@ import org.junit.jupiter.api.Test;
 public class MaskAwareSIMDMathTest {
 
   private static final GioMaths INSTANCE = MaskAwareSIMDMath.INSTANCE;
+  private static final GioMaths FAST_INSTANCE = MaskAwareSIMDMath.FAST_INSTANCE;
   private static final float[][] MATRIX = {
     { 1f, 2f, 3f, 4f, 5f, 7f, 8f, 9f, 10f, 11f },
     { 1f, 3f, 5f, 7f, 9f, 11f, 13f, 15f, 17f, 19f, 21f },
     { 2f, 4f, 6f, 8f, 10f, 12f, 14f, 16f, 18f, 20f, 22f },
     { 2f, 3f, 5f, 7f, 11f, 13f, 17f, 19f, 23f, 29f, 31f },
   };
+  private static final float[][] MATRIX_ROWS = {
+    { 1f, 2f, 3f, 4f, 5f, 7f, 8f, 9f, 10f, 11f, 12f },
+    { 1f, 3f, 5f, 7f, 9f, 11f, 13f, 15f, 17f, 19f, 21f },
+    { 2f, 4f, 6f, 8f, 10f, 12f, 14f, 16f, 18f, 20f, 22f },
+    { 2f, 3f, 5f, 7f, 11f, 13f, 17f, 19f, 23f, 29f, 31f },
+  };
 
   @Test
   void must_compute_cosine_similarity() {
@@ -176,6 +209,747 @@ public class MaskAwareSIMDMathTest {
     assertArrayEquals(expected, ceil(INSTANCE.sigmoid(v1)));
   }
 
+  @Test
+  void must_compute_activations() {
+    final float[] v1 = { -2f, -1f, 0f, 0.5f, 1f, 3f };
+    assertArrayEquals(
+      new float[] {
+        0.135335f,
+        0.367879f,
+        1f,
+        1.648721f,
+        2.718282f,
+        20.085537f,
+      },
+      INSTANCE.exp(v1),
+      1e-5f
+    );
+    assertArrayEquals(
+      new float[] {
+        -0.964028f,
+        -0.761594f,
+        0f,
+        0.462117f,
+        0.761594f,
+        0.995055f,
+      },
+      INSTANCE.tanh(v1),
+      1e-6f
+    );
+    assertArrayEquals(
+      new float[] {
+        -0.0455f,
+        -0.158655f,
+        0f,
+        0.345731f,
+        0.841345f,
+        2.99595f,
+      },
+      INSTANCE.gelu(v1),
+      1e-6f
+    );
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = { false, true })
+  void must_match_native_activations(boolean fast) {
+    final GioMaths gioMaths = fast ? FAST_INSTANCE : INSTANCE;
+    final float[] vector = randomVector(new Random(5), 1027);
+    for (int i = 0; i < vector.length; i++) {
+      vector[i] *= 20;
+    }
+
+    final float[] exp = gioMaths.exp(vector);
+    final float[] expected = NativeMath.INSTANCE.exp(vector);
+    for (int i = 0; i < vector.length; i++) {
+      assertEquals(expected[i], exp[i], 2 * Math.ulp(expected[i]));
+    }
+    assertArrayEquals(
+      NativeMath.INSTANCE.sigmoid(vector),
+      gioMaths.sigmoid(vector),
+      3e-7f
+    );
+    assertArrayEquals(
+      NativeMath.INSTANCE.tanh(vector),
+      gioMaths.tanh(vector),
+      3e-7f
+    );
+    assertArrayEquals(
+      NativeMath.INSTANCE.gelu(vector),
+      gioMaths.gelu(vector),
+      1e-5f
+    );
+    assertArrayEquals(
+      NativeMath.INSTANCE.softmax(vector),
+      gioMaths.softmax(vector),
+      1e-6f
+    );
+  }
+
+  @Test
+  void must_saturate_fast_exp() {
+    final float[] exp = FAST_INSTANCE.exp(
+      new float[] { -1000f, -100f, 100f, 1000f }
+    );
+    assertTrue(exp[0] >= 0 && exp[0] < 1e-37f);
+    assertTrue(exp[1] >= 0 && exp[1] < 1e-37f);
+    assertTrue(Float.isFinite(exp[2]) && exp[2] > 1e38f);
+    assertTrue(Float.isFinite(exp[3]) && exp[3] > 1e38f);
+  }
+
+  @Test
+  void must_find_argmax() {
+    assertEquals(
+      7,
+      INSTANCE.argmax(new float[] { 0, 1, 2, 3, 4, 5, 6, 9, 9, 1 })
+    );
+    assertEquals(0, INSTANCE.argmax(new float[] { -1f }));
+
+    final float[] negatives = new float[37];
+    Arrays.fill(negatives, -5f);
+    negatives[29] = -0.5f;
+    assertEquals(29, INSTANCE.argmax(negatives));
+    assertEquals(-0.5f, INSTANCE.max(negatives));
+
+    assertArrayEquals(
+      new int[] { 10, 10, 10, 10 },
+      INSTANCE.argmax(MATRIX_ROWS)
+    );
+    assertArrayEquals(
+      new int[] { 10, 10, 10, 10 },
+      INSTANCE.argmax(FloatMatrix.of(MATRIX_ROWS))
+    );
+    assertThrows(IllegalArgumentException.class, () ->
+      INSTANCE.argmax(new float[0])
+    );
+  }
+
+  @Test
+  void must_select_top_k() {
+    final Random random = new Random(13);
+    final float[] vector = randomVector(random, 30522);
+    // duplicates, to check that ties resolve to the lowest index
+    for (int i = 0; i < 100; i++) {
+      vector[random.nextInt(vector.length)] = 0.9999f;
+    }
+    final Integer[] sorted = new Integer[vector.length];
+    Arrays.setAll(sorted, i -> i);
+    Arrays.sort(sorted, (i, j) -> {
+      int byValue = Float.compare(vector[j], vector[i]);
+      return byValue != 0 ? byValue : Integer.compare(i, j);
+    });
+
+    for (int k : new int[] { 1, 5, 64 }) {
+      final TopK topK = INSTANCE.topK(vector, k);
+      assertEquals(k, topK.size());
+      for (int rank = 0; rank < k; rank++) {
+        assertEquals((int) sorted[rank], topK.index(rank));
+        assertEquals(vector[sorted[rank]], topK.value(rank));
+      }
+    }
+  }
+
+  @Test
+  void must_select_every_value_when_k_exceeds_length() {
+    final TopK topK = INSTANCE.topK(new float[] { 2f, -1f, 3f }, 10);
+    assertArrayEquals(new int[] { 2, 0, 1 }, topK.indices());
+    assertArrayEquals(new float[] { 3f, 2f, -1f }, topK.values());
+    assertThrows(IllegalArgumentException.class, () ->
+      INSTANCE.topK(new float[] { 1f }, 0)
+    );
+  }
+
+  @Test
+  void must_compute_dot_product() {
+    final float[] v1 = { 1f, 2f, 3f, 4f, 5f, 6f, 7f, 8f, 9f, 10f, 11f };
+    final float[] v2 = { 11f, 10f, 9f, 8f, 7f, 6f, 5f, 4f, 3f, 2f, 1f };
+
+    assertEquals(286f, INSTANCE.dotProduct(v1, v2));
+  }
+
+  @Test
+  void must_compute_similarities_against_every_vector() {
+    final float[] query = randomVector(new Random(1), 19);
+    final float[][] vectors = randomMatrix(new Random(2), 37, 19);
+
+    final float[] cosine = INSTANCE.cosineSimilarity(query, vectors);
+    final float[] distances = INSTANCE.euclideanDistance(query, vectors);
+    final float[] dotProducts = INSTANCE.dotProduct(query, vectors);
+
+    for (int i = 0; i < vectors.length; i++) {
+      assertEquals(
+        INSTANCE.cosineSimilarity(query, vectors[i]),
+        cosine[i],
+        1e-5f
+      );
+      assertEquals(
+        INSTANCE.euclideanDistance(query, vectors[i]),
+        distances[i],
+        1e-5f
+      );
+      assertEquals(
+        INSTANCE.dotProduct(query, vectors[i]),
+        dotProducts[i],
+        1e-5f
+      );
+    }
+  }
+
+  @Test
+  void must_compute_pairwise_similarities() {
+    final float[][] queries = randomMatrix(new Random(1), 5, 19);
+    final float[][] vectors = randomMatrix(new Random(2), 37, 19);
+
+    final float[][] cosine = INSTANCE.cosineSimilarity(queries, vectors);
+    final float[][] distances = INSTANCE.euclideanDistance(queries, vectors);
+    final float[][] dotProducts = INSTANCE.dotProduct(queries, vectors);
+
+    for (int i = 0; i < queries.length; i++) {
+      assertArrayEquals(
+        INSTANCE.cosineSimilarity(queries[i], vectors),
+        cosine[i],
+        1e-5f
+      );
+      assertArrayEquals(
+        INSTANCE.euclideanDistance(queries[i], vectors),
+        distances[i],
+        1e-5f
+      );
+      assertArrayEquals(
+        INSTANCE.dotProduct(queries[i], vectors),
+        dotProducts[i],
+        1e-5f
+      );
+    }
+  }
+
+  @Test
+  void must_compute_similarities_against_large_corpus() {
+    final float[] query = randomVector(new Random(1), 384);
+    final float[][] vectors = randomMatrix(new Random(2), 2000, 384);
+
+    final float[] cosine = INSTANCE.cosineSimilarity(query, vectors);
+    final float[][] pairwise = INSTANCE.cosineSimilarity(
+      new float[][] { query },
+      vectors
+    );
+
+    for (int i = 0; i < vectors.length; i++) {
+      final float expected = INSTANCE.cosineSimilarity(query, vectors[i]);
+      assertEquals(expected, cosine[i], 1e-5f);
+      assertEquals(expected, pairwise[0][i], 1e-5f);
+    }
+  }
+
+  @Test
+  void must_reject_vectors_of_different_dimension() {
+    final float[] query = { 1f, 2f, 3f };
+    final float[][] vectors = { { 1f, 2f, 3f }, { 1f, 2f } };
+
+    assertThrows(IllegalArgumentException.class, () ->
+      INSTANCE.cosineSimilarity(query, vectors)
+    );
+    assertThrows(IllegalArgumentException.class, () ->
+      INSTANCE.dotProduct(new float[][] { query }, vectors)
+    );
+  }
+
+  @Test
+  void must_compute_mean_of_matrix() {
+    final float[] expected = INSTANCE.mean(MATRIX_ROWS);
+    assertArrayEquals(
+      expected,
+      INSTANCE.mean(FloatMatrix.of(MATRIX_ROWS)),
+      1e-5f
+    );
+    try (Arena arena = Arena.ofConfined()) {
+      var segment = SegmentFloatMatrix.copyOf(arena, MATRIX_ROWS);
+      assertArrayEquals(expected, INSTANCE.mean(segment), 1e-5f);
+    }
+  }
+
+  @Test
+  void must_compute_weighted_mean_of_matrix() {
+    final float[] weights = { 1f, 0f, 2f, 0.5f };
+    final float[] expected = INSTANCE.weightedMean(MATRIX_ROWS, weights);
+    assertArrayEquals(
+      expected,
+      INSTANCE.weightedMean(FloatMatrix.of(MATRIX_ROWS), weights),
+      1e-5f
+    );
+    try (Arena arena = Arena.ofConfined()) {
+      var segment = SegmentFloatMatrix.copyOf(arena, MATRIX_ROWS);
+      assertArrayEquals(
+        expected,
+        INSTANCE.weightedMean(segment, weights),
+        1e-5f
+      );
+    }
+  }
+
+  @Test
+  void must_compute_similarities_against_matrix() {
+    final Random random = new Random(7);
+    final float[][] vectors = randomMatrix(random, 2000, 387);
+    final float[] query = randomVector(random, 387);
+    final float[] cosine = INSTANCE.cosineSimilarity(query, vectors);
+    final float[] distance = INSTANCE.euclideanDistance(query, vectors);
+    final float[] dot = INSTANCE.dotProduct(query, vectors);
+
+    for (Arena arena : new Arena[] { Arena.ofConfined(), Arena.ofShared() }) {
+      try (arena) {
+        for (FloatMatrix matrix : new FloatMatrix[] {
+          FloatMatrix.of(vectors),
+          SegmentFloatMatrix.copyOf(arena, vectors),
+        }) {
+          assertArrayEquals(
+            cosine,
+            INSTANCE.cosineSimilarity(query, matrix),
+            1e-5f
+          );
+          assertArrayEquals(
+            distance,
+            INSTANCE.euclideanDistance(query, matrix),
+            1e-3f
+          );
+          assertArrayEquals(dot, INSTANCE.dotProduct(query, matrix), 1e-3f);
+        }
+      }
+    }
+  }
+
+  @Test
+  void must_compute_similarities_against_row_view() {
+    final Random random = new Random(11);
+    final float[][] vectors = randomMatrix(random, 9, 19);
+    final float[] query = randomVector(random, 19);
+    final float[] expected = INSTANCE.cosineSimilarity(
+      query,
+      new float[][] { vectors[3], vectors[4], vectors[5] }
+    );
+
+    try (Arena arena = Arena.ofConfined()) {
+      assertArrayEquals(
+        expected,
+        INSTANCE.cosineSimilarity(query, FloatMatrix.of(vectors).rows(3, 6)),
+        1e-5f
+      );
+      assertArrayEquals(
+        expected,
+        INSTANCE.cosineSimilarity(
+          query,
+          SegmentFloatMatrix.copyOf(arena, vectors).rows(3, 6)
+        ),
+        1e-5f
+      );
+    }
+  }
+
+  @Test
+  void must_reject_matrix_of_different_dimension() {
+    final FloatMatrix matrix = FloatMatrix.allocate(3, 4);
+    assertThrows(IllegalArgumentException.class, () ->
+      INSTANCE.cosineSimilarity(new float[3], matrix)
+    );
+  }
+
+  @Test
+  void must_handle_matrix_without_columns() {
+    try (Arena arena = Arena.ofConfined()) {
+      for (FloatMatrix matrix : new FloatMatrix[] {
+        FloatMatrix.of(new float[7][0]),
+        SegmentFloatMatrix.copyOf(arena, new float[7][0]),
+      }) {
+        assertArrayEquals(new float[0], matrix.row(6));
+        assertArrayEquals(new float[0], INSTANCE.mean(matrix));
+        assertArrayEquals(
+          new float[0],
+          INSTANCE.weightedMean(matrix, new float[7])
+        );
+        assertEquals(7, INSTANCE.cosineSimilarity(new float[0], matrix).length);
+        assertEquals(7, INSTANCE.dotProduct(new float[0], matrix).length);
+        assertEquals(
+          7,
+          INSTANCE.euclideanDistance(new float[0], matrix).length
+        );
+        assertArrayEquals(
+          new float[7],
+          INSTANCE.multiply(matrix, new float[0])
+        );
+      }
+    }
+  }
+
+  @Test
+  void must_write_into_destination() {
+    final float[] vector = MATRIX_ROWS[3];
+    final float[] weights = { 1f, 0f, 2f, 0.5f };
+    final float[] dst = new float[vector.length];
+
+    assertSame(dst, INSTANCE.softmax(vector, dst));
+    assertArrayEquals(INSTANCE.softmax(vector), dst, 1e-6f);
+    assertSame(dst, INSTANCE.sigmoid(vector, dst));
+    assertArrayEquals(INSTANCE.sigmoid(vector), dst, 1e-6f);
+    assertSame(dst, INSTANCE.normalize(vector, dst));
+    assertArrayEquals(INSTANCE.normalize(vector), dst, 1e-6f);
+    assertSame(dst, INSTANCE.mean(MATRIX_ROWS, dst));
+    assertArrayEquals(INSTANCE.mean(MATRIX_ROWS), dst, 1e-5f);
+    assertSame(dst, INSTANCE.weightedMean(MATRIX_ROWS, weights, dst));
+    assertArrayEquals(
+      INSTANCE.weightedMean(MATRIX_ROWS, weights),
+      dst,
+      1e-5f
+    );
+    assertSame(dst, INSTANCE.mean(FloatMatrix.of(MATRIX_ROWS), dst));
+    assertArrayEquals(INSTANCE.mean(MATRIX_ROWS), dst, 1e-5f);
+  }
+
+  @Test
+  void must_compute_in_place() {
+    final float[] vector = MATRIX_ROWS[2];
+
+    assertArrayEquals(
+      INSTANCE.softmax(vector),
+      INSTANCE.softmaxInPlace(vector.clone()),
+      1e-6f
+    );
+    assertArrayEquals(
+      INSTANCE.sigmoid(vector),
+      INSTANCE.sigmoidInPlace(vector.clone()),
+      1e-6f
+    );
+    assertArrayEquals(
+      INSTANCE.normalize(vector),
+      INSTANCE.normalizeInPlace(vector.clone()),
+      1e-6f
+    );
+  }
+
+  @Test
+  void must_compute_fused_normalized_means() {
+    final float[] weights = { 3f, 1f, 2f, 0.5f };
+    final float[] dst = new float[MATRIX_ROWS[0].length];
+
+    assertArrayEquals(
+      INSTANCE.normalize(INSTANCE.mean(MATRIX_ROWS)),
+      INSTANCE.normalizedMean(MATRIX_ROWS, dst),
+      1e-6f
+    );
+    assertArrayEquals(
+      INSTANCE.normalize(INSTANCE.weightedMean(MATRIX_ROWS, weights)),
+      INSTANCE.normalizedWeightedMean(MATRIX_ROWS, weights, dst),
+      1e-6f
+    );
+  }
+
+  @Test
+  void must_reject_destination_of_wrong_length() {
+    final float[] dst = new float[3];
+    assertThrows(IllegalArgumentException.class, () ->
+      INSTANCE.softmax(new float[4], dst)
+    );
+    assertThrows(IllegalArgumentException.class, () ->
+      INSTANCE.mean(MATRIX_ROWS, dst)
+    );
+  }
+
+  @Test
+  void must_compute_int8_dot_products() {
+    final Random random = new Random(17);
+    final byte[] v1 = new byte[1027];
+    final byte[] v2 = new byte[1027];
+    random.nextBytes(v1);
+    random.nextBytes(v2);
+    v1[0] = v2[0] = Byte.MIN_VALUE;
+    final float[] query = randomVector(random, 1027);
+
+    int expected = 0;
+    float expectedMixed = 0f;
+    for (int i = 0; i < v1.length; i++) {
+      expected += v1[i] * v2[i];
+      expectedMixed += query[i] * v2[i];
+    }
+    assertEquals(expected, INSTANCE.dotProduct(v1, v2));
+    assertEquals(expectedMixed, INSTANCE.dotProduct(query, v2), 1e-2f);
+  }
+
+  @Test
+  void must_approximate_similarities_with_int8_vectors() {
+    final Random random = new Random(19);
+    final float[] v1 = randomVector(random, 384);
+    final float[] v2 = randomVector(random, 384);
+    final Int8Vector q1 = Int8Vector.quantize(v1);
+    final Int8Vector q2 = Int8Vector.quantize(v2);
+
+    assertArrayEquals(v1, q1.dequantize(), q1.scale() / 2 + 1e-6f);
+    final float cosine = INSTANCE.cosineSimilarity(v1, v2);
+    assertEquals(cosine, INSTANCE.cosineSimilarity(q1, q2), 1e-3f);
+    assertEquals(cosine, INSTANCE.cosineSimilarity(v1, q2), 1e-3f);
+    assertEquals(
+      INSTANCE.dotProduct(v1, v2),
+      INSTANCE.dotProduct(q1, q2),
+      1e-1f
+    );
+    assertEquals(
+      INSTANCE.dotProduct(v1, v2),
+      INSTANCE.dotProduct(v1, q2),
+      1e-1f
+    );
+  }
+
+  @Test
+  void must_keep_recall_with_int8_vectors() {
+    final Random random = new Random(23);
+    final float[][] corpus = randomMatrix(random, 2000, 384);
+    for (int i = 0; i < corpus.length; i++) {
+      corpus[i] = INSTANCE.normalize(corpus[i]);
+    }
+    final Int8Vector[] perVector = new Int8Vector[corpus.length];
+    final byte[][] perDimension = new byte[corpus.length][];
+    final Int8Quantizer quantizer = Int8Quantizer.fit(corpus);
+    for (int i = 0; i < corpus.length; i++) {
+      perVector[i] = Int8Vector.quantize(corpus[i]);
+      perDimension[i] = quantizer.quantize(corpus[i]);
+    }
+
+    final int k = 10;
+    final int queries = 20;
+    int perVectorHits = 0;
+    int perDimensionHits = 0;
+    for (int q = 0; q < queries; q++) {
+      final float[] query = INSTANCE.normalize(randomVector(random, 384));
+      final int[] expected = INSTANCE.topK(
+        INSTANCE.cosineSimilarity(query, corpus),
+        k
+      ).indices();
+      perVectorHits += hits(
+        expected,
+        INSTANCE.topK(INSTANCE.cosineSimilarity(query, perVector), k)
+      );
+      perDimensionHits += hits(
+        expected,
+        INSTANCE.topK(
+          quantizer.query(query).dotProduct(INSTANCE, perDimension),
+          k
+        )
+      );
+    }
+    assertTrue(perVectorHits >= 0.95 * k * queries, "" + perVectorHits);
+    assertTrue(perDimensionHits >= 0.9 * k * queries, "" + perDimensionHits);
+  }
+
+  @Test
+  void must_compute_hamming_distances() {
+    final Random random = new Random(29);
+    final long[] v1 = new long[13];
+    final long[] v2 = new long[13];
+    for (int i = 0; i < v1.length; i++) {
+      v1[i] = random.nextLong();
+      v2[i] = random.nextLong();
+    }
+    v1[0] = -1L;
+    v2[0] = 0L;
+
+    int expected = 0;
+    for (int i = 0; i < v1.length * Long.SIZE; i++) {
+      final long bit = 1L << i;
+      if ((v1[i / Long.SIZE] & bit) != (v2[i / Long.SIZE] & bit)) {
+        expected++;
+      }
+    }
+    assertEquals(expected, INSTANCE.hammingDistance(v1, v2));
+    assertEquals(0, INSTANCE.hammingDistance(v1, v1));
+    assertThrows(IllegalArgumentException.class, () ->
+      INSTANCE.hammingDistance(v1, new long[12])
+    );
+  }
+
+  @Test
+  void must_quantize_signs_into_binary_vectors() {
+    final float[] vector = new float[70];
+    vector[0] = 1f;
+    vector[63] = 0.5f;
+    vector[64] = -1f;
+    vector[69] = 2f;
+    final BinaryVector binary = BinaryVector.quantize(vector);
+
+    assertEquals(70, binary.dimension());
+    assertArrayEquals(
+      new long[] { 1L | Long.MIN_VALUE, 1L << 5 },
+      binary.bits()
+    );
+    assertEquals(
+      3,
+      INSTANCE.hammingDistance(binary, BinaryVector.quantize(new float[70]))
+    );
+  }
+
+  @Test
+  void must_keep_recall_with_binary_vectors_after_rescoring() {
+    final Random random = new Random(31);
+    final float[][] corpus = randomMatrix(random, 2000, 384);
+    final BinaryVector[] binaries = new BinaryVector[corpus.length];
+    for (int i = 0; i < corpus.length; i++) {
+      binaries[i] = BinaryVector.quantize(corpus[i]);
+    }
+
+    final int k = 10;
+    final int queries = 20;
+    int hits = 0;
+    for (int q = 0; q < queries; q++) {
+      final float[] query = randomVector(random, 384);
+      final int[] expected = INSTANCE.topK(
+        INSTANCE.cosineSimilarity(query, corpus),
+        k
+      ).indices();
+      final int[] candidates = INSTANCE.hammingNearest(
+        BinaryVector.quantize(query),
+        binaries,
+        20 * k
+      );
+      final TopK rescored = INSTANCE.rescore(query, corpus, candidates, k);
+
+      assertEquals(k, rescored.size());
+      for (int rank = 1; rank < k; rank++) {
+        assertTrue(rescored.value(rank - 1) >= rescored.value(rank));
+      }
+      assertEquals(
+        INSTANCE.cosineSimilarity(query, corpus[rescored.index(0)]),
+        rescored.value(0),
+        1e-5f
+      );
+      hits += hits(expected, rescored);
+    }
+    assertTrue(hits >= 0.8 * k * queries, "" + hits);
+  }
+
+  @Test
+  void must_decode_every_half() {
+    final short[] halves = new short[1 << 16];
+    for (int i = 0; i < halves.length; i++) {
+      halves[i] = (short) i;
+    }
+    for (HalfFormat format : HalfFormat.values()) {
+      final float[] expected = new float[halves.length];
+      for (int i = 0; i < halves.length; i++) {
+        expected[i] = format.decode(halves[i]);
+      }
+      assertArrayEquals(
+        expected,
+        INSTANCE.fromHalf(halves, format, new float[halves.length])
+      );
+    }
+  }
+
+  @Test
+  void must_encode_halves_rounding_to_nearest_even() {
+    final Random random = new Random(37);
+    final float[] vector = new float[1027];
+    for (int i = 0; i < vector.length; i++) {
+      vector[i] = switch (i % 4) {
+        case 0 -> random.nextFloat() * 2 - 1;
+        case 1 -> (float) random.nextGaussian() * 1e-6f;
+        case 2 -> (float) random.nextGaussian() * 1e5f;
+        default -> Float.intBitsToFloat(random.nextInt());
+      };
+    }
+    final float[] specials = {
+      0f,
+      -0f,
+      65504f,
+      65520f,
+      -65536f,
+      0x1p-24f,
+      0x1p-25f,
+      0x1.8p-25f,
+      0x1p-14f,
+      Float.MAX_VALUE,
+      Float.MIN_VALUE,
+      Float.POSITIVE_INFINITY,
+      Float.NEGATIVE_INFINITY,
+      Float.NaN,
+    };
+    System.arraycopy(specials, 0, vector, 0, specials.length);
+
+    for (HalfFormat format : HalfFormat.values()) {
+      final short[] halves = INSTANCE.toHalf(
+        vector,
+        format,
+        new short[vector.length]
+      );
+      for (int i = 0; i < vector.length; i++) {
+        if (Float.isNaN(vector[i])) {
+          assertTrue(Float.isNaN(format.decode(halves[i])));
+        } else {
+          assertEquals(format.encode(vector[i]), halves[i], "" + vector[i]);
+        }
+      }
+    }
+  }
+
+  @Test
+  void must_compute_similarities_on_half_vectors() {
+    final Random random = new Random(41);
+    final float[] v1 = randomVector(random, 1027);
+    final float[] v2 = randomVector(random, 1027);
+    final float cosine = INSTANCE.cosineSimilarity(v1, v2);
+
+    for (HalfFormat format : HalfFormat.values()) {
+      final HalfVector half = INSTANCE.toHalf(v2, format);
+      final float[] decoded = INSTANCE.fromHalf(half);
+      assertEquals(
+        INSTANCE.dotProduct(v1, decoded),
+        INSTANCE.dotProduct(v1, half),
+        1e-3f
+      );
+      assertEquals(
+        INSTANCE.cosineSimilarity(v1, decoded),
+        INSTANCE.cosineSimilarity(v1, half),
+        1e-5f
+      );
+      assertEquals(cosine, INSTANCE.cosineSimilarity(v1, half), 1e-2f);
+      assertEquals(
+        INSTANCE.cosineSimilarity(v1, half),
+        INSTANCE.cosineSimilarity(v1, new HalfVector[] { half })[0],
+        0f
+      );
+    }
+    assertEquals(
+      cosine,
+      INSTANCE.cosineSimilarity(v1, INSTANCE.toHalf(v2, HalfFormat.FLOAT16)),
+      1e-4f
+    );
+    assertThrows(IllegalArgumentException.class, () ->
+      INSTANCE.dotProduct(v1, new short[3], HalfFormat.FLOAT16)
+    );
+  }
+
+  private static int hits(int[] expected, TopK actual) {
+    int hits = 0;
+    for (int index : actual.indices()) {
+      for (int expectedIndex : expected) {
+        hits += index == expectedIndex ? 1 : 0;
+      }
+    }
+    return hits;
+  }
+
+  private static float[][] randomMatrix(Random random, int rows, int cols) {
+    float[][] matrix = new float[rows][];
+    for (int i = 0; i < rows; i++) {
+      matrix[i] = randomVector(random, cols);
+    }
+    return matrix;
+  }
+
+  private static float[] randomVector(Random random, int length) {
+    float[] vector = new float[length];
+    for (int i = 0; i < length; i++) {
+      vector[i] = random.nextFloat() * 2 - 1;
+    }
+    return vector;
+  }
+
   private float[] ceil(float[] vector) {
     float[] result = new float[vector.length];
     for (int i = 0; i < vector.length; i++) {
@@ -184,6 +958,364 @@ public class MaskAwareSIMDMathTest {
     return result;
   }
 
+  @Test
+  void must_pool_batches_following_attention_mask() {
+    // 64 x 64 x 131 floats: large enough to be split across threads
+    final Random random = new Random(31);
+    final float[][][] hiddenStates = new float[64][64][131];
+    final long[][] attentionMask = new long[64][64];
+    for (int b = 0; b < hiddenStates.length; b++) {
+      final int length = b == 0 ? 0 : 1 + random.nextInt(64);
+      for (int t = 0; t < hiddenStates[b].length; t++) {
+        attentionMask[b][t] = t < length ? 1 : 0;
+        for (int h = 0; h < hiddenStates[b][t].length; h++) {
+          // padding holds large values that must never leak in
+          hiddenStates[b][t][h] = t < length ? random.nextFloat() - 0.5f : 1e6f;
+        }
+      }
+    }
+
+    final float[][] mean = INSTANCE.meanPooling(hiddenStates, attentionMask);
+    final float[][] max = INSTANCE.maxPooling(hiddenStates, attentionMask);
+    for (int b = 0; b < hiddenStates.length; b++) {
+      final float[] expectedMean = new float[131];
+      final float[] expectedMax = new float[131];
+      int length = 0;
+      for (int t = 0; t < hiddenStates[b].length; t++) {
+        if (attentionMask[b][t] != 0) {
+          length++;
+          for (int h = 0; h < expectedMean.length; h++) {
+            expectedMean[h] += hiddenStates[b][t][h];
+            expectedMax[h] = length == 1
+              ? hiddenStates[b][t][h]
+              : Math.max(expectedMax[h], hiddenStates[b][t][h]);
+          }
+        }
+      }
+      for (int h = 0; length > 0 && h < expectedMean.length; h++) {
+        expectedMean[h] /= length;
+      }
+      assertArrayEquals(expectedMean, mean[b], 1e-4f);
+      assertArrayEquals(expectedMax, max[b]);
+    }
+  }
+
+  @Test
+  void must_compute_weighted_mean_pooling() {
+    final float[][][] hiddenStates = {
+      { { 1, 2, 3 }, { 3, 4, 5 }, { 100, 100, 100 } },
+      { { -1, 0, 1 }, { 7, 7, 7 }, { 1, 0, -1 } },
+    };
+    final float[][] weights = { { 1, 3, 0 }, { 0, 0, 0 } };
+
+    final float[][] pooled = INSTANCE.weightedMeanPooling(
+      hiddenStates,
+      weights
+    );
+
+    assertArrayEquals(new float[] { 2.5f, 3.5f, 4.5f }, pooled[0]);
+    assertArrayEquals(new float[3], pooled[1]);
+  }
+
+  @Test
+  void must_compute_cls_pooling() {
+    final float[][][] hiddenStates = {
+      { { 1, 2 }, { 3, 4 } },
+      { { 5, 6 }, { 7, 8 } },
+    };
+
+    final float[][] pooled = INSTANCE.clsPooling(hiddenStates);
+
+    assertArrayEquals(new float[] { 1, 2 }, pooled[0]);
+    assertArrayEquals(new float[] { 5, 6 }, pooled[1]);
+    assertNotSame(hiddenStates[0][0], pooled[0]);
+  }
+
+  @Test
+  void must_reject_attention_mask_of_another_shape() {
+    final float[][][] hiddenStates = new float[2][3][4];
+
+    assertThrows(IllegalArgumentException.class, () ->
+      INSTANCE.meanPooling(hiddenStates, new long[1][3])
+    );
+    assertThrows(IllegalArgumentException.class, () ->
+      INSTANCE.maxPooling(hiddenStates, new long[2][2])
+    );
+    assertThrows(IllegalArgumentException.class, () ->
+      INSTANCE.weightedMeanPooling(hiddenStates, new float[2][4])
+    );
+    hiddenStates[1][2] = new float[5];
+    assertThrows(IllegalArgumentException.class, () ->
+      INSTANCE.meanPooling(hiddenStates, new long[2][3])
+    );
+  }
+
+  @Test
+  void must_multiply_matrix_by_vector() {
+    final Random random = new Random(37);
+    final float[][] weights = new float[38][131];
+    final float[] vector = new float[131];
+    for (int j = 0; j < vector.length; j++) {
+      vector[j] = random.nextFloat() - 0.5f;
+    }
+    final float[] expected = new float[weights.length];
+    for (int i = 0; i < weights.length; i++) {
+      for (int j = 0; j < vector.length; j++) {
+        weights[i][j] = random.nextFloat() - 0.5f;
+        expected[i] += weights[i][j] * vector[j];
+      }
+    }
+
+    final FloatMatrix heap = FloatMatrix.of(weights);
+    assertArrayEquals(expected, INSTANCE.multiply(heap, vector), 1e-4f);
+    try (Arena arena = Arena.ofConfined()) {
+      final FloatMatrix segment = SegmentFloatMatrix.copyOf(arena, weights);
+      assertArrayEquals(expected, INSTANCE.multiply(segment, vector), 1e-4f);
+    }
+    assertThrows(IllegalArgumentException.class, () ->
+      INSTANCE.multiply(heap, new float[130])
+    );
+    assertThrows(IllegalArgumentException.class, () ->
+      INSTANCE.multiply(heap, vector, new float[37])
+    );
+  }
+
+  @Test
+  void must_multiply_matrix_by_matrix() {
+    // 600 x 45 x 131 multiply-adds: large enough to be split across threads
+    final Random random = new Random(41);
+    final float[][] weights = new float[50][131];
+    final float[][] vectors = new float[600][131];
+    for (float[] row : weights) {
+      for (int j = 0; j < row.length; j++) {
+        row[j] = random.nextFloat() - 0.5f;
+      }
+    }
+    for (float[] row : vectors) {
+      for (int j = 0; j < row.length; j++) {
+        row[j] = random.nextFloat() - 0.5f;
+      }
+    }
+    // a view on rows [3, 48), so the weights start at an offset
+    final float[][] expected = new float[vectors.length][45];
+    for (int v = 0; v < vectors.length; v++) {
+      for (int i = 0; i < 45; i++) {
+        for (int j = 0; j < 131; j++) {
+          expected[v][i] += weights[i + 3][j] * vectors[v][j];
+        }
+      }
+    }
+
+    final FloatMatrix heap = FloatMatrix.of(weights).rows(3, 48);
+    final float[][] products = INSTANCE.multiply(heap, vectors);
+    try (Arena arena = Arena.ofShared()) {
+      final float[][] segmentProducts = INSTANCE.multiply(
+        SegmentFloatMatrix.copyOf(arena, weights).rows(3, 48),
+        vectors
+      );
+      for (int v = 0; v < vectors.length; v++) {
+        assertArrayEquals(expected[v], products[v], 1e-4f);
+        assertArrayEquals(expected[v], segmentProducts[v], 1e-4f);
+      }
+    }
+    assertThrows(IllegalArgumentException.class, () ->
+      INSTANCE.multiply(heap, new float[][] { new float[131], new float[3] })
+    );
+  }
+
+  @Test
+  void must_apply_linear_layer_loaded_from_file(@TempDir Path directory)
+    throws IOException {
+    final Path file = directory.resolve("dense.bin");
+    final ByteBuffer buffer = ByteBuffer.allocate(6 * Float.BYTES).order(
+      ByteOrder.nativeOrder()
+    );
+    buffer.asFloatBuffer().put(new float[] { 1, 2, 3, 4, 5, 6 });
+    Files.write(file, buffer.array());
+    final float[] bias = { 0.5f, 0f, -0.5f };
+
+    final LinearLayer layer = new LinearLayer(
+      FloatMatrix.read(file, 3, 2),
+      bias
+    );
+    assertEquals(2, layer.inputs());
+    assertEquals(3, layer.outputs());
+    assertArrayEquals(
+      new float[] { 3.5f, 7f, 10.5f },
+      layer.apply(INSTANCE, new float[] { 1, 1 })
+    );
+    try (Arena arena = Arena.ofConfined()) {
+      final float[][] outputs = new LinearLayer(
+        SegmentFloatMatrix.map(arena, file, 3, 2),
+        bias
+      ).apply(INSTANCE, new float[][] { { 1, 1 }, { 0, 1 } });
+      assertArrayEquals(new float[] { 3.5f, 7f, 10.5f }, outputs[0]);
+      assertArrayEquals(new float[] { 2.5f, 4f, 5.5f }, outputs[1]);
+    }
+    assertThrows(IllegalArgumentException.class, () ->
+      FloatMatrix.read(file, 2, 2)
+    );
+    assertThrows(IllegalArgumentException.class, () ->
+      new LinearLayer(FloatMatrix.allocate(3, 2), new float[2])
+    );
+  }
+
+  @Test
+  void must_reduce_large_matrices_identically_on_any_pool() {
+    // 2000 x 384 floats: above the parallel threshold
+    final Random random = new Random(43);
+    final float[][] matrix = new float[2000][384];
+    final float[] weights = new float[matrix.length];
+    final double[] expectedMean = new double[384];
+    final double[] expectedWeighted = new double[384];
+    double totalWeight = 0;
+    for (int i = 0; i < matrix.length; i++) {
+      weights[i] = random.nextFloat();
+      totalWeight += weights[i];
+      for (int j = 0; j < matrix[i].length; j++) {
+        matrix[i][j] = random.nextFloat() - 0.5f;
+        expectedMean[j] += matrix[i][j];
+        expectedWeighted[j] += matrix[i][j] * weights[i];
+      }
+    }
+    final FloatMatrix heap = FloatMatrix.of(matrix);
+
+    final ForkJoinPool pool = ParallelRows.pool();
+    final ForkJoinPool two = new ForkJoinPool(2);
+    final ForkJoinPool five = new ForkJoinPool(5);
+    try {
+      ParallelRows.setPool(two);
+      final float[] mean = INSTANCE.mean(matrix);
+      final float[] weighted = INSTANCE.weightedMean(matrix, weights);
+      final float[] heapMean = INSTANCE.mean(heap);
+      final float[] heapWeighted = INSTANCE.weightedMean(heap, weights);
+      for (int j = 0; j < 384; j++) {
+        assertEquals(expectedMean[j] / matrix.length, mean[j], 1e-5);
+        assertEquals(expectedWeighted[j] / totalWeight, weighted[j], 1e-5);
+      }
+      assertArrayEquals(mean, heapMean);
+      assertArrayEquals(weighted, heapWeighted);
+
+      ParallelRows.setPool(five);
+      assertArrayEquals(mean, INSTANCE.mean(matrix));
+      assertArrayEquals(weighted, INSTANCE.weightedMean(matrix, weights));
+      assertArrayEquals(heapMean, INSTANCE.mean(heap));
+      assertArrayEquals(heapWeighted, INSTANCE.weightedMean(heap, weights));
+      try (Arena arena = Arena.ofShared()) {
+        final FloatMatrix segment = SegmentFloatMatrix.copyOf(arena, matrix);
+        assertArrayEquals(mean, INSTANCE.mean(segment), 1e-6f);
+        assertArrayEquals(
+          weighted,
+          INSTANCE.weightedMean(segment, weights),
+          1e-6f
+        );
+      }
+    } finally {
+      ParallelRows.setPool(pool);
+      two.shutdown();
+      five.shutdown();
+    }
+  }
+
+  @Test
+  void must_find_max_of_large_vectors_on_any_pool() {
+    final Random random = new Random(47);
+    final float[] vector = new float[(1 << 20) + 13];
+    for (int i = 0; i < vector.length; i++) {
+      vector[i] = random.nextFloat() - 2f;
+    }
+    vector[700_001] = 3f;
+
+    final ForkJoinPool pool = ParallelRows.pool();
+    final ForkJoinPool four = new ForkJoinPool(4);
+    try {
+      ParallelRows.setPool(four);
+      assertEquals(3f, INSTANCE.max(vector));
+      assertEquals(700_001, INSTANCE.argmax(vector));
+      ParallelRows.setThreshold(Long.MAX_VALUE);
+      assertEquals(3f, INSTANCE.max(vector));
+    } finally {
+      ParallelRows.setPool(pool);
+      ParallelRows.setThreshold(ParallelRows.PARALLEL_THRESHOLD);
+      four.shutdown();
+    }
+  }
+
+  @Test
+  void must_compute_manhattan_distance() {
+    final float[] v1 = { 1f, 2f, 3f, 4f, 5f, 6f, 7f, 8f, 9f, 10f, 11f };
+    final float[] v2 = { 11f, 10f, 9f, 8f, 7f, 6f, 5f, 4f, 3f, 2f, 1f };
+
+    assertEquals(0.0f, INSTANCE.manhattanDistance(v1, v1));
+    assertEquals(60f, INSTANCE.manhattanDistance(v1, v2));
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> INSTANCE.manhattanDistance(v1, new float[3])
+    );
+  }
+
+  @Test
+  void must_compute_distance_functions() {
+    final Random random = new Random(53);
+    final float[] query = new float[131];
+    final float[][] vectors = new float[9][131];
+    for (int j = 0; j < query.length; j++) {
+      query[j] = random.nextFloat() - 0.5f;
+    }
+    for (float[] vector : vectors) {
+      for (int j = 0; j < vector.length; j++) {
+        vector[j] = random.nextFloat() - 0.5f;
+      }
+    }
+
+    for (Distance distance : Distance.values()) {
+      assertSame(distance, DistanceFunction.of(distance.name().toLowerCase()));
+      final float[] batch = distance.compute(INSTANCE, query, vectors);
+      for (int i = 0; i < vectors.length; i++) {
+        assertEquals(
+          distance.compute(INSTANCE, query, vectors[i]),
+          batch[i],
+          1e-4
+        );
+      }
+    }
+    assertEquals(
+      INSTANCE.hammingDistance(
+        BinaryVector.quantize(query),
+        BinaryVector.quantize(vectors[0])
+      ),
+      Distance.HAMMING.compute(INSTANCE, query, vectors[0])
+    );
+    assertTrue(Distance.COSINE.score(0.5f) > Distance.COSINE.score(0.2f));
+    assertTrue(Distance.EUCLIDEAN.score(0.2f) > Distance.EUCLIDEAN.score(0.5f));
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> DistanceFunction.of("chebyshev")
+    );
+  }
+
+  @Test
+  void must_compute_cosine_similarity_of_normalized_vectors() {
+    final Random random = new Random(59);
+    final float[] v1 = new float[131];
+    final float[] v2 = new float[131];
+    for (int j = 0; j < v1.length; j++) {
+      v1[j] = random.nextFloat() - 0.5f;
+      v2[j] = random.nextFloat() - 0.5f;
+    }
+    final NormalizedVector n1 = NormalizedVector.of(INSTANCE, v1);
+    final NormalizedVector n2 = NormalizedVector.of(INSTANCE, v2);
+
+    final float expected = INSTANCE.cosineSimilarity(v1, v2);
+    assertEquals(expected, INSTANCE.cosineSimilarity(n1, n2), 1e-5);
+    assertEquals(expected, Distance.COSINE.compute(INSTANCE, n1, n2), 1e-5);
+    assertArrayEquals(
+      new float[] { 1f, expected },
+      INSTANCE.cosineSimilarity(n1, new NormalizedVector[] { n1, n2 }),
+      1e-5f
+    );
+  }
+
   private float ceil(float scalar) {
     return (float) (FastMath.ceil(scalar * 100) / 100);
   }
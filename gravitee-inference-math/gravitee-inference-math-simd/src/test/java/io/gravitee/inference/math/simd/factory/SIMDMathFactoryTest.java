@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.math.simd.factory;
+
+import static io.gravitee.inference.math.simd.factory.SIMDMathFactory.SIMD_PROPERTY;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.simd.LoopBoundSIMDMath;
+import io.gravitee.inference.math.simd.MaskAwareSIMDMath;
+import io.gravitee.inference.math.simd.Precision;
+import io.gravitee.inference.math.vanilla.NativeMath;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public class SIMDMathFactoryTest {
+
+  @Test
+  void must_dispatch_by_dimension_band() {
+    final DispatchTable table = DispatchTable.of(256, true);
+
+    assertEquals(Kernel.NATIVE, table.kernel(Operation.DOT_PRODUCT, 0));
+    assertEquals(Kernel.NATIVE, table.kernel(Operation.DOT_PRODUCT, 7));
+    assertEquals(Kernel.LOOP_BOUND, table.kernel(Operation.DOT_PRODUCT, 384));
+    assertEquals(Kernel.MASK_AWARE, table.kernel(Operation.DOT_PRODUCT, 385));
+    assertEquals(Kernel.NATIVE, table.kernel(Operation.INT8_DOT_PRODUCT, 15));
+    assertEquals(
+      Kernel.LOOP_BOUND,
+      table.kernel(Operation.INT8_DOT_PRODUCT, 16)
+    );
+    assertEquals(
+      Kernel.MASK_AWARE,
+      table.kernel(Operation.HAMMING_DISTANCE, 6)
+    );
+    assertNull(table.uniformKernel());
+  }
+
+  @Test
+  void must_not_mask_tails_without_mask_registers() {
+    final DispatchTable table = DispatchTable.of(256, false);
+
+    for (Operation operation : Operation.values()) {
+      for (int length = 0; length < 100; length++) {
+        assertNotEquals(Kernel.MASK_AWARE, table.kernel(operation, length));
+      }
+    }
+  }
+
+  @Test
+  void must_force_kernel_with_system_property() {
+    try {
+      System.setProperty(SIMD_PROPERTY, "native");
+      assertSame(NativeMath.INSTANCE, SIMDMathFactory.gioMaths());
+      assertEquals(
+        Kernel.NATIVE,
+        SIMDMathFactory.dispatchTable().uniformKernel()
+      );
+
+      System.setProperty(SIMD_PROPERTY, "Loop-Bound");
+      assertSame(LoopBoundSIMDMath.INSTANCE, SIMDMathFactory.gioMaths());
+      assertSame(
+        LoopBoundSIMDMath.FAST_INSTANCE,
+        SIMDMathFactory.gioMaths(Precision.FAST)
+      );
+
+      System.setProperty(SIMD_PROPERTY, "mask-aware");
+      assertSame(MaskAwareSIMDMath.INSTANCE, SIMDMathFactory.gioMaths());
+
+      System.setProperty(SIMD_PROPERTY, "unknown");
+      assertEquals(
+        SIMDMathFactory.dispatchTable().toString(),
+        dispatchTableWithoutProperty().toString()
+      );
+    } finally {
+      System.clearProperty(SIMD_PROPERTY);
+    }
+  }
+
+  @Test
+  void must_match_native_results_in_every_band() {
+    final GioMaths dispatching = new DispatchingGioMaths(
+      DispatchTable.of(256, true),
+      Precision.EXACT
+    );
+    final GioMaths expected = NativeMath.INSTANCE;
+    final Random random = new Random(43);
+    for (int length : new int[] { 3, 16, 19 }) {
+      final float[] v1 = randomVector(random, length);
+      final float[] v2 = randomVector(random, length);
+
+      assertEquals(
+        expected.cosineSimilarity(v1, v2),
+        dispatching.cosineSimilarity(v1, v2),
+        1e-5f
+      );
+      assertEquals(
+        expected.dotProduct(v1, v2),
+        dispatching.dotProduct(v1, v2),
+        1e-5f
+      );
+      assertArrayEquals(expected.softmax(v1), dispatching.softmax(v1), 1e-6f);
+      assertEquals(expected.argmax(v1), dispatching.argmax(v1));
+      assertArrayEquals(
+        expected.mean(new float[][] { v1, v2 }),
+        dispatching.mean(new float[][] { v1, v2 }),
+        1e-6f
+      );
+    }
+  }
+
+  private static DispatchTable dispatchTableWithoutProperty() {
+    final String value = System.clearProperty(SIMD_PROPERTY);
+    try {
+      return SIMDMathFactory.dispatchTable();
+    } finally {
+      System.setProperty(SIMD_PROPERTY, value);
+    }
+  }
+
+  private static float[] randomVector(Random random, int length) {
+    float[] vector = new float[length];
+    for (int i = 0; i < length; i++) {
+      vector[i] = random.nextFloat() * 2 - 1;
+    }
+    return vector;
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.onnx.bench;
+
+import static io.gravitee.inference.api.Constants.CLASSIFIER_MODE;
+import static io.gravitee.inference.api.Constants.MAX_SEQUENCE_LENGTH;
+import static io.gravitee.inference.api.Constants.MAX_SEQUENCE_LENGTH_DEFAULT_VALUE;
+import static io.gravitee.inference.api.Constants.POOLING_MODE;
+
+import io.gravitee.inference.api.InferenceModel;
+import io.gravitee.inference.api.classifier.ClassifierMode;
+import io.gravitee.inference.api.embedding.PoolingMode;
+import io.gravitee.inference.math.vanilla.NativeMath;
+import io.gravitee.inference.onnx.bert.classifier.OnnxBertClassifierModel;
+import io.gravitee.inference.onnx.bert.config.OnnxBertConfig;
+import io.gravitee.inference.onnx.bert.embedding.OnnxBertEmbeddingModel;
+import io.gravitee.inference.onnx.bert.resource.OnnxBertResource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Models and inputs shared by the benchmarks.
+ *
+ * <p>A model is a directory holding {@code model.onnx},
+ * {@code tokenizer.json} and, for classifiers without labels,
+ * {@code config.json}.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+final class BenchmarkModels {
+
+  private static final String[] WORDS = {
+    "the",
+    "gateway",
+    "routes",
+    "every",
+    "request",
+    "to",
+    "a",
+    "model",
+    "running",
+    "close",
+    "to",
+    "its",
+    "callers",
+  };
+
+  private BenchmarkModels() {}
+
+  static InferenceModel<?, String, ?> load(
+    String model,
+    Task task,
+    Map<String, Object> settings
+  ) {
+    if (model.isBlank()) {
+      throw new IllegalStateException(
+        "Set the model directory with -p model=<directory>"
+      );
+    }
+    var directory = Path.of(model);
+    var configJson = directory.resolve("config.json");
+    var resource = new OnnxBertResource(
+      directory.resolve("model.onnx"),
+      directory.resolve("tokenizer.json"),
+      Files.exists(configJson) ? configJson : null
+    );
+    var config = new OnnxBertConfig(
+      resource,
+      NativeMath.INSTANCE,
+      configuration(task, settings)
+    );
+    return switch (task) {
+      case EMBEDDING -> new OnnxBertEmbeddingModel(config);
+      case SEQUENCE, TOKEN -> new OnnxBertClassifierModel(config);
+    };
+  }
+
+  private static Map<String, Object> configuration(
+    Task task,
+    Map<String, Object> settings
+  ) {
+    var configuration = new HashMap<>(settings);
+    switch (task) {
+      case EMBEDDING -> {
+        configuration.put(POOLING_MODE, PoolingMode.MEAN);
+        configuration.put(
+          MAX_SEQUENCE_LENGTH,
+          MAX_SEQUENCE_LENGTH_DEFAULT_VALUE
+        );
+      }
+      case SEQUENCE -> configuration.put(
+        CLASSIFIER_MODE,
+        ClassifierMode.SEQUENCE
+      );
+      case TOKEN -> configuration.put(CLASSIFIER_MODE, ClassifierMode.TOKEN);
+    }
+    return configuration;
+  }
+
+  static String sentence(int words) {
+    var sentence = new StringBuilder();
+    for (int i = 0; i < words; i++) {
+      if (i > 0) {
+        sentence.append(' ');
+      }
+      sentence.append(WORDS[i % WORDS.length]);
+    }
+    return sentence.toString();
+  }
+}
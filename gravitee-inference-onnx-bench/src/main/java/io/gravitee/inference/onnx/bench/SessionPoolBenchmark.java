@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.onnx.bench;
+
+import static io.gravitee.inference.api.Constants.ADAPTIVE_PARALLELISM;
+import static io.gravitee.inference.api.Constants.SESSION_POOL_SIZE;
+
+import io.gravitee.inference.api.InferenceModel;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput and latency percentiles (p99 included, from the sample time
+ * mode) of one model called by an increasing number of threads, with a
+ * single session ({@code sessionPoolSize=1}) or a pool of sessions sharing
+ * the intra-op threads, with or without adaptive parallelism.
+ *
+ * <p>{@code model} is a directory, see {@link BenchmarkModels}.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "--enable-preview" })
+public class SessionPoolBenchmark {
+
+  @Param({ "" })
+  public String model;
+
+  @Param({ "EMBEDDING" })
+  public Task task;
+
+  @Param({ "64" })
+  public int words;
+
+  @Param({ "1", "2", "4" })
+  public int sessionPoolSize;
+
+  @Param({ "false", "true" })
+  public boolean adaptiveParallelism;
+
+  private InferenceModel<?, String, ?> inference;
+  private String input;
+
+  @Setup
+  public void setup() {
+    inference = BenchmarkModels.load(
+      model,
+      task,
+      Map.of(
+        SESSION_POOL_SIZE,
+        sessionPoolSize,
+        ADAPTIVE_PARALLELISM,
+        adaptiveParallelism
+      )
+    );
+    input = BenchmarkModels.sentence(words);
+  }
+
+  @TearDown
+  public void tearDown() {
+    inference.close();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Object concurrency1() {
+    return inference.infer(input);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Object concurrency4() {
+    return inference.infer(input);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public Object concurrency16() {
+    return inference.infer(input);
+  }
+}
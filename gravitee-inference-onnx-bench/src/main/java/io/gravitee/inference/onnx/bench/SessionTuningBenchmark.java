@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.onnx.bench;
+
+import static io.gravitee.inference.api.Constants.CPU_ARENA;
+import static io.gravitee.inference.api.Constants.EXECUTION_MODE;
+import static io.gravitee.inference.api.Constants.FLUSH_DENORMALS;
+import static io.gravitee.inference.api.Constants.GRAPH_OPTIMIZATION_LEVEL;
+import static io.gravitee.inference.api.Constants.INTER_OP_NUM_THREADS;
+import static io.gravitee.inference.api.Constants.MEMORY_PATTERN;
+
+import ai.onnxruntime.OrtSession.SessionOptions.ExecutionMode;
+import ai.onnxruntime.OrtSession.SessionOptions.OptLevel;
+import io.gravitee.inference.api.InferenceModel;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sweeps the ONNX Runtime session settings of {@code OnnxSessionConfig} for
+ * one or more models, to pick the configuration of each model.
+ *
+ * <p>{@code model} is a directory, see {@link BenchmarkModels}. Every
+ * combination runs in its own fork, the ONNX Runtime environment and its
+ * thread pools being created once per process.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "--enable-preview" })
+public class SessionTuningBenchmark {
+
+  @Param({ "" })
+  public String model;
+
+  @Param({ "EMBEDDING" })
+  public Task task;
+
+  @Param({ "64" })
+  public int words;
+
+  @Param({ "ALL_OPT", "EXTENDED_OPT", "BASIC_OPT", "NO_OPT" })
+  public OptLevel optimizationLevel;
+
+  @Param({ "SEQUENTIAL", "PARALLEL" })
+  public ExecutionMode executionMode;
+
+  @Param({ "0", "2" })
+  public int interOpNumThreads;
+
+  @Param({ "true", "false" })
+  public boolean memoryPattern;
+
+  @Param({ "true", "false" })
+  public boolean cpuArena;
+
+  @Param({ "false", "true" })
+  public boolean flushDenormals;
+
+  private InferenceModel<?, String, ?> inference;
+  private String input;
+
+  @Setup
+  public void setup() {
+    inference = BenchmarkModels.load(
+      model,
+      task,
+      Map.of(
+        GRAPH_OPTIMIZATION_LEVEL,
+        optimizationLevel,
+        EXECUTION_MODE,
+        executionMode,
+        INTER_OP_NUM_THREADS,
+        interOpNumThreads,
+        MEMORY_PATTERN,
+        memoryPattern,
+        CPU_ARENA,
+        cpuArena,
+        FLUSH_DENORMALS,
+        flushDenormals
+      )
+    );
+    input = BenchmarkModels.sentence(words);
+  }
+
+  @TearDown
+  public void tearDown() {
+    inference.close();
+  }
+
+  @Benchmark
+  public Object infer() {
+    return inference.infer(input);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.onnx;
+
+import ai.onnxruntime.OnnxTensorLike;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.OrtSession.Result;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes each call by the number of calls in flight when it arrives: a call
+ * alone runs on the session using all the intra-op threads, for the lowest
+ * latency; under concurrency, calls run on single-threaded sessions, for the
+ * highest throughput without oversubscribing the cores.
+ *
+ * <p>The decision is taken per call, so the model moves back to the latency
+ * mode as soon as the load drops, calls in progress finishing where they
+ * started. Calls waiting for a pooled session count as in flight, so a
+ * queue building up keeps the model in the throughput mode until it drains.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+final class AdaptiveSessionPool implements SessionDispatcher {
+
+  /**
+   * Calls in flight, the arriving one included, up to which a call runs on
+   * all the intra-op threads.
+   */
+  static final int LATENCY_MAX_IN_FLIGHT = 1;
+
+  private final SessionDispatcher latency;
+  private final SessionDispatcher throughput;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  AdaptiveSessionPool(
+    SessionDispatcher latency,
+    SessionDispatcher throughput
+  ) {
+    this.latency = latency;
+    this.throughput = throughput;
+  }
+
+  @Override
+  public Result run(Map<String, ? extends OnnxTensorLike> inputs)
+    throws OrtException {
+    final int calls = inFlight.incrementAndGet();
+    try {
+      return calls <= LATENCY_MAX_IN_FLIGHT
+        ? latency.run(inputs)
+        : throughput.run(inputs);
+    } finally {
+      inFlight.decrementAndGet();
+    }
+  }
+
+  @Override
+  public OrtSession first() {
+    return latency.first();
+  }
+
+  @Override
+  public OnnxParallelism parallelism() {
+    final int calls = inFlight.get();
+    return new OnnxParallelism(
+      calls <= LATENCY_MAX_IN_FLIGHT
+        ? ParallelismMode.LATENCY
+        : ParallelismMode.THROUGHPUT,
+      calls,
+      throughput.parallelism().queued()
+    );
+  }
+
+  @Override
+  public void close() throws OrtException {
+    OrtException failure = null;
+    try {
+      latency.close();
+    } catch (OrtException e) {
+      failure = e;
+    }
+    try {
+      throughput.close();
+    } catch (OrtException e) {
+      if (failure == null) {
+        failure = e;
+      } else {
+        failure.addSuppressed(e);
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+}
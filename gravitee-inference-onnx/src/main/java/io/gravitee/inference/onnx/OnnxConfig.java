@@ -22,12 +22,22 @@ package io.gravitee.inference.onnx;
 public abstract class OnnxConfig<RESOURCE extends OnnxResource> {
 
   private final RESOURCE resource;
+  private final OnnxSessionConfig sessionConfig;
 
   protected OnnxConfig(RESOURCE resource) {
+    this(resource, OnnxSessionConfig.DEFAULT);
+  }
+
+  protected OnnxConfig(RESOURCE resource, OnnxSessionConfig sessionConfig) {
     this.resource = resource;
+    this.sessionConfig = sessionConfig;
   }
 
   public RESOURCE getResource() {
     return resource;
   }
+
+  public OnnxSessionConfig getSessionConfig() {
+    return sessionConfig;
+  }
 }
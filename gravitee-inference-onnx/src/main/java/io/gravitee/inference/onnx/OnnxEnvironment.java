@@ -0,0 +1,196 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.onnx;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtEnvironment.ThreadingOptions;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtLoggingLevel;
+import ai.onnxruntime.OrtSession;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * The process-wide ONNX Runtime environment shared by every model.
+ *
+ * <p>The environment is created on the first {@link #get()} with global
+ * thread pools: one intra-op pool, sized once from
+ * {@code GRAVITEE_ONNX_INTRA_OPS_NUM_THREADS} (all cores by default), serves
+ * every session instead of each session starting its own. Sessions must then
+ * be created with per-session threads disabled, see
+ * {@link #configure(OrtSession.SessionOptions, OnnxSessionConfig, int)}.
+ *
+ * <p>ONNX Runtime allows a single environment per process, whose thread
+ * pools are fixed at creation and which cannot be created again once closed.
+ * The environment is therefore never closed: closing a model only closes its
+ * sessions, leaving the environment to the others.
+ *
+ * <p>If another library created the environment first, it is reused as is
+ * and sessions fall back to their own intra-op pool.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class OnnxEnvironment {
+
+  private static final String INTRA_OPS_THREADS_KEY =
+    "GRAVITEE_ONNX_INTRA_OPS_NUM_THREADS";
+  private static final List<String> POSSIBLE_KEYS = List.of(
+    INTRA_OPS_THREADS_KEY,
+    INTRA_OPS_THREADS_KEY.toLowerCase()
+  );
+
+  private static final int DEFAULT_MAX_INTRA_OPS_THREADS =
+    Runtime.getRuntime().availableProcessors();
+  private static final Pattern NUMBER_PATTERN = Pattern.compile("^[0-9]+$");
+  private static final int MAX_INTRA_OPS_THREADS = getMaxIntraOpsThreads();
+
+  private static final String NAME = "gravitee-inference";
+
+  private static OnnxEnvironment instance;
+
+  private final OrtEnvironment environment;
+  private final boolean globalThreadPools;
+
+  private OnnxEnvironment(
+    OrtEnvironment environment,
+    boolean globalThreadPools
+  ) {
+    this.environment = environment;
+    this.globalThreadPools = globalThreadPools;
+  }
+
+  private static int getMaxIntraOpsThreads() {
+    return POSSIBLE_KEYS.stream()
+      .map(System::getenv)
+      .filter(Objects::nonNull)
+      .filter(value -> NUMBER_PATTERN.matcher(value).matches())
+      .map(Integer::valueOf)
+      .findFirst()
+      .orElse(DEFAULT_MAX_INTRA_OPS_THREADS);
+  }
+
+  /**
+   * Returns the shared environment, creating it on the first call.
+   */
+  public static synchronized OnnxEnvironment get() {
+    if (instance == null) {
+      instance = create();
+    }
+    return instance;
+  }
+
+  private static OnnxEnvironment create() {
+    try (var threadingOptions = new ThreadingOptions()) {
+      threadingOptions.setGlobalIntraOpNumThreads(MAX_INTRA_OPS_THREADS);
+      // Requests are served concurrently by the callers' threads, graph
+      // nodes are run sequentially
+      threadingOptions.setGlobalInterOpNumThreads(1);
+      return new OnnxEnvironment(
+        OrtEnvironment.getEnvironment(
+          OrtLoggingLevel.ORT_LOGGING_LEVEL_WARNING,
+          NAME,
+          threadingOptions
+        ),
+        true
+      );
+    } catch (IllegalStateException e) {
+      // The environment already exists and its thread pools cannot change
+      return new OnnxEnvironment(OrtEnvironment.getEnvironment(), false);
+    } catch (OrtException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Sets the threading of a session created in this environment: the global
+   * thread pools when they are enabled and the session neither needs its own
+   * nor shares the intra-op threads, otherwise per-session pools.
+   *
+   * <p>Per-session pools start threads of their own, next to the global
+   * pools serving the other models, see
+   * {@link #startsOwnThreads(OnnxSessionConfig, int)}.
+   *
+   * @param sharing the number of sessions splitting the intra-op threads
+   */
+  public void configure(
+    OrtSession.SessionOptions options,
+    OnnxSessionConfig sessionConfig,
+    int sharing
+  ) throws OrtException {
+    if (runsOnGlobalThreadPools(sessionConfig, sharing)) {
+      options.disablePerSessionThreads();
+      return;
+    }
+    options.setIntraOpNumThreads(intraOpNumThreads(sessionConfig, sharing));
+    if (sessionConfig.interOpNumThreads() > 0) {
+      options.setInterOpNumThreads(sessionConfig.interOpNumThreads());
+    }
+  }
+
+  private boolean runsOnGlobalThreadPools(
+    OnnxSessionConfig sessionConfig,
+    int sharing
+  ) {
+    return globalThreadPools && sharing == 1 && !sessionConfig.usesOwnThreads();
+  }
+
+  /**
+   * Whether a session leaves the global thread pools for pools starting
+   * threads of their own: a pool of sessions sharing the intra-op threads,
+   * or a session with inter-op threads or flushing denormals. These threads
+   * run next to the global pools serving the other models, so each such
+   * model may use all the cores.
+   *
+   * @param sharing the number of sessions splitting the intra-op threads
+   */
+  public boolean startsOwnThreads(
+    OnnxSessionConfig sessionConfig,
+    int sharing
+  ) {
+    return (
+      globalThreadPools &&
+      !runsOnGlobalThreadPools(sessionConfig, sharing) &&
+      (intraOpNumThreads(sessionConfig, sharing) > 1 ||
+        sessionConfig.interOpNumThreads() > 0)
+    );
+  }
+
+  /**
+   * Returns the intra-op threads of a session on per-session pools: an equal
+   * share of the intra-op threads, less its inter-op threads, so that the
+   * sessions of a model do not run more threads than the cores it was given.
+   */
+  static int intraOpNumThreads(OnnxSessionConfig sessionConfig, int sharing) {
+    return Math.max(
+      1,
+      MAX_INTRA_OPS_THREADS / sharing - sessionConfig.interOpNumThreads()
+    );
+  }
+
+  public OrtEnvironment environment() {
+    return environment;
+  }
+
+  public boolean usesGlobalThreadPools() {
+    return globalThreadPools;
+  }
+
+  public int intraOpNumThreads() {
+    return MAX_INTRA_OPS_THREADS;
+  }
+}
@@ -16,18 +16,25 @@
 package io.gravitee.inference.onnx;
 
 import static ai.onnxruntime.OrtEnvironment.getAvailableProviders;
-import static java.lang.System.getProperty;
-import static java.util.Objects.requireNonNull;
 
+import ai.onnxruntime.OnnxTensorLike;
 import ai.onnxruntime.OrtEnvironment;
 import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtProvider;
 import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.OrtSession.Result;
 import ai.onnxruntime.OrtSession.SessionOptions;
+import ai.onnxruntime.OrtSession.SessionOptions.OptLevel;
 import io.gravitee.inference.api.InferenceModel;
-import java.util.List;
-import java.util.Objects;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * @author Rémi SULTAN (remi.sultan at graviteesource.com)
@@ -36,62 +43,220 @@ import java.util.regex.Pattern;
 public abstract class OnnxInference<C extends OnnxConfig<?>, I, O>
   extends InferenceModel<C, I, O> {
 
-  private static final String INTRA_OPS_THREADS_KEY =
-    "GRAVITEE_ONNX_INTRA_OPS_NUM_THREADS";
-  private static final List<String> POSSIBLE_KEYS = List.of(
-    INTRA_OPS_THREADS_KEY,
-    INTRA_OPS_THREADS_KEY.toLowerCase()
+  private static final Logger LOGGER = LoggerFactory.getLogger(
+    OnnxInference.class
   );
 
-  private static final int DEFAULT_MAX_INTRA_OPS_THREADS =
-    Runtime.getRuntime().availableProcessors();
-  private static final Pattern NUMBER_PATTERN = Pattern.compile("^[0-9]+$");
-  private static final int MAX_INTRA_OPS_THREADS = getMaxIntraOpsThreads();
-
-  private static int getMaxIntraOpsThreads() {
-    return POSSIBLE_KEYS.stream()
-      .map(System::getenv)
-      .filter(Objects::nonNull)
-      .filter(value -> NUMBER_PATTERN.matcher(value).matches())
-      .map(Integer::valueOf)
-      .findFirst()
-      .orElse(DEFAULT_MAX_INTRA_OPS_THREADS);
-  }
-
   protected final OrtEnvironment environment;
   protected final OrtSession session;
+  private final OnnxEnvironment sharedEnvironment;
+  private final SessionDispatcher sessions;
+  private final OnnxLoadTimings loadTimings;
+  private final AtomicBoolean closed = new AtomicBoolean();
 
   protected OnnxInference(C config) {
     super(config);
-    this.environment = OrtEnvironment.getEnvironment();
-    this.session = getSession();
+    this.sharedEnvironment = OnnxEnvironment.get();
+    this.environment = sharedEnvironment.environment();
+    var loadedSessions = getSessions();
+    this.sessions = loadedSessions.pool();
+    this.session = sessions.first();
+    this.loadTimings = loadedSessions.timings();
   }
 
-  private OrtSession getSession() {
+  private LoadedSessions getSessions() {
+    var sessionConfig = config.getSessionConfig();
+    final Path model = config.getResource().getModel().toAbsolutePath();
+    final int poolSize = sessionConfig.sessionPoolSize();
+    var created = new ArrayList<OrtSession>(poolSize + 1);
     try {
-      OrtSession.SessionOptions options = new SessionOptions();
-      if (getAvailableProviders().contains(OrtProvider.CUDA)) {
+      OptimizedModelCache cache = null;
+      Path entry = null;
+      Duration hashing = Duration.ZERO;
+      if (
+        sessionConfig.optimizedModelCache() != null &&
+        OptimizedModelCache.isAvailable(sessionConfig)
+      ) {
+        cache = new OptimizedModelCache(sessionConfig.optimizedModelCache());
+        final long start = System.nanoTime();
+        entry = cache.entry(model, sessionConfig, cuda());
+        hashing = since(start);
+      }
+
+      final long start = System.nanoTime();
+      final SessionDispatcher dispatcher;
+      final boolean cached;
+      if (sessionConfig.adaptiveParallelism()) {
+        var latency = createSession(model, cache, entry, sessionConfig, 1);
+        created.add(latency.session());
+        cached = latency.cached();
+        warnIfStartingOwnThreads(sessionConfig, 1, 1);
+        // Single-threaded sessions, whatever the number of cores
+        final int sharing = sharedEnvironment.intraOpNumThreads();
+        warnIfStartingOwnThreads(sessionConfig, sharing, poolSize);
+        for (int i = 0; i < poolSize; i++) {
+          created.add(
+            createSession(model, cache, entry, sessionConfig, sharing).session()
+          );
+        }
+        dispatcher = new AdaptiveSessionPool(
+          new OnnxSessionPool(created.subList(0, 1)),
+          new OnnxSessionPool(created.subList(1, created.size()))
+        );
+      } else {
+        warnIfStartingOwnThreads(sessionConfig, poolSize, poolSize);
+        var first = createSession(model, cache, entry, sessionConfig, poolSize);
+        created.add(first.session());
+        cached = first.cached();
+        for (int i = 1; i < poolSize; i++) {
+          created.add(
+            createSession(model, cache, entry, sessionConfig, poolSize)
+              .session()
+          );
+        }
+        dispatcher = new OnnxSessionPool(created);
+      }
+      return new LoadedSessions(
+        dispatcher,
+        new OnnxLoadTimings(cached, hashing, since(start))
+      );
+    } catch (OrtException | IOException | RuntimeException e) {
+      for (var session : created) {
+        try {
+          session.close();
+        } catch (OrtException closeFailure) {
+          e.addSuppressed(closeFailure);
+        }
+      }
+      throw e instanceof RuntimeException runtime
+        ? runtime
+        : new IllegalArgumentException(e);
+    }
+  }
+
+  private void warnIfStartingOwnThreads(
+    OnnxSessionConfig sessionConfig,
+    int sharing,
+    int sessions
+  ) {
+    if (sharedEnvironment.startsOwnThreads(sessionConfig, sharing)) {
+      LOGGER.warn(
+        "{} of {} on their own thread pools, next to the global ones: " +
+        "sessionPoolSize={}, interOpNumThreads={}, flushDenormals={}",
+        sessions == 1 ? "Session" : sessions + " sessions",
+        config.getResource().getModel().getFileName(),
+        sessionConfig.sessionPoolSize(),
+        sessionConfig.interOpNumThreads(),
+        sessionConfig.flushDenormals()
+      );
+    }
+  }
+
+  /**
+   * Creates a session from the model, or from its optimized graph with
+   * optimizations disabled once it is in the cache. Without optimized graph
+   * in the cache, the session writes it there. An entry that fails to load,
+   * being truncated or written by an incompatible runtime, is evicted and
+   * replaced by a graph optimized again from the model.
+   *
+   * @param sharing the number of sessions splitting the intra-op threads
+   */
+  private CreatedSession createSession(
+    Path model,
+    OptimizedModelCache cache,
+    Path entry,
+    OnnxSessionConfig sessionConfig,
+    int sharing
+  ) throws OrtException, IOException {
+    try (var options = new SessionOptions()) {
+      if (cuda()) {
         options.addCUDA();
       }
+      sessionConfig.applyTo(options);
+      sharedEnvironment.configure(options, sessionConfig, sharing);
+      if (entry == null) {
+        return new CreatedSession(
+          environment.createSession(model.toString(), options),
+          false
+        );
+      }
+      if (Files.exists(entry)) {
+        options.setOptimizationLevel(OptLevel.NO_OPT);
+        try {
+          return new CreatedSession(
+            environment.createSession(entry.toString(), options),
+            true
+          );
+        } catch (OrtException e) {
+          cache.evict(entry);
+          options.setOptimizationLevel(sessionConfig.optimizationLevel());
+        }
+      }
 
-      options.setIntraOpNumThreads(MAX_INTRA_OPS_THREADS);
-      final String modelPath = config
-        .getResource()
-        .getModel()
-        .toAbsolutePath()
-        .toString();
-      return environment.createSession(modelPath, options);
-    } catch (OrtException e) {
-      throw new IllegalArgumentException(e);
+      final Path temporary = cache.temporary(entry);
+      options.setOptimizedModelFilePath(temporary.toString());
+      final OrtSession session;
+      try {
+        session = environment.createSession(model.toString(), options);
+      } catch (OrtException e) {
+        Files.deleteIfExists(temporary);
+        throw e;
+      }
+      cache.commit(temporary, entry);
+      return new CreatedSession(session, false);
     }
   }
 
+  /**
+   * Runs the model on an idle session of the pool, see
+   * {@link OnnxSessionConfig#sessionPoolSize()}.
+   */
+  protected Result run(Map<String, ? extends OnnxTensorLike> inputs)
+    throws OrtException {
+    return sessions.run(inputs);
+  }
+
+  private static boolean cuda() {
+    return getAvailableProviders().contains(OrtProvider.CUDA);
+  }
+
+  private static Duration since(long start) {
+    return Duration.ofNanos(System.nanoTime() - start);
+  }
+
+  /**
+   * Returns the current load of the model, to be exposed as metrics.
+   */
+  public OnnxParallelism getParallelism() {
+    return sessions.parallelism();
+  }
+
+  /**
+   * Returns the time spent loading the model.
+   */
+  public OnnxLoadTimings getLoadTimings() {
+    return loadTimings;
+  }
+
+  /**
+   * Closes the sessions, leaving the shared environment open for the other
+   * models.
+   */
   public void close() {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
     try {
-      this.session.close();
-      this.environment.close();
+      this.sessions.close();
     } catch (OrtException e) {
       throw new RuntimeException(e);
     }
   }
+
+  private record CreatedSession(OrtSession session, boolean cached) {}
+
+  private record LoadedSessions(
+    SessionDispatcher pool,
+    OnnxLoadTimings timings
+  ) {}
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.onnx;
+
+import java.time.Duration;
+
+/**
+ * Time spent loading a model.
+ *
+ * @param cached whether the session was created from the optimized model
+ *               cache, skipping the graph optimizations
+ * @param hashing the time spent hashing the model to look it up in the
+ *                cache, zero without cache
+ * @param session the time spent creating the sessions, graph optimizations
+ *                and writing of the optimized model included
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public record OnnxLoadTimings(
+  boolean cached,
+  Duration hashing,
+  Duration session
+) {
+  public Duration total() {
+    return hashing.plus(session);
+  }
+}
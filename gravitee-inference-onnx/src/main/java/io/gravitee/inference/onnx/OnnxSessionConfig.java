@@ -0,0 +1,212 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.onnx;
+
+import static io.gravitee.inference.api.Constants.ADAPTIVE_PARALLELISM;
+import static io.gravitee.inference.api.Constants.CPU_ARENA;
+import static io.gravitee.inference.api.Constants.EXECUTION_MODE;
+import static io.gravitee.inference.api.Constants.FLUSH_DENORMALS;
+import static io.gravitee.inference.api.Constants.GRAPH_OPTIMIZATION_LEVEL;
+import static io.gravitee.inference.api.Constants.INTER_OP_NUM_THREADS;
+import static io.gravitee.inference.api.Constants.MEMORY_PATTERN;
+import static io.gravitee.inference.api.Constants.OPTIMIZED_MODEL_CACHE;
+import static io.gravitee.inference.api.Constants.SESSION_POOL_SIZE;
+import static java.util.Objects.requireNonNull;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession.SessionOptions;
+import ai.onnxruntime.OrtSession.SessionOptions.ExecutionMode;
+import ai.onnxruntime.OrtSession.SessionOptions.OptLevel;
+import io.gravitee.inference.api.utils.ConfigWrapper;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Tuning of the ONNX Runtime session of a model. The defaults are the ones
+ * of ONNX Runtime; small models often run faster with fewer graph
+ * optimizations or without the memory pattern, larger ones with parallel
+ * execution.
+ *
+ * <p>Sessions run on the global thread pools of {@link OnnxEnvironment}
+ * unless they need their own: a session with inter-op threads (only used
+ * by {@link ExecutionMode#PARALLEL}) or flushing denormals gets per-session
+ * pools, as ONNX Runtime only applies both to the session's threads. So
+ * does a model with a pool of sessions, each session getting an equal share
+ * of the intra-op threads so that concurrent calls do not oversubscribe the
+ * cores. Inter-op threads are taken from that share; the per-session pools
+ * still come on top of the global ones used by the other models.
+ *
+ * <p>With adaptive parallelism, a model loads a session running on all the
+ * intra-op threads and sessions running single-threaded: a call alone uses
+ * every core for the lowest latency, concurrent calls one core each for the
+ * highest throughput. Single-threaded runs executing on the calling
+ * threads, one such session already serves any number of concurrent calls.
+ * The session on all the threads comes on top of the pool: each session
+ * holds its own copy of the weights, so the model takes the memory of
+ * {@code sessionPoolSize + 1} sessions.
+ *
+ * @param optimizationLevel the graph optimizations applied when loading
+ * @param executionMode whether independent graph nodes run in parallel
+ * @param interOpNumThreads the threads running graph nodes in parallel, 0
+ *                          to use the shared pools
+ * @param memoryPattern whether to plan allocations from the first run,
+ *                      only useful for fixed input shapes
+ * @param cpuArena whether to allocate tensors from an arena
+ * @param flushDenormals whether to treat denormal floats as zero
+ * @param optimizedModelCache the directory caching the optimized graphs,
+ *                            {@code null} to optimize on every load
+ * @param sessionPoolSize the sessions serving concurrent calls
+ * @param adaptiveParallelism whether calls run on all the intra-op threads
+ *                            or single-threaded depending on the load
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public record OnnxSessionConfig(
+  OptLevel optimizationLevel,
+  ExecutionMode executionMode,
+  int interOpNumThreads,
+  boolean memoryPattern,
+  boolean cpuArena,
+  boolean flushDenormals,
+  Path optimizedModelCache,
+  int sessionPoolSize,
+  boolean adaptiveParallelism
+) {
+  public static final OnnxSessionConfig DEFAULT = new OnnxSessionConfig(
+    OptLevel.ALL_OPT,
+    ExecutionMode.SEQUENTIAL,
+    0,
+    true,
+    true,
+    false,
+    null,
+    1,
+    false
+  );
+
+  private static final String DENORMAL_AS_ZERO =
+    "session.set_denormal_as_zero";
+
+  public OnnxSessionConfig {
+    requireNonNull(optimizationLevel, "optimizationLevel");
+    requireNonNull(executionMode, "executionMode");
+    if (interOpNumThreads < 0) {
+      throw new IllegalArgumentException(
+        "interOpNumThreads must be positive or zero"
+      );
+    }
+    if (sessionPoolSize < 1) {
+      throw new IllegalArgumentException("sessionPoolSize must be positive");
+    }
+  }
+
+  /**
+   * Reads the tuning from a model configuration, the missing keys keeping
+   * their default value. Enums may be given by value or by name, numbers
+   * and booleans by value or as strings.
+   */
+  public static OnnxSessionConfig of(ConfigWrapper configuration) {
+    return new OnnxSessionConfig(
+      toEnum(
+        OptLevel.class,
+        configuration.get(GRAPH_OPTIMIZATION_LEVEL, DEFAULT.optimizationLevel)
+      ),
+      toEnum(
+        ExecutionMode.class,
+        configuration.get(EXECUTION_MODE, DEFAULT.executionMode)
+      ),
+      toInt(
+        configuration.get(INTER_OP_NUM_THREADS, DEFAULT.interOpNumThreads)
+      ),
+      toBoolean(configuration.get(MEMORY_PATTERN, DEFAULT.memoryPattern)),
+      toBoolean(configuration.get(CPU_ARENA, DEFAULT.cpuArena)),
+      toBoolean(configuration.get(FLUSH_DENORMALS, DEFAULT.flushDenormals)),
+      toPath(configuration.get(OPTIMIZED_MODEL_CACHE)),
+      toInt(configuration.get(SESSION_POOL_SIZE, DEFAULT.sessionPoolSize)),
+      toBoolean(
+        configuration.get(ADAPTIVE_PARALLELISM, DEFAULT.adaptiveParallelism)
+      )
+    );
+  }
+
+  /**
+   * Whether the session needs thread pools of its own rather than the
+   * global ones, whatever its share of the intra-op threads.
+   */
+  public boolean usesOwnThreads() {
+    return interOpNumThreads > 0 || flushDenormals;
+  }
+
+  /**
+   * Applies the tuning to session options, threads apart, which are set by
+   * {@link OnnxEnvironment#configure(SessionOptions, OnnxSessionConfig, int)}.
+   */
+  public void applyTo(SessionOptions options) throws OrtException {
+    options.setOptimizationLevel(optimizationLevel);
+    options.setExecutionMode(executionMode);
+    options.setMemoryPatternOptimization(memoryPattern);
+    options.setCPUArenaAllocator(cpuArena);
+    if (flushDenormals) {
+      options.addConfigEntry(DENORMAL_AS_ZERO, "1");
+    }
+  }
+
+  private static <E extends Enum<E>> E toEnum(Class<E> type, Object value) {
+    if (type.isInstance(value)) {
+      return type.cast(value);
+    }
+    try {
+      return Enum.valueOf(type, value.toString().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+        "Unknown " + type.getSimpleName() + " '" + value + "'",
+        e
+      );
+    }
+  }
+
+  private static int toInt(Object value) {
+    if (value instanceof Number number) {
+      return number.intValue();
+    }
+    try {
+      return Integer.parseInt(value.toString().trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Not a number '" + value + "'", e);
+    }
+  }
+
+  private static Path toPath(Object value) {
+    if (value == null || value instanceof Path) {
+      return (Path) value;
+    }
+    return value.toString().isBlank() ? null : Path.of(value.toString());
+  }
+
+  private static boolean toBoolean(Object value) {
+    if (value instanceof Boolean bool) {
+      return bool;
+    }
+    return switch (value.toString().trim().toLowerCase(Locale.ROOT)) {
+      case "true" -> true;
+      case "false" -> false;
+      default -> throw new IllegalArgumentException(
+        "Not a boolean '" + value + "'"
+      );
+    };
+  }
+}
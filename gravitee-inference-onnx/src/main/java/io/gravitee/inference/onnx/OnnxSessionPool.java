@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.onnx;
+
+import ai.onnxruntime.OnnxTensorLike;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.OrtSession.Result;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sessions of one model, each call being handed an idle session. Calls
+ * wait for a session to be released when they are all busy, in arrival
+ * order, so that no more calls run than the thread budget was split for.
+ *
+ * <p>A pool of one session does not dispatch: ONNX Runtime sessions are
+ * thread-safe, concurrent calls then share the session and its threads.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+final class OnnxSessionPool implements SessionDispatcher {
+
+  private final List<OrtSession> sessions;
+  private final BlockingQueue<OrtSession> idle;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger queued = new AtomicInteger();
+
+  OnnxSessionPool(List<OrtSession> sessions) {
+    if (sessions.isEmpty()) {
+      throw new IllegalArgumentException("A pool needs at least one session");
+    }
+    this.sessions = List.copyOf(sessions);
+    this.idle = new ArrayBlockingQueue<>(sessions.size(), true, sessions);
+  }
+
+  @Override
+  public Result run(Map<String, ? extends OnnxTensorLike> inputs)
+    throws OrtException {
+    inFlight.incrementAndGet();
+    try {
+      if (sessions.size() == 1) {
+        return sessions.getFirst().run(inputs);
+      }
+      final OrtSession session = take();
+      try {
+        return session.run(inputs);
+      } finally {
+        idle.add(session);
+      }
+    } finally {
+      inFlight.decrementAndGet();
+    }
+  }
+
+  private OrtSession take() {
+    queued.incrementAndGet();
+    try {
+      return idle.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(
+        "Interrupted while waiting for a session",
+        e
+      );
+    } finally {
+      queued.decrementAndGet();
+    }
+  }
+
+  @Override
+  public OrtSession first() {
+    return sessions.getFirst();
+  }
+
+  @Override
+  public OnnxParallelism parallelism() {
+    return new OnnxParallelism(
+      ParallelismMode.FIXED,
+      inFlight.get(),
+      queued.get()
+    );
+  }
+
+  int size() {
+    return sessions.size();
+  }
+
+  @Override
+  public void close() throws OrtException {
+    OrtException failure = null;
+    for (var session : sessions) {
+      try {
+        session.close();
+      } catch (OrtException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.onnx;
+
+import ai.onnxruntime.OrtSession.SessionOptions.OptLevel;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * A directory of ONNX models already optimized by ONNX Runtime, so that
+ * later loads skip the graph optimizations.
+ *
+ * <p>Entries are keyed by the SHA-256 of the model and of everything the
+ * optimized graph depends on: the optimization level, the execution
+ * providers, the CPU architecture and features and the ONNX Runtime
+ * version, the optimizations being specific to the hardware. Entries are
+ * written to a temporary file then moved in place, so processes sharing the
+ * directory never read a partial model; the last writer wins.
+ *
+ * <p>The ONNX Runtime version is the one the library was built against, the
+ * CPU features the flags the kernel reports in {@code /proc/cpuinfo}, since
+ * {@link OptLevel#ALL_OPT} graphs may hold kernels for instructions such as
+ * AVX-512 or VNNI. When either is unknown, the cache is
+ * {@linkplain #isAvailable(OnnxSessionConfig) not available} rather than
+ * risking entries of another runtime or CPU being read; below
+ * {@code ALL_OPT}, the graphs are portable and the CPU features not needed.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public final class OptimizedModelCache {
+
+  private static final String EXTENSION = ".onnx";
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final String VERSION_RESOURCE = "onnxruntime.properties";
+  private static final String ORT_VERSION = readOrtVersion();
+  private static final Path CPU_INFO = Path.of("/proc/cpuinfo");
+  private static final List<String> CPU_FEATURE_KEYS = List.of(
+    "flags",
+    "Features"
+  );
+  private static final String CPU_FEATURES = readCpuFeatures(CPU_INFO);
+
+  private final Path directory;
+
+  public OptimizedModelCache(Path directory) {
+    this.directory = directory;
+  }
+
+  private static String readOrtVersion() {
+    try (
+      var input = OptimizedModelCache.class.getResourceAsStream(
+        VERSION_RESOURCE
+      )
+    ) {
+      if (input == null) {
+        return null;
+      }
+      var properties = new Properties();
+      properties.load(input);
+      var version = properties.getProperty("version", "").trim();
+      // Left as is when the resource was not filtered by the build
+      return version.isEmpty() || version.startsWith("${") ? null : version;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Reads the features of the first CPU, {@code flags} on x86 and
+   * {@code Features} on ARM, or {@code null} where there is no such file.
+   */
+  static String readCpuFeatures(Path cpuInfo) {
+    try (var lines = Files.lines(cpuInfo, StandardCharsets.UTF_8)) {
+      return lines
+        .map(line -> line.split(":", 2))
+        .filter(
+          field ->
+            field.length == 2 && CPU_FEATURE_KEYS.contains(field[0].trim())
+        )
+        .map(field -> field[1].trim())
+        .filter(features -> !features.isEmpty())
+        .findFirst()
+        .orElse(null);
+    } catch (IOException | UncheckedIOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Whether everything keying the entries of sessions so configured is
+   * known: the ONNX Runtime version and, for {@link OptLevel#ALL_OPT}, the
+   * CPU features.
+   */
+  public static boolean isAvailable(OnnxSessionConfig sessionConfig) {
+    return isAvailable(sessionConfig, CPU_FEATURES);
+  }
+
+  static boolean isAvailable(
+    OnnxSessionConfig sessionConfig,
+    String cpuFeatures
+  ) {
+    return (
+      ORT_VERSION != null &&
+      (cpuFeatures != null ||
+        sessionConfig.optimizationLevel() != OptLevel.ALL_OPT)
+    );
+  }
+
+  /**
+   * Returns the entry of a model, which may not exist yet.
+   *
+   * @throws IllegalStateException if the cache is not available
+   */
+  public Path entry(Path model, OnnxSessionConfig sessionConfig, boolean cuda) {
+    return entry(model, sessionConfig, cuda, CPU_FEATURES);
+  }
+
+  Path entry(
+    Path model,
+    OnnxSessionConfig sessionConfig,
+    boolean cuda,
+    String cpuFeatures
+  ) {
+    if (!isAvailable(sessionConfig, cpuFeatures)) {
+      throw new IllegalStateException(
+        "The ONNX Runtime version or the CPU features are unknown"
+      );
+    }
+    var digest = sha256();
+    try (InputStream input = Files.newInputStream(model)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      for (int read; (read = input.read(buffer)) != -1;) {
+        digest.update(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    var settings = String.join(
+      "|",
+      sessionConfig.optimizationLevel().name(),
+      cuda ? "CUDA" : "CPU",
+      System.getProperty("os.arch"),
+      cpuFeatures == null ? "" : cpuFeatures,
+      ORT_VERSION
+    );
+    digest.update(settings.getBytes(StandardCharsets.UTF_8));
+    var key = HexFormat.of().formatHex(digest.digest());
+    return directory.resolve(key + EXTENSION);
+  }
+
+  /**
+   * Returns a file, next to the entry, to which ONNX Runtime writes the
+   * optimized model before it is {@linkplain #commit(Path, Path) committed}.
+   */
+  public Path temporary(Path entry) throws IOException {
+    Files.createDirectories(directory);
+    return directory.resolve(entry.getFileName() + "." + UUID.randomUUID());
+  }
+
+  /**
+   * Moves an optimized model in place. The cache being an optimization,
+   * failures are not reported: the model is optimized again on next load.
+   */
+  public void commit(Path temporary, Path entry) {
+    try {
+      if (Files.exists(temporary)) {
+        move(temporary, entry);
+      }
+    } catch (IOException e) {
+      // Optimized again on next load
+    } finally {
+      try {
+        Files.deleteIfExists(temporary);
+      } catch (IOException e) {
+        // Left over, and never read
+      }
+    }
+  }
+
+  /**
+   * Removes an entry that could not be loaded, so that the next load
+   * optimizes the model again instead of failing the same way.
+   */
+  public void evict(Path entry) {
+    try {
+      Files.deleteIfExists(entry);
+    } catch (IOException e) {
+      // Evicted again by the next load that fails on it
+    }
+  }
+
+  private static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(
+        source,
+        target,
+        StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING
+      );
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public Path directory() {
+    return directory;
+  }
+}
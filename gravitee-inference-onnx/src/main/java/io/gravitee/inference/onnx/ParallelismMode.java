@@ -0,0 +1,38 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.onnx;
+
+/**
+ * How the calls of a model are spread over the intra-op threads.
+ *
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public enum ParallelismMode {
+  /**
+   * Every call runs on the session threads set by the configuration.
+   */
+  FIXED,
+  /**
+   * Adaptive, with a single call in flight running on all the intra-op
+   * threads.
+   */
+  LATENCY,
+  /**
+   * Adaptive, with concurrent calls running single-threaded.
+   */
+  THROUGHPUT,
+}
@@ -107,7 +107,7 @@ public abstract class OnnxBertInference<OUTPUT>
       if (tokenTypeIdsTensor != null) {
         inputs.put(TOKEN_TYPE_IDS, tokenTypeIdsTensor);
       }
-      return new EncodingResults(List.of(encoding), session.run(inputs));
+      return new EncodingResults(List.of(encoding), run(inputs));
     } catch (OrtException e) {
       throw new IllegalArgumentException(e);
     }
@@ -137,7 +137,7 @@ public abstract class OnnxBertInference<OUTPUT>
       if (tokenTypeIdsTensor != null) {
         inputs.put(TOKEN_TYPE_IDS, tokenTypeIdsTensor);
       }
-      return session.run(inputs);
+      return run(inputs);
     } catch (OrtException e) {
       throw new IllegalArgumentException(e);
     }
@@ -145,19 +145,27 @@ public abstract class OnnxBertInference<OUTPUT>
 
   protected EncodingResults encodeAll(List<String> sentences) {
     List<Encoding> encodings = new ArrayList<>(sentences.size());
-    int maxTokens = 0;
-
     for (String sentence : sentences) {
-      var encoding = tokenizer.encode(sentence, true, false);
+      encodings.add(tokenizer.encode(sentence, true, false));
+    }
+    return encodeBatch(encodings);
+  }
+
+  /**
+   * Runs sentences already encoded by the tokenizer as one batch, padded to
+   * the longest of them.
+   */
+  protected EncodingResults encodeBatch(List<Encoding> encodings) {
+    int maxTokens = 0;
+    for (Encoding encoding : encodings) {
       maxTokens = Math.max(maxTokens, encoding.getIds().length);
-      encodings.add(encoding);
     }
 
-    long[] inputIds = new long[sentences.size() * maxTokens];
-    long[] attentionMask = new long[sentences.size() * maxTokens];
-    long[] tokenTypeIds = new long[sentences.size() * maxTokens];
+    long[] inputIds = new long[encodings.size() * maxTokens];
+    long[] attentionMask = new long[encodings.size() * maxTokens];
+    long[] tokenTypeIds = new long[encodings.size() * maxTokens];
 
-    for (int i = 0; i < sentences.size(); i++) {
+    for (int i = 0; i < encodings.size(); i++) {
       Encoding encoding = encodings.get(i);
 
       // Retrieve the tokens for the current sentence
@@ -191,7 +199,7 @@ public abstract class OnnxBertInference<OUTPUT>
       }
     }
 
-    long[] shape = { sentences.size(), maxTokens };
+    long[] shape = { encodings.size(), maxTokens };
 
     try (
       var inputIdsTensor = createTensor(environment, wrap(inputIds), shape);
@@ -200,20 +208,18 @@ public abstract class OnnxBertInference<OUTPUT>
         wrap(attentionMask),
         shape
       );
+      var tokenTypeIdsTensor = hasTokenTypeIds
+        ? createTensor(environment, wrap(tokenTypeIds), shape)
+        : null;
     ) {
       var inputs = new HashMap<String, OnnxTensor>();
       inputs.put(INPUT_IDS, inputIdsTensor);
       inputs.put(ATTENTION_MASK, attentionMaskTensor);
 
-      if (session.getInputNames().contains(TOKEN_TYPE_IDS)) {
-        var tokenTypeIdsTensor = createTensor(
-          environment,
-          wrap(tokenTypeIds),
-          shape
-        );
+      if (tokenTypeIdsTensor != null) {
         inputs.put(TOKEN_TYPE_IDS, tokenTypeIdsTensor);
       }
-      return new EncodingResults(encodings, session.run(inputs));
+      return new EncodingResults(encodings, run(inputs));
     } catch (OrtException e) {
       throw new IllegalArgumentException(e);
     }
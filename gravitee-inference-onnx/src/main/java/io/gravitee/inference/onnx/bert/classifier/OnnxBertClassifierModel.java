@@ -88,11 +88,14 @@ public class OnnxBertClassifierModel
         final CharSpan[] spans = encoding.getCharTokenSpans();
 
         float[][] tokenLogits = input.logits()[i];
+        // softmax scratch buffer, reused across the tokens of the sequence
+        float[] probabilities = new float[tokenLogits[0].length];
         var result = new ArrayList<ClassifierResult>();
         for (int j = 1; j < tokens.length - 1; j++) {
           final String sanitizedToken = tokens[j].trim();
           var classifierResult = computeTokenProb(
             tokenLogits[j],
+            probabilities,
             sanitizedToken,
             spans[j]
           );
@@ -110,24 +113,16 @@ public class OnnxBertClassifierModel
 
   private ClassifierResult computeTokenProb(
     float[] logit,
+    float[] probabilities,
     String token,
     CharSpan span
   ) {
-    float[] probabilities = config.gioMath().softmax(logit);
-
-    int argMax = 0;
-    float maxProb = probabilities[0];
-
-    for (int i = 1; i < probabilities.length; i++) {
-      if (probabilities[i] > maxProb) {
-        argMax = i;
-        maxProb = probabilities[i];
-      }
-    }
+    config.gioMath().softmax(logit, probabilities);
+    final int argMax = config.gioMath().argmax(probabilities);
 
     return new ClassifierResult(
       computeLabel(probabilities, argMax),
-      maxProb,
+      probabilities[argMax],
       token,
       span.getStart(),
       span.getEnd()
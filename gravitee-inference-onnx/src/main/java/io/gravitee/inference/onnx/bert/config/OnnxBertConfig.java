@@ -20,6 +20,7 @@ import static io.gravitee.inference.api.Constants.DEFAULT_TOKENIZER_CONFIG;
 import io.gravitee.inference.api.utils.ConfigWrapper;
 import io.gravitee.inference.math.api.GioMaths;
 import io.gravitee.inference.onnx.OnnxConfig;
+import io.gravitee.inference.onnx.OnnxSessionConfig;
 import io.gravitee.inference.onnx.bert.resource.OnnxBertResource;
 import java.util.Map;
 
@@ -40,8 +41,17 @@ public final class OnnxBertConfig extends OnnxConfig<OnnxBertResource> {
     Map<String, Object> configuration,
     Map<String, String> tokenizerConfig
   ) {
-    super(resource);
-    this.configuration = new ConfigWrapper(configuration);
+    this(resource, gioMath, new ConfigWrapper(configuration), tokenizerConfig);
+  }
+
+  private OnnxBertConfig(
+    OnnxBertResource resource,
+    GioMaths gioMath,
+    ConfigWrapper configuration,
+    Map<String, String> tokenizerConfig
+  ) {
+    super(resource, OnnxSessionConfig.of(configuration));
+    this.configuration = configuration;
     this.gioMath = gioMath;
     this.tokenizerConfig = tokenizerConfig;
   }
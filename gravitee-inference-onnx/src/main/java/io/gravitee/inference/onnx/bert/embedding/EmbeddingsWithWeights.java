@@ -23,7 +23,10 @@ import io.gravitee.inference.math.api.GioMaths;
  */
 public record EmbeddingsWithWeights(float[][] embeddings, float[] weights) {
   public float[] toNormalizedWeighted(GioMaths gioMath) {
-    var weightedMean = gioMath.weightedMean(embeddings, weights);
-    return gioMath.normalize(weightedMean);
+    return gioMath.normalizedWeightedMean(
+      embeddings,
+      weights,
+      new float[embeddings[0].length]
+    );
   }
 }
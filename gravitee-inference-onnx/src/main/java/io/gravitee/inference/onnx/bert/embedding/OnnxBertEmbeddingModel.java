@@ -22,12 +22,16 @@ import static java.lang.Math.min;
 import static java.lang.System.arraycopy;
 import static java.util.stream.IntStream.iterate;
 
+import ai.djl.huggingface.tokenizers.Encoding;
 import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession.Result;
 import io.gravitee.inference.api.embedding.EmbeddingTokenCount;
+import io.gravitee.inference.api.embedding.Float16EmbeddingTokenCount;
 import io.gravitee.inference.api.embedding.PoolingMode;
+import io.gravitee.inference.math.api.half.HalfFormat;
 import io.gravitee.inference.onnx.bert.OnnxBertInference;
 import io.gravitee.inference.onnx.bert.config.OnnxBertConfig;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -52,6 +56,59 @@ public class OnnxBertEmbeddingModel
     );
   }
 
+  /**
+   * Inputs that fit in a single partition are run as one padded batch and
+   * pooled following their attention mask; longer inputs, split into
+   * partitions, go through {@link #infer(String)} one by one. Results are
+   * returned in input order.
+   */
+  @Override
+  public List<EmbeddingTokenCount> inferAll(List<String> input) {
+    final int partitionSize = config.get(MAX_SEQUENCE_LENGTH);
+
+    var results = new EmbeddingTokenCount[input.size()];
+    var batch = new ArrayList<Encoding>(input.size());
+    var batchIndices = new ArrayList<Integer>(input.size());
+    for (int i = 0; i < input.size(); i++) {
+      final String sentence = input.get(i);
+      final Encoding encoding = tokenizer.encode(sentence, true, false);
+      final int length = encoding.getIds().length;
+      // [CLS] and [SEP] around at least one, at most partitionSize tokens
+      if (length > 2 && length - 2 <= partitionSize) {
+        batch.add(encoding);
+        batchIndices.add(i);
+      } else {
+        results[i] = infer(sentence);
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      float[][] embeddings = poolAll(encodeBatch(batch));
+      for (int i = 0; i < batch.size(); i++) {
+        results[batchIndices.get(i)] = new EmbeddingTokenCount(
+          config.gioMath().normalizeInPlace(embeddings[i]),
+          batch.get(i).getTokens().length
+        );
+      }
+    }
+    return List.of(results);
+  }
+
+  /**
+   * Same as {@link #infer(String)}, with the embedding converted to
+   * half-precision floats by the configured {@code GioMaths}.
+   */
+  public Float16EmbeddingTokenCount inferFloat16(String input) {
+    var embeddingTokenCount = infer(input);
+    var embedding = embeddingTokenCount.embedding();
+    return new Float16EmbeddingTokenCount(
+      config
+        .gioMath()
+        .toHalf(embedding, HalfFormat.FLOAT16, new short[embedding.length]),
+      embeddingTokenCount.tokenCount()
+    );
+  }
+
   private EmbeddingsWithWeights getEmbeddings(String input) {
     final int partitionSize = config.get(MAX_SEQUENCE_LENGTH);
 
@@ -120,4 +177,37 @@ public class OnnxBertEmbeddingModel
       case MEAN -> config.gioMath().mean(vectors);
     };
   }
+
+  private float[][] poolAll(EncodingResults encodingResults) {
+    try (var result = encodingResults.result()) {
+      var hiddenStates = (float[][][]) result.get(0).getValue();
+      return switch (config.<PoolingMode>get(POOLING_MODE)) {
+        case CLS -> config.gioMath().clsPooling(hiddenStates);
+        case MEAN -> config
+          .gioMath()
+          .meanPooling(
+            hiddenStates,
+            attentionMask(encodingResults.encoding(), hiddenStates[0].length)
+          );
+      };
+    } catch (OrtException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  /**
+   * @return the attention masks of the encodings, padded with zeros to the
+   * {@code maxTokens} of the batch
+   */
+  private static long[][] attentionMask(
+    List<Encoding> encodings,
+    int maxTokens
+  ) {
+    long[][] attentionMask = new long[encodings.size()][maxTokens];
+    for (int i = 0; i < encodings.size(); i++) {
+      long[] mask = encodings.get(i).getAttentionMask();
+      arraycopy(mask, 0, attentionMask[i], 0, mask.length);
+    }
+    return attentionMask;
+  }
 }
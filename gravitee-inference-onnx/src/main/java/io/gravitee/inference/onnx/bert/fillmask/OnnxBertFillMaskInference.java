@@ -15,17 +15,14 @@
  */
 package io.gravitee.inference.onnx.bert.fillmask;
 
-import static java.util.Comparator.comparing;
-import static java.util.Comparator.reverseOrder;
-import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.IntStream.range;
 
 import ai.onnxruntime.OrtException;
+import io.gravitee.inference.math.api.GioMaths;
+import io.gravitee.inference.math.api.selection.TopK;
 import io.gravitee.inference.onnx.bert.OnnxBertInference;
 import io.gravitee.inference.onnx.bert.config.OnnxBertConfig;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
 
 /**
  * @author Rémi SULTAN (remi.sultan at graviteesource.com)
@@ -35,6 +32,7 @@ public class OnnxBertFillMaskInference
   extends OnnxBertInference<List<FillMaskResult<String>>> {
 
   public static final String MASK_KEYWORD = "[MASK]";
+  private static final int TOP_K = 5;
 
   public OnnxBertFillMaskInference(OnnxBertConfig onnxBertConfig) {
     super(onnxBertConfig);
@@ -79,26 +77,20 @@ public class OnnxBertFillMaskInference
     int batchNumber,
     int maskedIndex
   ) {
-    return getTokenIdWithHighestLogits(logits[batchNumber][maskedIndex])
-      .stream()
-      .map(fm -> new FillMaskResult<>(decodeTokenIds(fm.label()), fm.score()))
-      .toList()
-      .subList(0, 5);
-  }
-
-  private Set<FillMaskResult<Integer>> getTokenIdWithHighestLogits(
-    float[] logits
-  ) {
-    float[] probabilities = config.gioMath().softmax(logits);
-    return range(0, probabilities.length)
-      .mapToObj(index -> new FillMaskResult<>(index, probabilities[index]))
-      .collect(
-        toCollection(() ->
-          new TreeSet<FillMaskResult<Integer>>(
-            comparing(FillMaskResult::score, reverseOrder())
-          )
+    final GioMaths gioMath = config.gioMath();
+    // the logits are copied out of the ONNX tensor, softmax can run in place
+    final TopK topK = gioMath.topK(
+      gioMath.softmaxInPlace(logits[batchNumber][maskedIndex]),
+      TOP_K
+    );
+    return range(0, topK.size())
+      .mapToObj(rank ->
+        new FillMaskResult<>(
+          decodeTokenIds(topK.index(rank)),
+          topK.value(rank)
         )
-      );
+      )
+      .toList();
   }
 
   private String decodeTokenIds(long tokenId) {
@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.onnx;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ai.onnxruntime.OnnxTensorLike;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.OrtSession.Result;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public class AdaptiveSessionPoolTest {
+
+  @Test
+  void should_run_a_call_alone_on_the_latency_session() throws OrtException {
+    var latency = new CountingDispatcher();
+    var throughput = new CountingDispatcher();
+    var pool = new AdaptiveSessionPool(latency, throughput);
+
+    pool.run(Map.of());
+    pool.run(Map.of());
+
+    assertEquals(2, latency.runs.get());
+    assertEquals(0, throughput.runs.get());
+    assertSame(ParallelismMode.LATENCY, pool.parallelism().mode());
+  }
+
+  @Test
+  void should_run_concurrent_calls_on_the_throughput_pool() throws Exception {
+    var latency = new CountingDispatcher();
+    var throughput = new CountingDispatcher();
+    var pool = new AdaptiveSessionPool(latency, throughput);
+    var observed = new AtomicReference<OnnxParallelism>();
+    throughput.during = () -> observed.set(pool.parallelism());
+    latency.hold();
+
+    var first = CompletableFuture.runAsync(() -> {
+      try {
+        pool.run(Map.of());
+      } catch (OrtException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    assertTrue(latency.started.await(10, TimeUnit.SECONDS));
+    try {
+      pool.run(Map.of());
+
+      assertEquals(1, throughput.runs.get());
+      assertSame(ParallelismMode.THROUGHPUT, observed.get().mode());
+      assertEquals(2, observed.get().inFlight());
+    } finally {
+      latency.release();
+    }
+    first.get(10, TimeUnit.SECONDS);
+
+    assertEquals(1, latency.runs.get());
+    assertSame(ParallelismMode.LATENCY, pool.parallelism().mode());
+  }
+
+  @Test
+  void should_close_both_dispatchers_when_one_fails() {
+    var latency = new CountingDispatcher();
+    var throughput = new CountingDispatcher();
+    latency.closeFailure = new OrtException("latency");
+    throughput.closeFailure = new OrtException("throughput");
+    var pool = new AdaptiveSessionPool(latency, throughput);
+
+    var failure = assertThrows(OrtException.class, pool::close);
+
+    assertSame(latency.closeFailure, failure);
+    assertSame(throughput.closeFailure, failure.getSuppressed()[0]);
+    assertTrue(latency.closed);
+    assertTrue(throughput.closed);
+  }
+
+  private static final class CountingDispatcher implements SessionDispatcher {
+
+    private final AtomicInteger runs = new AtomicInteger();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private CountDownLatch held = new CountDownLatch(0);
+    private Runnable during = () -> {};
+    private OrtException closeFailure;
+    private boolean closed;
+
+    void hold() {
+      held = new CountDownLatch(1);
+    }
+
+    void release() {
+      held.countDown();
+    }
+
+    @Override
+    public Result run(Map<String, ? extends OnnxTensorLike> inputs) {
+      runs.incrementAndGet();
+      started.countDown();
+      during.run();
+      try {
+        held.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return null;
+    }
+
+    @Override
+    public OrtSession first() {
+      return null;
+    }
+
+    @Override
+    public OnnxParallelism parallelism() {
+      return new OnnxParallelism(ParallelismMode.FIXED, 0, 0);
+    }
+
+    @Override
+    public void close() throws OrtException {
+      closed = true;
+      if (closeFailure != null) {
+        throw closeFailure;
+      }
+    }
+  }
+}
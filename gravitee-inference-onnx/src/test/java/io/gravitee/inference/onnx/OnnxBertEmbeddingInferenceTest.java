@@ -15,8 +15,10 @@
  */
 package io.gravitee.inference.onnx;
 
+import static io.gravitee.inference.api.Constants.ADAPTIVE_PARALLELISM;
 import static io.gravitee.inference.api.Constants.MAX_SEQUENCE_LENGTH_DEFAULT_VALUE;
 import static io.gravitee.inference.api.Constants.POOLING_MODE;
+import static io.gravitee.inference.api.Constants.SESSION_POOL_SIZE;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -32,8 +34,12 @@ import io.gravitee.inference.onnx.bert.embedding.OnnxBertEmbeddingModel;
 import io.gravitee.inference.onnx.bert.resource.OnnxBertResource;
 import java.net.URI;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Stream;
 import org.apache.commons.math3.util.FastMath;
@@ -178,6 +184,83 @@ public class OnnxBertEmbeddingInferenceTest extends OnnxBertBaseTest {
     simdLoopBoundModel.close();
   }
 
+  @Test
+  public void pooled_sessions_must_return_the_same_embedding()
+    throws Exception {
+    var configuration = new HashMap<>(MEAN_ONNX_CONFIG);
+    configuration.put(SESSION_POOL_SIZE, 2);
+    var singleModel = new OnnxBertEmbeddingModel(
+      ONNX_BERT_CONFIG_STREAM_MEAN.get(0)
+    );
+    var pooledModel = new OnnxBertEmbeddingModel(
+      new OnnxBertConfig(ONNX_BERT_RESOURCE, NativeMath.INSTANCE, configuration)
+    );
+    var expected = singleModel.infer(
+      THE_BIG_BROWN_FOX_JUMPED_OVER_THE_LAZY_DOG
+    );
+
+    var executor = Executors.newFixedThreadPool(4);
+    try {
+      var futures = new ArrayList<Future<EmbeddingTokenCount>>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(
+          executor.submit(() ->
+            pooledModel.infer(THE_BIG_BROWN_FOX_JUMPED_OVER_THE_LAZY_DOG)
+          )
+        );
+      }
+      for (var future : futures) {
+        var result = future.get();
+        assertEquals(expected.tokenCount(), result.tokenCount());
+        assertArrayEquals(expected.embedding(), result.embedding(), 1e-5f);
+      }
+    } finally {
+      executor.shutdown();
+      singleModel.close();
+      pooledModel.close();
+    }
+  }
+
+  @Test
+  public void adaptive_sessions_must_return_the_same_embedding()
+    throws Exception {
+    var configuration = new HashMap<>(MEAN_ONNX_CONFIG);
+    configuration.put(ADAPTIVE_PARALLELISM, true);
+    var singleModel = new OnnxBertEmbeddingModel(
+      ONNX_BERT_CONFIG_STREAM_MEAN.get(0)
+    );
+    var adaptiveModel = new OnnxBertEmbeddingModel(
+      new OnnxBertConfig(ONNX_BERT_RESOURCE, NativeMath.INSTANCE, configuration)
+    );
+    var expected = singleModel.infer(
+      THE_BIG_BROWN_FOX_JUMPED_OVER_THE_LAZY_DOG
+    );
+
+    var executor = Executors.newFixedThreadPool(4);
+    try {
+      var futures = new ArrayList<Future<EmbeddingTokenCount>>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(
+          executor.submit(() ->
+            adaptiveModel.infer(THE_BIG_BROWN_FOX_JUMPED_OVER_THE_LAZY_DOG)
+          )
+        );
+      }
+      for (var future : futures) {
+        var result = future.get();
+        assertArrayEquals(expected.embedding(), result.embedding(), 1e-5f);
+      }
+      var parallelism = adaptiveModel.getParallelism();
+      assertEquals(ParallelismMode.LATENCY, parallelism.mode());
+      assertEquals(0, parallelism.inFlight());
+      assertEquals(ParallelismMode.FIXED, singleModel.getParallelism().mode());
+    } finally {
+      executor.shutdown();
+      singleModel.close();
+      adaptiveModel.close();
+    }
+  }
+
   @ParameterizedTest
   @MethodSource("params_that_must_return_embedding")
   public void must_return_embedding(OnnxBertConfig config) {
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.onnx;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtSession.SessionOptions.ExecutionMode;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public class OnnxEnvironmentTest {
+
+  @Test
+  void should_share_one_environment_between_models() {
+    var first = OnnxEnvironment.get();
+    var second = OnnxEnvironment.get();
+
+    assertSame(first, second);
+    assertSame(OrtEnvironment.getEnvironment(), second.environment());
+    assertTrue(second.intraOpNumThreads() > 0);
+  }
+
+  @Test
+  void should_keep_own_threads_within_the_intra_op_threads() {
+    var environment = OnnxEnvironment.get();
+    int threads = environment.intraOpNumThreads();
+    var parallel = withInterOpNumThreads(2);
+
+    assertEquals(
+      threads,
+      OnnxEnvironment.intraOpNumThreads(OnnxSessionConfig.DEFAULT, 1)
+    );
+    assertEquals(
+      Math.max(1, threads - 2),
+      OnnxEnvironment.intraOpNumThreads(parallel, 1)
+    );
+    assertEquals(
+      Math.max(1, threads / 4 - 2),
+      OnnxEnvironment.intraOpNumThreads(parallel, 4)
+    );
+  }
+
+  @Test
+  void should_report_sessions_starting_threads_next_to_global_pools() {
+    var environment = OnnxEnvironment.get();
+    boolean global = environment.usesGlobalThreadPools();
+    int threads = environment.intraOpNumThreads();
+    var defaults = OnnxSessionConfig.DEFAULT;
+
+    assertFalse(environment.startsOwnThreads(defaults, 1));
+    // A pool of sessions splitting the intra-op threads
+    assertEquals(
+      global && threads / 2 > 1,
+      environment.startsOwnThreads(defaults, 2)
+    );
+    // Single-threaded sessions run on the calling threads
+    assertFalse(environment.startsOwnThreads(defaults, threads));
+    assertEquals(
+      global,
+      environment.startsOwnThreads(withInterOpNumThreads(2), 1)
+    );
+  }
+
+  private static OnnxSessionConfig withInterOpNumThreads(int threads) {
+    var defaults = OnnxSessionConfig.DEFAULT;
+    return new OnnxSessionConfig(
+      defaults.optimizationLevel(),
+      ExecutionMode.PARALLEL,
+      threads,
+      defaults.memoryPattern(),
+      defaults.cpuArena(),
+      defaults.flushDenormals(),
+      defaults.optimizedModelCache(),
+      defaults.sessionPoolSize(),
+      defaults.adaptiveParallelism()
+    );
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.onnx;
+
+import static io.gravitee.inference.api.Constants.ADAPTIVE_PARALLELISM;
+import static io.gravitee.inference.api.Constants.CPU_ARENA;
+import static io.gravitee.inference.api.Constants.EXECUTION_MODE;
+import static io.gravitee.inference.api.Constants.FLUSH_DENORMALS;
+import static io.gravitee.inference.api.Constants.GRAPH_OPTIMIZATION_LEVEL;
+import static io.gravitee.inference.api.Constants.INTER_OP_NUM_THREADS;
+import static io.gravitee.inference.api.Constants.MEMORY_PATTERN;
+import static io.gravitee.inference.api.Constants.OPTIMIZED_MODEL_CACHE;
+import static io.gravitee.inference.api.Constants.SESSION_POOL_SIZE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ai.onnxruntime.OrtSession.SessionOptions.ExecutionMode;
+import ai.onnxruntime.OrtSession.SessionOptions.OptLevel;
+import io.gravitee.inference.api.utils.ConfigWrapper;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public class OnnxSessionConfigTest {
+
+  @Test
+  void should_default_to_onnx_runtime_settings() {
+    var sessionConfig = OnnxSessionConfig.of(new ConfigWrapper(Map.of()));
+
+    assertEquals(OnnxSessionConfig.DEFAULT, sessionConfig);
+    assertFalse(sessionConfig.usesOwnThreads());
+  }
+
+  @Test
+  void should_read_values_and_names() {
+    var sessionConfig = OnnxSessionConfig.of(
+      new ConfigWrapper(
+        Map.of(
+          GRAPH_OPTIMIZATION_LEVEL,
+          "basic_opt",
+          EXECUTION_MODE,
+          ExecutionMode.PARALLEL,
+          INTER_OP_NUM_THREADS,
+          "2",
+          MEMORY_PATTERN,
+          false,
+          CPU_ARENA,
+          "false",
+          FLUSH_DENORMALS,
+          true,
+          OPTIMIZED_MODEL_CACHE,
+          "/var/cache/onnx",
+          SESSION_POOL_SIZE,
+          4,
+          ADAPTIVE_PARALLELISM,
+          "true"
+        )
+      )
+    );
+
+    assertEquals(
+      new OnnxSessionConfig(
+        OptLevel.BASIC_OPT,
+        ExecutionMode.PARALLEL,
+        2,
+        false,
+        false,
+        true,
+        Path.of("/var/cache/onnx"),
+        4,
+        true
+      ),
+      sessionConfig
+    );
+    assertTrue(sessionConfig.usesOwnThreads());
+  }
+
+  @Test
+  void should_reject_invalid_values() {
+    assertThrows(IllegalArgumentException.class, () ->
+      OnnxSessionConfig.of(
+        new ConfigWrapper(Map.of(GRAPH_OPTIMIZATION_LEVEL, "fastest"))
+      )
+    );
+    assertThrows(IllegalArgumentException.class, () ->
+      OnnxSessionConfig.of(new ConfigWrapper(Map.of(MEMORY_PATTERN, "yes")))
+    );
+    assertThrows(IllegalArgumentException.class, () ->
+      OnnxSessionConfig.of(new ConfigWrapper(Map.of(INTER_OP_NUM_THREADS, -1)))
+    );
+    assertThrows(IllegalArgumentException.class, () ->
+      OnnxSessionConfig.of(new ConfigWrapper(Map.of(SESSION_POOL_SIZE, 0)))
+    );
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.inference.onnx;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ai.onnxruntime.OrtSession.SessionOptions.OptLevel;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author Rémi SULTAN (remi.sultan at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public class OptimizedModelCacheTest {
+
+  @Test
+  void should_key_entries_by_model_and_settings(@TempDir Path directory)
+    throws IOException {
+    var cache = new OptimizedModelCache(directory.resolve("cache"));
+    var model = Files.write(directory.resolve("model.onnx"), new byte[] { 1 });
+    var other = Files.write(directory.resolve("other.onnx"), new byte[] { 2 });
+    var copy = Files.write(directory.resolve("copy.onnx"), new byte[] { 1 });
+    var basic = withOptimizationLevel(OptLevel.BASIC_OPT);
+    var all = OnnxSessionConfig.DEFAULT;
+
+    var entry = cache.entry(model, all, false);
+
+    assertEquals(directory.resolve("cache"), entry.getParent());
+    assertEquals(entry, cache.entry(copy, all, false));
+    assertNotEquals(entry, cache.entry(other, all, false));
+    assertNotEquals(entry, cache.entry(model, basic, false));
+    assertNotEquals(entry, cache.entry(model, all, true));
+  }
+
+  @Test
+  void should_key_entries_by_cpu_features(@TempDir Path directory)
+    throws IOException {
+    var cache = new OptimizedModelCache(directory);
+    var model = Files.write(directory.resolve("model.onnx"), new byte[] { 1 });
+    var all = OnnxSessionConfig.DEFAULT;
+
+    assertNotEquals(
+      cache.entry(model, all, false, "sse4_2 avx2"),
+      cache.entry(model, all, false, "sse4_2 avx2 avx512f")
+    );
+  }
+
+  @Test
+  void should_only_cache_portable_levels_without_cpu_features(
+    @TempDir Path directory
+  ) throws IOException {
+    var cache = new OptimizedModelCache(directory);
+    var model = Files.write(directory.resolve("model.onnx"), new byte[] { 1 });
+    var all = OnnxSessionConfig.DEFAULT;
+    var extended = withOptimizationLevel(OptLevel.EXTENDED_OPT);
+
+    assertFalse(OptimizedModelCache.isAvailable(all, null));
+    assertTrue(OptimizedModelCache.isAvailable(extended, null));
+    assertThrows(
+      IllegalStateException.class,
+      () -> cache.entry(model, all, false, null)
+    );
+    assertEquals(
+      cache.entry(model, extended, false, null),
+      cache.entry(model, extended, false, null)
+    );
+  }
+
+  @Test
+  void should_read_cpu_features(@TempDir Path directory) throws IOException {
+    var x86 = Files.writeString(
+      directory.resolve("x86"),
+      "processor\t: 0\nflags\t\t: fpu avx2 avx512f\n\nprocessor\t: 1\n"
+    );
+    var arm = Files.writeString(
+      directory.resolve("arm"),
+      "processor\t: 0\nFeatures\t: fp asimd sve\n"
+    );
+    var none = Files.writeString(directory.resolve("none"), "processor\t: 0\n");
+
+    assertEquals("fpu avx2 avx512f", OptimizedModelCache.readCpuFeatures(x86));
+    assertEquals("fp asimd sve", OptimizedModelCache.readCpuFeatures(arm));
+    assertNull(OptimizedModelCache.readCpuFeatures(none));
+    assertNull(
+      OptimizedModelCache.readCpuFeatures(directory.resolve("missing"))
+    );
+  }
+
+  @Test
+  void should_move_committed_entries_in_place(@TempDir Path directory)
+    throws IOException {
+    var cache = new OptimizedModelCache(directory);
+    var model = Files.write(directory.resolve("model.onnx"), new byte[] { 1 });
+    var entry = cache.entry(model, OnnxSessionConfig.DEFAULT, false);
+
+    var temporary = cache.temporary(entry);
+    Files.write(temporary, new byte[] { 3 });
+    cache.commit(temporary, entry);
+
+    assertFalse(Files.exists(temporary));
+    assertTrue(Files.exists(entry));
+    assertEquals(3, Files.readAllBytes(entry)[0]);
+  }
+
+  @Test
+  void should_ignore_entries_not_written(@TempDir Path directory)
+    throws IOException {
+    var cache = new OptimizedModelCache(directory);
+    var model = Files.write(directory.resolve("model.onnx"), new byte[] { 1 });
+    var entry = cache.entry(model, OnnxSessionConfig.DEFAULT, false);
+
+    cache.commit(cache.temporary(entry), entry);
+
+    assertFalse(Files.exists(entry));
+  }
+
+  @Test
+  void should_evict_entries_failing_to_load(@TempDir Path directory)
+    throws IOException {
+    var cache = new OptimizedModelCache(directory);
+    var model = Files.write(directory.resolve("model.onnx"), new byte[] { 1 });
+    var entry = cache.entry(model, OnnxSessionConfig.DEFAULT, false);
+    Files.write(entry, new byte[] { 3 });
+
+    cache.evict(entry);
+    cache.evict(entry);
+
+    assertFalse(Files.exists(entry));
+  }
+
+  @Test
+  void should_know_the_runtime_version_from_the_build() {
+    assertTrue(
+      OptimizedModelCache.isAvailable(
+        withOptimizationLevel(OptLevel.EXTENDED_OPT)
+      )
+    );
+  }
+
+  private static OnnxSessionConfig withOptimizationLevel(OptLevel level) {
+    var defaults = OnnxSessionConfig.DEFAULT;
+    return new OnnxSessionConfig(
+      level,
+      defaults.executionMode(),
+      defaults.interOpNumThreads(),
+      defaults.memoryPattern(),
+      defaults.cpuArena(),
+      defaults.flushDenormals(),
+      defaults.optimizedModelCache(),
+      defaults.sessionPoolSize(),
+      defaults.adaptiveParallelism()
+    );
+  }
+}